@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.load.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Measures how many rows per second are inserted into an in-memory HSQLDB with different batch sizes, using the
+ * {@link RowWriter} of {@code HsqlDatabase}. As in the parallel loader, a batch is sent and committed once the batch size is reached.
+ * The table is truncated before each invocation.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchSizeBenchmark {
+
+	static final int ROWS = 50000;
+
+	@Param({ "NUMBERS", "LONG_TUPLES" })
+	public RowShape shape;
+
+	@Param({ "100", "1000", "10000" })
+	public int batchSize;
+
+	private Database database;
+	private Connection connection;
+	private LoadSettings settings;
+	private List<DumpRow> rows;
+
+	@Setup
+	public void setup() throws SQLException {
+		database = DatabaseFactory.getInstance().newDatabase("hsqldb", "jdbc:hsqldb:mem:batch", "sa", "", 1);
+		connection = database.openConnection();
+		execute(shape.getCreateTable());
+
+		Properties properties = new Properties();
+		properties.setProperty("load.batch.size", String.valueOf(batchSize));
+		settings = new LoadSettings(properties);
+		rows = CapturedRow.capture(shape.generateDump(ROWS, 1000, 1L));
+	}
+
+	@Setup(Level.Invocation)
+	public void truncate() throws SQLException {
+		execute("TRUNCATE TABLE " + shape.getTableName());
+	}
+
+	private void execute(String sql) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(sql);
+		} finally {
+			statement.close();
+		}
+		connection.commit();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void insert() throws SQLException {
+		RowWriter writer = database.newRowWriter(connection, shape.getTableName(), settings);
+		try {
+			int pending = 0;
+			for (DumpRow row : rows) {
+				writer.write(row);
+				if (++pending == batchSize) {
+					writer.flush();
+					connection.commit();
+					pending = 0;
+				}
+			}
+			writer.flush();
+			connection.commit();
+		} finally {
+			writer.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		execute("DROP TABLE " + shape.getTableName());
+		connection.close();
+		database.close();
+	}
+}
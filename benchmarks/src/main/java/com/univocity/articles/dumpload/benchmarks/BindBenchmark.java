@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.load.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Measures the cost of binding rows to the parameters of a {@link PreparedStatement} of an in-memory HSQLDB, comparing
+ * the {@link RowBinder} built from the column types of the table with binding every value as a {@code String}.
+ * Batches are cleared instead of executed, so the database does no work.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BindBenchmark {
+
+	static final int ROWS = 20000;
+
+	public enum Binding {
+		TYPED, STRINGS
+	}
+
+	@Param({ "NUMBERS", "ESCAPED_STRINGS", "LONG_TUPLES", "NULLS" })
+	public RowShape shape;
+
+	@Param({ "TYPED", "STRINGS" })
+	public Binding binding;
+
+	private Database database;
+	private Connection connection;
+	private PreparedStatement statement;
+	private RowBinder binder;
+	private List<DumpRow> rows;
+
+	@Setup
+	public void setup() throws SQLException {
+		database = DatabaseFactory.getInstance().newDatabase("hsqldb", "jdbc:hsqldb:mem:bind", "sa", "", 1);
+		connection = database.openConnection();
+		Statement ddl = connection.createStatement();
+		ddl.execute(shape.getCreateTable());
+		ddl.close();
+		connection.commit();
+
+		rows = CapturedRow.capture(shape.generateDump(ROWS, 1000, 1L));
+		binder = binding == Binding.TYPED ? RowBinder.forTable(connection, shape.getTableName()) : new RowBinder(shape.getTableName());
+
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(shape.getTableName()).append(" VALUES (");
+		for (int i = 0; i < rows.get(0).getFieldCount(); i++) {
+			sql.append(i == 0 ? "?" : ",?");
+		}
+		statement = connection.prepareStatement(sql.append(')').toString());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void bind() throws SQLException {
+		for (int i = 0; i < rows.size(); i++) {
+			binder.bind(statement, rows.get(i));
+			statement.addBatch();
+			if (i % 1000 == 999) {
+				statement.clearBatch();
+			}
+		}
+		statement.clearBatch();
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		statement.close();
+		Statement ddl = connection.createStatement();
+		ddl.execute("DROP TABLE " + shape.getTableName());
+		ddl.close();
+		connection.commit();
+		connection.close();
+		database.close();
+	}
+}
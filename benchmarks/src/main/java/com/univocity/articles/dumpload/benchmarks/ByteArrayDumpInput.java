@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A {@link DumpInput} over bytes in memory, so parser benchmarks don't measure the disk.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class ByteArrayDumpInput implements DumpInput {
+
+	private final byte[] data;
+	private int position;
+
+	ByteArrayDumpInput(byte[] data) {
+		this.data = data;
+	}
+
+	@Override
+	public long getStartOffset() {
+		return 0;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) {
+		if (position == data.length) {
+			return -1;
+		}
+		int count = Math.min(length, data.length - position);
+		System.arraycopy(data, position, buffer, offset, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public void close() {
+	}
+}
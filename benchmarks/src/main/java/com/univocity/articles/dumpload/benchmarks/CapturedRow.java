@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import java.nio.charset.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A copy of a {@link DumpRow} produced by the parser, so binding and writing can be measured without parsing.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class CapturedRow implements DumpRow {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String table;
+	private final byte[] data;
+	private final int[] starts;
+	private final int[] lengths;
+	private final boolean[] nulls;
+	private final boolean[] quoted;
+	private final boolean[] binary;
+
+	private CapturedRow(DumpRow row) {
+		int count = row.getFieldCount();
+		table = row.getTable();
+		starts = new int[count];
+		lengths = new int[count];
+		nulls = new boolean[count];
+		quoted = new boolean[count];
+		binary = new boolean[count];
+
+		int length = 0;
+		for (int i = 0; i < count; i++) {
+			length += row.getLength(i);
+		}
+		data = new byte[length];
+		int position = 0;
+		for (int i = 0; i < count; i++) {
+			starts[i] = position;
+			lengths[i] = row.getLength(i);
+			nulls[i] = row.isNull(i);
+			quoted[i] = row.isQuoted(i);
+			binary[i] = row.isBinary(i);
+			System.arraycopy(row.getBuffer(), row.getStart(i), data, position, lengths[i]);
+			position += lengths[i];
+		}
+	}
+
+	/**
+	 * Parses the given statements and copies every row
+	 * @param dump the statements to parse
+	 * @return copies of all rows parsed.
+	 */
+	static List<DumpRow> capture(byte[] dump) {
+		final List<DumpRow> rows = new ArrayList<DumpRow>();
+		new DumpParser(UTF8).parse(new ByteArrayDumpInput(dump), new RowHandler() {
+			@Override
+			public boolean statementStarted(String table, long offset) {
+				return true;
+			}
+
+			@Override
+			public void rowParsed(DumpRow row) {
+				rows.add(new CapturedRow(row));
+			}
+
+			@Override
+			public void statementEnded(String table, long offset) {
+			}
+		});
+		return rows;
+	}
+
+	@Override
+	public String getTable() {
+		return table;
+	}
+
+	@Override
+	public int getFieldCount() {
+		return starts.length;
+	}
+
+	@Override
+	public boolean isNull(int index) {
+		return nulls[index];
+	}
+
+	@Override
+	public boolean isQuoted(int index) {
+		return quoted[index];
+	}
+
+	@Override
+	public boolean isBinary(int index) {
+		return binary[index];
+	}
+
+	@Override
+	public byte[] getBuffer() {
+		return data;
+	}
+
+	@Override
+	public int getStart(int index) {
+		return starts[index];
+	}
+
+	@Override
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	@Override
+	public String getString(int index) {
+		return nulls[index] ? null : new String(data, starts[index], lengths[index], UTF8);
+	}
+
+	@Override
+	public long getLong(int index) {
+		if (nulls[index] || lengths[index] == 0) {
+			throw new NumberFormatException("Value at index " + index + " is not a number");
+		}
+		int i = starts[index];
+		int end = i + lengths[index];
+		boolean negative = data[i] == '-';
+		if (negative) {
+			i++;
+		}
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = data[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Value at index " + index + " is not a number");
+			}
+			result = result * 10 + digit;
+		}
+		return negative ? -result : result;
+	}
+
+	@Override
+	public int getInt(int index) {
+		long value = getLong(index);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Value at index " + index + " does not fit in an int");
+		}
+		return (int) value;
+	}
+}
@@ -0,0 +1,473 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.benchmarks.DumpSchema.Column;
+import com.univocity.articles.dumpload.benchmarks.DumpSchema.Table;
+
+/**
+ * Generates dump files in the format of {@code mysqldump}, with the tables of a {@link DumpSchema} and rows shaped like the ones in the
+ * GHTorrent dump, so the performance of a load can be measured and reproduced without the 42 GB production file.
+ *
+ * The size of the file is configurable. Rows are split between tables in the same proportion as in GHTorrent: the row count of a table
+ * is taken from the {@code AUTO_INCREMENT} value of its definition, or from a rough estimate of the production dump for tables without one.
+ * Values are generated according to the type and name of each column:
+ * <ul>
+ * <li>identifiers are sequential, and foreign keys reference the rows generated for the referenced table, favouring the first ones as popular
+ * users and projects are referenced far more often than the rest;</li>
+ * <li>text lengths follow an exponential distribution capped at the length of the column, with line breaks, quotes, backslashes and
+ * non-ASCII characters escaped as {@code mysqldump} does;</li>
+ * <li>nullable columns are {@code NULL} as often as in GHTorrent (e.g. most users have no company, most issues have no assignee).</li>
+ * </ul>
+ *
+ * Everything is generated from a single seed, so the same seed and size always produce the same file.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class DumpGenerator {
+
+	/**
+	 * Rough row counts of the 2014-08-18 GHTorrent dump for tables whose definition has no {@code AUTO_INCREMENT} value.
+	 */
+	private static final Map<String, Long> ESTIMATED_ROWS = new HashMap<String, Long>();
+
+	/**
+	 * The fraction of {@code NULL} values of nullable columns, by column name. Other nullable columns are {@code NULL} in
+	 * {@link #DEFAULT_NULL_RATE} of the rows.
+	 */
+	private static final Map<String, Double> NULL_RATES = new HashMap<String, Double>();
+
+	/**
+	 * The values of columns that hold one of a few keywords.
+	 */
+	private static final Map<String, String[]> VOCABULARIES = new HashMap<String, String[]>();
+
+	static {
+		ESTIMATED_ROWS.put("commit_parents", 150000000L);
+		ESTIMATED_ROWS.put("project_commits", 190000000L);
+		ESTIMATED_ROWS.put("watchers", 30000000L);
+		ESTIMATED_ROWS.put("issue_events", 20000000L);
+		ESTIMATED_ROWS.put("issue_comments", 20000000L);
+		ESTIMATED_ROWS.put("pull_request_commits", 20000000L);
+		ESTIMATED_ROWS.put("followers", 10000000L);
+		ESTIMATED_ROWS.put("issue_labels", 5000000L);
+		ESTIMATED_ROWS.put("project_members", 3000000L);
+		ESTIMATED_ROWS.put("pull_request_comments", 2000000L);
+		ESTIMATED_ROWS.put("organization_members", 500000L);
+		ESTIMATED_ROWS.put("repo_milestones", 500000L);
+		ESTIMATED_ROWS.put("counters", 1000L);
+		ESTIMATED_ROWS.put("schema_info", 1L);
+
+		NULL_RATES.put("company", 0.75);
+		NULL_RATES.put("location", 0.65);
+		NULL_RATES.put("email", 0.55);
+		NULL_RATES.put("name", 0.35);
+		NULL_RATES.put("description", 0.2);
+		NULL_RATES.put("language", 0.3);
+		NULL_RATES.put("forked_from", 0.85);
+		NULL_RATES.put("assignee_id", 0.8);
+		NULL_RATES.put("pull_request_id", 0.7);
+		NULL_RATES.put("line", 0.6);
+		NULL_RATES.put("position", 0.6);
+		NULL_RATES.put("action_specific", 0.6);
+		NULL_RATES.put("head_repo_id", 0.02);
+		NULL_RATES.put("body", 0.01);
+
+		VOCABULARIES.put("action", new String[] { "opened", "closed", "merged", "reopened", "synchronize", "subscribed", "referenced", "mentioned", "assigned" });
+		VOCABULARIES.put("action_specific", new String[] { "subscribed", "referenced", "mentioned", "assigned", "labeled" });
+		VOCABULARIES.put("language", new String[] { "JavaScript", "Ruby", "Java", "Python", "PHP", "C", "C++", "Objective-C", "Shell", "Go", "C#", "Perl" });
+		VOCABULARIES.put("type", new String[] { "USR", "USR", "USR", "USR", "USR", "USR", "USR", "USR", "USR", "ORG" });
+	}
+
+	private static final double DEFAULT_NULL_RATE = 0.05;
+
+	/**
+	 * Maximum length of each {@code INSERT} statement, as with the default {@code net_buffer_length} of {@code mysqldump}.
+	 */
+	private static final int STATEMENT_LENGTH = 1000000;
+
+	private static final int SAMPLE_ROWS = 1000;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final String[] NON_ASCII_WORDS = { "caf\u00e9", "\u00fcber", "se\u00f1or", "na\u00efve", "\u00e0", "\u4e2d\u6587", "\u65e5\u672c\u8a9e", "\u0440\u0443\u0441" };
+
+	//GHTorrent starts on 2008-02-01, when GitHub opened, and this dump ends in 2014-08.
+	private static final long FIRST_TIMESTAMP = 1201824000000L;
+	private static final long TIMESTAMP_RANGE = 1408320000000L - FIRST_TIMESTAMP;
+
+	private final DumpSchema schema;
+	private final long seed;
+	private final Map<String, Long> rowCounts = new HashMap<String, Long>();
+	private final Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+
+	/**
+	 * Creates a generator of dump files
+	 * @param schema the tables to generate
+	 * @param seed the seed of all random values.
+	 */
+	public DumpGenerator(DumpSchema schema, long seed) {
+		this.schema = schema;
+		this.seed = seed;
+	}
+
+	/**
+	 * Returns the number of rows of a table in the GHTorrent dump
+	 * @param table the table
+	 * @return the approximate number of rows of the table in the production dump.
+	 */
+	private static long getProductionRows(Table table) {
+		if (table.getAutoIncrement() > 0) {
+			return table.getAutoIncrement();
+		}
+		Long rows = ESTIMATED_ROWS.get(table.getName());
+		return rows == null ? 1000000L : rows;
+	}
+
+	/**
+	 * Writes a dump file with all tables of the schema.
+	 * @param output the file to write. If it exists, it will be replaced.
+	 * @param size the approximate size of the file, in bytes.
+	 * @return the number of rows generated for each table.
+	 */
+	public Map<String, Long> generate(File output, long size) {
+		calculateRowCounts(size);
+
+		Map<String, Long> out = new LinkedHashMap<String, Long>();
+		Random random = new Random(seed);
+		try {
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), Charset.forName("UTF-8")), 1024 * 1024);
+			try {
+				writeHeader(writer);
+				for (Table table : schema.getTables()) {
+					long rows = rowCounts.get(table.getName());
+					writeTable(writer, table, rows, random);
+					out.put(table.getName(), rows);
+				}
+				writeFooter(writer);
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Error writing dump file " + output.getAbsolutePath(), e);
+		}
+		return out;
+	}
+
+	/**
+	 * Scales the production row counts of each table so the rows of all tables add up to the given size. The average width of the rows
+	 * of each table is measured with a sample of rows. As identifiers and foreign keys get shorter when there are fewer rows, the
+	 * widths are measured again with the scaled row counts, and the row counts scaled once more.
+	 * @param size the size of the dump file, in bytes.
+	 */
+	private void calculateRowCounts(long size) {
+		for (Table table : schema.getTables()) {
+			rowCounts.put(table.getName(), getProductionRows(table));
+		}
+
+		StringBuilder sample = new StringBuilder();
+		for (int pass = 0; pass < 2; pass++) {
+			double sampleSize = 0;
+			Random random = new Random(seed);
+			for (Table table : schema.getTables()) {
+				long rows = rowCounts.get(table.getName());
+				sample.setLength(0);
+				for (int i = 0; i < SAMPLE_ROWS; i++) {
+					appendRow(sample.append(','), table, 1 + i * rows / SAMPLE_ROWS, random);
+				}
+				double width = sample.toString().getBytes(Charset.forName("UTF-8")).length / (double) SAMPLE_ROWS;
+				sampleSize += width * getProductionRows(table);
+			}
+
+			double scale = size / sampleSize;
+			for (Table table : schema.getTables()) {
+				rowCounts.put(table.getName(), Math.max(1L, Math.round(getProductionRows(table) * scale)));
+			}
+		}
+	}
+
+	private void writeHeader(Writer out) throws IOException {
+		out.write("-- MySQL dump 10.13  Distrib 5.5.38, for debian-linux-gnu (x86_64)\n");
+		out.write("--\n");
+		out.write("-- Host: localhost    Database: ghtorrent\n");
+		out.write("-- ------------------------------------------------------\n");
+		out.write("-- Generated by " + getClass().getName() + " with seed " + seed + "\n\n");
+		out.write("/*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;\n");
+		out.write("/*!40101 SET @OLD_CHARACTER_SET_RESULTS=@@CHARACTER_SET_RESULTS */;\n");
+		out.write("/*!40101 SET @OLD_COLLATION_CONNECTION=@@COLLATION_CONNECTION */;\n");
+		out.write("/*!40101 SET NAMES utf8 */;\n");
+		out.write("/*!40103 SET @OLD_TIME_ZONE=@@TIME_ZONE */;\n");
+		out.write("/*!40103 SET TIME_ZONE='+00:00' */;\n");
+		out.write("/*!40014 SET @OLD_UNIQUE_CHECKS=@@UNIQUE_CHECKS, UNIQUE_CHECKS=0 */;\n");
+		out.write("/*!40014 SET @OLD_FOREIGN_KEY_CHECKS=@@FOREIGN_KEY_CHECKS, FOREIGN_KEY_CHECKS=0 */;\n");
+		out.write("/*!40101 SET @OLD_SQL_MODE=@@SQL_MODE, SQL_MODE='NO_AUTO_VALUE_ON_ZERO' */;\n");
+		out.write("/*!40111 SET @OLD_SQL_NOTES=@@SQL_NOTES, SQL_NOTES=0 */;\n\n");
+	}
+
+	private void writeFooter(Writer out) throws IOException {
+		out.write("/*!40103 SET TIME_ZONE=@OLD_TIME_ZONE */;\n\n");
+		out.write("/*!40101 SET SQL_MODE=@OLD_SQL_MODE */;\n");
+		out.write("/*!40014 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS */;\n");
+		out.write("/*!40014 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS */;\n");
+		out.write("/*!40101 SET CHARACTER_SET_CLIENT=@OLD_CHARACTER_SET_CLIENT */;\n");
+		out.write("/*!40101 SET CHARACTER_SET_RESULTS=@OLD_CHARACTER_SET_RESULTS */;\n");
+		out.write("/*!40101 SET COLLATION_CONNECTION=@OLD_COLLATION_CONNECTION */;\n");
+		out.write("/*!40111 SET SQL_NOTES=@OLD_SQL_NOTES */;\n\n");
+		out.write("-- Dump completed\n");
+	}
+
+	private void writeTable(Writer out, Table table, long rows, Random random) throws IOException {
+		String name = table.getName();
+		out.write("--\n-- Table structure for table `" + name + "`\n--\n\n");
+		out.write("DROP TABLE IF EXISTS `" + name + "`;\n");
+		out.write("/*!40101 SET @saved_cs_client     = @@character_set_client */;\n");
+		out.write("/*!40101 SET character_set_client = utf8 */;\n");
+		out.write(table.getDefinition() + ";\n");
+		out.write("/*!40101 SET character_set_client = @saved_cs_client */;\n\n");
+		out.write("--\n-- Dumping data for table `" + name + "`\n--\n\n");
+		out.write("LOCK TABLES `" + name + "` WRITE;\n");
+		out.write("/*!40000 ALTER TABLE `" + name + "` DISABLE KEYS */;\n");
+
+		String insert = "INSERT INTO `" + name + "` VALUES ";
+		StringBuilder statement = new StringBuilder(STATEMENT_LENGTH + 64 * 1024);
+		for (long id = 1; id <= rows; id++) {
+			statement.append(statement.length() == 0 ? insert : ",");
+			appendRow(statement, table, id, random);
+			if (statement.length() >= STATEMENT_LENGTH) {
+				out.append(statement).append(";\n");
+				statement.setLength(0);
+			}
+		}
+		if (statement.length() > 0) {
+			out.append(statement).append(";\n");
+		}
+
+		out.write("/*!40000 ALTER TABLE `" + name + "` ENABLE KEYS */;\n");
+		out.write("UNLOCK TABLES;\n\n");
+	}
+
+	private void appendRow(StringBuilder out, Table table, long id, Random random) {
+		out.append('(');
+		List<Column> columns = table.getColumns();
+		for (int i = 0; i < columns.size(); i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			appendValue(out, table, columns.get(i), id, random);
+		}
+		out.append(')');
+	}
+
+	private void appendValue(StringBuilder out, Table table, Column column, long id, Random random) {
+		String name = column.getName();
+		String type = column.getType();
+
+		if (column.isNullable()) {
+			Double nullRate = NULL_RATES.get(name);
+			if (random.nextDouble() < (nullRate == null ? DEFAULT_NULL_RATE : nullRate)) {
+				out.append("NULL");
+				return;
+			}
+		}
+
+		if (column.isAutoIncrement()) {
+			out.append(id);
+		} else if (column.getReferencedTable() != null) {
+			Long rows = rowCounts.get(column.getReferencedTable());
+			out.append(1 + skewed(random, rows == null ? 1000000L : rows));
+		} else if (type.equals("tinyint")) {
+			out.append(column.getLength() == 1 ? (random.nextInt(10) == 0 ? 1 : 0) : random.nextInt(128));
+		} else if (type.endsWith("int")) {
+			out.append(1 + skewed(random, name.endsWith("_id") ? 50000000L : 10000L));
+		} else if (type.equals("timestamp") || type.equals("datetime")) {
+			appendTimestamp(out, random, true);
+		} else if (type.equals("date")) {
+			appendTimestamp(out, random, false);
+		} else if (name.equals("ext_ref_id")) {
+			//the identifier of the object in the MongoDB database of GHTorrent
+			appendHex(out, random, 24);
+		} else if (name.equals("sha")) {
+			appendHex(out, random, 40);
+		} else if (name.endsWith("_id")) {
+			out.append('\'').append(1 + random.nextInt(100000000)).append('\'');
+		} else if (VOCABULARIES.containsKey(name)) {
+			String[] vocabulary = VOCABULARIES.get(name);
+			out.append('\'').append(vocabulary[random.nextInt(vocabulary.length)]).append('\'');
+		} else if (name.equals("url")) {
+			out.append("'https://api.github.com/repos/");
+			appendWord(out, random, 3 + random.nextInt(10)).append('/');
+			appendWord(out, random, 3 + random.nextInt(14)).append('\'');
+		} else if (name.equals("email")) {
+			out.append('\'');
+			appendWord(out, random, 3 + random.nextInt(12)).append('@');
+			appendWord(out, random, 3 + random.nextInt(8)).append(".com'");
+		} else if (name.equals("body") || name.equals("description") || !type.endsWith("char")) {
+			appendText(out, random, exponential(random, name.equals("body") ? 120 : 50, maximumLength(column)));
+		} else {
+			out.append('\'');
+			appendWord(out, random, exponential(random, 8, maximumLength(column))).append('\'');
+		}
+	}
+
+	private static int maximumLength(Column column) {
+		return column.getLength() > 0 ? column.getLength() : 65535;
+	}
+
+	/**
+	 * Returns a random number between 0 and {@code max}, with lower numbers more likely than higher ones.
+	 */
+	private static long skewed(Random random, long max) {
+		double u = random.nextDouble();
+		return (long) (u * u * max);
+	}
+
+	/**
+	 * Returns a random length with an exponential distribution, between 1 and {@code max}.
+	 */
+	private static int exponential(Random random, int mean, int max) {
+		return (int) Math.min(max, 1 + (long) (-mean * Math.log(1 - random.nextDouble())));
+	}
+
+	private void appendTimestamp(StringBuilder out, Random random, boolean time) {
+		calendar.setTimeInMillis(FIRST_TIMESTAMP + (long) (random.nextDouble() * TIMESTAMP_RANGE) / 1000 * 1000);
+		out.append('\'').append(calendar.get(Calendar.YEAR)).append('-');
+		appendTwoDigits(out, calendar.get(Calendar.MONTH) + 1).append('-');
+		appendTwoDigits(out, calendar.get(Calendar.DAY_OF_MONTH));
+		if (time) {
+			appendTwoDigits(out.append(' '), calendar.get(Calendar.HOUR_OF_DAY)).append(':');
+			appendTwoDigits(out, calendar.get(Calendar.MINUTE)).append(':');
+			appendTwoDigits(out, calendar.get(Calendar.SECOND));
+		}
+		out.append('\'');
+	}
+
+	private static StringBuilder appendTwoDigits(StringBuilder out, int value) {
+		return out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+	}
+
+	private static void appendHex(StringBuilder out, Random random, int length) {
+		out.append('\'');
+		for (int i = 0; i < length; i++) {
+			out.append(HEX[random.nextInt(16)]);
+		}
+		out.append('\'');
+	}
+
+	private static StringBuilder appendWord(StringBuilder out, Random random, int length) {
+		for (int i = 0; i < length; i++) {
+			out.append((char) ('a' + random.nextInt(26)));
+		}
+		return out;
+	}
+
+	/**
+	 * Appends free text, such as comments and descriptions, escaped as in the output of {@code mysqldump}. Words are separated by spaces and
+	 * line breaks, and a few of them have quotes, backslashes or non-ASCII characters.
+	 * @param out the statement being generated
+	 * @param random the source of random values
+	 * @param length the number of characters of the text, once unescaped.
+	 */
+	private static void appendText(StringBuilder out, Random random, int length) {
+		out.append('\'');
+		int remaining = length;
+		while (remaining > 0) {
+			if (remaining < length) {
+				int r = random.nextInt(100);
+				if (r < 4) {
+					out.append("\\n");
+				} else if (r == 4 && remaining > 1) {
+					out.append("\\r\\n");
+					remaining--;
+				} else {
+					out.append(' ');
+				}
+				if (--remaining == 0) {
+					break;
+				}
+			}
+
+			int r = random.nextInt(200);
+			if (r < 4) {
+				String word = NON_ASCII_WORDS[random.nextInt(NON_ASCII_WORDS.length)];
+				if (word.length() <= remaining) {
+					out.append(word);
+					remaining -= word.length();
+					continue;
+				}
+			} else if (r < 10 && remaining >= 4) {
+				//"don't", "it's"
+				int wordLength = Math.min(remaining - 2, 1 + random.nextInt(6));
+				appendWord(out, random, wordLength).append("\\'").append('t');
+				remaining -= wordLength + 2;
+				continue;
+			} else if (r < 12 && remaining >= 3) {
+				int wordLength = Math.min(remaining - 2, 1 + random.nextInt(8));
+				appendWord(out.append("\\\""), random, wordLength).append("\\\"");
+				remaining -= wordLength + 2;
+				continue;
+			} else if (r == 12 && remaining >= 3) {
+				int wordLength = Math.min(remaining - 1, 2 + random.nextInt(8)) / 2;
+				appendWord(appendWord(out, random, wordLength).append("\\\\"), random, wordLength);
+				remaining -= wordLength * 2 + 1;
+				continue;
+			}
+			int wordLength = Math.min(remaining, 1 + random.nextInt(9));
+			appendWord(out, random, wordLength);
+			remaining -= wordLength;
+		}
+		out.append('\'');
+	}
+
+	/**
+	 * Generates a dump file. Arguments:
+	 * <ol>
+	 * <li>the file to write;</li>
+	 * <li>the size of the file, in MB (defaults to 100);</li>
+	 * <li>the seed of the random values (defaults to 1);</li>
+	 * <li>the schema file (defaults to <i>tables.txt</i>, in the current directory or its parent).</li>
+	 * </ol>
+	 * @param args the arguments of the generator.
+	 */
+	public static void main(String... args) {
+		if (args.length == 0) {
+			System.out.println("Usage: DumpGenerator <output file> [size in MB] [seed] [schema file]");
+			return;
+		}
+		File output = new File(args[0]);
+		long size = (args.length > 1 ? Long.parseLong(args[1]) : 100) * 1024L * 1024L;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+		File schemaFile = args.length > 3 ? new File(args[3]) : findSchemaFile();
+
+		long start = System.currentTimeMillis();
+		Map<String, Long> rows = new DumpGenerator(new DumpSchema(schemaFile), seed).generate(output, size);
+		long total = 0;
+		for (Map.Entry<String, Long> e : rows.entrySet()) {
+			System.out.println(e.getKey() + ": " + e.getValue() + " rows");
+			total += e.getValue();
+		}
+		System.out.println("Generated " + total + " rows (" + output.length() / (1024 * 1024) + " MB) into " + output.getAbsolutePath() + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/**
+	 * Finds the <i>tables.txt</i> file of this project, from its root directory or from the benchmarks module.
+	 * @return the schema of the GHTorrent dump.
+	 */
+	static File findSchemaFile() {
+		File file = new File("tables.txt");
+		if (!file.exists()) {
+			file = new File("../tables.txt");
+		}
+		if (!file.exists()) {
+			throw new IllegalStateException("Schema file tables.txt not found. Please provide its path.");
+		}
+		return file;
+	}
+}
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * The tables of a MySQL schema, read from the {@code CREATE TABLE} statements of a file written by {@code mysqldump --no-data},
+ * such as the <i>tables.txt</i> file with the schema of the GHTorrent dump.
+ *
+ * Only what is needed to generate rows for each table is kept: the columns with their types, whether they accept {@code NULL},
+ * the tables referenced by foreign keys and the {@code AUTO_INCREMENT} value of the table, which is its approximate row count.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class DumpSchema {
+
+	private static final Pattern CREATE_TABLE = Pattern.compile("^CREATE TABLE `([^`]+)` \\($");
+	private static final Pattern COLUMN = Pattern.compile("^\\s*`([^`]+)` (\\w+)(?:\\((\\d+)\\))?(.*?),?$");
+	private static final Pattern FOREIGN_KEY = Pattern.compile("FOREIGN KEY \\(`([^`]+)`\\) REFERENCES `([^`]+)`");
+	private static final Pattern AUTO_INCREMENT = Pattern.compile("AUTO_INCREMENT=(\\d+)");
+
+	private final List<Table> tables = new ArrayList<Table>();
+
+	/**
+	 * Reads the tables of a schema file
+	 * @param schemaFile the file with the {@code CREATE TABLE} statements, in the format of {@code mysqldump}.
+	 */
+	public DumpSchema(File schemaFile) {
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(schemaFile), Charset.forName("UTF-8")));
+			try {
+				read(reader);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Error reading schema from " + schemaFile.getAbsolutePath(), e);
+		}
+		if (tables.isEmpty()) {
+			throw new IllegalStateException("No CREATE TABLE statements found in " + schemaFile.getAbsolutePath());
+		}
+	}
+
+	private void read(BufferedReader reader) throws IOException {
+		Table table = null;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (table == null) {
+				Matcher matcher = CREATE_TABLE.matcher(line);
+				if (matcher.matches()) {
+					table = new Table(matcher.group(1));
+					table.definition.append(line);
+				}
+				continue;
+			}
+
+			table.definition.append('\n').append(line);
+			if (line.startsWith(")")) {
+				Matcher matcher = AUTO_INCREMENT.matcher(line);
+				if (matcher.find()) {
+					table.autoIncrement = Long.parseLong(matcher.group(1));
+				}
+				tables.add(table);
+				table = null;
+				continue;
+			}
+
+			Matcher foreignKey = FOREIGN_KEY.matcher(line);
+			if (foreignKey.find()) {
+				Column column = table.getColumn(foreignKey.group(1));
+				if (column != null) {
+					column.referencedTable = foreignKey.group(2);
+				}
+				continue;
+			}
+
+			Matcher column = COLUMN.matcher(line);
+			if (column.matches()) {
+				String attributes = column.group(4);
+				table.columns.add(new Column(column.group(1), column.group(2).toLowerCase(), column.group(3) == null ? 0 : Integer.parseInt(column.group(3)),
+						!attributes.contains("NOT NULL"), attributes.contains("AUTO_INCREMENT")));
+			}
+		}
+	}
+
+	/**
+	 * Returns the tables of the schema, in the order they appear in the schema file
+	 * @return the tables of the schema.
+	 */
+	public List<Table> getTables() {
+		return Collections.unmodifiableList(tables);
+	}
+
+	/**
+	 * A table of the schema.
+	 */
+	public static class Table {
+		private final String name;
+		private final List<Column> columns = new ArrayList<Column>();
+		private final StringBuilder definition = new StringBuilder();
+		private long autoIncrement;
+
+		Table(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Returns the name of the table
+		 * @return the table name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the columns of the table, in their declared order
+		 * @return the table columns.
+		 */
+		public List<Column> getColumns() {
+			return Collections.unmodifiableList(columns);
+		}
+
+		Column getColumn(String name) {
+			for (Column column : columns) {
+				if (column.name.equals(name)) {
+					return column;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Returns the {@code AUTO_INCREMENT} value recorded in the table definition, i.e. roughly the number of rows of the table when
+		 * the schema was dumped.
+		 * @return the next value of the auto-increment column of the table, or 0 if the table definition has no such information.
+		 */
+		public long getAutoIncrement() {
+			return autoIncrement;
+		}
+
+		/**
+		 * Returns the {@code CREATE TABLE} statement of the table as written in the schema file, without the trailing semicolon.
+		 * @return the MySQL definition of the table.
+		 */
+		public String getDefinition() {
+			return definition.toString();
+		}
+
+		/**
+		 * Returns a statement that creates this table in HSQLDB, without keys, indexes or constraints. Dates and times are created as
+		 * {@code TIMESTAMP} and {@code DATE} columns, and text columns as {@code VARCHAR} or {@code LONGVARCHAR}.
+		 * @return the {@code CREATE TABLE} statement for HSQLDB.
+		 */
+		public String getHsqlCreateTable() {
+			StringBuilder out = new StringBuilder("CREATE TABLE ").append(name).append(" (");
+			for (int i = 0; i < columns.size(); i++) {
+				Column column = columns.get(i);
+				if (i > 0) {
+					out.append(", ");
+				}
+				//quoted, as a few column names (e.g. "day" and "position") are reserved words in HSQLDB
+				out.append('"').append(column.name.toUpperCase()).append("\" ").append(column.getHsqlType());
+			}
+			return out.append(')').toString();
+		}
+	}
+
+	/**
+	 * A column of a table.
+	 */
+	public static class Column {
+		private final String name;
+		private final String type;
+		private final int length;
+		private final boolean nullable;
+		private final boolean autoIncrement;
+		private String referencedTable;
+
+		Column(String name, String type, int length, boolean nullable, boolean autoIncrement) {
+			this.name = name;
+			this.type = type;
+			this.length = length;
+			this.nullable = nullable;
+			this.autoIncrement = autoIncrement;
+		}
+
+		/**
+		 * Returns the name of the column
+		 * @return the column name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the MySQL type of the column, in lower case and without its length, e.g. {@code int} or {@code varchar}.
+		 * @return the column type
+		 */
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * Returns the length declared with the type of the column, e.g. 255 for {@code varchar(255)}
+		 * @return the declared length of the column, or 0 if none.
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * Indicates whether the column accepts {@code NULL}
+		 * @return {@code true} if the column is not declared as {@code NOT NULL}
+		 */
+		public boolean isNullable() {
+			return nullable;
+		}
+
+		/**
+		 * Indicates whether values of the column are generated with {@code AUTO_INCREMENT}
+		 * @return {@code true} if the column is an auto-increment column.
+		 */
+		public boolean isAutoIncrement() {
+			return autoIncrement;
+		}
+
+		/**
+		 * Returns the table referenced by a foreign key on this column
+		 * @return the name of the referenced table, or {@code null} if the column is not a foreign key.
+		 */
+		public String getReferencedTable() {
+			return referencedTable;
+		}
+
+		String getHsqlType() {
+			if (type.equals("tinyint")) {
+				return "TINYINT";
+			} else if (type.equals("smallint")) {
+				return "SMALLINT";
+			} else if (type.equals("int") || type.equals("mediumint")) {
+				return "INTEGER";
+			} else if (type.equals("bigint")) {
+				return "BIGINT";
+			} else if (type.equals("timestamp") || type.equals("datetime")) {
+				return "TIMESTAMP";
+			} else if (type.equals("date")) {
+				return "DATE";
+			} else if (type.equals("varchar") || type.equals("char")) {
+				return "VARCHAR(" + length + ")";
+			}
+			return "LONGVARCHAR";
+		}
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import java.io.*;
+import java.lang.management.*;
+import java.sql.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.*;
+import com.univocity.articles.dumpload.benchmarks.DumpSchema.Table;
+import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.load.*;
+
+/**
+ * Loads a dump file generated by {@link DumpGenerator} through {@link LoadMysqlDump}, in the parallel mode, into an in-memory HSQLDB,
+ * then reports the rows loaded per second and the peak heap usage of the process. As neither the file nor the database depend on the
+ * environment, a change in load speed shows up as a different number on any machine with the same hardware.
+ *
+ * Arguments:
+ * <ol>
+ * <li>the size of the dump file, in MB (defaults to 100);</li>
+ * <li>the seed of the random values (defaults to 1);</li>
+ * <li>the schema file (defaults to <i>tables.txt</i>, in the current directory or its parent).</li>
+ * </ol>
+ *
+ * The dump file is written to <i>target/ghtorrent-&lt;size&gt;mb-&lt;seed&gt;.sql</i> and reused by later runs with the same size and seed.
+ * Settings of the load can be changed with system properties named as in <i>load.properties</i>, e.g. {@code -Dload.parallelism=4}.
+ * HSQLDB keeps all rows in the heap, so give the JVM a few times the size of the dump file with {@code -Xmx}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class LoadBenchmark {
+
+	public static void main(String... args) throws SQLException {
+		int sizeInMb = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1L;
+		File schemaFile = args.length > 2 ? new File(args[2]) : DumpGenerator.findSchemaFile();
+
+		DumpSchema schema = new DumpSchema(schemaFile);
+		File dumpFile = new File("target/ghtorrent-" + sizeInMb + "mb-" + seed + ".sql");
+		if (!dumpFile.exists()) {
+			dumpFile.getAbsoluteFile().getParentFile().mkdirs();
+			System.out.println("Generating " + dumpFile.getPath());
+			new DumpGenerator(schema, seed).generate(dumpFile, sizeInMb * 1024L * 1024L);
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty("dump.file", dumpFile.getPath());
+		properties.setProperty("load.mode", "parallel");
+		properties.setProperty("load.chunk.size", "16");
+		properties.setProperty("load.resume", "false");
+		properties.setProperty("load.status.interval", "10");
+		properties.setProperty("load.report.file", "");
+		for (String property : System.getProperties().stringPropertyNames()) {
+			if (property.startsWith("load.")) {
+				properties.setProperty(property, System.getProperty(property));
+			}
+		}
+		LoadSettings settings = new LoadSettings(properties);
+
+		Database database = DatabaseFactory.getInstance().newDatabase("hsqldb", "jdbc:hsqldb:mem:ghtorrent", "sa", "", settings.getParallelism() + 1);
+		Connection connection = database.openConnection();
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				for (Table table : schema.getTables()) {
+					statement.execute(table.getHsqlCreateTable());
+				}
+			} finally {
+				statement.close();
+			}
+			connection.commit();
+
+			System.gc();
+			List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+				if (pool.getType() == MemoryType.HEAP) {
+					pool.resetPeakUsage();
+					heapPools.add(pool);
+				}
+			}
+
+			long start = System.nanoTime();
+			new LoadMysqlDump(database, settings).loadDumpFile();
+			long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+			//the peak of each pool may have been reached at a different moment, so their sum is an upper bound of the peak of the heap.
+			long peakHeap = 0;
+			for (MemoryPoolMXBean pool : heapPools) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+
+			long rows = 0;
+			for (Table table : schema.getTables()) {
+				rows += count(connection, table.getName());
+			}
+
+			long bytes = dumpFile.length();
+			System.out.println("---");
+			System.out.println("Dump file: " + dumpFile.getPath() + " (" + bytes / (1024 * 1024) + " MB, seed " + seed + ")");
+			System.out.println("Workers: " + settings.getParallelism() + ", batch size: " + settings.getBatchSize() + (settings.isAdaptiveBatchSizeEnabled() ? " (adaptive)" : ""));
+			System.out.println("Loaded " + rows + " rows in " + elapsed + " ms");
+			System.out.println("Rows/s: " + rows * 1000 / elapsed);
+			System.out.println("MB/s: " + String.format("%.1f", bytes * 1000.0 / elapsed / (1024 * 1024)));
+			System.out.println("Peak heap: " + peakHeap / (1024 * 1024) + " MB");
+		} finally {
+			connection.close();
+			database.close();
+		}
+	}
+
+	private static long count(Connection connection, String table) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table);
+			rs.next();
+			return rs.getLong(1);
+		} finally {
+			statement.close();
+		}
+	}
+}
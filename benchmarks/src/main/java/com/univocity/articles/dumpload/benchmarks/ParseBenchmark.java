@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import java.nio.charset.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Measures how many rows per second the {@link DumpParser} tokenizes and unescapes, with the data in memory.
+ * Each row is handed to a {@link Blackhole} so the work can't be optimized away, but no value is decoded into a {@code String}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+	static final int ROWS = 100000;
+
+	@Param({ "NUMBERS", "ESCAPED_STRINGS", "LONG_TUPLES", "NULLS" })
+	public RowShape shape;
+
+	private byte[] dump;
+
+	@Setup
+	public void setup() {
+		dump = shape.generateDump(ROWS, 1000, 1L);
+		System.out.println(shape + ": " + dump.length + " bytes, " + ROWS + " rows");
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void parse(final Blackhole blackhole) {
+		new DumpParser(Charset.forName("UTF-8")).parse(new ByteArrayDumpInput(dump), new RowHandler() {
+			@Override
+			public boolean statementStarted(String table, long offset) {
+				return true;
+			}
+
+			@Override
+			public void rowParsed(DumpRow row) {
+				int fieldCount = row.getFieldCount();
+				blackhole.consume(row.getLength(fieldCount - 1));
+				blackhole.consume(row.isNull(fieldCount - 1));
+			}
+
+			@Override
+			public void statementEnded(String table, long offset) {
+			}
+		});
+	}
+}
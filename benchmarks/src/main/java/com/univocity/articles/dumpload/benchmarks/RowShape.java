@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.benchmarks;
+
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * The shapes of the rows used by the benchmarks. Each shape generates {@code INSERT} statements in the format of
+ * {@code mysqldump}, and provides the {@code CREATE TABLE} statement of a table that accepts its rows.
+ *
+ * Rows are generated from a fixed seed, so every run of a benchmark processes exactly the same bytes.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public enum RowShape {
+
+	/**
+	 * Six integer columns. Measures the cost of scanning numbers and binding them.
+	 */
+	NUMBERS {
+		@Override
+		String getColumns() {
+			return "id INT, a BIGINT, b INT, c INT, d INT, e SMALLINT";
+		}
+
+		@Override
+		void appendValues(StringBuilder out, Random random, int id) {
+			out.append(id).append(',').append(random.nextLong() >>> 20).append(',').append(random.nextInt(1000000)).append(',').append(random.nextInt())
+					.append(',').append(random.nextInt(100)).append(',').append(random.nextInt(2));
+		}
+	},
+
+	/**
+	 * Text with an escape sequence every few characters, in the style of commit messages and comments.
+	 */
+	ESCAPED_STRINGS {
+		@Override
+		String getColumns() {
+			return "id INT, title VARCHAR(512), body VARCHAR(4096)";
+		}
+
+		@Override
+		void appendValues(StringBuilder out, Random random, int id) {
+			out.append(id).append(',');
+			appendEscapedText(out, random, 20 + random.nextInt(60));
+			out.append(',');
+			appendEscapedText(out, random, 100 + random.nextInt(400));
+		}
+	},
+
+	/**
+	 * Forty columns, alternating integers and short strings. Measures the per-value overhead of long tuples.
+	 */
+	LONG_TUPLES {
+		@Override
+		String getColumns() {
+			StringBuilder columns = new StringBuilder("id INT");
+			for (int i = 1; i < 40; i++) {
+				columns.append(", c").append(i).append(i % 2 == 0 ? " INT" : " VARCHAR(64)");
+			}
+			return columns.toString();
+		}
+
+		@Override
+		void appendValues(StringBuilder out, Random random, int id) {
+			out.append(id);
+			for (int i = 1; i < 40; i++) {
+				out.append(',');
+				if (i % 2 == 0) {
+					out.append(random.nextInt(100000));
+				} else {
+					appendWord(out.append('\''), random, 4 + random.nextInt(20)).append('\'');
+				}
+			}
+		}
+	},
+
+	/**
+	 * Twelve columns where eight of every ten values are {@code NULL}.
+	 */
+	NULLS {
+		@Override
+		String getColumns() {
+			StringBuilder columns = new StringBuilder("id INT");
+			for (int i = 1; i < 12; i++) {
+				columns.append(", c").append(i).append(i % 2 == 0 ? " INT" : " VARCHAR(64)");
+			}
+			return columns.toString();
+		}
+
+		@Override
+		void appendValues(StringBuilder out, Random random, int id) {
+			out.append(id);
+			for (int i = 1; i < 12; i++) {
+				out.append(',');
+				if (random.nextInt(10) < 8) {
+					out.append("NULL");
+				} else if (i % 2 == 0) {
+					out.append(random.nextInt(100000));
+				} else {
+					appendWord(out.append('\''), random, 4 + random.nextInt(20)).append('\'');
+				}
+			}
+		}
+	};
+
+	private static final String[] ESCAPES = { "\\'", "\\\\", "\\n", "\\r", "\\t", "\\\"", "\\0" };
+
+	/**
+	 * Returns the column definitions of a table that accepts the rows of this shape
+	 * @return the column definitions, separated by commas.
+	 */
+	abstract String getColumns();
+
+	/**
+	 * Appends the values of a row, separated by commas and without the enclosing parenthesis.
+	 * @param out the statement being generated
+	 * @param random the source of random values
+	 * @param id the identifier of the row.
+	 */
+	abstract void appendValues(StringBuilder out, Random random, int id);
+
+	/**
+	 * Returns the name of the table that receives the rows of this shape
+	 * @return the table name
+	 */
+	public String getTableName() {
+		return "bench_" + name().toLowerCase();
+	}
+
+	/**
+	 * Returns the statement that creates a table for the rows of this shape
+	 * @return the {@code CREATE TABLE} statement.
+	 */
+	public String getCreateTable() {
+		return "CREATE TABLE " + getTableName() + " (" + getColumns() + ")";
+	}
+
+	/**
+	 * Generates {@code INSERT} statements with rows of this shape, as written by {@code mysqldump --extended-insert}.
+	 * @param rows the number of rows to generate
+	 * @param rowsPerStatement the number of rows in each {@code INSERT} statement
+	 * @param seed the seed of the random values
+	 * @return the UTF-8 encoded statements.
+	 */
+	public byte[] generateDump(int rows, int rowsPerStatement, long seed) {
+		Random random = new Random(seed);
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < rows; i++) {
+			if (i % rowsPerStatement == 0) {
+				if (i > 0) {
+					out.append(";\n");
+				}
+				out.append("INSERT INTO `").append(getTableName()).append("` VALUES ");
+			} else {
+				out.append(',');
+			}
+			out.append('(');
+			appendValues(out, random, i + 1);
+			out.append(')');
+		}
+		out.append(";\n");
+		return out.toString().getBytes(Charset.forName("UTF-8"));
+	}
+
+	private static StringBuilder appendWord(StringBuilder out, Random random, int length) {
+		for (int i = 0; i < length; i++) {
+			out.append((char) ('a' + random.nextInt(26)));
+		}
+		return out;
+	}
+
+	private static void appendEscapedText(StringBuilder out, Random random, int length) {
+		out.append('\'');
+		for (int i = 0; i < length; i++) {
+			int r = random.nextInt(20);
+			if (r < 3) {
+				out.append(ESCAPES[random.nextInt(ESCAPES.length)]);
+			} else if (r < 6) {
+				out.append(' ');
+			} else if (r == 6) {
+				out.append('\u00e9');
+			} else {
+				out.append((char) ('a' + random.nextInt(26)));
+			}
+		}
+		out.append('\'');
+	}
+}
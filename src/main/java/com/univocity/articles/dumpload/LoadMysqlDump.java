@@ -5,43 +5,122 @@
  ******************************************************************************/
 package com.univocity.articles.dumpload;
 
+import java.util.*;
+
 import javax.sql.*;
 
 import com.univocity.api.*;
 import com.univocity.api.config.*;
 import com.univocity.api.entity.custom.*;
 import com.univocity.api.entity.jdbc.*;
+import com.univocity.articles.dumpload.convert.*;
 import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.load.*;
+import com.univocity.articles.dumpload.load.LoadSettings.LoadMode;
 
 public class LoadMysqlDump {
 
+	private final Map<String, Database> destinations;
 	private final Database database;
+	private final LoadSettings settings;
 
-	private int batchSize = 10000;
 	private final String engineName;
+	//databases created from the connection.properties file are closed once the load is finished.
+	private boolean closeDestinations;
 
 	public LoadMysqlDump() {
+		this(new LoadSettings());
+	}
+
+	private LoadMysqlDump(LoadSettings settings) {
+		//no database is required to convert the dump file.
+		this(settings.getMode() == LoadMode.CONVERT ? Collections.<String, Database> emptyMap() : DatabaseFactory.getInstance().getDestinationDatabases(), settings);
+		this.closeDestinations = true;
+	}
+
+	public LoadMysqlDump(Database database, LoadSettings settings) {
+		this(database == null ? Collections.<String, Database> emptyMap() : Collections.singletonMap("destination", database), settings);
+	}
+
+	/**
+	 * Loads the dump file into several destinations at once. The dump file is parsed only once, so this requires the parallel mode.
+	 * @param destinations the destination databases, by name
+	 * @param settings the load settings
+	 */
+	public LoadMysqlDump(Map<String, Database> destinations, LoadSettings settings) {
 
 		this.engineName = "LoadMySqlDump";
-		this.database = DatabaseFactory.getInstance().getDestinationDatabase();
+		this.destinations = destinations;
+		this.database = destinations.isEmpty() ? null : destinations.values().iterator().next();
+		this.settings = settings;
 
-		System.out.println("Starting " + getClass().getName() + " with " + database.getDatabaseName());
+		if (destinations.size() > 1 && settings.getMode() != LoadMode.PARALLEL) {
+			throw new IllegalArgumentException("Loading the dump file into multiple destinations " + destinations.keySet() + " requires the parallel mode (load.mode=parallel)");
+		}
+		if (settings.isIncrementalLoadEnabled() && settings.getMode() != LoadMode.PARALLEL) {
+			throw new IllegalArgumentException("Incremental loads (load.incremental=true) require the parallel mode (load.mode=parallel)");
+		}
 
-		DataStoreConfiguration databaseConfig = createDatabaseConfiguration();
+		StringBuilder databaseNames = new StringBuilder();
+		for (Database destination : destinations.values()) {
+			databaseNames.append(databaseNames.length() == 0 ? " with " : ", ").append(destination.getDatabaseName());
+		}
+		System.out.println("Starting " + getClass().getName() + databaseNames + " (" + settings.getMode().toString().toLowerCase() + " mode)");
 
-		EngineConfiguration config = new EngineConfiguration(engineName, databaseConfig);
+		if (settings.getMode() == LoadMode.UNIVOCITY) {
+			DataStoreConfiguration databaseConfig = createDatabaseConfiguration();
 
-		Univocity.registerEngine(config);
+			EngineConfiguration config = new EngineConfiguration(engineName, databaseConfig);
 
+			Univocity.registerEngine(config);
+		}
 	}
 
 	public void loadDumpFile() {
+		if (settings.getMode() == LoadMode.CONVERT) {
+			//writes the rows of each table into a text file, ready for the bulk load tools of any database.
+			new DumpConverter(settings, new ConversionSettings()).convert();
+			return;
+		}
+
+		if (settings.isBulkLoadProfileEnabled()) {
+			//relaxes the settings of each database that slow the load down. They are restored once the load and index build are done.
+			for (Database destination : destinations.values()) {
+				destination.startBulkLoad(settings);
+			}
+		}
 		try {
-			//simply initializes the engine. The database data store will be loaded from the dump file.
-			Univocity.getEngine(engineName);
+			if (settings.getMode() == LoadMode.PARALLEL) {
+				//parses and inserts chunks of the dump file concurrently, each one on its own connection.
+				new ParallelDumpLoader(destinations, settings).load();
+			} else {
+				try {
+					//simply initializes the engine. The database data store will be loaded from the dump file.
+					Univocity.getEngine(engineName);
+				} finally {
+					//done, shut the engine down.
+					Univocity.shutdown(engineName);
+				}
+			}
+
+			if (settings.isIndexBuildEnabled()) {
+				//tables are loaded without keys and indexes. Now that the data is in, build them.
+				for (Database destination : destinations.values()) {
+					new IndexBuilder(destination, settings).build();
+				}
+			}
 		} finally {
-			//done, shut the engine down.
-			Univocity.shutdown(engineName);
+			try {
+				for (Database destination : destinations.values()) {
+					destination.finishBulkLoad();
+				}
+			} finally {
+				if (closeDestinations) {
+					for (Database destination : destinations.values()) {
+						destination.close();
+					}
+				}
+			}
 		}
 	}
 
@@ -60,12 +139,12 @@ public class LoadMysqlDump {
 		// ### this one is important! ###
 		database.applyDatabaseSpecificConfiguration(config);
 
-		config.setLimitOfRowsLoadedInMemory(batchSize);
+		config.setLimitOfRowsLoadedInMemory(settings.getBatchSize());
 
 		//Format configuration to determine how to process and parse the dump file.
-		JdbcDataStoreDumpLoadConfiguration dump = new JdbcDataStoreDumpLoadConfiguration("/home/jbax/Downloads/dump/mysql-2014-08-18.sql", "UTF-8");
+		JdbcDataStoreDumpLoadConfiguration dump = new JdbcDataStoreDumpLoadConfiguration(settings.getDumpFile().getAbsolutePath(), settings.getEncoding());
 
-		dump.setBatchSize(10000);
+		dump.setBatchSize(settings.getBatchSize());
 		dump.setProcessDDLScripts(false);
 		dump.getFormat().setRecordIdentifier("INSERT INTO `?` VALUES"); //MySQL enclosed the table name between ` `.
 		dump.getFormat().setOneInsertPerRow(false);
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Parses a dump file with the {@link DumpParser} and discards the results. Use this to measure how fast
+ * the dump file can be read and tokenized, without any database involved.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class ParseDump implements RowHandler {
+
+	private final Map<String, long[]> rowsPerTable = new TreeMap<String, long[]>();
+	private long[] currentTableRows;
+	private long fields;
+
+	@Override
+	public boolean statementStarted(String table, long offset) {
+		currentTableRows = rowsPerTable.get(table);
+		if (currentTableRows == null) {
+			currentTableRows = new long[1];
+			rowsPerTable.put(table, currentTableRows);
+		}
+		return true;
+	}
+
+	@Override
+	public void rowParsed(DumpRow row) {
+		currentTableRows[0]++;
+		fields += row.getFieldCount();
+	}
+
+	@Override
+	public void statementEnded(String table, long offset) {
+	}
+
+	/**
+	 * Parses the given file and prints out the number of rows of each table, and the throughput.
+	 * @param file the dump file to parse
+	 * @param encoding the encoding of the dump file
+	 */
+	public void parse(File file, String encoding) {
+		long start = System.currentTimeMillis();
+
+		new DumpParser(Charset.forName(encoding)).parse(DumpCompression.openInput(file, 0L, Long.MAX_VALUE), this);
+
+		long time = Math.max(1, System.currentTimeMillis() - start);
+		long totalRows = 0;
+		for (Map.Entry<String, long[]> e : rowsPerTable.entrySet()) {
+			System.out.println(e.getKey() + ": " + e.getValue()[0] + " rows");
+			totalRows += e.getValue()[0];
+		}
+		System.out.println("Parsed " + totalRows + " rows (" + fields + " values) in " + time + " ms. Throughput: "
+				+ (file.length() / 1024 / 1024 * 1000 / time) + " MB/s, " + (totalRows * 1000 / time) + " rows/s");
+	}
+
+	//Give it a path to the dump file and that's it.
+	public static void main(String... args) {
+		String path = args.length > 0 ? args[0] : "/home/jbax/Downloads/dump/mysql-2014-08-18.sql";
+		String encoding = args.length > 1 ? args[1] : "UTF-8";
+		new ParseDump().parse(new File(path), encoding);
+	}
+}
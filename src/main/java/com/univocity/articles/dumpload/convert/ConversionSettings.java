@@ -0,0 +1,227 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.convert;
+
+import java.io.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.load.*;
+
+/**
+ * Settings that control how a dump file is converted into text files, one per table.
+ *
+ * Two formats are supported:
+ *
+ * <ul>
+ * <li><b>csv</b>: values that contain the delimiter, the quote character or line breaks are enclosed within quotes, and quotes
+ * inside values are doubled. {@code NULL} is written as an empty, unquoted value, and empty strings are written as {@code ""}.
+ * This is the format expected by {@code COPY ... WITH (FORMAT csv)} in Postgres.</li>
+ * <li><b>tsv</b>: values are never quoted. Backslashes, line breaks and delimiters inside values are escaped with a backslash,
+ * and {@code NULL} is written as {@code \N}. This is the default format of {@code LOAD DATA INFILE} in MySQL and of {@code COPY} in Postgres.</li>
+ * </ul>
+ *
+ * The delimiter, quote character and {@code NULL} marker of each format can be changed.
+ * MySQL zero dates ({@code 0000-00-00} and {@code 0000-00-00 00:00:00}) are written as {@code NULL} by default, as other databases reject them.
+ * Default values are read from the <i>load.properties</i> file (under src/main/resources).
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class ConversionSettings {
+
+	/**
+	 * The compression applied to the output files.
+	 */
+	public enum Compression {
+		NONE(""), GZIP(".gz"), ZSTD(".zst");
+
+		private final String extension;
+
+		private Compression(String extension) {
+			this.extension = extension;
+		}
+
+		/**
+		 * Returns the extension added to the names of files compressed with this algorithm
+		 * @return the file extension, or an empty String if no compression is applied.
+		 */
+		public String getExtension() {
+			return extension;
+		}
+	}
+
+	private File outputDirectory;
+	private String extension;
+	private char delimiter;
+	private Character quote;
+	private String nullMarker;
+	private Compression compression;
+	private boolean zeroDatesNull;
+
+	/**
+	 * Creates the settings with the values provided in the <i>load.properties</i> file.
+	 */
+	public ConversionSettings() {
+		this(LoadSettings.readProperties("src/main/resources/load.properties"));
+	}
+
+	/**
+	 * Creates the settings with the given properties. Properties that are not provided assume the defaults of the selected format.
+	 * @param properties the properties with the settings to use.
+	 */
+	public ConversionSettings(Properties properties) {
+		setOutputDirectory(new File(properties.getProperty("convert.output.dir", "converted")));
+		setFormat(properties.getProperty("convert.format", "tsv"));
+
+		String delimiter = properties.getProperty("convert.delimiter");
+		if (delimiter != null && !delimiter.isEmpty()) {
+			setDelimiter(delimiter.charAt(0));
+		}
+		String quote = properties.getProperty("convert.quote");
+		if (quote != null) {
+			setQuote(quote.isEmpty() ? null : quote.charAt(0));
+		}
+		String nullMarker = properties.getProperty("convert.null");
+		if (nullMarker != null) {
+			setNullMarker(nullMarker);
+		}
+		setCompression(Compression.valueOf(properties.getProperty("convert.compression", "none").trim().toUpperCase()));
+		setZeroDatesNull(Boolean.valueOf(properties.getProperty("convert.zero.dates.null", "true").trim()));
+	}
+
+	/**
+	 * Applies the delimiter, quote character and {@code NULL} marker of a format
+	 * @param format the format name: <i>csv</i> or <i>tsv</i>.
+	 */
+	public void setFormat(String format) {
+		format = format.trim().toLowerCase();
+		if (format.equals("csv")) {
+			extension = ".csv";
+			delimiter = ',';
+			quote = '"';
+			nullMarker = "";
+		} else if (format.equals("tsv")) {
+			extension = ".tsv";
+			delimiter = '\t';
+			quote = null;
+			nullMarker = "\\N";
+		} else {
+			throw new IllegalArgumentException("Unknown output format: " + format + ". Expected csv or tsv");
+		}
+	}
+
+	/**
+	 * Returns the directory where one file per table will be written
+	 * @return the output directory
+	 */
+	public File getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	/**
+	 * Defines the directory where one file per table will be written
+	 * @param outputDirectory the output directory
+	 */
+	public void setOutputDirectory(File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+	/**
+	 * Returns the name of the file written for a table, including the extension of the compression algorithm.
+	 * @param table the name of the table
+	 * @return the name of the output file of the table
+	 */
+	public String getFileName(String table) {
+		return table + extension + compression.getExtension();
+	}
+
+	/**
+	 * Returns the character that separates values
+	 * @return the delimiter
+	 */
+	public char getDelimiter() {
+		return delimiter;
+	}
+
+	/**
+	 * Defines the character that separates values
+	 * @param delimiter the delimiter. Must be an ASCII character other than a line break or a backslash.
+	 */
+	public void setDelimiter(char delimiter) {
+		if (delimiter > 127 || delimiter == '\n' || delimiter == '\r' || delimiter == '\\') {
+			throw new IllegalArgumentException("Invalid delimiter: '" + delimiter + "'");
+		}
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * Returns the character used to enclose values that contain delimiters, quotes or line breaks.
+	 * @return the quote character, or {@code null} if values are escaped with backslashes instead.
+	 */
+	public Character getQuote() {
+		return quote;
+	}
+
+	/**
+	 * Defines the character used to enclose values that contain delimiters, quotes or line breaks.
+	 * @param quote the quote character. Must be an ASCII character. Use {@code null} to escape special characters with backslashes instead.
+	 */
+	public void setQuote(Character quote) {
+		if (quote != null && (quote > 127 || quote == delimiter)) {
+			throw new IllegalArgumentException("Invalid quote: '" + quote + "'");
+		}
+		this.quote = quote;
+	}
+
+	/**
+	 * Returns the text written in place of {@code NULL} values
+	 * @return the {@code NULL} marker
+	 */
+	public String getNullMarker() {
+		return nullMarker;
+	}
+
+	/**
+	 * Defines the text written in place of {@code NULL} values
+	 * @param nullMarker the {@code NULL} marker
+	 */
+	public void setNullMarker(String nullMarker) {
+		this.nullMarker = nullMarker;
+	}
+
+	/**
+	 * Returns the compression applied to the output files
+	 * @return the compression algorithm
+	 */
+	public Compression getCompression() {
+		return compression;
+	}
+
+	/**
+	 * Defines the compression applied to the output files
+	 * @param compression the compression algorithm
+	 */
+	public void setCompression(Compression compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * Indicates whether MySQL zero dates ({@code 0000-00-00} and {@code 0000-00-00 00:00:00}) are written as {@code NULL}
+	 * @return {@code true} if zero dates are written as {@code NULL}, {@code false} if they are written as found in the dump file.
+	 */
+	public boolean isZeroDatesNull() {
+		return zeroDatesNull;
+	}
+
+	/**
+	 * Defines whether MySQL zero dates ({@code 0000-00-00} and {@code 0000-00-00 00:00:00}) are written as {@code NULL}.
+	 * Databases other than MySQL, such as Postgres, reject zero dates.
+	 * @param zeroDatesNull {@code true} to write zero dates as {@code NULL}, {@code false} to write them as found in the dump file.
+	 */
+	public void setZeroDatesNull(boolean zeroDatesNull) {
+		this.zeroDatesNull = zeroDatesNull;
+	}
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.convert;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.univocity.articles.dumpload.load.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Converts a dump file into text files, one per table, that can be loaded with the bulk load tools of any database
+ * ({@code COPY}, {@code LOAD DATA INFILE}, {@code bcp}, etc). No database is involved.
+ *
+ * The dump file is split into {@link DumpChunk}s that are parsed, encoded and compressed concurrently. Each chunk
+ * writes the rows of each table to a part file of its own. Once all chunks are done, the parts of each table are
+ * concatenated in the order they appear in the dump file. Files compressed with gzip or zstd remain valid after
+ * concatenation, as both formats allow a file to be made of multiple compressed blocks.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class DumpConverter {
+
+	private final LoadSettings settings;
+	private final ConversionSettings conversion;
+
+	/**
+	 * Creates a converter
+	 * @param settings the settings with the dump file, its encoding, the table selection and the number of workers.
+	 * @param conversion the settings with the output directory, format and compression.
+	 */
+	public DumpConverter(LoadSettings settings, ConversionSettings conversion) {
+		this.settings = settings;
+		this.conversion = conversion;
+	}
+
+	/**
+	 * Converts the dump file, blocking until all files are written.
+	 * @return the number of rows written for each table.
+	 */
+	public Map<String, Long> convert() {
+		long start = System.currentTimeMillis();
+
+		File partsDirectory = new File(conversion.getOutputDirectory(), ".parts");
+		if (!partsDirectory.isDirectory() && !partsDirectory.mkdirs()) {
+			throw new IllegalStateException("Unable to create directory " + partsDirectory.getAbsolutePath());
+		}
+
+		List<DumpChunk> chunks = DumpSplitter.split(settings);
+		int workers = settings.getParallelism();
+		System.out.println("Converting " + chunks.size() + " chunks of " + settings.getDumpFile().getAbsolutePath() + " into " + conversion.getOutputDirectory().getAbsolutePath() + " with " + workers + " workers");
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "dump-converter-" + count.incrementAndGet());
+			}
+		});
+
+		List<Map<String, TableFileWriter>> parts = new ArrayList<Map<String, TableFileWriter>>();
+		try {
+			List<Future<Map<String, TableFileWriter>>> results = new ArrayList<Future<Map<String, TableFileWriter>>>();
+			for (int i = 0; i < chunks.size(); i++) {
+				results.add(executor.submit(new ChunkConverter(chunks.get(i), new File(partsDirectory, String.valueOf(i)))));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					parts.add(results.get(i).get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Error converting dump file " + settings.getDumpFile().getAbsolutePath(), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while converting dump file " + settings.getDumpFile().getAbsolutePath(), e);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Map<String, Long> rowsPerTable = concatenate(parts);
+		for (int i = 0; i < chunks.size(); i++) {
+			new File(partsDirectory, String.valueOf(i)).delete();
+		}
+		partsDirectory.delete();
+
+		long time = Math.max(1, System.currentTimeMillis() - start);
+		long totalRows = 0;
+		for (Map.Entry<String, Long> e : rowsPerTable.entrySet()) {
+			System.out.println(e.getKey() + ": " + e.getValue() + " rows written to " + conversion.getFileName(e.getKey()));
+			totalRows += e.getValue();
+		}
+		System.out.println("Converted " + totalRows + " rows in " + time + " ms (" + (totalRows * 1000 / time) + " rows/s)");
+		return rowsPerTable;
+	}
+
+	private Map<String, Long> concatenate(List<Map<String, TableFileWriter>> parts) {
+		Map<String, List<TableFileWriter>> partsPerTable = new TreeMap<String, List<TableFileWriter>>();
+		for (Map<String, TableFileWriter> chunkParts : parts) {
+			for (Map.Entry<String, TableFileWriter> e : chunkParts.entrySet()) {
+				List<TableFileWriter> tableParts = partsPerTable.get(e.getKey());
+				if (tableParts == null) {
+					tableParts = new ArrayList<TableFileWriter>();
+					partsPerTable.put(e.getKey(), tableParts);
+				}
+				tableParts.add(e.getValue());
+			}
+		}
+
+		Map<String, Long> rowsPerTable = new TreeMap<String, Long>();
+		for (Map.Entry<String, List<TableFileWriter>> e : partsPerTable.entrySet()) {
+			File file = new File(conversion.getOutputDirectory(), conversion.getFileName(e.getKey()));
+			long rows = 0;
+			try {
+				FileChannel out = new FileOutputStream(file).getChannel();
+				try {
+					for (TableFileWriter part : e.getValue()) {
+						FileChannel in = new FileInputStream(part.getFile()).getChannel();
+						try {
+							long position = 0;
+							long size = in.size();
+							while (position < size) {
+								position += in.transferTo(position, size - position, out);
+							}
+						} finally {
+							in.close();
+						}
+						part.getFile().delete();
+						rows += part.getRowCount();
+					}
+				} finally {
+					out.close();
+				}
+			} catch (IOException ex) {
+				throw new IllegalStateException("Error writing file " + file.getAbsolutePath(), ex);
+			}
+			rowsPerTable.put(e.getKey(), rows);
+		}
+		return rowsPerTable;
+	}
+
+	/**
+	 * Parses a chunk of the dump file and writes the rows of each table into a part file.
+	 */
+	private class ChunkConverter implements Callable<Map<String, TableFileWriter>>, RowHandler {
+
+		private final DumpChunk chunk;
+		private final File directory;
+		private final Map<String, TableFileWriter> writers = new HashMap<String, TableFileWriter>();
+		private TableFileWriter writer;
+
+		ChunkConverter(DumpChunk chunk, File directory) {
+			this.chunk = chunk;
+			this.directory = directory;
+		}
+
+		@Override
+		public Map<String, TableFileWriter> call() throws Exception {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IllegalStateException("Unable to create directory " + directory.getAbsolutePath());
+			}
+			try {
+				new DumpParser(settings.getCharset()).parse(DumpCompression.openInput(settings.getDumpFile(), chunk.getStart(), chunk.getEnd()), this);
+			} finally {
+				for (TableFileWriter writer : writers.values()) {
+					writer.close();
+				}
+			}
+			return writers;
+		}
+
+		@Override
+		public boolean statementStarted(String table, long offset) {
+			if (!settings.isTableSelected(table)) {
+				return false;
+			}
+			writer = writers.get(table);
+			if (writer == null) {
+				try {
+					writer = new TableFileWriter(new File(directory, conversion.getFileName(table)), conversion);
+				} catch (IOException e) {
+					throw new IllegalStateException("Error creating output file for table " + table + " in " + directory.getAbsolutePath(), e);
+				}
+				writers.put(table, writer);
+			}
+			return true;
+		}
+
+		@Override
+		public void rowParsed(DumpRow row) {
+			try {
+				writer.write(row);
+			} catch (IOException e) {
+				throw new IllegalStateException("Error writing rows of table " + row.getTable() + " in chunk " + chunk + " to " + writer.getFile().getAbsolutePath(), e);
+			}
+		}
+
+		@Override
+		public void statementEnded(String table, long offset) {
+		}
+	}
+}
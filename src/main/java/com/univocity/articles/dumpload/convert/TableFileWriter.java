@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.convert;
+
+import java.io.*;
+import java.util.zip.*;
+
+import com.github.luben.zstd.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Writes rows parsed from the dump file into a text file, in the format defined by {@link ConversionSettings}.
+ *
+ * Values are written as the bytes found in the dump file, without decoding them into {@code String}s, so the output
+ * has the same encoding as the dump file. Rows are encoded into an internal buffer that is written to the (possibly compressed)
+ * output stream in large blocks. Quoted values holding MySQL zero dates are written as {@code NULL} unless
+ * {@link ConversionSettings#isZeroDatesNull()} is disabled.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class TableFileWriter {
+
+	private static final byte[] ZERO_DATE = "0000-00-00".getBytes();
+	private static final byte[] ZERO_TIME = " 00:00:00".getBytes();
+
+	private final File file;
+	private final OutputStream out;
+
+	private final byte delimiter;
+	private final int quote;
+	private final byte[] nullMarker;
+	private final boolean zeroDatesNull;
+
+	private final byte[] buffer = new byte[256 * 1024];
+	private int length;
+	private long rows;
+
+	/**
+	 * Creates a writer for a new file
+	 * @param file the file to write. If it exists, it will be replaced.
+	 * @param settings the settings with the output format and compression.
+	 * @throws IOException if the file can't be created.
+	 */
+	TableFileWriter(File file, ConversionSettings settings) throws IOException {
+		this.file = file;
+		this.delimiter = (byte) settings.getDelimiter();
+		this.quote = settings.getQuote() == null ? -1 : settings.getQuote();
+		this.nullMarker = settings.getNullMarker().getBytes("UTF-8");
+		this.zeroDatesNull = settings.isZeroDatesNull();
+
+		OutputStream out = new FileOutputStream(file);
+		try {
+			switch (settings.getCompression()) {
+				case GZIP:
+					out = new GZIPOutputStream(out, 64 * 1024);
+					break;
+				case ZSTD:
+					out = new ZstdOutputStream(out);
+					break;
+				default:
+			}
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+		this.out = out;
+	}
+
+	/**
+	 * Writes a row to the file
+	 * @param row the row to write
+	 * @throws IOException if the row can't be written
+	 */
+	void write(DumpRow row) throws IOException {
+		byte[] data = row.getBuffer();
+		int fieldCount = row.getFieldCount();
+		for (int i = 0; i < fieldCount; i++) {
+			if (i > 0) {
+				append(delimiter);
+			}
+			if (row.isNull(i) || (zeroDatesNull && row.isQuoted(i) && isZeroDate(data, row.getStart(i), row.getLength(i)))) {
+				append(nullMarker, 0, nullMarker.length);
+			} else if (quote == -1) {
+				appendEscaped(data, row.getStart(i), row.getLength(i));
+			} else {
+				appendQuoted(data, row.getStart(i), row.getLength(i));
+			}
+		}
+		append((byte) '\n');
+		rows++;
+	}
+
+	private static boolean isZeroDate(byte[] data, int start, int length) {
+		if (length != ZERO_DATE.length && length != ZERO_DATE.length + ZERO_TIME.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			byte expected = i < ZERO_DATE.length ? ZERO_DATE[i] : ZERO_TIME[i - ZERO_DATE.length];
+			if (data[start + i] != expected) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void appendEscaped(byte[] data, int start, int length) throws IOException {
+		int end = start + length;
+		for (int i = start; i < end; i++) {
+			byte b = data[i];
+			switch (b) {
+				case '\\':
+					append((byte) '\\');
+					append((byte) '\\');
+					break;
+				case '\n':
+					append((byte) '\\');
+					append((byte) 'n');
+					break;
+				case '\r':
+					append((byte) '\\');
+					append((byte) 'r');
+					break;
+				case '\t':
+					append((byte) '\\');
+					append((byte) 't');
+					break;
+				case 0:
+					append((byte) '\\');
+					append((byte) '0');
+					break;
+				default:
+					if (b == delimiter) {
+						append((byte) '\\');
+					}
+					append(b);
+			}
+		}
+	}
+
+	private void appendQuoted(byte[] data, int start, int length) throws IOException {
+		int end = start + length;
+		//empty values are quoted to distinguish them from an empty NULL marker.
+		boolean quoted = length == 0 || matchesNullMarker(data, start, length);
+		for (int i = start; i < end && !quoted; i++) {
+			byte b = data[i];
+			quoted = b == delimiter || b == quote || b == '\n' || b == '\r';
+		}
+		if (!quoted) {
+			append(data, start, length);
+			return;
+		}
+		append((byte) quote);
+		for (int i = start; i < end; i++) {
+			byte b = data[i];
+			if (b == quote) {
+				append(b);
+			}
+			append(b);
+		}
+		append((byte) quote);
+	}
+
+	private boolean matchesNullMarker(byte[] data, int start, int length) {
+		if (length != nullMarker.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (data[start + i] != nullMarker[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void append(byte b) throws IOException {
+		if (length == buffer.length) {
+			flushBuffer();
+		}
+		buffer[length++] = b;
+	}
+
+	private void append(byte[] data, int start, int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			append(data[start + i]);
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		out.write(buffer, 0, length);
+		length = 0;
+	}
+
+	/**
+	 * Returns the number of rows written
+	 * @return the number of rows written to the file
+	 */
+	long getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Returns the file being written
+	 * @return the output file
+	 */
+	File getFile() {
+		return file;
+	}
+
+	/**
+	 * Writes any pending rows and closes the file
+	 * @throws IOException if the pending rows can't be written or the file can't be closed.
+	 */
+	void close() throws IOException {
+		try {
+			flushBuffer();
+		} finally {
+			out.close();
+		}
+	}
+}
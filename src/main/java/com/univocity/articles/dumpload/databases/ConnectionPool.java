@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.databases;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+import javax.sql.*;
+
+/**
+ * A simple, bounded pool of JDBC connections. All connections are opened and validated when the pool is created,
+ * so problems with the database are found before any data is processed.
+ *
+ * Connections obtained from {@link #getConnection()} must be closed once they are no longer needed. Closing a connection
+ * rolls back any uncommitted changes and returns it to the pool. If all connections are in use, {@link #getConnection()}
+ * blocks until one is returned.
+ *
+ * Session statements, such as the ones of a bulk load profile, can be set for the connections of the pool. They are executed on each connection
+ * the first time it is borrowed after they are set, and undone by {@link #resetSessions(List)}, or when the connection is returned to the pool
+ * if it was in use at the time.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class ConnectionPool implements DataSource {
+
+	private static final int VALIDATION_TIMEOUT_SECONDS = 10;
+	private static final long WAIT_TIMEOUT_MINUTES = 30;
+
+	private final String connectionUrl;
+	private final Properties connectionProperties;
+	private final int size;
+	private final BlockingQueue<Connection> idle;
+	private final List<Connection> all = new ArrayList<Connection>();
+	private volatile boolean closed;
+
+	private List<String> sessionStatements = Collections.emptyList();
+	private final Set<Connection> configuredSessions = Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>());
+	private final Set<String> failedStatements = new HashSet<String>();
+	private final Map<Connection, List<String>> pendingRestores = new IdentityHashMap<Connection, List<String>>();
+
+	private PrintWriter logWriter;
+
+	/**
+	 * Creates a pool and opens all of its connections.
+	 * @param connectionUrl the JDBC URL to use for accessing the {@link java.sql.DriverManager}
+	 * @param connectionProperties the properties (including user and password) given to the {@link java.sql.DriverManager}
+	 * @param size the number of connections in the pool.
+	 */
+	ConnectionPool(String connectionUrl, Properties connectionProperties, int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Pool size must be positive");
+		}
+		this.connectionUrl = connectionUrl;
+		this.connectionProperties = connectionProperties;
+		this.size = size;
+		this.idle = new ArrayBlockingQueue<Connection>(size);
+
+		try {
+			for (int i = 0; i < size; i++) {
+				Connection connection = newConnection();
+				validate(connection);
+				all.add(connection);
+				idle.add(connection);
+			}
+		} catch (SQLException ex) {
+			close();
+			throw new IllegalStateException("Error opening " + size + " connections to " + connectionUrl, ex);
+		}
+	}
+
+	private Connection newConnection() throws SQLException {
+		return DriverManager.getConnection(connectionUrl, connectionProperties);
+	}
+
+	private void validate(Connection connection) throws SQLException {
+		if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+			throw new SQLException("Connection to " + connectionUrl + " is not valid");
+		}
+	}
+
+	/**
+	 * Returns the number of connections in this pool
+	 * @return the pool size
+	 */
+	int getSize() {
+		return size;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool of " + connectionUrl + " is closed");
+		}
+		Connection connection;
+		try {
+			connection = idle.poll(WAIT_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection to " + connectionUrl, e);
+		}
+		if (connection == null) {
+			throw new SQLException("Timed out waiting for a connection to " + connectionUrl + ". All " + size + " connections are in use.");
+		}
+
+		try {
+			if (!connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+				Connection replacement = newConnection();
+				replace(connection, replacement);
+				connection = replacement;
+			}
+		} catch (SQLException e) {
+			idle.add(connection);
+			throw e;
+		}
+		configureSession(connection);
+
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, new PooledConnection(connection));
+	}
+
+	/**
+	 * Defines the statements executed on each connection before it is borrowed. Connections already configured with other statements
+	 * must be reset with {@link #resetSessions(List)} first.
+	 * @param statements the statements that configure the session of each connection.
+	 */
+	synchronized void setSessionStatements(List<String> statements) {
+		this.sessionStatements = new ArrayList<String>(statements);
+		this.failedStatements.clear();
+	}
+
+	/**
+	 * Undoes the session statements on the connections configured with them, and stops configuring connections as they are borrowed.
+	 * Idle connections are restored immediately, and connections in use are restored when they are returned to the pool.
+	 * @param restoreStatements the statements that restore the default configuration of a session.
+	 */
+	synchronized void resetSessions(List<String> restoreStatements) {
+		sessionStatements = Collections.emptyList();
+		restoreStatements = new ArrayList<String>(restoreStatements);
+		for (Connection connection : configuredSessions) {
+			if (idle.remove(connection)) {
+				restoreSession(connection, restoreStatements);
+				idle.add(connection);
+			} else {
+				pendingRestores.put(connection, restoreStatements);
+			}
+		}
+		configuredSessions.clear();
+	}
+
+	private void restoreSession(Connection connection, List<String> restoreStatements) {
+		for (String statement : restoreStatements) {
+			execute(connection, statement, false);
+		}
+	}
+
+	private synchronized void configureSession(Connection connection) {
+		if (sessionStatements.isEmpty() || !configuredSessions.add(connection)) {
+			return;
+		}
+		for (String statement : sessionStatements) {
+			if (!failedStatements.contains(statement) && !execute(connection, statement, true)) {
+				//reported once: the other connections would fail the same way.
+				failedStatements.add(statement);
+			}
+		}
+	}
+
+	private boolean execute(Connection connection, String sql, boolean report) {
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				statement.execute(sql);
+			} finally {
+				statement.close();
+			}
+			return true;
+		} catch (SQLException ex) {
+			if (report) {
+				System.out.println("Unable to execute '" + sql + "' on connections to " + connectionUrl + ". Error: " + ex.getMessage());
+			}
+			return false;
+		}
+	}
+
+	private synchronized void replace(Connection broken, Connection replacement) {
+		configuredSessions.remove(broken);
+		pendingRestores.remove(broken);
+		all.remove(broken);
+		all.add(replacement);
+		try {
+			broken.close();
+		} catch (SQLException e) {
+			//ignore
+		}
+	}
+
+	private void release(Connection connection) {
+		try {
+			if (!connection.isClosed() && !connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			//the connection is probably broken. It will be replaced when borrowed again.
+		}
+		//resetSessions() must either find the connection idle or find it pending here, never in between.
+		synchronized (this) {
+			List<String> restoreStatements = pendingRestores.remove(connection);
+			if (restoreStatements != null) {
+				//the session was configured while the connection was in use.
+				restoreSession(connection, restoreStatements);
+			}
+			if (closed) {
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					//ignore
+				}
+			} else {
+				idle.add(connection);
+			}
+		}
+	}
+
+	/**
+	 * Closes all idle connections. Connections in use are closed when they are returned to the pool.
+	 */
+	synchronized void close() {
+		closed = true;
+		for (Connection connection : all) {
+			if (idle.remove(connection)) {
+				try {
+					connection.close();
+				} catch (SQLException e) {
+					//ignore
+				}
+			}
+		}
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		throw new SQLFeatureNotSupportedException("Connections of the pool use the credentials provided in the connection.properties file");
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return logWriter;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		this.logWriter = out;
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		DriverManager.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return DriverManager.getLoginTimeout();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		if (iface.isInstance(this)) {
+			return iface.cast(this);
+		}
+		throw new SQLException("Not a wrapper of " + iface.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this);
+	}
+
+	//required from Java 7 onwards.
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	/**
+	 * Handles calls to a connection borrowed from the pool: {@link Connection#close()} returns the connection to the pool,
+	 * and {@link Connection#unwrap(Class)} gives access to the driver's connection (required for driver-specific APIs).
+	 * Everything else is delegated to the actual connection.
+	 */
+	private class PooledConnection implements InvocationHandler {
+
+		private Connection connection;
+
+		PooledConnection(Connection connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name)) {
+				if (connection != null) {
+					Connection released = connection;
+					connection = null;
+					release(released);
+				}
+				return null;
+			} else if ("isClosed".equals(name)) {
+				return connection == null || connection.isClosed();
+			} else if ("equals".equals(name)) {
+				return proxy == args[0];
+			} else if ("hashCode".equals(name)) {
+				return System.identityHashCode(proxy);
+			} else if ("toString".equals(name)) {
+				return "Pooled connection to " + connectionUrl;
+			}
+
+			if (connection == null) {
+				throw new SQLException("Connection has already been returned to the pool");
+			}
+
+			if ("unwrap".equals(name) && ((Class<?>) args[0]).isInstance(connection)) {
+				return connection;
+			} else if ("isWrapperFor".equals(name) && ((Class<?>) args[0]).isInstance(connection)) {
+				return true;
+			}
+
+			try {
+				return method.invoke(connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
@@ -6,14 +6,17 @@
 package com.univocity.articles.dumpload.databases;
 
 import java.io.*;
+import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import javax.sql.*;
 
 import org.springframework.jdbc.core.*;
-import org.springframework.jdbc.datasource.*;
 
 import com.univocity.api.entity.jdbc.*;
+import com.univocity.articles.dumpload.load.*;
 
 /**
  * A simple class to initialize a given database with the scripts provided under {@code src/main/resources/database/*database_name*}
@@ -23,35 +26,67 @@ import com.univocity.api.entity.jdbc.*;
  */
 public abstract class Database {
 
+	/**
+	 * How the tables of the dump file are prepared when a database is initialized.
+	 */
+	public enum SchemaMode {
+		/**
+		 * Tables that don't exist are created. Existing tables are left as they are, so an interrupted load can be resumed.
+		 */
+		CREATE_IF_MISSING,
+		/**
+		 * Existing tables are emptied and tables that don't exist are created, so every load starts from empty tables.
+		 */
+		TRUNCATE,
+		/**
+		 * Existing tables are dropped and all tables are created again with the current scripts.
+		 */
+		DROP_AND_RECREATE
+	}
+
 	private JdbcTemplate jdbcTemplate;
+	private ConnectionPool connectionPool;
+	private final Map<String, RowBinder> rowBinders = new ConcurrentHashMap<String, RowBinder>();
+	private final Map<String, Boolean> transactionalTables = new ConcurrentHashMap<String, Boolean>();
+	private final Set<String> rejectsDisabledTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private boolean schemaReset;
+	private Shard shard;
+
+	private volatile boolean bulkLoadStarted;
+	private volatile boolean bulkLoadResumable;
+	private final Set<String> bulkLoadTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Set<String> preparedTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final List<String> restoreServerStatements = new ArrayList<String>();
 
 	/**
-	 * Just an empty constructor. Initialization happens when {@link #initialize(String, String, String, String)} is invoked.
+	 * Just an empty constructor. Initialization happens when {@link #initialize(String, SchemaMode, String, String, String, int)} is invoked.
 	 */
 	public Database() {
 	}
 
 	/**
-	 * Initializes this Database object by creating a {@link DataSource} to provide connections to your database.
-	 * Tables will be created automatically if required.
+	 * Initializes this Database object by creating a pool of connections to your database. All connections are opened and
+	 * validated upfront. Tables will be created automatically if required.
 	 *
 	 * @param tablesToCreate a sequence of table names to create in this database, if they have not been created yet
+	 * @param schemaMode how the tables are prepared if they already exist.
 	 * @param connectionUrl the JDBC URL to use for accessing the {@link java.sql.DriverManager}
 	 * @param username the username to connect to the database
 	 * @param password the password of the given username, if required
+	 * @param poolSize the number of connections to keep open to the database.
 	 */
-	void initialize(String tablesToCreate, String connectionUrl, String username, String password) {
+	void initialize(String tablesToCreate, SchemaMode schemaMode, String connectionUrl, String username, String password, int poolSize) {
 		try {
 			Class.forName(getDriverClassName());
-			DataSource dataSource = new SingleConnectionDataSource(connectionUrl, username, password, true);
-			this.jdbcTemplate = new JdbcTemplate(dataSource);
+			this.connectionPool = new ConnectionPool(connectionUrl, getConnectionProperties(username, password), poolSize);
+			this.jdbcTemplate = new JdbcTemplate(connectionPool);
 
 		} catch (Exception ex) {
 			throw new IllegalStateException("Error creating database using scripts for database " + getDatabaseName(), ex);
 		}
 
 		if(tablesToCreate != null){
-			initializeDatabase(tablesToCreate);
+			initializeDatabase(tablesToCreate, schemaMode);
 		}
 	}
 
@@ -74,8 +109,9 @@ public abstract class Database {
 	 * will be created.
 	 *
 	 * @param tablesToCreate a sequence of table names to create in this database, if they have not been created yet
+	 * @param schemaMode how the tables are prepared if they already exist.
 	 */
-	private void initializeDatabase(String tablesToCreate) {
+	private void initializeDatabase(String tablesToCreate, SchemaMode schemaMode) {
 		File dirWithCreateTableScripts = new File("src/main/resources/database/" + getDatabaseName().toLowerCase());
 		Map<String, String> scripts = new HashMap<String, String>();
 		for (File scriptFile : dirWithCreateTableScripts.listFiles()) {
@@ -84,31 +120,217 @@ public abstract class Database {
 			scripts.put(name.toLowerCase(), script);
 		}
 
-		if (createTables(tablesToCreate, scripts)) {
+		if (createTables(tablesToCreate, schemaMode, scripts)) {
 			executeScripts(scripts);
 		}
 	}
 
 	/**
-	 * Attempts to create the required tables in your database.
+	 * Attempts to create the required tables in your database. Existing tables are found with a single query to the metadata
+	 * of the database, and are emptied or dropped according to the given mode. The tables to create are then created concurrently.
+	 * @param scriptOrder the names of the tables to create, separated by commas.
+	 * @param schemaMode how the tables are prepared if they already exist.
 	 * @param scripts a map with script file names and their contents to be executed against your database.
 	 * @return {@code true} if tables were created with the given scripts, {@code false} if the tables already exist.
 	 */
-	private boolean createTables(String scriptOrder, Map<String, String> scripts) {
-		String[] order = scriptOrder.split(",");
+	private boolean createTables(String scriptOrder, SchemaMode schemaMode, Map<String, String> scripts) {
+		long start = System.currentTimeMillis();
+		List<String> existing = new ArrayList<String>();
+		List<String> missing = new ArrayList<String>();
+		Set<String> tables = getExistingTables();
+		for (String tableName : scriptOrder.split(",")) {
+			if (tables.contains(tableName.toLowerCase())) {
+				existing.add(tableName);
+			} else {
+				missing.add(tableName);
+			}
+		}
 
-		boolean tablesCreated = false;
-		for (String tableName : order) {
+		if (!existing.isEmpty() && schemaMode != SchemaMode.CREATE_IF_MISSING) {
+			List<String> statements = schemaMode == SchemaMode.TRUNCATE ? getTruncateTableStatements(existing) : getDropTableStatements(existing);
+			executeInSequence(statements);
+			schemaReset = true;
+			System.out.println((schemaMode == SchemaMode.TRUNCATE ? "Truncated " : "Dropped ") + tables(existing) + " of database " + getDatabaseName());
+			if (schemaMode == SchemaMode.DROP_AND_RECREATE) {
+				missing.addAll(existing);
+			}
+		}
+
+		if (missing.isEmpty()) {
+			return false;
+		}
+		List<String> createTableScripts = new ArrayList<String>();
+		for (String tableName : missing) {
 			String createTableScript = scripts.get(tableName + ".tbl");
+			if (createTableScript == null) {
+				throw new IllegalStateException("No script to create table " + tableName + " in database " + getDatabaseName());
+			}
+			createTableScripts.add(createTableScript);
+		}
+		executeConcurrently(createTableScripts);
+		System.out.println("Created " + tables(missing) + " of database " + getDatabaseName() + " in " + (System.currentTimeMillis() - start) + " ms");
+		return true;
+	}
+
+	/**
+	 * Joins table names into a comma-separated list, for statements that take several tables at once.
+	 * @param tables the names of the tables
+	 * @return the table names separated by commas.
+	 */
+	static String join(List<String> tables) {
+		StringBuilder out = new StringBuilder();
+		for (String table : tables) {
+			if (out.length() > 0) {
+				out.append(", ");
+			}
+			out.append(table);
+		}
+		return out.toString();
+	}
 
+	private static String tables(List<String> tables) {
+		return tables.size() == 1 ? "table " + tables.get(0) : tables.size() + " tables";
+	}
+
+	/**
+	 * Reads the names of all tables of the database, with a single call to {@link DatabaseMetaData#getTables(String, String, String, String[])}.
+	 * Nothing is read from the tables themselves, so the time taken doesn't depend on the number of rows they have.
+	 * @return the names of the tables in the current catalog and schema, in lower case.
+	 */
+	private Set<String> getExistingTables() {
+		Set<String> tables = new HashSet<String>();
+		Connection connection = openConnection();
+		try {
+			ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), getSchema(connection), "%", new String[] { "TABLE" });
 			try {
-				jdbcTemplate.execute("select count(*) from " + tableName);
-			} catch (Exception ex) {
-				jdbcTemplate.execute(createTableScript);
-				tablesCreated = true;
+				while (rs.next()) {
+					tables.add(rs.getString("TABLE_NAME").toLowerCase());
+				}
+			} finally {
+				rs.close();
+			}
+			connection.commit();
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error reading the tables of database " + getDatabaseName(), ex);
+		} finally {
+			close(connection);
+		}
+		return tables;
+	}
+
+	/**
+	 * Returns the schema where the tables are created, to look for existing tables in it only.
+	 * @param connection a connection to the database
+	 * @return the current schema, or {@code null} if the database has no schemas or the tables of all schemas should be considered.
+	 * @throws SQLException if the current schema can't be read.
+	 */
+	String getSchema(Connection connection) throws SQLException {
+		return null;
+	}
+
+	/**
+	 * Returns the statements that remove all rows from the given tables. Executed in order, on a single connection with auto-commit enabled.
+	 * @param tables the names of the tables to truncate
+	 * @return a {@code TRUNCATE TABLE} statement for each table.
+	 */
+	List<String> getTruncateTableStatements(List<String> tables) {
+		List<String> statements = new ArrayList<String>();
+		for (String table : tables) {
+			statements.add("TRUNCATE TABLE " + table);
+		}
+		return statements;
+	}
+
+	/**
+	 * Returns the statements that drop the given tables. Executed in order, on a single connection with auto-commit enabled.
+	 * @param tables the names of the tables to drop
+	 * @return a {@code DROP TABLE} statement for each table.
+	 */
+	List<String> getDropTableStatements(List<String> tables) {
+		List<String> statements = new ArrayList<String>();
+		for (String table : tables) {
+			statements.add("DROP TABLE " + table);
+		}
+		return statements;
+	}
+
+	/**
+	 * Indicates whether existing tables were emptied or dropped when this database was initialized, in which case any progress recorded
+	 * by a previous load no longer applies.
+	 * @return {@code true} if existing tables were truncated or dropped and created again.
+	 */
+	public boolean isSchemaReset() {
+		return schemaReset;
+	}
+
+	/**
+	 * Returns the shard of a sharded destination this database holds
+	 * @return the shard of this database, or {@code null} if it is not part of a sharded destination and holds all rows of the dump file.
+	 */
+	public Shard getShard() {
+		return shard;
+	}
+
+	void setShard(Shard shard) {
+		this.shard = shard;
+	}
+
+	private void executeInSequence(List<String> statements) {
+		Connection connection = openConnection();
+		try {
+			connection.setAutoCommit(true);
+			for (String sql : statements) {
+				Statement statement = connection.createStatement();
+				try {
+					statement.execute(sql);
+				} finally {
+					statement.close();
+				}
 			}
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error preparing the tables of database " + getDatabaseName(), ex);
+		} finally {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Executes independent statements, such as {@code CREATE TABLE} scripts, concurrently, each on a connection of the pool.
+	 * @param statements the statements to execute.
+	 */
+	private void executeConcurrently(List<String> statements) {
+		int workers = Math.min(getPoolSize(), statements.size());
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "schema-builder-" + count.incrementAndGet());
+			}
+		});
+		try {
+			List<Future<?>> results = new ArrayList<Future<?>>();
+			for (final String sql : statements) {
+				results.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						jdbcTemplate.execute(sql);
+					}
+				}));
+			}
+			for (Future<?> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Error creating tables of database " + getDatabaseName(), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while creating tables of database " + getDatabaseName(), e);
+				}
+			}
+		} finally {
+			executor.shutdownNow();
 		}
-		return tablesCreated;
 	}
 
 	/**
@@ -149,13 +371,451 @@ public abstract class Database {
 	}
 
 	/**
-	 * Returns the {@link javax.sql.DataSource} that provides connections to your database.
+	 * Returns the {@link javax.sql.DataSource} that provides pooled connections to your database.
 	 * @return a {@link javax.sql.DataSource} for your database.
 	 */
 	public DataSource getDataSource() {
 		return jdbcTemplate.getDataSource();
 	}
 
+	/**
+	 * Obtains a connection from the pool, for exclusive use of a loader thread. Auto-commit is disabled so rows can be
+	 * written in transactions controlled by the loader. If all connections are in use, this method blocks until one is released.
+	 *
+	 * The caller is responsible for closing the connection, which returns it to the pool.
+	 *
+	 * @return a connection to your database, with auto-commit disabled.
+	 */
+	public Connection openConnection() {
+		try {
+			Connection connection = connectionPool.getConnection();
+			connection.setAutoCommit(false);
+			return connection;
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error obtaining connection to database " + getDatabaseName(), ex);
+		}
+	}
+
+	/**
+	 * Closes the connections of the pool once they are no longer needed. Idle connections are closed immediately, and connections
+	 * in use are closed when they are returned to the pool. No connections can be obtained afterwards.
+	 */
+	public void close() {
+		if (connectionPool != null) {
+			connectionPool.close();
+		}
+	}
+
+	/**
+	 * Returns the number of connections in the pool that provides connections to your database.
+	 * @return the maximum number of connections in use at the same time.
+	 */
+	public int getPoolSize() {
+		return connectionPool.getSize();
+	}
+
+	/**
+	 * Returns the properties used to open the connections of the pool. Override this to
+	 * provide driver-specific connection properties.
+	 *
+	 * @param username the username to connect to the database
+	 * @param password the password of the given username, if required
+	 * @return the connection properties to give to the {@link java.sql.DriverManager}
+	 */
+	Properties getConnectionProperties(String username, String password) {
+		Properties properties = new Properties();
+		if (username != null) {
+			properties.setProperty("user", username);
+		}
+		if (password != null) {
+			properties.setProperty("password", password);
+		}
+		return properties;
+	}
+
+	/**
+	 * Creates a {@link RowWriter} to insert rows parsed from the dump file into a table of this database, with batches
+	 * of a {@link PreparedStatement}.
+	 *
+	 * @param connection the connection to use for writing. Auto-commit is disabled.
+	 * @param table the name of the destination table
+	 * @param settings the load settings, including batch size and encoding of the dump file.
+	 * @return a new {@link RowWriter} for the given table.
+	 */
+	public RowWriter newRowWriter(Connection connection, String table, LoadSettings settings) {
+		return newRowWriter(connection, table, settings, null);
+	}
+
+	/**
+	 * Creates a {@link RowWriter} to insert rows parsed from the dump file into a table of this database, with batches
+	 * of a {@link PreparedStatement}. Rows the database rejects are isolated and handed to the given handler, instead of failing the batch.
+	 *
+	 * @param connection the connection to use for writing. Auto-commit is disabled.
+	 * @param table the name of the destination table
+	 * @param settings the load settings, including batch size and encoding of the dump file.
+	 * @param rejectHandler receives the rows rejected by the database. If {@code null}, the writer fails when a batch fails.
+	 * Ignored if the table is not {@link #isTransactional(Connection, String) transactional}.
+	 * @return a new {@link RowWriter} for the given table.
+	 */
+	public RowWriter newRowWriter(Connection connection, String table, LoadSettings settings, RowRejectHandler rejectHandler) {
+		if (rejectHandler != null && !isTransactional(connection, table)) {
+			//rows of a failed batch that were inserted can't be rolled back, and would be inserted again while isolating the rejected rows.
+			if (rejectsDisabledTables.add(table)) {
+				System.out.println("Table " + table + " of " + getDatabaseName() + " doesn't support transactions. Rows it rejects will fail the load instead of being written into reject files.");
+			}
+			rejectHandler = null;
+		}
+		List<String> columns = settings.getProjectedColumns().get(table);
+		RowBinder binder = getRowBinder(connection, table);
+		if (columns != null) {
+			//rows only have the values of the projected columns.
+			binder = binder.project(columns);
+		}
+		return new JdbcBatchWriter(connection, table, settings.getWriterBatchSize(), binder, rejectHandler, settings.getCharset(), columns);
+	}
+
+	/**
+	 * Indicates whether the rows written into a table can be rolled back. Tables of storage engines without transactions
+	 * (such as MyISAM) keep the rows of a transaction that fails or is interrupted.
+	 *
+	 * @param connection the connection used to read the metadata of the table
+	 * @param table the name of the table
+	 * @return {@code true} if the changes made to the table are only made permanent on commit.
+	 */
+	public boolean isTransactional(Connection connection, String table) {
+		Boolean transactional = transactionalTables.get(table);
+		if (transactional == null) {
+			try {
+				transactional = isTransactionalTable(connection, table);
+			} catch (SQLException ex) {
+				throw new IllegalStateException("Error reading the storage of table " + table, ex);
+			}
+			transactionalTables.put(table, transactional);
+		}
+		return transactional;
+	}
+
+	/**
+	 * Reads from the database whether a table supports transactions. By default, all tables of a database that supports transactions
+	 * are assumed to support them. Override this for databases where each table has a storage engine of its own.
+	 *
+	 * @param connection the connection used to read the metadata of the table
+	 * @param table the name of the table
+	 * @return {@code true} if the changes made to the table are only made permanent on commit.
+	 * @throws SQLException if the metadata of the table can't be read.
+	 */
+	boolean isTransactionalTable(Connection connection, String table) throws SQLException {
+		return connection.getMetaData().supportsTransactions();
+	}
+
+	/**
+	 * Returns the {@link RowBinder} that binds the values of rows parsed from the dump file to the columns of a table.
+	 * The column types are read from the database metadata the first time a table is written, and reused afterwards.
+	 *
+	 * @param connection the connection used to read the metadata of the table
+	 * @param table the name of the table
+	 * @return the binder for the columns of the given table.
+	 */
+	public RowBinder getRowBinder(Connection connection, String table) {
+		RowBinder binder = rowBinders.get(table);
+		if (binder == null) {
+			try {
+				binder = RowBinder.forTable(connection, table);
+			} catch (SQLException ex) {
+				throw new IllegalStateException("Error reading column types of table " + table, ex);
+			}
+			rowBinders.put(table, binder);
+		}
+		return binder;
+	}
+
+	/**
+	 * Creates a {@link RowWriter} that uses the bulk load facility of this database, which is usually much faster
+	 * than batches of {@code INSERT} statements. Databases without such facility return {@code null}.
+	 *
+	 * @param connection the connection to use for writing. Auto-commit is disabled.
+	 * @param table the name of the destination table
+	 * @param settings the load settings, including batch size and encoding of the dump file.
+	 * @return a new {@link RowWriter} for the given table, or {@code null} if bulk loading is not supported.
+	 */
+	public RowWriter newBulkWriter(Connection connection, String table, LoadSettings settings) {
+		return null;
+	}
+
+	/**
+	 * Returns the keys and indexes of each table, which are created after the tables are loaded. By default, the
+	 * definitions are read from {@code src/main/resources/database/indexes.txt}. Override this to add or remove
+	 * definitions specific to this database.
+	 *
+	 * @return the keys and indexes to create after loading the tables of this database.
+	 */
+	public List<IndexDefinition> getIndexDefinitions() {
+		List<IndexDefinition> definitions = new ArrayList<IndexDefinition>();
+		for (String line : readFile(new File("src/main/resources/database/indexes.txt")).split("\\n")) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				definitions.add(IndexDefinition.parse(line));
+			}
+		}
+		return definitions;
+	}
+
+	/**
+	 * Returns the statements that create the given keys and indexes of a table. The statements are executed in order,
+	 * on a connection with auto-commit enabled, while keys and indexes of other tables are created concurrently on other connections.
+	 *
+	 * By default, each key and index is created with a standard SQL statement of its own. Override this to use the
+	 * fastest options available in this database.
+	 *
+	 * @param connection the connection that will execute the statements
+	 * @param table the name of the table
+	 * @param indexes the keys and indexes of the table, primary key first.
+	 * @return the sequence of statements that create the given keys and indexes.
+	 * @throws SQLException if the database can't be queried for information required to build the statements.
+	 */
+	public List<String> getCreateIndexStatements(Connection connection, String table, List<IndexDefinition> indexes) throws SQLException {
+		List<String> statements = new ArrayList<String>();
+		for (IndexDefinition index : indexes) {
+			switch (index.getType()) {
+				case PRIMARY_KEY:
+					statements.add("ALTER TABLE " + table + " ADD CONSTRAINT " + index.getName() + " PRIMARY KEY (" + index.getColumnList() + ")");
+					break;
+				case UNIQUE:
+					statements.add("CREATE UNIQUE INDEX " + index.getName() + " ON " + table + " (" + index.getColumnList() + ")");
+					break;
+				case INDEX:
+					statements.add("CREATE INDEX " + index.getName() + " ON " + table + " (" + index.getColumnList() + ")");
+					break;
+				case FOREIGN_KEY:
+					statements.add(getCreateForeignKeyStatement(index));
+					break;
+			}
+		}
+		return statements;
+	}
+
+	/**
+	 * Returns a standard SQL statement that creates a foreign key.
+	 * @param index the definition of the foreign key
+	 * @return the statement that creates the given foreign key.
+	 */
+	String getCreateForeignKeyStatement(IndexDefinition index) {
+		return "ALTER TABLE " + index.getTable() + " ADD CONSTRAINT " + index.getName() + " FOREIGN KEY (" + index.getColumnList() + ") REFERENCES "
+				+ index.getReferencedTable() + " (" + index.getReferencedColumnList() + ")";
+	}
+
+	/**
+	 * Returns the statements that configure a session for a bulk load, executed on every connection of the pool before it is used
+	 * to load the dump file. The settings applied should only affect the session, e.g. turning off constraint checks or
+	 * synchronous commits. Statements the database refuses (e.g. for lack of privileges) are reported and skipped.
+	 *
+	 * @return the statements to execute on each connection, or an empty list if sessions don't need any configuration.
+	 */
+	List<String> getBulkLoadSessionStatements() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Returns the statements that undo the {@link #getBulkLoadSessionStatements()}, executed on every connection of the pool once
+	 * the load is finished.
+	 *
+	 * @return the statements that restore the default configuration of a session.
+	 */
+	List<String> getRestoreSessionStatements() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Returns the statements that configure the database server, or the database itself, for a bulk load, e.g. relaxing the durability of
+	 * the transaction log. They are executed once, before the dump file is loaded, with auto-commit enabled. As they affect every
+	 * client of the database, the current configuration is read first, and the statements that restore it are added to the given list.
+	 *
+	 * @param connection the connection used to read the current configuration
+	 * @param restoreStatements receives the statements that restore the current configuration once the load is finished.
+	 * @return the statements that configure the database for the bulk load.
+	 * @throws SQLException if the current configuration can't be read.
+	 */
+	List<String> getBulkLoadServerStatements(Connection connection, List<String> restoreStatements) throws SQLException {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Returns the statements that configure a table for a bulk load, e.g. to skip the transaction log. They are executed before
+	 * the first row is written into the table, on a transaction of their own.
+	 *
+	 * @param table the name of the table
+	 * @return the statements to execute, or an empty list if tables don't need any configuration.
+	 */
+	List<String> getBulkLoadTableStatements(String table) {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Indicates whether the {@link #getBulkLoadTableStatements(String)} should be applied to a table that is about to be loaded,
+	 * e.g. to skip tables whose configuration can't be changed cheaply because they already have rows.
+	 *
+	 * @param connection the connection of the loader about to write into the table.
+	 * @param table the name of the table
+	 * @return {@code true} if the table should be configured for the bulk load.
+	 * @throws SQLException if the table can't be inspected.
+	 */
+	boolean isTablePreparationNeeded(Connection connection, String table) throws SQLException {
+		return true;
+	}
+
+	/**
+	 * Indicates whether the load that applied the bulk load profile can be resumed after a crash, from the progress recorded
+	 * in the database. Settings that make the database discard committed rows after a crash must not be applied in this case.
+	 * @return {@code true} if the bulk load profile is applied to a load that can be resumed.
+	 */
+	boolean isBulkLoadResumable() {
+		return bulkLoadResumable;
+	}
+
+	/**
+	 * Returns the statements that undo the {@link #getBulkLoadTableStatements(String)} of a table, once the load is finished.
+	 *
+	 * @param table the name of the table
+	 * @return the statements that restore the default configuration of the table.
+	 */
+	List<String> getRestoreTableStatements(String table) {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Applies the bulk load profile of this database: configures the database server with {@link #getBulkLoadServerStatements(Connection, List)},
+	 * and every connection of the pool with {@link #getBulkLoadSessionStatements()}. Tables are configured as they are loaded, with
+	 * {@link #prepareTableForBulkLoad(Connection, String)}. Everything is undone by {@link #finishBulkLoad()}.
+	 *
+	 * @param settings the load settings, which indicate whether the load can be resumed.
+	 */
+	public synchronized void startBulkLoad(LoadSettings settings) {
+		if (bulkLoadStarted) {
+			return;
+		}
+		bulkLoadResumable = settings.isResumeEnabled();
+		bulkLoadStarted = true;
+		Connection connection = openConnection();
+		try {
+			connection.setAutoCommit(true);
+			List<String> restore = new ArrayList<String>();
+			for (String statement : getBulkLoadServerStatements(connection, restore)) {
+				execute(connection, statement);
+			}
+			restoreServerStatements.addAll(restore);
+		} catch (SQLException ex) {
+			System.out.println("Unable to read the configuration of " + getDatabaseName() + ". Loading with its current configuration. Error: " + ex.getMessage());
+		} finally {
+			close(connection);
+		}
+		connectionPool.setSessionStatements(getBulkLoadSessionStatements());
+	}
+
+	/**
+	 * Indicates whether a table must be configured with {@link #prepareTableForBulkLoad(Connection, String)} before rows are written into it.
+	 * @param table the name of the table
+	 * @return {@code true} if the bulk load profile is applied and the table has statements of its own that were not executed yet.
+	 */
+	public boolean isTablePreparationPending(String table) {
+		return bulkLoadStarted && !bulkLoadTables.contains(table) && !getBulkLoadTableStatements(table).isEmpty();
+	}
+
+	/**
+	 * Configures a table for the bulk load, if not configured yet. The given connection must have no uncommitted changes: the statements
+	 * are committed, or rolled back if they fail, as some of them may lock the table until the transaction ends. Only the first loader
+	 * of a table executes them: the others carry on writing, so the locks held by their transactions don't block the statements forever.
+	 *
+	 * @param connection the connection of the loader about to write into the table.
+	 * @param table the name of the table
+	 */
+	public void prepareTableForBulkLoad(Connection connection, String table) {
+		if (!bulkLoadStarted || !bulkLoadTables.add(table)) {
+			return;
+		}
+		try {
+			boolean needed = isTablePreparationNeeded(connection, table);
+			if (!connection.getAutoCommit()) {
+				//ends the transaction of the check, so it holds no locks.
+				connection.rollback();
+			}
+			if (!needed) {
+				return;
+			}
+		} catch (SQLException ex) {
+			System.out.println("Unable to inspect table " + table + " of " + getDatabaseName() + ". Loading it with its current configuration. Error: " + ex.getMessage());
+			return;
+		}
+		preparedTables.add(table);
+		for (String statement : getBulkLoadTableStatements(table)) {
+			execute(connection, statement);
+		}
+	}
+
+	/**
+	 * Undoes the bulk load profile applied by {@link #startBulkLoad(LoadSettings)}: restores the configuration of the tables loaded, of
+	 * the connections of the pool, and of the database server, in this order.
+	 */
+	public synchronized void finishBulkLoad() {
+		if (!bulkLoadStarted) {
+			return;
+		}
+		bulkLoadStarted = false;
+		connectionPool.resetSessions(getRestoreSessionStatements());
+		Connection connection = openConnection();
+		try {
+			connection.setAutoCommit(true);
+			for (String table : preparedTables) {
+				for (String statement : getRestoreTableStatements(table)) {
+					execute(connection, statement);
+				}
+			}
+			for (String statement : restoreServerStatements) {
+				execute(connection, statement);
+			}
+		} catch (SQLException ex) {
+			System.out.println("Unable to restore the configuration of " + getDatabaseName() + ". Error: " + ex.getMessage());
+		} finally {
+			close(connection);
+		}
+		bulkLoadTables.clear();
+		preparedTables.clear();
+		restoreServerStatements.clear();
+	}
+
+	/**
+	 * Executes a statement of the bulk load profile. Statements that fail are reported and skipped: the load is only slower without them.
+	 */
+	private void execute(Connection connection, String sql) {
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				statement.execute(sql);
+			} finally {
+				statement.close();
+			}
+			if (!connection.getAutoCommit()) {
+				connection.commit();
+			}
+		} catch (SQLException ex) {
+			System.out.println("Unable to execute '" + sql + "' on " + getDatabaseName() + ". Error: " + ex.getMessage());
+			try {
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+				}
+			} catch (SQLException e) {
+				//ignore
+			}
+		}
+	}
+
+	private static void close(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			//ignore
+		}
+	}
+
 	/**
 	 * Applies database-specific configurations to an instance of {@link JdbcDataStoreConfiguration}. uniVocity tries to extract as much information
 	 * from your database metadata as possible. Some information might not be available from your JDBC driver so you need to provide it manually.
@@ -20,10 +20,12 @@ import java.util.*;
 public class DatabaseFactory {
 
 	private final Map<String, Class<? extends Database>> databases;
-	private final Properties properties;
+	private Properties properties;
 
 	private static final DatabaseFactory instance = new DatabaseFactory();
 
+	private static final String DUMP_TABLES = "commit_comments,commit_parents,commits,counters,followers,issue_comments,issue_events,issue_labels,issues,organization_members,project_commits,project_members,projects,pull_request_comments,pull_request_commits,pull_request_history,pull_requests,repo_labels,repo_milestones,schema_info,users,watchers";
+
 	private DatabaseFactory() {
 		databases = new TreeMap<String, Class<? extends Database>>();
 
@@ -32,13 +34,23 @@ public class DatabaseFactory {
 		registerDatabase(PostgresDatabase.class);
 		registerDatabase(HsqlDatabase.class);
 		registerDatabase(SqlServerDatabase.class);
+	}
 
-		properties = new Properties();
-		try {
-			properties.load(new FileInputStream("src/main/resources/connection.properties"));
-		} catch (Exception e) {
-			throw new IllegalStateException("Error loading connection.properties", e);
+	/**
+	 * Returns the contents of the <i>connection.properties</i> file, which is only read when a database configured in it is requested.
+	 * @return the connection properties.
+	 */
+	private synchronized Properties getProperties() {
+		if (properties == null) {
+			Properties properties = new Properties();
+			try {
+				properties.load(new FileInputStream("src/main/resources/connection.properties"));
+			} catch (Exception e) {
+				throw new IllegalStateException("Error loading connection.properties", e);
+			}
+			this.properties = properties;
 		}
+		return properties;
 	}
 
 	/**
@@ -76,9 +88,79 @@ public class DatabaseFactory {
 	 * @return an instance of {@link Database}, properly initialized with the given credentials.
 	 */
 	public Database getDestinationDatabase() {
-		return newDatabase(
-				"destination",
-				"commit_comments,commit_parents,commits,counters,followers,issue_comments,issue_events,issue_labels,issues,organization_members,project_commits,project_members,projects,pull_request_comments,pull_request_commits,pull_request_history,pull_requests,repo_labels,repo_milestones,schema_info,users,watchers");
+		return newDatabase("destination", DUMP_TABLES);
+	}
+
+	/**
+	 * Obtains the destination databases specified in the <i>connection.properties</i> file. If the {@code destinations} property lists the names of
+	 * several destinations, each one is configured with properties prefixed with its name (e.g. {@code analytics.database.url}). Otherwise,
+	 * the only destination is the one given by {@link #getDestinationDatabase()}, named "destination".
+	 * @return the destination databases by name, in the order they were listed, properly initialized with the given credentials.
+	 */
+	public Map<String, Database> getDestinationDatabases() {
+		Map<String, Database> out = new LinkedHashMap<String, Database>();
+		String destinations = getProperties().getProperty("destinations", "").trim();
+		String shards = getProperties().getProperty("shards", "").trim();
+		if (!shards.isEmpty()) {
+			if (!destinations.isEmpty()) {
+				throw new IllegalArgumentException("The properties destinations and shards can't be used together in connection.properties");
+			}
+			return getShardDatabases(shards);
+		}
+		if (destinations.isEmpty()) {
+			out.put("destination", getDestinationDatabase());
+			return out;
+		}
+		for (String name : destinations.split(",")) {
+			name = name.trim();
+			if (name.isEmpty()) {
+				continue;
+			}
+			if (getProperties().getProperty(name + ".database.name") == null) {
+				throw new IllegalArgumentException("Destination " + name + " is not configured. Please provide the property " + name + ".database.name in connection.properties");
+			}
+			out.put(name, newDatabase(name, DUMP_TABLES));
+		}
+		return out;
+	}
+
+	/**
+	 * Obtains the databases of a sharded destination, listed in the {@code shards} property. Each shard is configured with the same
+	 * properties as the destination database, prefixed with its name, and gets the tables of the dump file created from the same scripts.
+	 * The shard key of each table is given by properties such as {@code shard.key.commits=project_id}.
+	 * @param shards the names of the shards, separated by commas.
+	 * @return the shard databases, by name, in the order they were listed.
+	 */
+	private Map<String, Database> getShardDatabases(String shards) {
+		List<String> names = new ArrayList<String>();
+		for (String name : shards.split(",")) {
+			name = name.trim();
+			if (name.isEmpty()) {
+				continue;
+			}
+			if (getProperties().getProperty(name + ".database.name") == null) {
+				throw new IllegalArgumentException("Shard " + name + " is not configured. Please provide the property " + name + ".database.name in connection.properties");
+			}
+			names.add(name);
+		}
+
+		Map<String, String> keyColumns = new TreeMap<String, String>();
+		for (String property : getProperties().stringPropertyNames()) {
+			if (property.startsWith("shard.key.") && !getProperties().getProperty(property).trim().isEmpty()) {
+				keyColumns.put(property.substring("shard.key.".length()), getProperties().getProperty(property).trim());
+			}
+		}
+		if (keyColumns.isEmpty()) {
+			throw new IllegalArgumentException("No shard keys configured for shards " + names + ". Please provide the shard key of a table with a property such as shard.key.commits=project_id in connection.properties");
+		}
+
+		Map<String, Database> out = new LinkedHashMap<String, Database>();
+		for (int i = 0; i < names.size(); i++) {
+			Database database = newDatabase(names.get(i), DUMP_TABLES);
+			database.setShard(new Shard(i, names.size(), keyColumns));
+			out.put(names.get(i), database);
+		}
+		return out;
 	}
 
 	/**
@@ -96,11 +178,32 @@ public class DatabaseFactory {
 	 * @return an instance of {@link Database}, properly initialized with the given credentials.
 	 */
 	private Database newDatabase(String prefix, String tablesToCreate) {
+		Properties properties = getProperties();
 		String databaseName = properties.getProperty(prefix + ".database.name");
 		String connectionUrl = properties.getProperty(prefix + ".database.url");
 		String username = properties.getProperty(prefix + ".database.user");
 		String password = properties.getProperty(prefix + ".database.password");
+		int poolSize = getPoolSize(prefix);
+		Database.SchemaMode schemaMode = getSchemaMode(prefix);
 
+		return newDatabase(databaseName, connectionUrl, username, password, poolSize, tablesToCreate, schemaMode);
+	}
+
+	/**
+	 * Instantiates a new {@link Database} with the given connection settings, regardless of the <i>connection.properties</i> file.
+	 * No tables are created. Useful for tests and benchmarks that prepare their own tables, e.g. in an in-memory HSQLDB.
+	 * @param databaseName the name of the database, one of {@link #getAvailableDatabases()}.
+	 * @param connectionUrl the JDBC URL to use for accessing the {@link java.sql.DriverManager}
+	 * @param username the username to connect to the database
+	 * @param password the password of the given username, if required
+	 * @param poolSize the number of connections to keep open to the database.
+	 * @return an instance of {@link Database}, properly initialized with the given credentials.
+	 */
+	public Database newDatabase(String databaseName, String connectionUrl, String username, String password, int poolSize) {
+		return newDatabase(databaseName, connectionUrl, username, password, poolSize, null, Database.SchemaMode.CREATE_IF_MISSING);
+	}
+
+	private Database newDatabase(String databaseName, String connectionUrl, String username, String password, int poolSize, String tablesToCreate, Database.SchemaMode schemaMode) {
 		Class<? extends Database> database = databases.get(databaseName.toLowerCase());
 		if (database == null) {
 			throw new IllegalArgumentException("Unknown database name: " + databaseName + ". Available databases: " + databases.keySet());
@@ -108,10 +211,43 @@ public class DatabaseFactory {
 
 		try {
 			Database instance = newInstance(database);
-			instance.initialize(tablesToCreate, connectionUrl, username, password);
+			instance.initialize(tablesToCreate, schemaMode, connectionUrl, username, password, poolSize);
 			return instance;
 		} catch (Exception ex) {
-			throw new IllegalStateException("Unexpected error initializing database " + databaseName + ". Please review your connection.properties file", ex);
+			throw new IllegalStateException("Unexpected error initializing database " + databaseName + ". Please review your connection settings", ex);
+		}
+	}
+
+	/**
+	 * Reads the number of connections to keep in the pool of a database. If not provided in the <i>connection.properties</i> file,
+	 * the pool will have one connection per available processor, plus one.
+	 * @param prefix the prefix of the properties to be read from the <i>connection.properties</i> file.
+	 * @return the size of the connection pool.
+	 */
+	private int getPoolSize(String prefix) {
+		String poolSize = getProperties().getProperty(prefix + ".database.pool.size");
+		if (poolSize == null || poolSize.trim().isEmpty()) {
+			return Runtime.getRuntime().availableProcessors() + 1;
+		}
+		try {
+			return Integer.parseInt(poolSize.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid pool size in property " + prefix + ".database.pool.size: " + poolSize, e);
+		}
+	}
+
+	/**
+	 * Reads how the tables of a database are prepared if they already exist: {@code create-if-missing} (the default), {@code truncate}
+	 * or {@code drop-and-recreate}.
+	 * @param prefix the prefix of the properties to be read from the <i>connection.properties</i> file.
+	 * @return the schema mode of the database.
+	 */
+	private Database.SchemaMode getSchemaMode(String prefix) {
+		String schemaMode = getProperties().getProperty(prefix + ".database.schema", "create-if-missing");
+		try {
+			return Database.SchemaMode.valueOf(schemaMode.trim().toUpperCase().replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid schema mode in property " + prefix + ".database.schema: " + schemaMode + ". Use create-if-missing, truncate or drop-and-recreate", e);
 		}
 	}
 
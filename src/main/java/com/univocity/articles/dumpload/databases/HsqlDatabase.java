@@ -5,6 +5,9 @@
  ******************************************************************************/
 package com.univocity.articles.dumpload.databases;
 
+import java.sql.*;
+import java.util.*;
+
 import org.springframework.jdbc.core.*;
 
 import com.univocity.api.entity.jdbc.*;
@@ -27,6 +30,33 @@ class HsqlDatabase extends Database {
 		return "org.hsqldb.jdbcDriver";
 	}
 
+	@Override
+	Properties getConnectionProperties(String username, String password) {
+		Properties properties = super.getConnectionProperties(username, password);
+		/*
+		 * By default HSQLDB locks entire tables during a transaction. With multiple loader threads writing into the same tables
+		 * concurrently, this serializes the writers and leads to deadlocks. MVCC uses row-level locks instead.
+		 */
+		properties.setProperty("hsqldb.tx", "mvcc");
+		return properties;
+	}
+
+	@Override
+	List<String> getBulkLoadServerStatements(Connection connection, List<String> restoreStatements) throws SQLException {
+		//file databases write every change to a log. The files are consistent once the load is finished and the log enabled again.
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT PROPERTY_VALUE FROM INFORMATION_SCHEMA.SYSTEM_PROPERTIES WHERE PROPERTY_NAME = 'hsqldb.log_data'");
+			if (rs.next() && "true".equalsIgnoreCase(rs.getString(1))) {
+				restoreStatements.add("SET FILES LOG TRUE");
+				return Collections.singletonList("SET FILES LOG FALSE");
+			}
+			return Collections.emptyList();
+		} finally {
+			statement.close();
+		}
+	}
+
 	@Override
 	public void applyDatabaseSpecificConfiguration(JdbcDataStoreConfiguration jdbcDataStoreConfig) {
 		/*
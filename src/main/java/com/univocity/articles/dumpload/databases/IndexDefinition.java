@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.databases;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * A key, constraint or index that belongs to a table, but is only created after the table has been loaded.
+ *
+ * Definitions are declared one per line, in the format:
+ *
+ * <pre>
+ * table PRIMARY KEY name (column, ...)
+ * table UNIQUE name (column, ...)
+ * table INDEX name (column, ...)
+ * table FOREIGN KEY name (column, ...) REFERENCES other_table (column, ...)
+ * </pre>
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class IndexDefinition {
+
+	/**
+	 * The kinds of keys and indexes that can be created after a table is loaded.
+	 */
+	public enum Type {
+		PRIMARY_KEY, UNIQUE, INDEX, FOREIGN_KEY
+	}
+
+	private static final Pattern DEFINITION = Pattern.compile("(\\w+)\\s+(PRIMARY KEY|UNIQUE|INDEX|FOREIGN KEY)\\s+(\\w+)\\s*\\(([^)]+)\\)(?:\\s+REFERENCES\\s+(\\w+)\\s*\\(([^)]+)\\))?", Pattern.CASE_INSENSITIVE);
+
+	private final String table;
+	private final Type type;
+	private final String name;
+	private final List<String> columns;
+	private final String referencedTable;
+	private final List<String> referencedColumns;
+
+	/**
+	 * Creates the definition of a key or index
+	 * @param table the table that owns the key or index
+	 * @param type the kind of key or index
+	 * @param name the name of the key or index
+	 * @param columns the columns of the key or index
+	 * @param referencedTable the table referenced by a foreign key. {@code null} for other types.
+	 * @param referencedColumns the columns referenced by a foreign key. {@code null} for other types.
+	 */
+	public IndexDefinition(String table, Type type, String name, List<String> columns, String referencedTable, List<String> referencedColumns) {
+		if (type == Type.FOREIGN_KEY && (referencedTable == null || referencedColumns == null)) {
+			throw new IllegalArgumentException("Foreign key " + name + " of table " + table + " must define the referenced table and columns");
+		}
+		this.table = table;
+		this.type = type;
+		this.name = name;
+		this.columns = Collections.unmodifiableList(new ArrayList<String>(columns));
+		this.referencedTable = referencedTable;
+		this.referencedColumns = referencedColumns == null ? null : Collections.unmodifiableList(new ArrayList<String>(referencedColumns));
+	}
+
+	/**
+	 * Parses the definition of a key or index
+	 * @param definition a definition in the format described in the documentation of this class.
+	 * @return the parsed definition
+	 */
+	public static IndexDefinition parse(String definition) {
+		Matcher matcher = DEFINITION.matcher(definition.trim());
+		if (!matcher.matches()) {
+			throw new IllegalArgumentException("Invalid index definition: " + definition);
+		}
+		Type type = Type.valueOf(matcher.group(2).toUpperCase().replace(' ', '_'));
+		return new IndexDefinition(matcher.group(1), type, matcher.group(3), split(matcher.group(4)), matcher.group(5), matcher.group(6) == null ? null : split(matcher.group(6)));
+	}
+
+	private static List<String> split(String columns) {
+		List<String> out = new ArrayList<String>();
+		for (String column : columns.split(",")) {
+			out.add(column.trim());
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the table that owns the key or index
+	 * @return the table name
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * Returns the kind of key or index
+	 * @return the type of this definition
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the name of the key or index
+	 * @return the name of the key or index
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the columns of the key or index
+	 * @return the column names
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Returns the columns of the key or index, separated by commas
+	 * @return the column list, ready to be used in a SQL statement
+	 */
+	public String getColumnList() {
+		return join(columns);
+	}
+
+	/**
+	 * Returns the table referenced by a foreign key
+	 * @return the referenced table, or {@code null} if this is not a foreign key
+	 */
+	public String getReferencedTable() {
+		return referencedTable;
+	}
+
+	/**
+	 * Returns the columns referenced by a foreign key, separated by commas
+	 * @return the referenced column list, or {@code null} if this is not a foreign key
+	 */
+	public String getReferencedColumnList() {
+		return referencedColumns == null ? null : join(referencedColumns);
+	}
+
+	private static String join(List<String> values) {
+		StringBuilder out = new StringBuilder();
+		for (String value : values) {
+			if (out.length() > 0) {
+				out.append(", ");
+			}
+			out.append(value);
+		}
+		return out.toString();
+	}
+
+	@Override
+	public String toString() {
+		String out = table + " " + type.toString().replace('_', ' ') + " " + name + " (" + getColumnList() + ")";
+		if (type == Type.FOREIGN_KEY) {
+			out += " REFERENCES " + referencedTable + " (" + getReferencedColumnList() + ")";
+		}
+		return out;
+	}
+}
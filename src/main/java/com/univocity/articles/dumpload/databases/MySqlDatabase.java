@@ -5,7 +5,12 @@
  ******************************************************************************/
 package com.univocity.articles.dumpload.databases;
 
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
 import com.univocity.api.entity.jdbc.*;
+import com.univocity.articles.dumpload.load.*;
 
 /**
  * A {@link Database} implementation for MySQL (also works with MariaDB).
@@ -15,6 +20,8 @@ import com.univocity.api.entity.jdbc.*;
  */
 class MySqlDatabase extends Database {
 
+	private final Set<String> bulkDisabledTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
 	@Override
 	public String getDatabaseName() {
 		return "MySql";
@@ -25,6 +32,158 @@ class MySqlDatabase extends Database {
 		return "com.mysql.jdbc.Driver";
 	}
 
+	@Override
+	public RowWriter newBulkWriter(Connection connection, String table, LoadSettings settings) {
+		if (!isTransactional(connection, table)) {
+			/*
+			 * If LOAD DATA fails, the rows of the chunk are loaded again with INSERT statements from the last commit. Tables without
+			 * transactions keep the rows loaded since then, including the ones the failed LOAD DATA inserted, which would be loaded twice.
+			 */
+			if (bulkDisabledTables.add(table)) {
+				System.out.println("Table " + table + " of " + getDatabaseName() + " doesn't support transactions. Loading it with batches of INSERT statements instead of LOAD DATA.");
+			}
+			return null;
+		}
+		List<String> columns = settings.getProjectedColumns().get(table);
+		RowBinder binder = getRowBinder(connection, table);
+		if (columns != null) {
+			binder = binder.project(columns);
+		}
+		boolean[] binaryColumns = null;
+		for (int i = 0; i < binder.getColumnCount(); i++) {
+			if (binder.isBinaryColumn(i)) {
+				if (binaryColumns == null) {
+					binaryColumns = new boolean[binder.getColumnCount()];
+				}
+				binaryColumns[i] = true;
+			}
+		}
+		if (binaryColumns != null) {
+			//binary values are assigned by name, so every column must be listed.
+			columns = Arrays.asList(binder.getColumnNames());
+		}
+		try {
+			return new MySqlLoadDataWriter(connection, table, settings.getCharset(), settings.getWriterBatchSize(), columns, binaryColumns);
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error initializing LOAD DATA LOCAL INFILE into table " + table, ex);
+		}
+	}
+
+	@Override
+	boolean isTransactionalTable(Connection connection, String table) throws SQLException {
+		//each table has a storage engine of its own. MyISAM tables, as created by the scripts of the dump file, don't support transactions.
+		PreparedStatement statement = connection.prepareStatement("SELECT e.TRANSACTIONS FROM information_schema.TABLES t JOIN information_schema.ENGINES e ON e.ENGINE = t.ENGINE "
+				+ "WHERE t.TABLE_SCHEMA = DATABASE() AND LOWER(t.TABLE_NAME) = LOWER(?)");
+		try {
+			statement.setString(1, table);
+			ResultSet rs = statement.executeQuery();
+			if (rs.next()) {
+				return "YES".equalsIgnoreCase(rs.getString(1));
+			}
+		} finally {
+			statement.close();
+		}
+		return super.isTransactionalTable(connection, table);
+	}
+
+	@Override
+	List<String> getTruncateTableStatements(List<String> tables) {
+		//foreign keys built by a previous load would prevent referenced tables from being truncated.
+		List<String> statements = new ArrayList<String>();
+		statements.add("SET foreign_key_checks=0");
+		statements.addAll(super.getTruncateTableStatements(tables));
+		statements.add("SET foreign_key_checks=1");
+		return statements;
+	}
+
+	@Override
+	List<String> getDropTableStatements(List<String> tables) {
+		return Arrays.asList("SET foreign_key_checks=0", "DROP TABLE " + join(tables), "SET foreign_key_checks=1");
+	}
+
+	@Override
+	List<String> getBulkLoadSessionStatements() {
+		/*
+		 * The dump file comes from a consistent database, so uniqueness and foreign keys don't need to be checked row by row.
+		 * Rows loaded are kept out of the binary log: replicas should be loaded from the same dump file instead. Each setting
+		 * is applied on its own, as sql_log_bin requires privileges the other settings don't.
+		 */
+		return Arrays.asList("SET unique_checks=0", "SET foreign_key_checks=0", "SET sql_log_bin=0");
+	}
+
+	@Override
+	List<String> getRestoreSessionStatements() {
+		return Arrays.asList("SET unique_checks=1", "SET foreign_key_checks=1", "SET sql_log_bin=1");
+	}
+
+	@Override
+	List<String> getBulkLoadServerStatements(Connection connection, List<String> restoreStatements) throws SQLException {
+		/*
+		 * InnoDB flushes its log to disk on every commit by default. Writing it once per second instead makes commits much cheaper,
+		 * and a crash during the load loses at most the last second of rows, which the resumed load writes again.
+		 */
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT @@GLOBAL.innodb_flush_log_at_trx_commit");
+			if (rs.next() && rs.getInt(1) != 0) {
+				restoreStatements.add("SET GLOBAL innodb_flush_log_at_trx_commit=" + rs.getInt(1));
+				return Collections.singletonList("SET GLOBAL innodb_flush_log_at_trx_commit=0");
+			}
+			return Collections.emptyList();
+		} finally {
+			statement.close();
+		}
+	}
+
+	@Override
+	public List<String> getCreateIndexStatements(Connection connection, String table, List<IndexDefinition> indexes) throws SQLException {
+		/*
+		 * MyISAM copies the entire table on every ALTER TABLE, so all keys of a table are added with a single statement.
+		 * InnoDB can build secondary indexes in place, sorting the rows instead of copying the table, while still allowing reads and writes.
+		 * Adding a primary key rebuilds the table anyway, and foreign keys can only be added in place without validation.
+		 */
+		StringBuilder sql = new StringBuilder("ALTER TABLE `").append(table).append("` ");
+		boolean inPlace = isInnoDb(connection, table);
+		for (int i = 0; i < indexes.size(); i++) {
+			IndexDefinition index = indexes.get(i);
+			if (i > 0) {
+				sql.append(", ");
+			}
+			switch (index.getType()) {
+				case PRIMARY_KEY:
+					sql.append("ADD PRIMARY KEY (").append(index.getColumnList()).append(')');
+					inPlace = false;
+					break;
+				case UNIQUE:
+					sql.append("ADD UNIQUE KEY `").append(index.getName()).append("` (").append(index.getColumnList()).append(')');
+					break;
+				case INDEX:
+					sql.append("ADD KEY `").append(index.getName()).append("` (").append(index.getColumnList()).append(')');
+					break;
+				case FOREIGN_KEY:
+					sql.append("ADD CONSTRAINT `").append(index.getName()).append("` FOREIGN KEY (").append(index.getColumnList()).append(") REFERENCES `")
+							.append(index.getReferencedTable()).append("` (").append(index.getReferencedColumnList()).append(')');
+					inPlace = false;
+					break;
+			}
+		}
+		if (inPlace) {
+			sql.append(", ALGORITHM=INPLACE, LOCK=NONE");
+		}
+		return Collections.singletonList(sql.toString());
+	}
+
+	private static boolean isInnoDb(Connection connection, String table) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("SELECT ENGINE FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?");
+		try {
+			statement.setString(1, table);
+			ResultSet rs = statement.executeQuery();
+			return rs.next() && "InnoDB".equalsIgnoreCase(rs.getString(1));
+		} finally {
+			statement.close();
+		}
+	}
+
 	@Override
 	public void applyDatabaseSpecificConfiguration(JdbcDataStoreConfiguration jdbcDataStoreConfig) {
 		/*
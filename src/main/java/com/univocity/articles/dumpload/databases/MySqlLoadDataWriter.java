@@ -0,0 +1,235 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.databases;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.sql.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.load.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A {@link RowWriter} that sends rows to MySQL with {@code LOAD DATA LOCAL INFILE}. Instead of reading a file, the
+ * driver reads the rows from an {@link InputStream} provided through Connector/J's
+ * {@link com.mysql.jdbc.Statement#setLocalInfileInputStream(InputStream)}, so no temporary files are created.
+ *
+ * Rows are accumulated in memory, in the default format of {@code LOAD DATA} (tab-separated values with backslash escapes
+ * and {@code \N} for {@code NULL}), and sent to the database once the batch size is reached or when {@link #flush()} is called.
+ * Values of binary columns are sent in hexadecimal into user variables and decoded with {@code UNHEX}, so their bytes are stored as
+ * they are instead of being converted from the character set of the dump file, which would cut them at the first invalid sequence.
+ *
+ * The number of rows MySQL reports as loaded is verified against the number of rows sent, and a batch that produces warnings fails:
+ * {@code LOAD DATA LOCAL} implies {@code IGNORE}, so values truncated or converted are only reported as warnings instead of errors.
+ *
+ * Each batch is loaded with the settings used by MySQL's native dump load: unique and foreign key checks are disabled, and
+ * {@code NO_AUTO_VALUE_ON_ZERO} is added to the SQL mode of the session. They are applied with the first batch sent after
+ * {@link #finish()}, and restored by {@link #finish()}, which is called before the transaction is committed and before the
+ * connection is used to write the rows of another table, or by {@link #close()}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class MySqlLoadDataWriter implements RowWriter {
+
+	private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+	private final com.mysql.jdbc.Statement statement;
+	private final String table;
+	private final String sql;
+	private final int batchSize;
+	private final boolean[] binaryColumns;
+	private final String loadSettings;
+	private final String restoreSettings;
+	private boolean settingsApplied;
+
+	private byte[] buffer = new byte[1024 * 1024];
+	private int length;
+	private int pending;
+
+	/**
+	 * Creates a writer for the given table
+	 * @param connection a connection to MySQL.
+	 * @param table the name of the destination table
+	 * @param charset the encoding of the dump file.
+	 * @param batchSize the number of rows to accumulate before sending them to the database.
+	 * @param columns the columns to load, in the order of the values of each row, or {@code null} if rows have a value for every column.
+	 * @param binaryColumns flags the columns that hold binary strings, in the order of the values of each row, or {@code null} if there are none.
+	 * The columns must be given if any column is binary.
+	 * @throws SQLException if the given connection is not a connection created by Connector/J.
+	 */
+	MySqlLoadDataWriter(Connection connection, String table, Charset charset, int batchSize, List<String> columns, boolean[] binaryColumns) throws SQLException {
+		this.statement = connection.createStatement().unwrap(com.mysql.jdbc.Statement.class);
+		this.table = table;
+		this.batchSize = batchSize;
+		this.binaryColumns = binaryColumns;
+		ResultSet rs = statement.executeQuery("SELECT @@SESSION.sql_mode, @@SESSION.unique_checks, @@SESSION.foreign_key_checks");
+		try {
+			rs.next();
+			String sqlMode = rs.getString(1) == null ? "" : rs.getString(1);
+			this.loadSettings = "SET SESSION unique_checks=0, SESSION foreign_key_checks=0, SESSION sql_mode='" + (sqlMode.isEmpty() ? "" : sqlMode + ",") + "NO_AUTO_VALUE_ON_ZERO'";
+			this.restoreSettings = "SET SESSION unique_checks=" + rs.getInt(2) + ", SESSION foreign_key_checks=" + rs.getInt(3) + ", SESSION sql_mode='" + sqlMode + "'";
+		} finally {
+			rs.close();
+		}
+		this.sql = "LOAD DATA LOCAL INFILE 'dump' INTO TABLE `" + table + "` CHARACTER SET " + getMySqlCharset(charset) + getColumnList(columns, binaryColumns);
+	}
+
+	private static String getColumnList(List<String> columns, boolean[] binaryColumns) {
+		if (columns == null) {
+			return "";
+		}
+		if (binaryColumns == null) {
+			return " (" + Database.join(columns) + ")";
+		}
+		List<String> targets = new ArrayList<String>();
+		List<String> assignments = new ArrayList<String>();
+		for (int i = 0; i < columns.size(); i++) {
+			if (binaryColumns[i]) {
+				targets.add("@v" + i);
+				assignments.add(columns.get(i) + " = UNHEX(@v" + i + ")");
+			} else {
+				targets.add(columns.get(i));
+			}
+		}
+		return " (" + Database.join(targets) + ") SET " + Database.join(assignments);
+	}
+
+	private static String getMySqlCharset(Charset charset) {
+		String name = charset.name().toUpperCase(Locale.ENGLISH);
+		if (name.equals("UTF-8")) {
+			//utf8 is limited to 3 bytes per character in MySQL, and would truncate characters such as emoji.
+			return "utf8mb4";
+		} else if (name.equals("ISO-8859-1") || name.equals("WINDOWS-1252")) {
+			return "latin1";
+		} else if (name.equals("US-ASCII")) {
+			return "ascii";
+		}
+		//bytes are loaded as they are, without conversion.
+		return "binary";
+	}
+
+	@Override
+	public void write(DumpRow row) throws SQLException {
+		byte[] data = row.getBuffer();
+		int fieldCount = row.getFieldCount();
+		for (int i = 0; i < fieldCount; i++) {
+			if (i > 0) {
+				append((byte) '\t');
+			}
+			if (row.isNull(i)) {
+				append((byte) '\\');
+				append((byte) 'N');
+			} else if (binaryColumns != null && i < binaryColumns.length && binaryColumns[i]) {
+				appendHex(data, row.getStart(i), row.getLength(i));
+			} else {
+				appendValue(data, row.getStart(i), row.getLength(i));
+			}
+		}
+		append((byte) '\n');
+
+		if (++pending >= batchSize) {
+			flush();
+		}
+	}
+
+	private void appendValue(byte[] data, int start, int length) {
+		int end = start + length;
+		for (int i = start; i < end; i++) {
+			byte b = data[i];
+			switch (b) {
+				case '\\':
+					append((byte) '\\');
+					append((byte) '\\');
+					break;
+				case '\t':
+					append((byte) '\\');
+					append((byte) 't');
+					break;
+				case '\n':
+					append((byte) '\\');
+					append((byte) 'n');
+					break;
+				case 0:
+					append((byte) '\\');
+					append((byte) '0');
+					break;
+				default:
+					append(b);
+			}
+		}
+	}
+
+	private void appendHex(byte[] data, int start, int length) {
+		int end = start + length;
+		for (int i = start; i < end; i++) {
+			append(HEX[(data[i] >> 4) & 0xF]);
+			append(HEX[data[i] & 0xF]);
+		}
+	}
+
+	private void append(byte b) {
+		if (length == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		buffer[length++] = b;
+	}
+
+	@Override
+	public void flush() throws SQLException {
+		if (pending == 0) {
+			return;
+		}
+		int expected = pending;
+		if (!settingsApplied) {
+			statement.execute(loadSettings);
+			settingsApplied = true;
+		}
+		statement.setLocalInfileInputStream(new ByteArrayInputStream(buffer, 0, length));
+		try {
+			statement.clearWarnings();
+			int count = statement.executeUpdate(sql);
+			SQLWarning warning = statement.getWarnings();
+			if (count != expected || warning != null) {
+				throw new SQLException("LOAD DATA into table " + table + " loaded " + count + " rows. Expected " + expected + (warning == null ? "" : ". First warning: " + warning.getMessage()));
+			}
+		} finally {
+			statement.setLocalInfileInputStream(null);
+			length = 0;
+			pending = 0;
+		}
+	}
+
+	@Override
+	public void finish() throws SQLException {
+		flush();
+		restoreSettings();
+	}
+
+	private void restoreSettings() throws SQLException {
+		if (settingsApplied) {
+			settingsApplied = false;
+			statement.execute(restoreSettings);
+		}
+	}
+
+	@Override
+	public void close() {
+		length = 0;
+		pending = 0;
+		try {
+			restoreSettings();
+		} catch (SQLException e) {
+			//ignore. The connection is being discarded or rolled back after an error.
+		}
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			//ignore
+		}
+	}
+}
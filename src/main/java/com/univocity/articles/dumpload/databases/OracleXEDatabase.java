@@ -5,6 +5,9 @@
  ******************************************************************************/
 package com.univocity.articles.dumpload.databases;
 
+import java.sql.*;
+import java.util.*;
+
 import com.univocity.api.entity.jdbc.*;
 
 /**
@@ -25,6 +28,74 @@ class OracleXEDatabase extends Database {
 		return "oracle.jdbc.driver.OracleDriver";
 	}
 
+	@Override
+	public List<String> getCreateIndexStatements(Connection connection, String table, List<IndexDefinition> indexes) throws SQLException {
+		/*
+		 * Indexes are built with parallel execution servers and without generating redo. Once built, they are switched back
+		 * to logging and serial access, so queries and later changes are not affected. Primary keys use the index built this way.
+		 */
+		List<String> statements = new ArrayList<String>();
+		for (IndexDefinition index : indexes) {
+			switch (index.getType()) {
+				case PRIMARY_KEY:
+				case UNIQUE:
+					statements.add("CREATE UNIQUE INDEX " + index.getName() + " ON " + table + " (" + index.getColumnList() + ") NOLOGGING PARALLEL");
+					break;
+				case INDEX:
+					statements.add("CREATE INDEX " + index.getName() + " ON " + table + " (" + index.getColumnList() + ") NOLOGGING PARALLEL");
+					break;
+				case FOREIGN_KEY:
+					statements.add(getCreateForeignKeyStatement(index));
+					continue;
+			}
+			if (index.getType() == IndexDefinition.Type.PRIMARY_KEY) {
+				statements.add("ALTER TABLE " + table + " ADD CONSTRAINT " + index.getName() + " PRIMARY KEY (" + index.getColumnList() + ") USING INDEX " + index.getName());
+			}
+			statements.add("ALTER INDEX " + index.getName() + " LOGGING NOPARALLEL");
+		}
+		return statements;
+	}
+
+	@Override
+	String getSchema(Connection connection) throws SQLException {
+		//each user has a schema of its own, where its tables are created.
+		return connection.getMetaData().getUserName();
+	}
+
+	@Override
+	List<String> getDropTableStatements(List<String> tables) {
+		List<String> statements = new ArrayList<String>();
+		for (String table : tables) {
+			statements.add("DROP TABLE " + table + " CASCADE CONSTRAINTS PURGE");
+		}
+		return statements;
+	}
+
+	@Override
+	List<String> getBulkLoadSessionStatements() {
+		/*
+		 * Commits return without waiting for the redo log to be written. The APPEND_VALUES hint is not used: direct-path inserts
+		 * lock the whole table and can't be followed by another insert in the same transaction, which is how batches are written.
+		 */
+		return Arrays.asList("ALTER SESSION SET COMMIT_LOGGING = BATCH", "ALTER SESSION SET COMMIT_WAIT = NOWAIT");
+	}
+
+	@Override
+	List<String> getRestoreSessionStatements() {
+		return Arrays.asList("ALTER SESSION SET COMMIT_LOGGING = IMMEDIATE", "ALTER SESSION SET COMMIT_WAIT = WAIT");
+	}
+
+	@Override
+	List<String> getBulkLoadTableStatements(String table) {
+		//only direct-path writes into the table skip the redo log, but the rows loaded don't need to be recoverable from it either.
+		return Collections.singletonList("ALTER TABLE " + table + " NOLOGGING");
+	}
+
+	@Override
+	List<String> getRestoreTableStatements(String table) {
+		return Collections.singletonList("ALTER TABLE " + table + " LOGGING");
+	}
+
 	@Override
 	public void applyDatabaseSpecificConfiguration(JdbcDataStoreConfiguration jdbcDataStoreConfig) {
 		/*
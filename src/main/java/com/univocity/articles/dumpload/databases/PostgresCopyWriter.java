@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.databases;
+
+import java.nio.charset.*;
+import java.sql.*;
+import java.util.*;
+
+import org.postgresql.*;
+import org.postgresql.copy.*;
+
+import com.univocity.articles.dumpload.load.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A {@link RowWriter} that streams rows into Postgres with {@code COPY table FROM STDIN}, using the driver's {@link CopyManager}.
+ *
+ * Values are written in the text format of {@code COPY}, which is much cheaper for the server to process than
+ * parameters of a prepared statement. MySQL-specific values are adjusted on the way:
+ *
+ * <ul>
+ * <li>{@code NULL}s are written as {@code \N}</li>
+ * <li>backslashes, tabs and line breaks are escaped</li>
+ * <li>binary strings are written in the hexadecimal format of {@code bytea}</li>
+ * <li>"zero" dates ({@code 0000-00-00} and {@code 0000-00-00 00:00:00}) are written as {@code NULL}: Postgres rejects them</li>
+ * <li>{@code \0} characters are discarded: Postgres doesn't accept them in text values</li>
+ * </ul>
+ *
+ * A {@code COPY} is started when the first row is written, and completed when {@link #flush()} is called.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class PostgresCopyWriter implements RowWriter {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] HEX = "0123456789abcdef".getBytes();
+	private static final byte[] ZERO_DATE = "0000-00-00".getBytes();
+	private static final byte[] ZERO_TIME = " 00:00:00".getBytes();
+
+	private final CopyManager copyManager;
+	private final String sql;
+	private final String table;
+	private final Charset charset;
+	private final boolean utf8;
+
+	private final byte[] buffer = new byte[64 * 1024];
+	private int length;
+
+	private CopyIn copy;
+	private long pending;
+
+	/**
+	 * Creates a writer for the given table
+	 * @param connection a connection to Postgres.
+	 * @param table the name of the destination table
+	 * @param charset the encoding of the dump file. Values are converted to UTF-8 if required.
+	 * @param columns the columns to copy, in the order of the values of each row, or {@code null} if rows have a value for every column.
+	 * @throws SQLException if the given connection is not a connection to Postgres.
+	 */
+	PostgresCopyWriter(Connection connection, String table, Charset charset, List<String> columns) throws SQLException {
+		this.copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+		this.table = table;
+		this.sql = "COPY " + table + (columns == null ? "" : " (" + Database.join(columns) + ")") + " FROM STDIN";
+		this.charset = charset;
+		this.utf8 = UTF8.equals(charset);
+	}
+
+	@Override
+	public void write(DumpRow row) throws SQLException {
+		if (copy == null) {
+			copy = copyManager.copyIn(sql);
+		}
+
+		byte[] data = row.getBuffer();
+		int fieldCount = row.getFieldCount();
+		for (int i = 0; i < fieldCount; i++) {
+			if (i > 0) {
+				append((byte) '\t');
+			}
+			int start = row.getStart(i);
+			int len = row.getLength(i);
+			if (row.isNull(i) || (row.isQuoted(i) && isZeroDate(data, start, len))) {
+				append((byte) '\\');
+				append((byte) 'N');
+			} else if (row.isBinary(i)) {
+				appendHex(data, start, len);
+			} else if (utf8) {
+				appendText(data, start, len);
+			} else {
+				byte[] converted = new String(data, start, len, charset).getBytes(UTF8);
+				appendText(converted, 0, converted.length);
+			}
+		}
+		append((byte) '\n');
+		pending++;
+	}
+
+	private static boolean isZeroDate(byte[] data, int start, int length) {
+		if (length != ZERO_DATE.length && length != ZERO_DATE.length + ZERO_TIME.length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			byte expected = i < ZERO_DATE.length ? ZERO_DATE[i] : ZERO_TIME[i - ZERO_DATE.length];
+			if (data[start + i] != expected) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void appendText(byte[] data, int start, int length) throws SQLException {
+		int end = start + length;
+		for (int i = start; i < end; i++) {
+			byte b = data[i];
+			switch (b) {
+				case '\\':
+					append((byte) '\\');
+					append((byte) '\\');
+					break;
+				case '\n':
+					append((byte) '\\');
+					append((byte) 'n');
+					break;
+				case '\r':
+					append((byte) '\\');
+					append((byte) 'r');
+					break;
+				case '\t':
+					append((byte) '\\');
+					append((byte) 't');
+					break;
+				case 0:
+					break;
+				default:
+					append(b);
+			}
+		}
+	}
+
+	private void appendHex(byte[] data, int start, int length) throws SQLException {
+		//bytea's hex format is \x0A1B..., and the backslash itself must be escaped for COPY.
+		append((byte) '\\');
+		append((byte) '\\');
+		append((byte) 'x');
+		int end = start + length;
+		for (int i = start; i < end; i++) {
+			append(HEX[(data[i] >> 4) & 0xF]);
+			append(HEX[data[i] & 0xF]);
+		}
+	}
+
+	private void append(byte b) throws SQLException {
+		if (length == buffer.length) {
+			copy.writeToCopy(buffer, 0, length);
+			length = 0;
+		}
+		buffer[length++] = b;
+	}
+
+	@Override
+	public void flush() throws SQLException {
+		if (copy == null) {
+			return;
+		}
+		try {
+			if (length > 0) {
+				copy.writeToCopy(buffer, 0, length);
+				length = 0;
+			}
+			long copied = copy.endCopy();
+			if (copied != pending) {
+				throw new SQLException("COPY into table " + table + " loaded " + copied + " rows. Expected " + pending);
+			}
+		} finally {
+			copy = null;
+			pending = 0;
+		}
+	}
+
+	@Override
+	public void finish() throws SQLException {
+		flush();
+	}
+
+	@Override
+	public void close() {
+		length = 0;
+		pending = 0;
+		if (copy != null) {
+			try {
+				if (copy.isActive()) {
+					copy.cancelCopy();
+				}
+			} catch (SQLException e) {
+				//ignore
+			}
+			copy = null;
+		}
+	}
+}
@@ -5,7 +5,11 @@
  ******************************************************************************/
 package com.univocity.articles.dumpload.databases;
 
+import java.sql.*;
+import java.util.*;
+
 import com.univocity.api.entity.jdbc.*;
+import com.univocity.articles.dumpload.load.*;
 
 /**
  * A {@link Database} implementation for Postgres
@@ -25,6 +29,99 @@ class PostgresDatabase extends Database {
 		return "org.postgresql.Driver";
 	}
 
+	@Override
+	Properties getConnectionProperties(String username, String password) {
+		Properties properties = super.getConnectionProperties(username, password);
+		/*
+		 * The dump loader binds integers with their own types, but other values (decimals, dates, etc) are bound as Strings.
+		 * Postgres won't convert a varchar parameter to a column of another type, so we tell the driver to send String
+		 * parameters untyped and let the server infer their types.
+		 */
+		properties.setProperty("stringtype", "unspecified");
+		return properties;
+	}
+
+	@Override
+	public RowWriter newBulkWriter(Connection connection, String table, LoadSettings settings) {
+		/*
+		 * Batches of prepared statements are the slowest way to get data into Postgres. COPY FROM STDIN skips
+		 * the parameter binding and statement execution overhead, and streams rows in plain text.
+		 */
+		try {
+			return new PostgresCopyWriter(connection, table, settings.getCharset(), settings.getProjectedColumns().get(table));
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error initializing COPY into table " + table, ex);
+		}
+	}
+
+	@Override
+	String getSchema(Connection connection) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT current_schema()");
+			return rs.next() ? rs.getString(1) : null;
+		} finally {
+			statement.close();
+		}
+	}
+
+	@Override
+	List<String> getTruncateTableStatements(List<String> tables) {
+		//a single statement, so foreign keys between the tables don't prevent them from being truncated.
+		return Collections.singletonList("TRUNCATE TABLE " + join(tables));
+	}
+
+	@Override
+	List<String> getDropTableStatements(List<String> tables) {
+		return Collections.singletonList("DROP TABLE " + join(tables));
+	}
+
+	@Override
+	List<String> getBulkLoadSessionStatements() {
+		/*
+		 * Commits return without waiting for the WAL to be flushed. A crash can only lose the last transactions, never corrupt
+		 * the database, and the progress recorded with them is lost as well, so a resumed load writes them again.
+		 */
+		return Collections.singletonList("SET synchronous_commit TO off");
+	}
+
+	@Override
+	List<String> getRestoreSessionStatements() {
+		return Collections.singletonList("RESET synchronous_commit");
+	}
+
+	@Override
+	List<String> getBulkLoadTableStatements(String table) {
+		/*
+		 * Unlogged tables skip the WAL entirely. They are emptied after a crash, so they are switched back to logged once
+		 * the load is finished, which writes the table into the WAL once, in bulk. Requires Postgres 9.5.
+		 *
+		 * The progress of a load that can be resumed is recorded in logged tables, and would survive a crash that empties
+		 * the tables it refers to, so the rows loaded before the crash would never be loaded again. Tables are kept logged then.
+		 */
+		if (isBulkLoadResumable()) {
+			return Collections.emptyList();
+		}
+		return Collections.singletonList("ALTER TABLE " + table + " SET UNLOGGED");
+	}
+
+	@Override
+	boolean isTablePreparationNeeded(Connection connection, String table) throws SQLException {
+		//switching the logging of a table rewrites all its rows: only worth it if the table is empty.
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT 1 FROM " + table + " LIMIT 1");
+			return !rs.next();
+		} finally {
+			statement.close();
+		}
+	}
+
+	@Override
+	List<String> getRestoreTableStatements(String table) {
+		return Collections.singletonList("ALTER TABLE " + table + " SET LOGGED");
+	}
+
 	@Override
 	public void applyDatabaseSpecificConfiguration(JdbcDataStoreConfiguration jdbcDataStoreConfig) {
 		/*
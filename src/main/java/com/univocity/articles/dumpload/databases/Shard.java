@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.databases;
+
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * One of the databases of a sharded destination, configured with the {@code shards} property of the <i>connection.properties</i> file.
+ *
+ * The rows of a table with a shard key (e.g. {@code shard.key.commits=project_id}) are spread across the shards by a hash of the value of
+ * their key column, so each row is loaded into a single shard. The rows of tables without a shard key, usually small tables used in joins,
+ * are loaded into every shard.
+ *
+ * The shard of a row is given by {@link #getShard(long, int)} for integer values, and by {@link #getShard(String, Charset, int)} for any
+ * other value, hashed over its bytes in the encoding of the dump file. Applications querying the shards use the same methods to find the
+ * shard that holds the rows of a given key. {@code NULL} keys go to the first shard.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public final class Shard {
+
+	private final int index;
+	private final int count;
+	private final Map<String, String> keyColumns;
+
+	Shard(int index, int count, Map<String, String> keyColumns) {
+		this.index = index;
+		this.count = count;
+		this.keyColumns = Collections.unmodifiableMap(new TreeMap<String, String>(keyColumns));
+	}
+
+	/**
+	 * Returns the position of this shard among the shards of the destination
+	 * @return the index of this shard, starting from 0, in the order the shards are listed.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the number of shards of the destination
+	 * @return the number of shards the rows are spread across.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the shard key of a table
+	 * @param table the name of the table
+	 * @return the column whose values determine the shard of each row, or {@code null} if the rows of the table are loaded into every shard.
+	 */
+	public String getKeyColumn(String table) {
+		return keyColumns.get(table);
+	}
+
+	/**
+	 * Returns the shard key of each table whose rows are spread across the shards
+	 * @return the shard key columns, by table name.
+	 */
+	public Map<String, String> getKeyColumns() {
+		return keyColumns;
+	}
+
+	/**
+	 * Returns the shard of an integer key
+	 * @param key the value of the shard key of a row
+	 * @param count the number of shards
+	 * @return the index of the shard of the row.
+	 */
+	public static int getShard(long key, int count) {
+		//consecutive ids are spread evenly, even when they grow by a multiple of the number of shards.
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) ((key >>> 1) % count);
+	}
+
+	/**
+	 * Returns the shard of a key that is not an integer, from its bytes
+	 * @param bytes a buffer with the bytes of the key
+	 * @param start the position of the first byte of the key in the buffer
+	 * @param length the number of bytes of the key
+	 * @param count the number of shards
+	 * @return the index of the shard of the row.
+	 */
+	public static int getShard(byte[] bytes, int start, int length, int count) {
+		long hash = 1125899906842597L;
+		for (int i = start, end = start + length; i < end; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return getShard(hash, count);
+	}
+
+	/**
+	 * Returns the shard of a key that is not an integer
+	 * @param key the value of the shard key of a row
+	 * @param charset the encoding of the dump file
+	 * @param count the number of shards
+	 * @return the index of the shard of the row.
+	 */
+	public static int getShard(String key, Charset charset, int count) {
+		byte[] bytes = key.getBytes(charset);
+		return getShard(bytes, 0, bytes.length, count);
+	}
+
+	@Override
+	public String toString() {
+		return "shard " + (index + 1) + " of " + count;
+	}
+}
@@ -5,6 +5,9 @@
  ******************************************************************************/
 package com.univocity.articles.dumpload.databases;
 
+import java.sql.*;
+import java.util.*;
+
 import com.univocity.api.entity.jdbc.*;
 
 /**
@@ -25,6 +28,94 @@ public class SqlServerDatabase extends Database {
 		return "com.microsoft.sqlserver.jdbc.SQLServerDriver";
 	}
 
+	@Override
+	public List<String> getCreateIndexStatements(Connection connection, String table, List<IndexDefinition> indexes) throws SQLException {
+		/*
+		 * Sorting in tempdb keeps the intermediate sort runs away from the data files of the database being loaded.
+		 * SQL Server doesn't make columns NOT NULL implicitly when a primary key is added, so this is done first.
+		 */
+		List<String> statements = new ArrayList<String>();
+		for (IndexDefinition index : indexes) {
+			switch (index.getType()) {
+				case PRIMARY_KEY:
+					for (String column : index.getColumns()) {
+						statements.add("ALTER TABLE " + table + " ALTER COLUMN " + column + " " + getColumnType(connection, table, column) + " NOT NULL");
+					}
+					statements.add("ALTER TABLE " + table + " ADD CONSTRAINT " + index.getName() + " PRIMARY KEY (" + index.getColumnList() + ") WITH (SORT_IN_TEMPDB = ON)");
+					break;
+				case UNIQUE:
+					statements.add("CREATE UNIQUE INDEX " + index.getName() + " ON " + table + " (" + index.getColumnList() + ") WITH (SORT_IN_TEMPDB = ON)");
+					break;
+				case INDEX:
+					statements.add("CREATE INDEX " + index.getName() + " ON " + table + " (" + index.getColumnList() + ") WITH (SORT_IN_TEMPDB = ON)");
+					break;
+				case FOREIGN_KEY:
+					statements.add(getCreateForeignKeyStatement(index));
+					break;
+			}
+		}
+		return statements;
+	}
+
+	private static String getColumnType(Connection connection, String table, String column) throws SQLException {
+		ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, column);
+		try {
+			if (!rs.next()) {
+				throw new SQLException("Column " + column + " not found in table " + table);
+			}
+			String type = rs.getString("TYPE_NAME");
+			int dataType = rs.getInt("DATA_TYPE");
+			if (dataType == Types.VARCHAR || dataType == Types.NVARCHAR || dataType == Types.CHAR || dataType == Types.NCHAR || dataType == Types.VARBINARY) {
+				int size = rs.getInt("COLUMN_SIZE");
+				type += "(" + (size > 8000 ? "max" : String.valueOf(size)) + ")";
+			}
+			return type;
+		} finally {
+			rs.close();
+		}
+	}
+
+	@Override
+	String getSchema(Connection connection) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT SCHEMA_NAME()");
+			return rs.next() ? rs.getString(1) : null;
+		} finally {
+			statement.close();
+		}
+	}
+
+	@Override
+	List<String> getBulkLoadServerStatements(Connection connection, List<String> restoreStatements) throws SQLException {
+		/*
+		 * The bulk-logged recovery model logs index builds minimally, and forced delayed durability lets commits return before the log
+		 * is flushed (SQL Server 2014). Both are database options, so the current ones are restored after the load. The TABLOCK hint is
+		 * not used: it would serialize the workers writing into the same table.
+		 */
+		List<String> statements = new ArrayList<String>();
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery("SELECT name, recovery_model_desc, delayed_durability_desc FROM sys.databases WHERE name = DB_NAME()");
+			if (rs.next()) {
+				String name = "[" + rs.getString(1) + "]";
+				String recoveryModel = rs.getString(2);
+				String delayedDurability = rs.getString(3);
+				if ("FULL".equals(recoveryModel)) {
+					statements.add("ALTER DATABASE " + name + " SET RECOVERY BULK_LOGGED");
+					restoreStatements.add("ALTER DATABASE " + name + " SET RECOVERY FULL");
+				}
+				if (!"FORCED".equals(delayedDurability)) {
+					statements.add("ALTER DATABASE " + name + " SET DELAYED_DURABILITY = FORCED");
+					restoreStatements.add("ALTER DATABASE " + name + " SET DELAYED_DURABILITY = " + delayedDurability);
+				}
+			}
+		} finally {
+			statement.close();
+		}
+		return statements;
+	}
+
 	@Override
 	public void applyDatabaseSpecificConfiguration(JdbcDataStoreConfiguration jdbcDataStoreConfig) {
 		//no specific configuration required.
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Adjusts the batch size of each table while the dump file is loaded, within the bounds given by the {@link LoadSettings}.
+ *
+ * The {@link ChunkLoader}s of all workers report the time taken to send each batch of rows, and to commit transactions with rows of a
+ * single table, as the time of a commit that covers several tables can't be attributed to any one of them. For each table,
+ * batches are measured in windows of at least {@value #WINDOW} times the batch size in rows, and the size is doubled while the rows
+ * written per second improve. When doubling stops paying off, the size is halved instead, and the table settles on the
+ * size that gave the best throughput. Regardless of throughput, the batch size is halved and the table settles on the reduced size if a
+ * commit takes longer than {@link LoadSettings#getMaximumCommitLatency()}, or if the heap is still nearly full after a garbage collection.
+ * As the heap is shared, every table that sends a batch after such a collection is reduced.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class BatchSizeController {
+
+	private static final int WINDOW = 4;
+	private static final double MIN_IMPROVEMENT = 1.05;
+	private static final double MAX_HEAP_USAGE = 0.8;
+
+	private final LoadSettings settings;
+	private final long maximumCommitLatency;
+	private final Map<String, TableBatches> tables = new TreeMap<String, TableBatches>();
+	private final MemoryPoolMXBean tenuredPool = getTenuredPool();
+
+	/**
+	 * Creates a controller for the tables of a load process
+	 * @param settings the settings with the initial batch size and its bounds.
+	 */
+	BatchSizeController(LoadSettings settings) {
+		this.settings = settings;
+		this.maximumCommitLatency = settings.getMaximumCommitLatency() * 1000000L;
+	}
+
+	private TableBatches getTable(String table) {
+		TableBatches batches = tables.get(table);
+		if (batches == null) {
+			batches = new TableBatches(table);
+			tables.put(table, batches);
+		}
+		return batches;
+	}
+
+	/**
+	 * Returns the number of rows to send to the database in the next batch of a table
+	 * @param table the name of the table
+	 * @return the current batch size of the table.
+	 */
+	synchronized int getBatchSize(String table) {
+		return getTable(table).size;
+	}
+
+	/**
+	 * Records the time taken to send a batch of rows to the database
+	 * @param table the name of the table
+	 * @param batchSize the batch size in use when the batch started. Batches are sent with fewer rows when another table starts or
+	 * when the transaction is committed.
+	 * @param rows the number of rows in the batch
+	 * @param nanos the time taken to send the batch, in nanoseconds.
+	 */
+	synchronized void batchSent(String table, int batchSize, int rows, long nanos) {
+		TableBatches batches = getTable(table);
+		if (isHeapNearlyFull(batches)) {
+			batches.shrink("the heap is " + (int) (MAX_HEAP_USAGE * 100) + "% full after garbage collection");
+			return;
+		}
+		//batches started before the size changed are not comparable.
+		if (batchSize == batches.size) {
+			batches.batchSent(rows, nanos);
+		}
+	}
+
+	/**
+	 * Records the time taken to commit a transaction with rows of a single table
+	 * @param table the only table with rows in the transaction.
+	 * @param nanos the time taken to commit, in nanoseconds.
+	 */
+	synchronized void committed(String table, long nanos) {
+		TableBatches batches = getTable(table);
+		if (nanos > maximumCommitLatency) {
+			batches.shrink("a commit took " + (nanos / 1000000) + " ms");
+		} else {
+			batches.windowNanos += nanos;
+		}
+	}
+
+	/**
+	 * Tests whether the heap was nearly full after the last garbage collection. Usage is measured on the pool that holds
+	 * long-lived objects, as the usage of the whole heap includes garbage not collected yet. Each collection is only considered once
+	 * per table.
+	 */
+	private boolean isHeapNearlyFull(TableBatches batches) {
+		if (tenuredPool == null) {
+			return false;
+		}
+		long count = getCollectionCount();
+		if (count == batches.collectionCount) {
+			return false;
+		}
+		batches.collectionCount = count;
+		MemoryUsage usage = tenuredPool.getCollectionUsage();
+		return usage != null && usage.getMax() > 0 && usage.getUsed() > usage.getMax() * MAX_HEAP_USAGE;
+	}
+
+	private static long getCollectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	private static MemoryPoolMXBean getTenuredPool() {
+		MemoryPoolMXBean tenuredPool = null;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+				//the old generation is the largest pool.
+				if (tenuredPool == null || pool.getUsage().getMax() > tenuredPool.getUsage().getMax()) {
+					tenuredPool = pool;
+				}
+			}
+		}
+		return tenuredPool;
+	}
+
+	/**
+	 * Prints the batch size of each table
+	 */
+	synchronized void printBatchSizes() {
+		for (TableBatches batches : tables.values()) {
+			System.out.println("Batch size of table " + batches.table + ": " + batches.size + " rows" + (batches.settled ? "" : " (still adjusting when the load ended)"));
+		}
+	}
+
+	/**
+	 * The batch size of a table, and the measurements taken with it.
+	 */
+	private class TableBatches {
+		final String table;
+		int size;
+		int limit;
+		boolean settled;
+		boolean increasing = true;
+		boolean reversed;
+
+		int bestSize;
+		double bestThroughput;
+
+		long windowRows;
+		long windowNanos;
+
+		//collections that happened before the table started don't apply to it.
+		long collectionCount = getCollectionCount();
+
+		TableBatches(String table) {
+			this.table = table;
+			this.limit = settings.getMaximumBatchSize();
+			this.size = clamp(settings.getBatchSize());
+		}
+
+		int clamp(int size) {
+			return Math.max(settings.getMinimumBatchSize(), Math.min(limit, size));
+		}
+
+		void batchSent(int rows, long nanos) {
+			if (settled) {
+				return;
+			}
+			windowRows += rows;
+			windowNanos += nanos;
+			if (windowRows < (long) WINDOW * size) {
+				return;
+			}
+
+			double throughput = windowRows * 1000000000.0 / Math.max(1, windowNanos);
+			resetWindow();
+
+			if (bestThroughput == 0 || throughput > bestThroughput * MIN_IMPROVEMENT) {
+				bestSize = size;
+				bestThroughput = throughput;
+				move();
+			} else if (increasing && !reversed) {
+				//larger batches didn't help. Try smaller ones.
+				increasing = false;
+				reversed = true;
+				size = bestSize;
+				move();
+			} else {
+				settle(bestSize);
+			}
+		}
+
+		void move() {
+			int next = clamp(increasing ? size * 2 : size / 2);
+			if (next == size && increasing && !reversed) {
+				increasing = false;
+				reversed = true;
+				next = clamp(size / 2);
+			}
+			if (next == size) {
+				settle(size);
+			} else {
+				size = next;
+			}
+		}
+
+		void settle(int size) {
+			this.size = size;
+			settled = true;
+			System.out.println("Batch size of table " + table + " settled at " + size + " rows (" + (long) bestThroughput + " rows/s per worker)");
+		}
+
+		void shrink(String reason) {
+			int next = clamp(size / 2);
+			resetWindow();
+			if (next < size) {
+				System.out.println("Reducing batch size of table " + table + " from " + size + " to " + next + " rows: " + reason);
+				size = next;
+			}
+			//larger batches caused the problem, so they are not tried again, and the measurements taken with them no longer apply.
+			limit = size;
+			bestSize = size;
+			settled = true;
+		}
+
+		void resetWindow() {
+			windowRows = 0;
+			windowNanos = 0;
+		}
+	}
+}
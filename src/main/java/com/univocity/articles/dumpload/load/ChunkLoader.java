@@ -0,0 +1,519 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Parses a {@link DumpChunk} and writes its rows to the database, using a connection of its own.
+ *
+ * The transaction is committed at the end of an {@code INSERT} statement, once at least one batch of rows has been written.
+ * The position after that statement is recorded by the {@link LoadCheckpoint} in the same transaction, and the chunk is
+ * parsed from that position if the load is resumed.
+ *
+ * If bulk loading is enabled and the bulk load facility of the database fails for a table, the uncommitted work is
+ * rolled back, the table is flagged so no other chunk attempts to bulk load it, and the chunk is parsed again from
+ * the last commit, this time inserting the rows of that table with batches of {@code INSERT} statements.
+ *
+ * The loader sends the rows of each table to the database once the batch size is reached. When batch sizes are adaptive,
+ * the batch size of each table is given by the {@link BatchSizeController}, and the time taken by each batch and commit is reported back to it.
+ *
+ * Rows, bytes and the time spent binding, sending batches and committing are accumulated locally, and published to the
+ * {@link LoadStatistics} at the end of each statement and commit.
+ *
+ * When deduplication is enabled, the primary key of each row is checked with the {@link KeyDeduplicator} of the destination, and rows
+ * with keys already loaded are dropped before they are written. The keys of rows that are rolled back are released, so the rows can be
+ * loaded again.
+ *
+ * When rejected rows are written into reject files, batches of {@code INSERT} statements that fail are split until the rows the database
+ * rejects are isolated (see {@link JdbcBatchWriter}). These rows are written into the {@link RejectedRows} of the destination, and are not
+ * counted as loaded.
+ *
+ * When the dump file is loaded into several destinations, the chunk is parsed once by a {@link FanOutParser}, and the loader of each destination
+ * receives the parsed rows through a {@link FanOutChannel} instead of parsing the chunk itself. When the destination is a shard, the rows that
+ * belong to other shards are dropped by its {@link ShardFilter} before they are written.
+ *
+ * When only some columns or rows of a table are loaded, the chunk is parsed by the parser of the {@link Projection} of the load, and
+ * only the values of the projected columns of each row are written.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class ChunkLoader implements Callable<Long>, RowHandler, RowRejectHandler {
+
+	private final Database database;
+	private final LoadSettings settings;
+	private final DumpChunk chunk;
+	private final FanOutChannel channel;
+	private final LoadCheckpoint checkpoint;
+	private final Set<String> bulkDisabledTables;
+	private final RowCountVerifier verifier;
+	private final BatchSizeController batchSizes;
+	private final KeyDeduplicator deduplicator;
+	private final RejectedRows rejects;
+	private final Watermarks watermarks;
+	private final ShardFilter shards;
+	private final Projection projection;
+	private final LoadStatistics statistics;
+
+	private final Map<String, RowWriter> writers = new HashMap<String, RowWriter>();
+	private final Set<String> bulkTables = new HashSet<String>();
+	//rows written, duplicate rows dropped and rows rejected, per table, since the last commit.
+	private final Map<String, long[]> uncommittedRowsPerTable = new HashMap<String, long[]>();
+	private final Map<String, Long> committedRowsPerTable;
+	private long[] tableRows;
+	private Connection connection;
+	private String table;
+	private RowWriter writer;
+
+	private KeyDeduplicator.TableKeys keys;
+	private final long[] key = new long[1];
+	private Watermarks.TableWatermark watermark;
+	private int shardKey = -1;
+	private ProjectedRow projectedRow;
+	//keys added since the last commit, released if the rows are rolled back.
+	private KeyDeduplicator.TableKeys[] addedKeyTables = new KeyDeduplicator.TableKeys[1024];
+	private long[] addedKeys = new long[1024];
+	private int addedKeyCount;
+
+	private long rows;
+	private long uncommittedRows;
+	private long committedRows;
+	private long committedOffset;
+	private int batchSize;
+	private int batchRows;
+
+	private long statementOffset;
+	private long bindTime;
+	private long workerTime;
+	private long progressOffset;
+
+	/**
+	 * Creates a loader for a chunk of the dump file
+	 * @param destination the destination database, with the progress, statistics and batch sizes shared by all loaders writing into it.
+	 * @param settings the load settings
+	 * @param chunk the chunk of the dump file to load
+	 * @param channel provides the rows of the chunk parsed by a {@link FanOutParser}, or {@code null} to parse the chunk from the dump file.
+	 */
+	ChunkLoader(Destination destination, LoadSettings settings, DumpChunk chunk, FanOutChannel channel) {
+		this.database = destination.database;
+		this.settings = settings;
+		this.chunk = chunk;
+		this.channel = channel;
+		this.checkpoint = destination.checkpoint;
+		this.committedRowsPerTable = checkpoint.getCommittedRows(chunk);
+		this.bulkDisabledTables = destination.bulkDisabledTables;
+		this.verifier = destination.verifier;
+		this.batchSizes = destination.batchSizes;
+		this.deduplicator = destination.deduplicator;
+		this.rejects = destination.rejects;
+		this.watermarks = destination.watermarks;
+		this.shards = destination.shards;
+		this.projection = destination.projection;
+		this.statistics = destination.statistics;
+		this.batchSize = settings.getBatchSize();
+	}
+
+	@Override
+	public Long call() throws Exception {
+		connection = database.openConnection();
+		try {
+			committedOffset = checkpoint.getCommittedOffset(chunk);
+			if (watermarks != null) {
+				//statements with rows already in the database are not read.
+				committedOffset = Math.max(committedOffset, watermarks.getStartOffset(chunk));
+			}
+			progressOffset = committedOffset;
+			workerTime = System.nanoTime();
+			while (true) {
+				try {
+					if (channel == null) {
+						DumpInput input = new MeasuredDumpInput(DumpCompression.openInput(settings.getDumpFile(), committedOffset, chunk.getEnd()), statistics);
+						(projection == null ? new DumpParser(settings.getCharset()) : projection.newParser()).parse(input, this);
+					} else {
+						//rows parsed once for all destinations.
+						channel.replay(this, committedOffset);
+					}
+					commit(chunk.getEnd());
+					publishProgress(chunk.getEnd());
+					return rows;
+				} catch (BulkWriteException ex) {
+					connection.rollback();
+					releaseKeys();
+					closeWriters();
+					bulkDisabledTables.add(ex.table);
+					System.out.println("Bulk load of table " + ex.table + " failed in chunk " + chunk + ". Loading it with batches of INSERT statements instead. Error: " + ex.getCause().getMessage());
+
+					rows = committedRows;
+					uncommittedRows = 0;
+					//the rows after the last commit will be processed again.
+					publishProgress(committedOffset);
+				}
+			}
+		} catch (Exception ex) {
+			try {
+				connection.rollback();
+			} catch (SQLException e) {
+				//ignore. Reporting the original error.
+			}
+			releaseKeys();
+			throw ex;
+		} finally {
+			closeWriters();
+			connection.close();
+		}
+	}
+
+	private void closeWriters() {
+		for (RowWriter writer : writers.values()) {
+			writer.close();
+		}
+		writers.clear();
+		bulkTables.clear();
+		uncommittedRowsPerTable.clear();
+		table = null;
+		writer = null;
+		tableRows = null;
+		keys = null;
+		watermark = null;
+		shardKey = -1;
+		projectedRow = null;
+		batchRows = 0;
+	}
+
+	private RowWriter newWriter(String table) {
+		if (settings.isBulkLoadEnabled() && !bulkDisabledTables.contains(table)) {
+			RowWriter bulkWriter = database.newBulkWriter(connection, table, settings);
+			if (bulkWriter != null) {
+				bulkTables.add(table);
+				return bulkWriter;
+			}
+		}
+		return database.newRowWriter(connection, table, settings, rejects == null ? null : this);
+	}
+
+	@Override
+	public boolean statementStarted(String table, long offset) {
+		statementOffset = offset;
+		if (!settings.isTableSelected(table) || (watermarks != null && !watermarks.isStatementNeeded(table, offset))) {
+			return false;
+		}
+		if (!table.equals(this.table)) {
+			//writers share the connection: pending rows of a table must be sent, and its session settings restored, before writing into another one
+			if (writer != null) {
+				sendBatch();
+				finish(this.table, writer);
+			}
+			if (database.isTablePreparationPending(table)) {
+				//the bulk load profile of the table is applied in a transaction of its own, so the rows parsed so far are committed first.
+				commitProcessed();
+				database.prepareTableForBulkLoad(connection, table);
+			}
+			writer = writers.get(table);
+			if (writer == null) {
+				if (verifier != null) {
+					try {
+						verifier.tableStarted(table, connection);
+					} catch (SQLException e) {
+						throw new IllegalStateException("Error counting rows of table " + table, e);
+					}
+				}
+				writer = newWriter(table);
+				writers.put(table, writer);
+			}
+			tableRows = uncommittedRowsPerTable.get(table);
+			if (tableRows == null) {
+				tableRows = new long[3];
+				uncommittedRowsPerTable.put(table, tableRows);
+			}
+			this.table = table;
+			if (batchSizes != null) {
+				batchSize = batchSizes.getBatchSize(table);
+			}
+			if (deduplicator != null) {
+				try {
+					keys = deduplicator.tableStarted(table, connection);
+				} catch (SQLException e) {
+					throw new IllegalStateException("Error collecting primary keys of table " + table, e);
+				}
+			}
+			if (watermarks != null) {
+				watermark = watermarks.getTable(table);
+			}
+			if (shards != null) {
+				try {
+					shardKey = shards.tableStarted(table, connection);
+				} catch (SQLException e) {
+					throw new IllegalStateException("Error reading shard key of table " + table, e);
+				}
+			}
+			if (projection != null) {
+				projectedRow = projection.newProjectedRow(table);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void rowParsed(DumpRow row) {
+		if (shardKey >= 0 && !shards.accepts(row, shardKey)) {
+			return;
+		}
+		if (watermark != null && !watermark.isNewer(row)) {
+			return;
+		}
+		if (keys != null && keys.readKey(row, key)) {
+			if (!keys.add(key[0])) {
+				tableRows[1]++;
+				if (deduplicator.isLoggingDuplicates()) {
+					System.out.println("Dropped row of table " + table + " with duplicate key (" + keys.describe(row) + "), in statement at position " + statementOffset + " of the dump file");
+				}
+				return;
+			}
+			keyAdded(keys, key[0]);
+		}
+
+		long start = System.nanoTime();
+		try {
+			writer.write(projectedRow == null ? row : projectedRow.wrap(row));
+		} catch (SQLException e) {
+			throw writeError(table, e);
+		}
+		bindTime += System.nanoTime() - start;
+		rows++;
+		uncommittedRows++;
+		tableRows[0]++;
+
+		if (++batchRows >= batchSize) {
+			sendBatch();
+			if (batchSizes != null) {
+				batchSize = batchSizes.getBatchSize(table);
+			}
+		}
+	}
+
+	@Override
+	public void statementEnded(String table, long offset) {
+		if (table.equals(this.table)) {
+			LoadStatistics.TableStatistics tableStatistics = statistics.getTable(table);
+			tableStatistics.bytes.addAndGet(offset - statementOffset);
+			tableStatistics.bindTime.addAndGet(bindTime);
+			bindTime = 0;
+		}
+		publishProgress(offset);
+
+		if (uncommittedRows >= batchSize) {
+			try {
+				commit(offset);
+			} catch (SQLException e) {
+				throw new IllegalStateException("Error committing rows of table " + table + " in chunk " + chunk, e);
+			}
+		}
+	}
+
+	/**
+	 * Commits the rows of all statements processed so far, before the batch size is reached. Called by the {@link FanOutChannel}
+	 * when the parser can't send more rows until the batches held by this loader are released.
+	 */
+	void commitProcessed() {
+		if (progressOffset > committedOffset) {
+			try {
+				commit(progressOffset);
+			} catch (SQLException e) {
+				throw new IllegalStateException("Error committing rows of chunk " + chunk, e);
+			}
+		}
+	}
+
+	@Override
+	public void rowRejected(String table, DumpRow row, SQLException error) {
+		long[] counts = uncommittedRowsPerTable.get(table);
+		counts[0]--;
+		counts[2]++;
+		rows--;
+		uncommittedRows--;
+		List<String> columns = null;
+		if (projection != null && projection.getColumns(table) != null) {
+			columns = projection.getColumns(table);
+			//keys are read from the positions of the columns in the full rows of the table.
+			releaseKey(table, projection.newFullRow(table).wrap(row));
+		} else {
+			releaseKey(table, row);
+		}
+		rejects.write(table, row, columns, error);
+	}
+
+	/**
+	 * Releases the key of a row rejected by the database, so another row with the same key can be loaded.
+	 */
+	private void releaseKey(String table, DumpRow row) {
+		if (deduplicator == null) {
+			return;
+		}
+		KeyDeduplicator.TableKeys keys;
+		try {
+			keys = deduplicator.tableStarted(table, connection);
+		} catch (SQLException e) {
+			throw new IllegalStateException("Error collecting primary keys of table " + table, e);
+		}
+		if (keys == null || !keys.readKey(row, key)) {
+			return;
+		}
+		for (int i = addedKeyCount - 1; i >= 0; i--) {
+			if (addedKeys[i] == key[0] && addedKeyTables[i] == keys) {
+				keys.remove(key[0]);
+				addedKeyCount--;
+				addedKeys[i] = addedKeys[addedKeyCount];
+				addedKeyTables[i] = addedKeyTables[addedKeyCount];
+				addedKeyTables[addedKeyCount] = null;
+				return;
+			}
+		}
+	}
+
+	private void keyAdded(KeyDeduplicator.TableKeys keys, long key) {
+		if (addedKeyCount == addedKeys.length) {
+			addedKeys = Arrays.copyOf(addedKeys, addedKeyCount * 2);
+			addedKeyTables = Arrays.copyOf(addedKeyTables, addedKeyCount * 2);
+		}
+		addedKeyTables[addedKeyCount] = keys;
+		addedKeys[addedKeyCount++] = key;
+	}
+
+	/**
+	 * Releases the keys of the rows rolled back, so they are not taken as duplicates when loaded again.
+	 */
+	private void releaseKeys() {
+		for (int i = 0; i < addedKeyCount; i++) {
+			addedKeyTables[i].remove(addedKeys[i]);
+			addedKeyTables[i] = null;
+		}
+		addedKeyCount = 0;
+	}
+
+	/**
+	 * Adds the time spent and the bytes processed since the last call to the statistics.
+	 * @param offset the position in the dump file up to where everything has been processed.
+	 */
+	private void publishProgress(long offset) {
+		long now = System.nanoTime();
+		statistics.addWorkerTime(now - workerTime);
+		workerTime = now;
+		//the end of compressed dumps is unknown
+		if (offset != Long.MAX_VALUE) {
+			statistics.addProcessedBytes(offset - progressOffset);
+			progressOffset = offset;
+		}
+	}
+
+	/**
+	 * Sends the pending rows of the current table, reporting the time taken if batch sizes are adaptive.
+	 */
+	private void sendBatch() {
+		long time = flush(table, writer);
+		if (batchSizes != null && batchRows > 0) {
+			batchSizes.batchSent(table, batchSize, batchRows, time);
+		}
+		batchRows = 0;
+	}
+
+	private long flush(String table, RowWriter writer) {
+		long start = System.nanoTime();
+		try {
+			writer.flush();
+		} catch (SQLException e) {
+			throw writeError(table, e);
+		}
+		long time = System.nanoTime() - start;
+		statistics.getTable(table).batchTime.addAndGet(time);
+		return time;
+	}
+
+	private void finish(String table, RowWriter writer) {
+		try {
+			writer.finish();
+		} catch (SQLException e) {
+			throw writeError(table, e);
+		}
+	}
+
+	private RuntimeException writeError(String table, SQLException e) {
+		if (bulkTables.contains(table)) {
+			return new BulkWriteException(table, e);
+		}
+		return new IllegalStateException("Error writing rows of table " + table + " in chunk " + chunk, e);
+	}
+
+	private void commit(long offset) throws SQLException {
+		if (writer != null) {
+			sendBatch();
+		}
+		for (Map.Entry<String, RowWriter> e : writers.entrySet()) {
+			flush(e.getKey(), e.getValue());
+			finish(e.getKey(), e.getValue());
+		}
+
+		//progress is saved in the same transaction as the rows it refers to.
+		Map<String, Long> rowsPerTable = new HashMap<String, Long>(committedRowsPerTable);
+		List<String> changedTables = new ArrayList<String>();
+		for (Map.Entry<String, long[]> e : uncommittedRowsPerTable.entrySet()) {
+			if (e.getValue()[0] > 0) {
+				Long previous = rowsPerTable.get(e.getKey());
+				rowsPerTable.put(e.getKey(), (previous == null ? 0L : previous) + e.getValue()[0]);
+				changedTables.add(e.getKey());
+			}
+		}
+		long start = System.nanoTime();
+		checkpoint.save(connection, chunk, offset, table, rowsPerTable, changedTables);
+		connection.commit();
+		long time = System.nanoTime() - start;
+		statistics.addCommitTime(time);
+		if (batchSizes != null && changedTables.size() == 1) {
+			//the time of a commit that covers rows of several tables can't be attributed to any one of them.
+			batchSizes.committed(changedTables.get(0), time);
+		}
+
+		committedRowsPerTable.putAll(rowsPerTable);
+		for (Map.Entry<String, long[]> e : uncommittedRowsPerTable.entrySet()) {
+			if (verifier != null) {
+				verifier.rowsCommitted(e.getKey(), e.getValue()[0]);
+			}
+			statistics.getTable(e.getKey()).rows.addAndGet(e.getValue()[0]);
+			statistics.getTable(e.getKey()).duplicates.addAndGet(e.getValue()[1]);
+			statistics.getTable(e.getKey()).rejected.addAndGet(e.getValue()[2]);
+			e.getValue()[0] = 0;
+			e.getValue()[1] = 0;
+			e.getValue()[2] = 0;
+		}
+		Arrays.fill(addedKeyTables, 0, addedKeyCount, null);
+		addedKeyCount = 0;
+		committedOffset = offset;
+		committedRows = rows;
+		uncommittedRows = 0;
+		if (channel != null) {
+			channel.committed(offset);
+		}
+	}
+
+	/**
+	 * Thrown when the bulk load facility of the database fails to write the rows of a table.
+	 */
+	private static class BulkWriteException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private final String table;
+
+		BulkWriteException(String table, SQLException cause) {
+			super("Error bulk loading table " + table, cause);
+			this.table = table;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import com.univocity.articles.dumpload.databases.*;
+
+/**
+ * A database the dump file is loaded into, with everything the {@link ChunkLoader}s writing into it share: the progress recorded by its
+ * {@link LoadCheckpoint}, its {@link LoadStatistics}, the tables whose bulk load failed, and the optional {@link RowCountVerifier},
+ * {@link BatchSizeController}, {@link KeyDeduplicator}, {@link RejectedRows} and {@link Watermarks}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class Destination {
+
+	final String name;
+	final Database database;
+	final LoadCheckpoint checkpoint;
+	final Set<String> bulkDisabledTables = Collections.synchronizedSet(new HashSet<String>());
+
+	LoadStatistics statistics;
+	RowCountVerifier verifier;
+	BatchSizeController batchSizes;
+	KeyDeduplicator deduplicator;
+	RejectedRows rejects;
+	Watermarks watermarks;
+	ShardFilter shards;
+	Projection projection;
+
+	/**
+	 * Time the parser of a fan-out load spent waiting for this destination to take batches of rows, in nanoseconds.
+	 */
+	final AtomicLong parserWaitTime = new AtomicLong();
+
+	/**
+	 * The first error that stopped a chunk from being loaded into this destination.
+	 */
+	private volatile Throwable error;
+
+	Destination(String name, Database database, LoadSettings settings) {
+		this.name = name;
+		this.database = database;
+		this.checkpoint = new LoadCheckpoint(database, settings.getDumpFile());
+		//an incremental load starts over unless it is resuming an interrupted load of the same dump file. Progress recorded
+		//for tables that were truncated or dropped when the database was initialized no longer applies.
+		if (!settings.isResumeEnabled() || database.isSchemaReset() || (settings.isIncrementalLoadEnabled() && !checkpoint.hasPendingProgress())) {
+			checkpoint.clear();
+		} else if (settings.getDeduplicationMode() == LoadSettings.DeduplicationMode.NONE && checkpoint.hasPendingProgress()) {
+			checkResumable();
+		}
+	}
+
+	/**
+	 * Refuses to resume the load into tables without transactions: they keep the rows inserted after the last progress recorded,
+	 * which would be loaded again. Deduplication drops these rows, as it reads the keys already in each table first.
+	 */
+	private void checkResumable() {
+		List<String> tables = new ArrayList<String>();
+		Connection connection = database.openConnection();
+		try {
+			for (String table : checkpoint.getLoadedTables()) {
+				if (!database.isTransactional(connection, table)) {
+					tables.add(table);
+				}
+			}
+		} finally {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				//ignore
+			}
+		}
+		if (!tables.isEmpty()) {
+			throw new IllegalArgumentException("Unable to resume the load into " + database.getDatabaseName() + ": tables " + tables
+					+ " don't support transactions, and may have rows loaded after the last progress recorded. Set load.dedup=drop to resume"
+					+ " without loading these rows again, or load.resume=false to start over.");
+		}
+	}
+
+	synchronized void failed(Throwable error) {
+		if (this.error == null) {
+			this.error = error;
+		}
+	}
+
+	Throwable getError() {
+		return error;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + database.getDatabaseName() + ")";
+	}
+}
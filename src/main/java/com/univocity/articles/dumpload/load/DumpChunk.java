@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+/**
+ * A region of a dump file that starts at the beginning of an {@code INSERT} statement and ends right before the
+ * beginning of another statement (or at the end of the file), so it can be parsed independently of the rest of the file.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class DumpChunk {
+
+	private final long start;
+	private final long end;
+
+	/**
+	 * Creates a chunk of the dump file
+	 * @param start the position of the first byte of the chunk
+	 * @param end the position after the last byte of the chunk
+	 */
+	public DumpChunk(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Returns the position of the first byte of the chunk
+	 * @return the start offset of the chunk
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the position after the last byte of the chunk
+	 * @return the end offset of the chunk
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns the size of the chunk in bytes
+	 * @return the size of the chunk
+	 */
+	public long getSize() {
+		return end - start;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof DumpChunk)) {
+			return false;
+		}
+		DumpChunk other = (DumpChunk) o;
+		return start == other.start && end == other.end;
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (start ^ (start >>> 32)) * 31 + (int) (end ^ (end >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return "[" + start + ", " + end + ")";
+	}
+}
@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * An index of the regions of a dump file occupied by the {@code CREATE TABLE} statement and the {@code INSERT} statements of each table.
+ * It allows loading a subset of the tables by reading only the regions that contain their rows.
+ *
+ * The index is built with a single pass over the file that only looks at the beginning of each line: {@code mysqldump}
+ * writes each {@code INSERT} statement in a single line, and consecutive statements of the same table are recorded as a single region.
+ *
+ * As building the index requires reading the entire file, it is cached in a file next to the dump file (with the <i>.index</i> extension).
+ * The cached index is discarded if the size or the modification time of the dump file changes.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class DumpIndex {
+
+	private static final byte[] INSERT_INTO = "INSERT INTO ".getBytes();
+	private static final byte[] CREATE_TABLE = "CREATE TABLE ".getBytes();
+
+	private static final int MAX_LINE_HEAD = 512;
+
+	private final File dumpFile;
+	private final Charset charset;
+	private final long fileSize;
+	private final long lastModified;
+
+	private final Map<String, DumpChunk> createTableRegions = new LinkedHashMap<String, DumpChunk>();
+	private final Map<String, List<DumpChunk>> insertRegions = new LinkedHashMap<String, List<DumpChunk>>();
+
+	private DumpIndex(File dumpFile, Charset charset) {
+		this.dumpFile = dumpFile;
+		this.charset = charset;
+		this.fileSize = dumpFile.length();
+		this.lastModified = dumpFile.lastModified();
+	}
+
+	/**
+	 * Returns the index of a dump file, reading it from the cache file if it is up to date, or building it otherwise.
+	 * @param dumpFile the dump file
+	 * @param charset the encoding of the dump file, used to decode table names.
+	 * @return the index of the given dump file
+	 */
+	public static DumpIndex getIndex(File dumpFile, Charset charset) {
+		File cacheFile = getCacheFile(dumpFile);
+		if (cacheFile.exists()) {
+			DumpIndex index = read(dumpFile, charset, cacheFile);
+			if (index != null) {
+				return index;
+			}
+			System.out.println("Index " + cacheFile.getAbsolutePath() + " is out of date. Rebuilding it.");
+		}
+
+		long start = System.currentTimeMillis();
+		DumpIndex index = new DumpIndex(dumpFile, charset);
+		index.build();
+		System.out.println("Indexed " + index.insertRegions.size() + " tables of " + dumpFile.getAbsolutePath() + " in " + (System.currentTimeMillis() - start) + " ms");
+
+		try {
+			index.write(cacheFile);
+		} catch (IOException e) {
+			System.out.println("Unable to write index file " + cacheFile.getAbsolutePath() + ". The dump file will be indexed again next time. Error: " + e.getMessage());
+		}
+		return index;
+	}
+
+	private static File getCacheFile(File dumpFile) {
+		return new File(dumpFile.getAbsoluteFile().getParentFile(), dumpFile.getName() + ".index");
+	}
+
+	private void build() {
+		MappedDumpInput input = new MappedDumpInput(dumpFile);
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			byte[] head = new byte[MAX_LINE_HEAD];
+			int headLength = 0;
+			byte last = 0;
+			long lineStart = 0;
+			long offset = 0;
+
+			LineVisitor visitor = new LineVisitor();
+
+			int length;
+			while ((length = input.read(buffer, 0, buffer.length)) != -1) {
+				for (int i = 0; i < length; i++) {
+					byte b = buffer[i];
+					if (b == '\n') {
+						long lineEnd = offset + i + 1;
+						visitor.lineRead(head, headLength, last, lineStart, lineEnd);
+						lineStart = lineEnd;
+						headLength = 0;
+						last = 0;
+					} else {
+						if (headLength < MAX_LINE_HEAD) {
+							head[headLength++] = b;
+						}
+						if (b != '\r') {
+							last = b;
+						}
+					}
+				}
+				offset += length;
+			}
+			if (lineStart < offset) {
+				visitor.lineRead(head, headLength, last, lineStart, offset);
+			}
+			visitor.closeInsertRegion();
+		} catch (IOException e) {
+			throw new IllegalStateException("Error indexing dump file " + dumpFile.getAbsolutePath(), e);
+		} finally {
+			try {
+				input.close();
+			} catch (IOException e) {
+				//ignore
+			}
+		}
+	}
+
+	/**
+	 * Collects regions of statements from the beginning of each line of the dump file.
+	 */
+	private class LineVisitor {
+		private String insertTable;
+		private long insertStart;
+		private long insertEnd;
+
+		private String createTable;
+		private long createStart;
+
+		void lineRead(byte[] head, int headLength, byte lastByte, long lineStart, long lineEnd) {
+			if (startsWith(head, headLength, INSERT_INTO)) {
+				String table = readTableName(head, headLength, INSERT_INTO.length);
+				if (!table.equals(insertTable)) {
+					closeInsertRegion();
+					insertTable = table;
+					insertStart = lineStart;
+				}
+				insertEnd = lineEnd;
+				return;
+			}
+
+			closeInsertRegion();
+			if (createTable == null && startsWith(head, headLength, CREATE_TABLE)) {
+				createTable = readTableName(head, headLength, CREATE_TABLE.length);
+				createStart = lineStart;
+			}
+			if (createTable != null && lastByte == ';') {
+				createTableRegions.put(createTable, new DumpChunk(createStart, lineEnd));
+				createTable = null;
+			}
+		}
+
+		void closeInsertRegion() {
+			if (insertTable != null) {
+				List<DumpChunk> regions = insertRegions.get(insertTable);
+				if (regions == null) {
+					regions = new ArrayList<DumpChunk>();
+					insertRegions.put(insertTable, regions);
+				}
+				regions.add(new DumpChunk(insertStart, insertEnd));
+				insertTable = null;
+			}
+		}
+	}
+
+	private static boolean startsWith(byte[] head, int headLength, byte[] prefix) {
+		if (headLength < prefix.length) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length; i++) {
+			if (head[i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String readTableName(byte[] head, int headLength, int from) {
+		int start = from;
+		int end;
+		if (start < headLength && head[start] == '`') {
+			start++;
+			end = start;
+			while (end < headLength && head[end] != '`') {
+				end++;
+			}
+		} else {
+			end = start;
+			while (end < headLength && head[end] != ' ' && head[end] != '(') {
+				end++;
+			}
+		}
+		return new String(head, start, end - start, charset);
+	}
+
+	private static DumpIndex read(File dumpFile, Charset charset, File cacheFile) {
+		DumpIndex index = new DumpIndex(dumpFile, charset);
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+			try {
+				String[] header = reader.readLine().split("\t");
+				if (Long.parseLong(header[0]) != index.fileSize || Long.parseLong(header[1]) != index.lastModified) {
+					return null;
+				}
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t");
+					DumpChunk region = new DumpChunk(Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+					if (fields[0].equals("CREATE")) {
+						index.createTableRegions.put(fields[1], region);
+					} else {
+						List<DumpChunk> regions = index.insertRegions.get(fields[1]);
+						if (regions == null) {
+							regions = new ArrayList<DumpChunk>();
+							index.insertRegions.put(fields[1], regions);
+						}
+						regions.add(region);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (Exception e) {
+			System.out.println("Unable to read index file " + cacheFile.getAbsolutePath() + ". Error: " + e.getMessage());
+			return null;
+		}
+		return index;
+	}
+
+	private void write(File cacheFile) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cacheFile), "UTF-8"));
+		try {
+			writer.write(fileSize + "\t" + lastModified + "\n");
+			for (Map.Entry<String, DumpChunk> e : createTableRegions.entrySet()) {
+				writer.write("CREATE\t" + e.getKey() + "\t" + e.getValue().getStart() + "\t" + e.getValue().getEnd() + "\n");
+			}
+			for (Map.Entry<String, List<DumpChunk>> e : insertRegions.entrySet()) {
+				for (DumpChunk region : e.getValue()) {
+					writer.write("INSERT\t" + e.getKey() + "\t" + region.getStart() + "\t" + region.getEnd() + "\n");
+				}
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Returns the names of all tables with {@code INSERT} statements in the dump file, in the order they appear.
+	 * @return the tables with rows in the dump file.
+	 */
+	public Set<String> getTables() {
+		return Collections.unmodifiableSet(insertRegions.keySet());
+	}
+
+	/**
+	 * Returns the region of the dump file occupied by the {@code CREATE TABLE} statement of a table.
+	 * @param table the name of the table
+	 * @return the region of the {@code CREATE TABLE} statement, or {@code null} if the dump file doesn't create the given table.
+	 */
+	public DumpChunk getCreateTableRegion(String table) {
+		return createTableRegions.get(table);
+	}
+
+	/**
+	 * Returns the regions of the dump file occupied by the {@code INSERT} statements of a table.
+	 * @param table the name of the table
+	 * @return the regions with the {@code INSERT} statements of the given table, in the order they appear. Empty if the table has no rows.
+	 */
+	public List<DumpChunk> getInsertRegions(String table) {
+		List<DumpChunk> regions = insertRegions.get(table);
+		if (regions == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(regions);
+	}
+
+	/**
+	 * Returns the regions of the dump file occupied by the {@code INSERT} statements of the selected tables, sorted by position.
+	 * Adjacent regions are merged.
+	 * @param tables the names of the selected tables
+	 * @return the regions with the {@code INSERT} statements of the given tables.
+	 */
+	public List<DumpChunk> getInsertRegions(Collection<String> tables) {
+		List<DumpChunk> regions = new ArrayList<DumpChunk>();
+		for (String table : tables) {
+			regions.addAll(getInsertRegions(table));
+		}
+		Collections.sort(regions, new Comparator<DumpChunk>() {
+			@Override
+			public int compare(DumpChunk o1, DumpChunk o2) {
+				return o1.getStart() < o2.getStart() ? -1 : o1.getStart() == o2.getStart() ? 0 : 1;
+			}
+		});
+
+		List<DumpChunk> merged = new ArrayList<DumpChunk>();
+		DumpChunk previous = null;
+		for (DumpChunk region : regions) {
+			if (previous != null && previous.getEnd() == region.getStart()) {
+				previous = new DumpChunk(previous.getStart(), region.getEnd());
+				merged.set(merged.size() - 1, previous);
+			} else {
+				merged.add(region);
+				previous = region;
+			}
+		}
+		return merged;
+	}
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Cuts a dump file into {@link DumpChunk}s that can be parsed independently.
+ *
+ * Chunks are cut at the beginning of a line that starts with {@code INSERT INTO}. This is safe for files produced by
+ * {@code mysqldump} as line breaks inside values are always escaped, so a line can only start with {@code INSERT INTO}
+ * if it is the beginning of a new statement.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class DumpSplitter {
+
+	private static final byte[] STATEMENT_START = "\nINSERT INTO ".getBytes();
+
+	private final File file;
+
+	/**
+	 * Creates a splitter for the given dump file
+	 * @param file the dump file to split
+	 */
+	public DumpSplitter(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Splits a region of the dump file into chunks of, at most, the given size (unless a single statement is larger).
+	 *
+	 * @param start the position where the region starts. Must be the beginning of a line.
+	 * @param end the position where the region ends. Must be the beginning of a line or the end of the file.
+	 * @param chunkSize the maximum size of each chunk.
+	 * @return the sequence of chunks that cover the entire region.
+	 */
+	public List<DumpChunk> split(long start, long end, long chunkSize) {
+		List<DumpChunk> chunks = new ArrayList<DumpChunk>();
+		long chunkStart = start;
+		while (chunkStart < end) {
+			long chunkEnd = chunkStart + chunkSize;
+			if (chunkEnd >= end) {
+				chunkEnd = end;
+			} else {
+				chunkEnd = findStatementStart(chunkEnd, end);
+			}
+			chunks.add(new DumpChunk(chunkStart, chunkEnd));
+			chunkStart = chunkEnd;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Splits the entire dump file into chunks of, at most, the given size (unless a single statement is larger).
+	 * @param chunkSize the maximum size of each chunk.
+	 * @return the sequence of chunks that cover the entire file.
+	 */
+	public List<DumpChunk> split(long chunkSize) {
+		return split(0L, file.length(), chunkSize);
+	}
+
+	/**
+	 * Splits the dump file of the given settings into chunks of, at most, the configured chunk size. If only some tables are selected,
+	 * the regions with the rows of these tables are found with the {@link DumpIndex} of the dump file, and only these regions are split.
+	 * Incremental loads are split the same way, so the regions of each table can be matched against its watermark.
+	 *
+	 * Compressed dump files can't be split, and are processed as a single chunk that ends at {@link Long#MAX_VALUE}. Tables
+	 * that are not selected are skipped while parsing.
+	 *
+	 * @param settings the settings with the dump file, chunk size and table selection.
+	 * @return the chunks to process, in the order they appear in the dump file.
+	 */
+	public static List<DumpChunk> split(LoadSettings settings) {
+		DumpCompression compression = DumpCompression.detect(settings.getDumpFile());
+		if (!compression.isSeekable()) {
+			if (settings.isIncrementalLoadEnabled()) {
+				throw new IllegalStateException("Incremental loads need an uncompressed dump file, to skip the rows already loaded. Decompress "
+						+ settings.getDumpFile().getAbsolutePath() + " first.");
+			}
+			//compressed files can only be read sequentially: a single chunk is decompressed on its own thread while it is parsed.
+			System.out.println("Dump file is " + compression.toString().toLowerCase() + " compressed and will be processed as a single chunk");
+			return Collections.singletonList(new DumpChunk(0L, Long.MAX_VALUE));
+		}
+
+		DumpSplitter splitter = new DumpSplitter(settings.getDumpFile());
+		if (!settings.isTableSelectionEnabled() && !settings.isIncrementalLoadEnabled()) {
+			return splitter.split(settings.getChunkSize());
+		}
+
+		DumpIndex index = DumpIndex.getIndex(settings.getDumpFile(), settings.getCharset());
+		List<String> tables = new ArrayList<String>();
+		for (String table : index.getTables()) {
+			if (settings.isTableSelected(table)) {
+				tables.add(table);
+			}
+		}
+		for (String table : settings.getIncludedTables()) {
+			if (!index.getTables().contains(table)) {
+				System.out.println("Table " + table + " has no rows in dump file " + settings.getDumpFile().getAbsolutePath());
+			}
+		}
+		System.out.println("Loading tables " + tables);
+
+		List<DumpChunk> chunks = new ArrayList<DumpChunk>();
+		for (DumpChunk region : index.getInsertRegions(tables)) {
+			chunks.addAll(splitter.split(region.getStart(), region.getEnd(), settings.getChunkSize()));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Finds the position of the first {@code INSERT INTO} statement that starts at, or after, a given position.
+	 *
+	 * @param from the position where the search begins
+	 * @param end the position where the search stops
+	 * @return the position of the first byte of the statement, or {@code end} if no statement starts within the given region.
+	 */
+	public long findStatementStart(long from, long end) {
+		long searchStart = Math.max(0L, from - 1);
+		MappedDumpInput input = new MappedDumpInput(file, searchStart, end);
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			long offset = searchStart;
+			int matched = 0;
+			if (from == 0) {
+				//the file itself is a line start
+				matched = 1;
+			}
+			int length;
+			while ((length = input.read(buffer, 0, buffer.length)) != -1) {
+				for (int i = 0; i < length; i++) {
+					byte b = buffer[i];
+					if (b == STATEMENT_START[matched]) {
+						if (++matched == STATEMENT_START.length) {
+							return offset + i + 1 - (STATEMENT_START.length - 1);
+						}
+					} else {
+						matched = b == '\n' ? 1 : 0;
+					}
+				}
+				offset += length;
+			}
+			return end;
+		} catch (IOException e) {
+			throw new IllegalStateException("Error reading dump file " + file.getAbsolutePath(), e);
+		} finally {
+			try {
+				input.close();
+			} catch (IOException e) {
+				//ignore
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Delivers the {@link RowBatch}es parsed by a {@link FanOutParser} to the {@link ChunkLoader} of one destination.
+ *
+ * Batches wait in a bounded queue. When the queue is full, the parser blocks until the loader takes a batch, so a slow destination
+ * throttles the parser instead of accumulating rows in memory, while the loaders of other destinations keep writing the batches
+ * already in their queues.
+ *
+ * The loader keeps the batches it received after its last commit. If it needs to process the rows after the last commit again (e.g. when the
+ * bulk load of a table fails), they are replayed from these batches, as the parser has moved on. Batches come from a {@link RowBatchPool} and are
+ * released back to it once committed, or when the channel is closed.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class FanOutChannel {
+
+	private static final RowBatch END = new RowBatch(Charset.forName("UTF-8"));
+
+	private final Destination destination;
+	private final RowBatchPool pool;
+	private final BlockingQueue<RowBatch> queue;
+	private final LinkedList<RowBatch> retained = new LinkedList<RowBatch>();
+
+	private volatile boolean closed;
+	private volatile Throwable parserError;
+	private boolean ended;
+
+	/**
+	 * Creates a channel to a destination
+	 * @param destination the destination loaded from this channel
+	 * @param pool the pool the batches sent through this channel are released to.
+	 * @param capacity the maximum number of batches waiting to be loaded.
+	 */
+	FanOutChannel(Destination destination, RowBatchPool pool, int capacity) {
+		this.destination = destination;
+		this.pool = pool;
+		this.queue = new ArrayBlockingQueue<RowBatch>(capacity);
+	}
+
+	/**
+	 * Sends a batch to the loader, waiting while its queue is full.
+	 * @param batch the batch to send
+	 * @return {@code true} if the batch was queued, or {@code false} if the loader has stopped and will not take any more batches,
+	 *         in which case the batch was not released by this channel.
+	 * @throws InterruptedException if interrupted while waiting for the loader.
+	 */
+	boolean send(RowBatch batch) throws InterruptedException {
+		long start = System.nanoTime();
+		try {
+			while (!closed) {
+				if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+					//queued while the channel was being closed: taken back unless close() got it first.
+					return !closed || !queue.remove(batch);
+				}
+			}
+			return false;
+		} finally {
+			destination.parserWaitTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Notifies the loader that all batches of the chunk were sent.
+	 * @throws InterruptedException if interrupted while waiting for the loader.
+	 */
+	void finish() throws InterruptedException {
+		send(END);
+	}
+
+	/**
+	 * Notifies the loader that the chunk could not be parsed.
+	 * @param error the parser error
+	 * @throws InterruptedException if interrupted while waiting for the loader.
+	 */
+	void fail(Throwable error) throws InterruptedException {
+		parserError = error;
+		send(END);
+	}
+
+	/**
+	 * Stops the channel once the loader is done, successfully or not, and discards any batch still in the queue.
+	 */
+	void close() {
+		closed = true;
+		List<RowBatch> batches = new ArrayList<RowBatch>(retained);
+		queue.drainTo(batches);
+		for (RowBatch batch : batches) {
+			if (batch != END) {
+				pool.release(batch);
+			}
+		}
+		retained.clear();
+	}
+
+	/**
+	 * Sends the rows of the chunk to a handler, starting with the batches received after the last commit, and then the ones
+	 * sent by the parser, until the end of the chunk. If the loader runs out of batches while the parser waits for the ones the loader
+	 * holds, the loader is made to commit the rows it processed, so they can be released.
+	 * @param loader the loader of the chunk
+	 * @param from the position in the dump file of the first statement to send. Previous statements have already been loaded.
+	 * @throws InterruptedException if interrupted while waiting for the parser.
+	 */
+	void replay(ChunkLoader loader, long from) throws InterruptedException {
+		for (RowBatch batch : new ArrayList<RowBatch>(retained)) {
+			batch.replay(loader, from);
+		}
+		while (!ended) {
+			long start = System.nanoTime();
+			RowBatch batch = queue.poll(10, TimeUnit.MILLISECONDS);
+			destination.statistics.addReadTime(System.nanoTime() - start);
+			if (batch == null) {
+				if (pool.isExhausted() && !retained.isEmpty()) {
+					loader.commitProcessed();
+				}
+				continue;
+			}
+			if (batch == END) {
+				ended = true;
+				if (parserError != null) {
+					throw new IllegalStateException("Error parsing dump file", parserError);
+				}
+				return;
+			}
+			retained.add(batch);
+			batch.replay(loader, from);
+		}
+	}
+
+	/**
+	 * Releases the batches whose rows have all been committed.
+	 * @param offset the position in the dump file up to where all rows were committed.
+	 */
+	void committed(long offset) {
+		while (!retained.isEmpty() && retained.getFirst().getEndOffset() <= offset) {
+			pool.release(retained.removeFirst());
+		}
+	}
+}
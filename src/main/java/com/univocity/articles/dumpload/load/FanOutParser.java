@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Parses a {@link DumpChunk} once and loads its rows into several destinations at the same time. With a single destination, it pipelines
+ * the load of the chunk: the parser fills the next batch of rows while the previous one is written into the database.
+ *
+ * Rows are copied into {@link RowBatch}es of whole statements, taken from a {@link RowBatchPool} and shared by all destinations. They are sent to a
+ * {@link ChunkLoader} per destination through a {@link FanOutChannel}. Each loader runs on its own thread and connection, and commits and records
+ * its progress independently. Batches go back to the pool once every loader committed their rows, so the parser reuses the same buffers through
+ * the whole chunk.
+ * When the progress recorded by the destinations differs (e.g. a previous load was interrupted), the chunk is parsed from the earliest position
+ * and each loader skips the statements it already committed.
+ *
+ * If a loader fails, the error is recorded in its {@link Destination}, no more rows are sent to it and the other destinations carry on.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class FanOutParser implements Callable<Long>, RowHandler {
+
+	private final List<Destination> destinations;
+	private final LoadSettings settings;
+	private final DumpChunk chunk;
+	private final ExecutorService loaders;
+
+	private final List<FanOutChannel> channels = new ArrayList<FanOutChannel>();
+	private final List<Watermarks> watermarks = new ArrayList<Watermarks>();
+	private RowBatchPool pool;
+	private int batchBytes;
+	private RowBatch batch;
+	private long rows;
+
+	/**
+	 * Creates a parser for a chunk of the dump file
+	 * @param destinations the destinations to load
+	 * @param settings the load settings
+	 * @param chunk the chunk of the dump file to load
+	 * @param loaders the executor that runs the {@link ChunkLoader} of each destination. Must be able to run a loader per destination for each chunk parsed concurrently.
+	 */
+	FanOutParser(List<Destination> destinations, LoadSettings settings, DumpChunk chunk, ExecutorService loaders) {
+		this.destinations = destinations;
+		this.settings = settings;
+		this.chunk = chunk;
+		this.loaders = loaders;
+	}
+
+	@Override
+	public Long call() throws Exception {
+		long start = Long.MAX_VALUE;
+		pool = new RowBatchPool(settings.getCharset(), settings.getPipelineDepth(), settings.getPipelineMemory());
+		batchBytes = pool.getBatchBytes();
+		Map<Destination, Future<Long>> results = new LinkedHashMap<Destination, Future<Long>>();
+		for (final Destination destination : destinations) {
+			//destinations that failed are left behind, to be resumed later.
+			if (destination.getError() != null || destination.checkpoint.isComplete(chunk)) {
+				continue;
+			}
+			long committed = destination.checkpoint.getCommittedOffset(chunk);
+			if (destination.watermarks != null) {
+				committed = Math.max(committed, destination.watermarks.getStartOffset(chunk));
+				watermarks.add(destination.watermarks);
+			}
+			start = Math.min(start, committed);
+
+			final FanOutChannel channel = new FanOutChannel(destination, pool, settings.getPipelineDepth());
+			channels.add(channel);
+			results.put(destination, loaders.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					try {
+						return new ChunkLoader(destination, settings, chunk, channel).call();
+					} finally {
+						channel.close();
+					}
+				}
+			}));
+		}
+		if (channels.isEmpty()) {
+			return 0L;
+		}
+
+		long loaded = 0;
+		try {
+			batch = pool.acquire();
+			Projection projection = destinations.get(0).projection;
+			(projection == null ? new DumpParser(settings.getCharset()) : projection.newParser()).parse(DumpCompression.openInput(settings.getDumpFile(), start, chunk.getEnd()), this);
+			send();
+			for (FanOutChannel channel : channels) {
+				channel.finish();
+			}
+		} catch (NoDestinationsLeft ex) {
+			//every loader failed. Their errors are collected below.
+		} catch (Exception ex) {
+			for (FanOutChannel channel : channels) {
+				channel.fail(ex);
+			}
+			throw ex;
+		} finally {
+			for (Map.Entry<Destination, Future<Long>> e : results.entrySet()) {
+				try {
+					loaded += e.getValue().get();
+				} catch (ExecutionException ex) {
+					e.getKey().failed(ex.getCause());
+					System.out.println("Error loading chunk " + chunk + " into destination " + e.getKey() + ". No more rows will be loaded into it. Error: " + ex.getCause().getMessage());
+				}
+			}
+		}
+		//the rows parsed when loading several destinations, as each one may load a different number of rows.
+		return destinations.size() == 1 ? loaded : rows;
+	}
+
+	/**
+	 * Sends the statements recorded so far to every destination, waiting for the ones whose queues are full.
+	 */
+	private void send() {
+		if (batch.getStatementCount() == 0) {
+			return;
+		}
+		try {
+			//references are counted before sending: a loader may commit and release the batch right away.
+			pool.sent(batch, channels.size());
+			for (Iterator<FanOutChannel> it = channels.iterator(); it.hasNext();) {
+				if (!it.next().send(batch)) {
+					//the loader stopped.
+					it.remove();
+					pool.release(batch);
+				}
+			}
+			if (channels.isEmpty()) {
+				throw new NoDestinationsLeft();
+			}
+			batch = pool.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while sending rows of chunk " + chunk, e);
+		}
+	}
+
+	@Override
+	public boolean statementStarted(String table, long offset) {
+		batch.statementStarted(table, offset);
+		if (!settings.isTableSelected(table)) {
+			return false;
+		}
+		//in incremental loads, statements whose rows are in every destination already are not read.
+		for (Watermarks destinationWatermarks : watermarks) {
+			if (destinationWatermarks.isStatementNeeded(table, offset)) {
+				return true;
+			}
+		}
+		return watermarks.isEmpty();
+	}
+
+	@Override
+	public void rowParsed(DumpRow row) {
+		batch.rowParsed(row);
+		rows++;
+	}
+
+	@Override
+	public void statementEnded(String table, long offset) {
+		batch.statementEnded(table, offset);
+		if (batch.getRowCount() >= settings.getBatchSize() || batch.getSize() >= batchBytes || batch.getStatementCount() >= settings.getBatchSize()) {
+			send();
+		}
+	}
+
+	/**
+	 * Stops the parser once no destination is taking rows of the chunk.
+	 */
+	private static class NoDestinationsLeft extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+}
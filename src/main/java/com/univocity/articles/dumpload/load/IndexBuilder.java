@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.univocity.articles.dumpload.databases.*;
+
+/**
+ * Creates the keys and indexes declared by a {@link Database} (see {@link Database#getIndexDefinitions()}) once its tables are loaded.
+ * Rows are inserted much faster into tables without keys and indexes, and building an index over the loaded rows is much
+ * faster than maintaining it while rows are inserted.
+ *
+ * Tables are processed concurrently, each one on its own connection, while the keys and indexes of a single table are
+ * created one after the other. Foreign keys are only created after all other keys and indexes exist. Keys and indexes that
+ * already exist are skipped, so the build can be executed again after a failure.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class IndexBuilder {
+
+	private final Database database;
+	private final LoadSettings settings;
+
+	/**
+	 * Creates a builder for the keys and indexes of a database
+	 * @param database the database whose keys and indexes will be created
+	 * @param settings the load settings, which determine the tables loaded and the number of concurrent workers.
+	 */
+	public IndexBuilder(Database database, LoadSettings settings) {
+		this.database = database;
+		this.settings = settings;
+	}
+
+	/**
+	 * Creates all keys and indexes, blocking until they are built.
+	 * @throws IllegalStateException if any key or index could not be created. All others are still created.
+	 */
+	public void build() {
+		long start = System.currentTimeMillis();
+
+		Map<String, List<IndexDefinition>> keys = new LinkedHashMap<String, List<IndexDefinition>>();
+		Map<String, List<IndexDefinition>> foreignKeys = new LinkedHashMap<String, List<IndexDefinition>>();
+		for (IndexDefinition index : database.getIndexDefinitions()) {
+			if (settings.isTableSelected(index.getTable())) {
+				add(index.getType() == IndexDefinition.Type.FOREIGN_KEY ? foreignKeys : keys, index);
+			}
+		}
+
+		List<String> errors = new ArrayList<String>();
+		errors.addAll(build(keys));
+		errors.addAll(build(foreignKeys));
+
+		System.out.println("Built keys and indexes of " + keys.size() + " tables in " + (System.currentTimeMillis() - start) + " ms");
+		if (!errors.isEmpty()) {
+			throw new IllegalStateException("Error building keys and indexes: " + errors);
+		}
+	}
+
+	private static void add(Map<String, List<IndexDefinition>> indexesPerTable, IndexDefinition index) {
+		List<IndexDefinition> indexes = indexesPerTable.get(index.getTable());
+		if (indexes == null) {
+			indexes = new ArrayList<IndexDefinition>();
+			indexesPerTable.put(index.getTable(), indexes);
+		}
+		indexes.add(index);
+	}
+
+	private List<String> build(Map<String, List<IndexDefinition>> indexesPerTable) {
+		if (indexesPerTable.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		int workers = Math.min(Math.min(settings.getParallelism(), database.getPoolSize()), indexesPerTable.size());
+		ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, "index-builder-" + count.incrementAndGet());
+			}
+		});
+
+		try {
+			List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+			for (Map.Entry<String, List<IndexDefinition>> e : indexesPerTable.entrySet()) {
+				final String table = e.getKey();
+				final List<IndexDefinition> indexes = e.getValue();
+				results.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws Exception {
+						return build(table, indexes);
+					}
+				}));
+			}
+
+			List<String> errors = new ArrayList<String>();
+			for (Future<List<String>> result : results) {
+				try {
+					errors.addAll(result.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Error building keys and indexes of database " + database.getDatabaseName(), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while building keys and indexes of database " + database.getDatabaseName(), e);
+				}
+			}
+			return errors;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private List<String> build(String table, List<IndexDefinition> indexes) throws SQLException {
+		List<String> errors = new ArrayList<String>();
+		Connection connection = database.openConnection();
+		try {
+			connection.setAutoCommit(true);
+
+			List<IndexDefinition> pending = new ArrayList<IndexDefinition>();
+			Set<String> existing = getExistingIndexes(connection, table);
+			for (IndexDefinition index : indexes) {
+				String name = index.getType() == IndexDefinition.Type.PRIMARY_KEY ? "PRIMARY KEY" : index.getName().toLowerCase();
+				if (existing.contains(name)) {
+					System.out.println("Skipping " + index + ": already exists");
+				} else {
+					pending.add(index);
+				}
+			}
+			if (pending.isEmpty()) {
+				return errors;
+			}
+
+			//primary key first, then unique keys, then everything else.
+			Collections.sort(pending, new Comparator<IndexDefinition>() {
+				@Override
+				public int compare(IndexDefinition o1, IndexDefinition o2) {
+					return o1.getType().compareTo(o2.getType());
+				}
+			});
+
+			for (String sql : database.getCreateIndexStatements(connection, table, pending)) {
+				long start = System.currentTimeMillis();
+				Statement statement = connection.createStatement();
+				try {
+					statement.execute(sql);
+					System.out.println(table + ": " + sql + " (" + (System.currentTimeMillis() - start) + " ms)");
+				} catch (SQLException ex) {
+					System.out.println(table + ": " + sql + " FAILED after " + (System.currentTimeMillis() - start) + " ms: " + ex.getMessage());
+					errors.add(table + ": " + ex.getMessage());
+				} finally {
+					statement.close();
+				}
+			}
+		} finally {
+			connection.close();
+		}
+		return errors;
+	}
+
+	private static Set<String> getExistingIndexes(Connection connection, String table) throws SQLException {
+		Set<String> existing = new HashSet<String>();
+		DatabaseMetaData metaData = connection.getMetaData();
+		String catalog = connection.getCatalog();
+
+		//identifiers may be stored in upper or lower case, depending on the database.
+		for (String name : new LinkedHashSet<String>(Arrays.asList(table, table.toUpperCase(), table.toLowerCase()))) {
+			ResultSet rs = metaData.getIndexInfo(catalog, null, name, false, true);
+			try {
+				while (rs.next()) {
+					String index = rs.getString("INDEX_NAME");
+					if (index != null) {
+						existing.add(index.toLowerCase());
+					}
+				}
+			} finally {
+				rs.close();
+			}
+
+			rs = metaData.getPrimaryKeys(catalog, null, name);
+			try {
+				if (rs.next()) {
+					existing.add("PRIMARY KEY");
+				}
+			} finally {
+				rs.close();
+			}
+
+			rs = metaData.getImportedKeys(catalog, null, name);
+			try {
+				while (rs.next()) {
+					String foreignKey = rs.getString("FK_NAME");
+					if (foreignKey != null) {
+						existing.add(foreignKey.toLowerCase());
+					}
+				}
+			} finally {
+				rs.close();
+			}
+		}
+		return existing;
+	}
+}
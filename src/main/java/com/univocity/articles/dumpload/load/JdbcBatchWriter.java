@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.nio.charset.*;
+import java.sql.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A {@link RowWriter} that inserts rows with batches of a {@link PreparedStatement}. Works with any JDBC driver.
+ *
+ * Values are bound to the statement by a {@link RowBinder}, which uses the column types of the destination table when they are known.
+ *
+ * When a {@link RowRejectHandler} is given, a batch the database fails to insert doesn't fail the load. The batch is rolled back to a savepoint
+ * and split in halves, which are inserted again, and halves that fail are split again until the rows the database rejects are isolated
+ * and handed to the {@link RowRejectHandler}. A bad row costs about two round trips per halving of the batch, and the following batches
+ * are sent with their full size. For that, the writer keeps a copy of the rows of the current batch in a {@link RowBatch}. This requires
+ * a transactional table: the rows inserted before the failure must be rolled back, or they would be inserted again. Writers of tables without
+ * transactions are created without a {@link RowRejectHandler} (see {@link com.univocity.articles.dumpload.databases.Database#isTransactional(Connection, String)}).
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class JdbcBatchWriter implements RowWriter {
+
+	private final Connection connection;
+	private final String table;
+	private final int batchSize;
+	private final RowBinder binder;
+	private final RowRejectHandler rejectHandler;
+	private final RowBatch pendingRows;
+	private final List<String> columns;
+
+	private PreparedStatement statement;
+	private int columnCount;
+	private int pending;
+
+	/**
+	 * Creates a writer for the given table, which binds every value as a {@code String}.
+	 * @param connection the connection used to insert the rows
+	 * @param table the name of the destination table
+	 * @param batchSize the number of rows to accumulate before sending them to the database.
+	 */
+	public JdbcBatchWriter(Connection connection, String table, int batchSize) {
+		this(connection, table, batchSize, new RowBinder(table));
+	}
+
+	/**
+	 * Creates a writer for the given table
+	 * @param connection the connection used to insert the rows
+	 * @param table the name of the destination table
+	 * @param batchSize the number of rows to accumulate before sending them to the database.
+	 * @param binder binds the values of each row to the parameters of the {@code INSERT} statement.
+	 */
+	public JdbcBatchWriter(Connection connection, String table, int batchSize, RowBinder binder) {
+		this(connection, table, batchSize, binder, null, null, null);
+	}
+
+	/**
+	 * Creates a writer for the given table, which isolates the rows rejected by the database instead of failing.
+	 * @param connection the connection used to insert the rows. Must support savepoints.
+	 * @param table the name of the destination table
+	 * @param batchSize the number of rows to accumulate before sending them to the database.
+	 * @param binder binds the values of each row to the parameters of the {@code INSERT} statement.
+	 * @param rejectHandler receives the rows rejected by the database. If {@code null}, a batch that fails makes {@link #flush()} fail.
+	 * @param charset the encoding of the dump file.
+	 * @param columns the columns to insert, in the order of the values of each row, or {@code null} if rows have a value for every column.
+	 */
+	public JdbcBatchWriter(Connection connection, String table, int batchSize, RowBinder binder, RowRejectHandler rejectHandler, Charset charset, List<String> columns) {
+		this.connection = connection;
+		this.columns = columns;
+		this.table = table;
+		this.batchSize = batchSize;
+		this.binder = binder;
+		this.rejectHandler = rejectHandler;
+		this.pendingRows = rejectHandler == null ? null : new RowBatch(charset);
+	}
+
+	private void prepare(int columnCount) throws SQLException {
+		if (binder.getColumnCount() > 0 && binder.getColumnCount() != columnCount) {
+			throw new SQLException("Table " + table + " has " + binder.getColumnCount() + " columns but rows in the dump file have " + columnCount + " values");
+		}
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(table);
+		if (columns != null) {
+			sql.append(" (");
+			for (int i = 0; i < columns.size(); i++) {
+				if (i > 0) {
+					sql.append(',');
+				}
+				sql.append(columns.get(i));
+			}
+			sql.append(')');
+		}
+		sql.append(" VALUES (");
+		for (int i = 0; i < columnCount; i++) {
+			if (i > 0) {
+				sql.append(',');
+			}
+			sql.append('?');
+		}
+		sql.append(')');
+
+		this.statement = connection.prepareStatement(sql.toString());
+		this.columnCount = columnCount;
+	}
+
+	@Override
+	public void write(DumpRow row) throws SQLException {
+		if (statement == null) {
+			prepare(row.getFieldCount());
+		} else if (row.getFieldCount() != columnCount) {
+			throw new SQLException("Expected " + columnCount + " values in row of table " + table + " but got " + row.getFieldCount());
+		}
+
+		binder.bind(statement, row);
+		statement.addBatch();
+		if (pendingRows != null) {
+			pendingRows.rowParsed(row);
+		}
+
+		if (++pending >= batchSize) {
+			flush();
+		}
+	}
+
+	@Override
+	public void flush() throws SQLException {
+		if (pending > 0) {
+			pending = 0;
+			if (rejectHandler == null) {
+				statement.executeBatch();
+			} else {
+				try {
+					execute(0, pendingRows.getRowCount());
+				} finally {
+					pendingRows.clear();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes the batch of rows bound to the statement, isolating the rows rejected by the database if it fails.
+	 * @param from the index of the first row of the batch in {@link #pendingRows}
+	 * @param to the index after the last row of the batch in {@link #pendingRows}
+	 */
+	private void execute(int from, int to) throws SQLException {
+		Savepoint savepoint = connection.setSavepoint();
+		try {
+			statement.executeBatch();
+		} catch (SQLException e) {
+			connection.rollback(savepoint);
+			statement.clearBatch();
+			if (isConnectionError(e)) {
+				throw e;
+			}
+			if (to - from == 1) {
+				rejectHandler.rowRejected(table, pendingRows.getRow(from), e);
+			} else {
+				int middle = (from + to) >>> 1;
+				resend(from, middle);
+				resend(middle, to);
+			}
+			return;
+		}
+		try {
+			connection.releaseSavepoint(savepoint);
+		} catch (SQLException e) {
+			//not supported by some drivers. The savepoint is released on commit.
+		}
+	}
+
+	private void resend(int from, int to) throws SQLException {
+		for (int i = from; i < to; i++) {
+			binder.bind(statement, pendingRows.getRow(i));
+			statement.addBatch();
+		}
+		execute(from, to);
+	}
+
+	private boolean isConnectionError(SQLException e) {
+		if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException) {
+			return true;
+		}
+		String state = e.getSQLState();
+		if (state == null && e.getNextException() != null) {
+			state = e.getNextException().getSQLState();
+		}
+		return state != null && state.startsWith("08");
+	}
+
+	@Override
+	public void finish() throws SQLException {
+		flush();
+	}
+
+	@Override
+	public void close() {
+		if (statement != null) {
+			try {
+				statement.close();
+			} catch (SQLException e) {
+				//ignore
+			}
+			statement = null;
+		}
+		if (pendingRows != null) {
+			pendingRows.clear();
+		}
+		pending = 0;
+	}
+}
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Tracks the primary keys of the rows loaded into each table, so the {@link ChunkLoader}s of a destination can drop rows with
+ * keys already loaded before they reach the database. Tables are created without primary keys to load faster, and the dump
+ * file may have repeated rows: without deduplication, the primary keys built after the load would fail.
+ *
+ * The primary keys are the ones declared by {@link Database#getIndexDefinitions()}. Keys with one integer column, or with two
+ * integer columns whose values fit in 32 bits each, are packed into a {@code long} and kept in a {@link LongKeySet}, shared
+ * by all loaders of the destination. Rows of other tables, and rows whose key values can't be packed, are loaded without checks.
+ *
+ * The first time a table is loaded, the keys of the rows it already has (e.g. the rows committed before a load was interrupted)
+ * are read into the set, so rows loaded by a previous run are not loaded again.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class KeyDeduplicator {
+
+	private final Map<String, IndexDefinition> primaryKeys = new HashMap<String, IndexDefinition>();
+	private final ConcurrentMap<String, TableKeys> tables = new ConcurrentHashMap<String, TableKeys>();
+	private final boolean logDuplicates;
+
+	/**
+	 * Creates a deduplicator for the tables of a destination database
+	 * @param database the destination database, which declares the primary key of each table.
+	 * @param settings the load settings
+	 */
+	KeyDeduplicator(Database database, LoadSettings settings) {
+		for (IndexDefinition index : database.getIndexDefinitions()) {
+			if (index.getType() == IndexDefinition.Type.PRIMARY_KEY) {
+				primaryKeys.put(index.getTable().toLowerCase(), index);
+			}
+		}
+		this.logDuplicates = settings.getDeduplicationMode() == LoadSettings.DeduplicationMode.LOG;
+	}
+
+	/**
+	 * Notifies that a loader is about to write into a table. The first time a table is seen, the keys of its existing rows
+	 * are collected. Other loaders wait until they are all collected.
+	 *
+	 * @param table the name of the table
+	 * @param connection the connection of the loader.
+	 * @return the keys of the table, or {@code null} if the rows of the table can't be deduplicated.
+	 * @throws SQLException if the keys of the existing rows can't be collected.
+	 */
+	TableKeys tableStarted(String table, Connection connection) throws SQLException {
+		TableKeys keys = tables.get(table);
+		if (keys == null) {
+			TableKeys newKeys = new TableKeys(table, primaryKeys.get(table.toLowerCase()));
+			keys = tables.putIfAbsent(table, newKeys);
+			if (keys == null) {
+				keys = newKeys;
+			}
+		}
+		keys.initialize(connection);
+		return keys.set == null ? null : keys;
+	}
+
+	/**
+	 * Indicates whether rows dropped for having a repeated key should be printed out.
+	 * @return {@code true} if each row dropped should be printed out.
+	 */
+	boolean isLoggingDuplicates() {
+		return logDuplicates;
+	}
+
+	/**
+	 * Prints the number of tables deduplicated and the memory taken by their keys.
+	 */
+	void printMemoryUsage() {
+		int count = 0;
+		long bytes = 0;
+		for (TableKeys keys : tables.values()) {
+			if (keys.set != null) {
+				count++;
+				bytes += keys.set.getMemoryUsage();
+			}
+		}
+		System.out.println("Primary keys of " + count + " tables tracked in " + (bytes / (1024 * 1024)) + " MB");
+	}
+
+	/**
+	 * The primary keys loaded into a table.
+	 */
+	static final class TableKeys {
+		private final String table;
+		private final IndexDefinition primaryKey;
+		private int[] columns;
+		private LongKeySet set;
+		private boolean initialized;
+
+		private TableKeys(String table, IndexDefinition primaryKey) {
+			this.table = table;
+			this.primaryKey = primaryKey;
+		}
+
+		private synchronized void initialize(Connection connection) throws SQLException {
+			if (initialized) {
+				return;
+			}
+			initialized = true;
+			if (primaryKey == null) {
+				System.out.println("No primary key declared for table " + table + ". Its rows won't be deduplicated.");
+				return;
+			}
+			if (primaryKey.getColumns().size() > 2) {
+				System.out.println("Primary key " + primaryKey.getName() + " has more than 2 columns. Rows of table " + table + " won't be deduplicated.");
+				return;
+			}
+			int[] columns = RowBinder.getIntegerColumnPositions(connection, table, primaryKey.getColumns());
+			if (columns == null) {
+				System.out.println("Primary key " + primaryKey.getName() + " has columns that are not integers, or not found in table " + table + ". Its rows won't be deduplicated.");
+				return;
+			}
+			this.columns = columns;
+			this.set = new LongKeySet();
+
+			long count = 0;
+			Statement statement = connection.createStatement();
+			try {
+				statement.setFetchSize(10000);
+				ResultSet rs = statement.executeQuery("SELECT " + primaryKey.getColumnList() + " FROM " + table);
+				try {
+					while (rs.next()) {
+						long key = rs.getLong(1);
+						if (rs.wasNull()) {
+							continue;
+						}
+						if (columns.length == 2) {
+							long second = rs.getLong(2);
+							if (rs.wasNull() || !fitsInHalf(key) || !fitsInHalf(second)) {
+								continue;
+							}
+							key = (key << 32) | second;
+						}
+						set.add(key);
+						count++;
+					}
+				} finally {
+					rs.close();
+				}
+			} finally {
+				statement.close();
+			}
+			if (count > 0) {
+				System.out.println("Collected " + count + " primary keys of rows already in table " + table);
+			}
+		}
+
+		private static boolean fitsInHalf(long value) {
+			return value >= 0 && value <= 0xFFFFFFFFL;
+		}
+
+		/**
+		 * Reads the key of a row
+		 * @param row a row of the table
+		 * @param key receives the key of the row, packed into a {@code long}.
+		 * @return {@code true} if the row has a key, or {@code false} if its key values are {@code NULL}, not integers, or can't be packed.
+		 */
+		boolean readKey(DumpRow row, long[] key) {
+			try {
+				int first = columns[0];
+				if (first >= row.getFieldCount() || row.isNull(first)) {
+					return false;
+				}
+				long value = row.getLong(first);
+				if (columns.length == 2) {
+					int second = columns[1];
+					if (second >= row.getFieldCount() || row.isNull(second)) {
+						return false;
+					}
+					long secondValue = row.getLong(second);
+					if (!fitsInHalf(value) || !fitsInHalf(secondValue)) {
+						return false;
+					}
+					value = (value << 32) | secondValue;
+				}
+				key[0] = value;
+				return true;
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Records a key as loaded
+		 * @param key the key of a row, as given by {@link #readKey(DumpRow, long[])}
+		 * @return {@code true} if the key was not loaded before, or {@code false} if the row must be dropped.
+		 */
+		boolean add(long key) {
+			return set.add(key);
+		}
+
+		/**
+		 * Forgets a key whose row was rolled back, so the row can be loaded again.
+		 * @param key the key of the row
+		 */
+		void remove(long key) {
+			set.remove(key);
+		}
+
+		/**
+		 * Describes the key of a row, for log messages.
+		 * @param row a row of the table
+		 * @return the columns of the key with the values of the row.
+		 */
+		String describe(DumpRow row) {
+			StringBuilder out = new StringBuilder();
+			for (int i = 0; i < columns.length; i++) {
+				if (i > 0) {
+					out.append(", ");
+				}
+				out.append(primaryKey.getColumns().get(i)).append('=').append(row.getString(columns[i]));
+			}
+			return out.toString();
+		}
+	}
+}
@@ -0,0 +1,417 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.databases.*;
+
+/**
+ * Records the progress of a load in two control tables of the destination database, so an interrupted load can be resumed:
+ *
+ * <ul>
+ * <li><b>dump_load_chunks</b>: the chunks the dump file was split into, and the offset after the last statement committed in each chunk.</li>
+ * <li><b>dump_load_rows</b>: the number of rows committed into each table, by each chunk.</li>
+ * <li><b>dump_load_watermarks</b>: the watermark of each table when an incremental load started. Only created by incremental loads.</li>
+ * </ul>
+ *
+ * Progress is saved with the connection of the loader thread, in the same transaction as the rows it refers to. When the
+ * transaction is committed, rows and progress are made durable together, so resuming from the recorded offset never
+ * duplicates nor loses rows. This guarantee depends on transactional tables: tables that don't support transactions (such as MyISAM)
+ * keep the rows inserted after the last recorded offset when a load is interrupted, so these tables can only be resumed with
+ * deduplication enabled (see {@link #getLoadedTables()}).
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class LoadCheckpoint {
+
+	private static final String CHUNKS = "dump_load_chunks";
+	private static final String ROWS = "dump_load_rows";
+	private static final String WATERMARKS = "dump_load_watermarks";
+
+	private final Database database;
+	private final File dumpFile;
+
+	private final Map<Long, Long> committedOffsets = new HashMap<Long, Long>();
+	private final Map<Long, Map<String, Long>> committedRows = new HashMap<Long, Map<String, Long>>();
+
+	/**
+	 * Creates the checkpoint of a load, creating its control tables if required.
+	 * @param database the destination database
+	 * @param dumpFile the dump file being loaded
+	 */
+	LoadCheckpoint(Database database, File dumpFile) {
+		this.database = database;
+		this.dumpFile = dumpFile;
+		createControlTables();
+	}
+
+	private void createControlTables() {
+		Connection connection = database.openConnection();
+		try {
+			if (!exists(connection, CHUNKS)) {
+				execute(connection, "CREATE TABLE " + CHUNKS + " (chunk_start DECIMAL(19) NOT NULL PRIMARY KEY, chunk_end DECIMAL(19) NOT NULL, "
+						+ "committed_offset DECIMAL(19) NOT NULL, last_table VARCHAR(255), dump_size DECIMAL(19) NOT NULL)");
+			}
+			if (!exists(connection, ROWS)) {
+				execute(connection, "CREATE TABLE " + ROWS + " (chunk_start DECIMAL(19) NOT NULL, table_name VARCHAR(255) NOT NULL, "
+						+ "rows_committed DECIMAL(19) NOT NULL, PRIMARY KEY (chunk_start, table_name))");
+			}
+			connection.commit();
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error creating load control tables " + CHUNKS + " and " + ROWS, ex);
+		} finally {
+			close(connection);
+		}
+	}
+
+	private static boolean exists(Connection connection, String table) {
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0").close();
+				return true;
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException ex) {
+			try {
+				connection.rollback();
+			} catch (SQLException e) {
+				//ignore
+			}
+			return false;
+		}
+	}
+
+	private static void execute(Connection connection, String sql) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			statement.execute(sql);
+		} finally {
+			statement.close();
+		}
+	}
+
+	private static void close(Connection connection) {
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			//ignore
+		}
+	}
+
+	/**
+	 * Discards the progress of any previous load.
+	 */
+	void clear() {
+		Connection connection = database.openConnection();
+		try {
+			//checked first: a table that doesn't exist rolls back the transaction.
+			if (exists(connection, WATERMARKS)) {
+				execute(connection, "DELETE FROM " + WATERMARKS);
+			}
+			execute(connection, "DELETE FROM " + ROWS);
+			execute(connection, "DELETE FROM " + CHUNKS);
+			connection.commit();
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error clearing load progress", ex);
+		} finally {
+			close(connection);
+		}
+		committedOffsets.clear();
+		committedRows.clear();
+	}
+
+	/**
+	 * Indicates whether a previous load of the dump file was interrupted before all its chunks were loaded.
+	 * @return {@code true} if progress of the dump file was recorded and some of its chunks are incomplete.
+	 */
+	boolean hasPendingProgress() {
+		Connection connection = database.openConnection();
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + CHUNKS + " WHERE dump_size = " + dumpFile.length() + " AND committed_offset < chunk_end");
+				rs.next();
+				boolean pending = rs.getLong(1) > 0;
+				rs.close();
+				connection.commit();
+				return pending;
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error reading load progress from " + CHUNKS, ex);
+		} finally {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Returns the tables that had rows committed by the previous load.
+	 * @return the names of the tables with progress recorded.
+	 */
+	Set<String> getLoadedTables() {
+		Set<String> tables = new TreeSet<String>();
+		Connection connection = database.openConnection();
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				ResultSet rs = statement.executeQuery("SELECT DISTINCT table_name FROM " + ROWS + " WHERE rows_committed > 0");
+				while (rs.next()) {
+					tables.add(rs.getString(1));
+				}
+				rs.close();
+				connection.commit();
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error reading load progress from " + ROWS, ex);
+		} finally {
+			close(connection);
+		}
+		return tables;
+	}
+
+	/**
+	 * Reads the chunks and progress recorded by a previous load.
+	 * @return the chunks the dump file was split into by the previous load, or an empty list if no progress was recorded.
+	 */
+	List<DumpChunk> restore() {
+		List<DumpChunk> chunks = new ArrayList<DumpChunk>();
+		Connection connection = database.openConnection();
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				ResultSet rs = statement.executeQuery("SELECT chunk_start, chunk_end, committed_offset, dump_size FROM " + CHUNKS + " ORDER BY chunk_start");
+				while (rs.next()) {
+					long dumpSize = rs.getLong(4);
+					if (dumpSize != dumpFile.length()) {
+						throw new IllegalStateException("The progress recorded in table " + CHUNKS + " belongs to a dump file of " + dumpSize + " bytes, but "
+								+ dumpFile.getAbsolutePath() + " has " + dumpFile.length() + " bytes. Set load.resume=false to start over.");
+					}
+					DumpChunk chunk = new DumpChunk(rs.getLong(1), rs.getLong(2));
+					chunks.add(chunk);
+					committedOffsets.put(chunk.getStart(), rs.getLong(3));
+					committedRows.put(chunk.getStart(), new HashMap<String, Long>());
+				}
+				rs.close();
+
+				rs = statement.executeQuery("SELECT chunk_start, table_name, rows_committed FROM " + ROWS);
+				while (rs.next()) {
+					Map<String, Long> rows = committedRows.get(rs.getLong(1));
+					if (rows != null) {
+						rows.put(rs.getString(2), rs.getLong(3));
+					}
+				}
+				rs.close();
+			} finally {
+				statement.close();
+			}
+			connection.commit();
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error reading load progress from " + CHUNKS, ex);
+		} finally {
+			close(connection);
+		}
+		return chunks;
+	}
+
+	/**
+	 * Records the chunks of a new load, before any row is loaded.
+	 * @param chunks the chunks the dump file was split into.
+	 */
+	void initialize(List<DumpChunk> chunks) {
+		Connection connection = database.openConnection();
+		try {
+			PreparedStatement statement = connection.prepareStatement("INSERT INTO " + CHUNKS + " (chunk_start, chunk_end, committed_offset, dump_size) VALUES (?,?,?,?)");
+			try {
+				for (DumpChunk chunk : chunks) {
+					statement.setLong(1, chunk.getStart());
+					statement.setLong(2, chunk.getEnd());
+					statement.setLong(3, chunk.getStart());
+					statement.setLong(4, dumpFile.length());
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			} finally {
+				statement.close();
+			}
+			connection.commit();
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error recording chunks of the dump file in " + CHUNKS, ex);
+		} finally {
+			close(connection);
+		}
+		for (DumpChunk chunk : chunks) {
+			committedOffsets.put(chunk.getStart(), chunk.getStart());
+			committedRows.put(chunk.getStart(), new HashMap<String, Long>());
+		}
+	}
+
+	/**
+	 * Reads the watermarks recorded when the incremental load being resumed started. The rows committed since then raised the
+	 * highest values in the tables, so the watermarks must not be read from the tables again.
+	 * @return the watermark of each table, {@code null} for tables that were empty, or {@code null} if no watermarks were recorded.
+	 */
+	Map<String, Long> getWatermarks() {
+		Connection connection = database.openConnection();
+		try {
+			if (!exists(connection, WATERMARKS)) {
+				return null;
+			}
+			Map<String, Long> watermarks = new HashMap<String, Long>();
+			Statement statement = connection.createStatement();
+			try {
+				ResultSet rs = statement.executeQuery("SELECT table_name, watermark FROM " + WATERMARKS);
+				while (rs.next()) {
+					long watermark = rs.getLong(2);
+					watermarks.put(rs.getString(1), rs.wasNull() ? null : watermark);
+				}
+				rs.close();
+			} finally {
+				statement.close();
+			}
+			connection.commit();
+			return watermarks.isEmpty() ? null : watermarks;
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error reading watermarks from " + WATERMARKS, ex);
+		} finally {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Records the watermarks of a new incremental load, so they can be restored if the load is resumed.
+	 * @param watermarks the watermark of each table, {@code null} for tables that are empty.
+	 */
+	void saveWatermarks(Map<String, Long> watermarks) {
+		Connection connection = database.openConnection();
+		try {
+			if (!exists(connection, WATERMARKS)) {
+				execute(connection, "CREATE TABLE " + WATERMARKS + " (table_name VARCHAR(255) NOT NULL PRIMARY KEY, watermark DECIMAL(19))");
+			}
+			execute(connection, "DELETE FROM " + WATERMARKS);
+			PreparedStatement statement = connection.prepareStatement("INSERT INTO " + WATERMARKS + " (table_name, watermark) VALUES (?,?)");
+			try {
+				for (Map.Entry<String, Long> e : watermarks.entrySet()) {
+					statement.setString(1, e.getKey());
+					if (e.getValue() == null) {
+						statement.setNull(2, Types.DECIMAL);
+					} else {
+						statement.setLong(2, e.getValue());
+					}
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			} finally {
+				statement.close();
+			}
+			connection.commit();
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error recording watermarks in " + WATERMARKS, ex);
+		} finally {
+			close(connection);
+		}
+	}
+
+	/**
+	 * Returns the position after the last statement committed in a chunk.
+	 * @param chunk a chunk of the dump file
+	 * @return the position from where the chunk should be loaded.
+	 */
+	long getCommittedOffset(DumpChunk chunk) {
+		return committedOffsets.get(chunk.getStart());
+	}
+
+	/**
+	 * Indicates whether all rows of a chunk have been committed.
+	 * @param chunk a chunk of the dump file
+	 * @return {@code true} if the chunk has been fully loaded.
+	 */
+	boolean isComplete(DumpChunk chunk) {
+		return getCommittedOffset(chunk) >= chunk.getEnd();
+	}
+
+	/**
+	 * Returns the number of rows committed by a chunk into each table.
+	 * @param chunk a chunk of the dump file
+	 * @return a copy of the row counts committed by the chunk, per table.
+	 */
+	Map<String, Long> getCommittedRows(DumpChunk chunk) {
+		return new HashMap<String, Long>(committedRows.get(chunk.getStart()));
+	}
+
+	/**
+	 * Records the progress of a chunk in the current transaction of a loader thread. Must be called right before the transaction is committed.
+	 *
+	 * @param connection the connection of the loader thread.
+	 * @param chunk the chunk being loaded.
+	 * @param offset the position after the last statement whose rows will be committed.
+	 * @param lastTable the table of the last statement whose rows will be committed.
+	 * @param rowsPerTable the total number of rows of each table committed by this chunk, including the ones about to be committed.
+	 * @param changedTables the tables with rows about to be committed, whose counts must be updated.
+	 * @throws SQLException if the progress can't be recorded.
+	 */
+	void save(Connection connection, DumpChunk chunk, long offset, String lastTable, Map<String, Long> rowsPerTable, Collection<String> changedTables) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("UPDATE " + CHUNKS + " SET committed_offset = ?, last_table = ? WHERE chunk_start = ?");
+		try {
+			statement.setLong(1, offset);
+			statement.setString(2, lastTable);
+			statement.setLong(3, chunk.getStart());
+			if (statement.executeUpdate() != 1) {
+				throw new SQLException("Chunk " + chunk + " not found in table " + CHUNKS);
+			}
+		} finally {
+			statement.close();
+		}
+
+		for (String table : changedTables) {
+			long rows = rowsPerTable.get(table);
+			statement = connection.prepareStatement("UPDATE " + ROWS + " SET rows_committed = ? WHERE chunk_start = ? AND table_name = ?");
+			try {
+				statement.setLong(1, rows);
+				statement.setLong(2, chunk.getStart());
+				statement.setString(3, table);
+				if (statement.executeUpdate() == 1) {
+					continue;
+				}
+			} finally {
+				statement.close();
+			}
+			statement = connection.prepareStatement("INSERT INTO " + ROWS + " (chunk_start, table_name, rows_committed) VALUES (?,?,?)");
+			try {
+				statement.setLong(1, chunk.getStart());
+				statement.setString(2, table);
+				statement.setLong(3, rows);
+				statement.executeUpdate();
+			} finally {
+				statement.close();
+			}
+		}
+	}
+
+	/**
+	 * Returns the total number of rows committed into each table by all chunks, across all loads of the dump file.
+	 * Only reflects the progress read by {@link #restore()}.
+	 * @return the number of rows committed per table.
+	 */
+	Map<String, Long> getRestoredRowsPerTable() {
+		Map<String, Long> totals = new TreeMap<String, Long>();
+		for (Map<String, Long> rows : committedRows.values()) {
+			for (Map.Entry<String, Long> e : rows.entrySet()) {
+				Long total = totals.get(e.getKey());
+				totals.put(e.getKey(), total == null ? e.getValue() : total + e.getValue());
+			}
+		}
+		return totals;
+	}
+}
@@ -0,0 +1,770 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * Settings that control how a dump file is loaded.
+ *
+ * Default values are read from the <i>load.properties</i> file (under src/main/resources), and can be changed
+ * programmatically with the setters of this class.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class LoadSettings {
+
+	/**
+	 * The available strategies to load a dump file.
+	 */
+	public enum LoadMode {
+		/**
+		 * Loads the dump file with the uniVocity engine.
+		 */
+		UNIVOCITY,
+		/**
+		 * Splits the dump file into chunks and loads them concurrently with the built-in {@link com.univocity.articles.dumpload.parser.DumpParser}.
+		 */
+		PARALLEL,
+		/**
+		 * Converts the dump file into text files, one per table, without loading it into a database.
+		 * See {@link com.univocity.articles.dumpload.convert.DumpConverter}.
+		 */
+		CONVERT
+	}
+
+	/**
+	 * What the parallel mode does with rows whose primary key was already loaded. See {@link KeyDeduplicator}.
+	 */
+	public enum DeduplicationMode {
+		/**
+		 * Rows are written as they are parsed, without checking their keys.
+		 */
+		NONE,
+		/**
+		 * Rows with keys already loaded are dropped and counted.
+		 */
+		DROP,
+		/**
+		 * Rows with keys already loaded are dropped and counted, and each one is printed out with its key.
+		 */
+		LOG
+	}
+
+	private File dumpFile;
+	private String encoding;
+	private LoadMode mode;
+	private int batchSize;
+	private boolean adaptiveBatchSizeEnabled;
+	private int minimumBatchSize;
+	private int maximumBatchSize;
+	private int maximumCommitLatency;
+	private int parallelism;
+	private long chunkSize;
+	private boolean bulkLoadEnabled;
+	private boolean rowCountVerificationEnabled;
+	private boolean resumeEnabled;
+	private boolean indexBuildEnabled;
+	private DeduplicationMode deduplicationMode;
+	private File rejectDirectory;
+	private int maximumRejectedRows;
+	private boolean incrementalLoadEnabled;
+	private Map<String, String> watermarkColumns;
+	private boolean pipelineEnabled;
+	private int pipelineDepth;
+	private long pipelineMemory;
+	private boolean bulkLoadProfileEnabled;
+	private int statusInterval;
+	private File reportFile;
+	private Set<String> includedTables;
+	private Set<String> excludedTables;
+	private Map<String, List<String>> projectedColumns;
+	private Map<String, String> rowFilters;
+
+	/**
+	 * Creates the settings with the values provided in the <i>load.properties</i> file.
+	 */
+	public LoadSettings() {
+		this(readProperties("src/main/resources/load.properties"));
+	}
+
+	/**
+	 * Creates the settings with the given properties. Properties that are not provided assume their default values.
+	 * @param properties the properties with the settings to use.
+	 */
+	public LoadSettings(Properties properties) {
+		setDumpFile(new File(properties.getProperty("dump.file", "/home/jbax/Downloads/dump/mysql-2014-08-18.sql")));
+		setEncoding(properties.getProperty("dump.encoding", "UTF-8"));
+		setMode(LoadMode.valueOf(properties.getProperty("load.mode", "univocity").trim().toUpperCase()));
+		setBatchSize(getInt(properties, "load.batch.size", 10000));
+		setAdaptiveBatchSizeEnabled(Boolean.valueOf(properties.getProperty("load.batch.adaptive", "false").trim()));
+		setMinimumBatchSize(getInt(properties, "load.batch.size.min", 500));
+		setMaximumBatchSize(getInt(properties, "load.batch.size.max", 100000));
+		setMaximumCommitLatency(getInt(properties, "load.batch.commit.latency", 5000));
+		setParallelism(getInt(properties, "load.parallelism", Runtime.getRuntime().availableProcessors()));
+		setChunkSize(getInt(properties, "load.chunk.size", 256) * 1024L * 1024L);
+		setBulkLoadEnabled(Boolean.valueOf(properties.getProperty("load.bulk", "false").trim()));
+		setRowCountVerificationEnabled(Boolean.valueOf(properties.getProperty("load.verify.row.count", "false").trim()));
+		setResumeEnabled(Boolean.valueOf(properties.getProperty("load.resume", "true").trim()));
+		setIndexBuildEnabled(Boolean.valueOf(properties.getProperty("load.build.indexes", "false").trim()));
+		setDeduplicationMode(DeduplicationMode.valueOf(properties.getProperty("load.dedup", "none").trim().toUpperCase()));
+		String rejectDirectory = properties.getProperty("load.reject.dir", "").trim();
+		setRejectDirectory(rejectDirectory.isEmpty() ? null : new File(rejectDirectory));
+		setMaximumRejectedRows(getInt(properties, "load.reject.max", 1000));
+		setIncrementalLoadEnabled(Boolean.valueOf(properties.getProperty("load.incremental", "false").trim()));
+		Map<String, String> watermarkColumns = new TreeMap<String, String>();
+		for (String property : properties.stringPropertyNames()) {
+			if (property.startsWith("load.incremental.column.") && !properties.getProperty(property).trim().isEmpty()) {
+				watermarkColumns.put(property.substring("load.incremental.column.".length()), properties.getProperty(property).trim());
+			}
+		}
+		setWatermarkColumns(watermarkColumns);
+		setPipelineEnabled(Boolean.valueOf(properties.getProperty("load.pipeline", "false").trim()));
+		setPipelineDepth(getInt(properties, "load.pipeline.depth", 4));
+		setPipelineMemory(getInt(properties, "load.pipeline.memory", 64) * 1024L * 1024L);
+		setBulkLoadProfileEnabled(Boolean.valueOf(properties.getProperty("load.profile", "false").trim()));
+		setStatusInterval(getInt(properties, "load.status.interval", 30));
+		String reportFile = properties.getProperty("load.report.file", "load-report.json").trim();
+		setReportFile(reportFile.isEmpty() ? null : new File(reportFile));
+		setIncludedTables(getSet(properties, "load.tables.include"));
+		setExcludedTables(getSet(properties, "load.tables.exclude"));
+		Map<String, List<String>> projectedColumns = new TreeMap<String, List<String>>();
+		Map<String, String> rowFilters = new TreeMap<String, String>();
+		for (String property : properties.stringPropertyNames()) {
+			String value = properties.getProperty(property).trim();
+			if (value.isEmpty()) {
+				continue;
+			}
+			if (property.startsWith("load.columns.")) {
+				List<String> columns = new ArrayList<String>();
+				for (String column : value.split(",")) {
+					if (!column.trim().isEmpty()) {
+						columns.add(column.trim());
+					}
+				}
+				projectedColumns.put(property.substring("load.columns.".length()), columns);
+			} else if (property.startsWith("load.filter.")) {
+				rowFilters.put(property.substring("load.filter.".length()), value);
+			}
+		}
+		setProjectedColumns(projectedColumns);
+		setRowFilters(rowFilters);
+	}
+
+	/**
+	 * Reads a properties file
+	 * @param path the path to the properties file
+	 * @return the properties read from the file
+	 */
+	public static Properties readProperties(String path) {
+		Properties properties = new Properties();
+		try {
+			FileInputStream in = new FileInputStream(path);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("Error loading " + path, e);
+		}
+		return properties;
+	}
+
+	static int getInt(Properties properties, String property, int defaultValue) {
+		String value = properties.getProperty(property);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid value for property " + property + ": " + value, e);
+		}
+	}
+
+	static Set<String> getSet(Properties properties, String property) {
+		Set<String> out = new TreeSet<String>();
+		String value = properties.getProperty(property);
+		if (value != null) {
+			for (String element : value.split(",")) {
+				if (!element.trim().isEmpty()) {
+					out.add(element.trim());
+				}
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the dump file to load
+	 * @return the dump file to load
+	 */
+	public File getDumpFile() {
+		return dumpFile;
+	}
+
+	/**
+	 * Defines the dump file to load
+	 * @param dumpFile the dump file to load
+	 */
+	public void setDumpFile(File dumpFile) {
+		this.dumpFile = dumpFile;
+	}
+
+	/**
+	 * Returns the encoding of the dump file
+	 * @return the encoding of the dump file
+	 */
+	public String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Returns the encoding of the dump file as a {@link Charset}
+	 * @return the encoding of the dump file
+	 */
+	public Charset getCharset() {
+		return Charset.forName(encoding);
+	}
+
+	/**
+	 * Defines the encoding of the dump file
+	 * @param encoding the encoding of the dump file
+	 */
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * Returns the strategy used to load the dump file
+	 * @return the load mode
+	 */
+	public LoadMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Defines the strategy used to load the dump file
+	 * @param mode the load mode
+	 */
+	public void setMode(LoadMode mode) {
+		this.mode = mode;
+	}
+
+	/**
+	 * Returns the number of rows sent to the database in each batch
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Defines the number of rows sent to the database in each batch
+	 * @param batchSize the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Indicates whether the parallel mode adjusts the batch size of each table while loading, measuring the rows written per second,
+	 * the time taken by each commit and the heap in use. When enabled, {@link #getBatchSize()} is the initial batch size of every table,
+	 * and batch sizes are kept between {@link #getMinimumBatchSize()} and {@link #getMaximumBatchSize()}.
+	 * @return {@code true} if batch sizes are adjusted while loading, {@code false} if all tables use {@link #getBatchSize()}.
+	 */
+	public boolean isAdaptiveBatchSizeEnabled() {
+		return adaptiveBatchSizeEnabled;
+	}
+
+	/**
+	 * Defines whether the parallel mode adjusts the batch size of each table while loading.
+	 * @param adaptiveBatchSizeEnabled {@code true} to adjust batch sizes while loading, {@code false} to use {@link #getBatchSize()} for all tables.
+	 */
+	public void setAdaptiveBatchSizeEnabled(boolean adaptiveBatchSizeEnabled) {
+		this.adaptiveBatchSizeEnabled = adaptiveBatchSizeEnabled;
+	}
+
+	/**
+	 * Returns the smallest batch size used when batch sizes are adaptive
+	 * @return the minimum batch size
+	 */
+	public int getMinimumBatchSize() {
+		return minimumBatchSize;
+	}
+
+	/**
+	 * Defines the smallest batch size used when batch sizes are adaptive
+	 * @param minimumBatchSize the minimum batch size
+	 */
+	public void setMinimumBatchSize(int minimumBatchSize) {
+		if (minimumBatchSize <= 0) {
+			throw new IllegalArgumentException("Minimum batch size must be positive");
+		}
+		this.minimumBatchSize = minimumBatchSize;
+	}
+
+	/**
+	 * Returns the largest batch size used when batch sizes are adaptive
+	 * @return the maximum batch size
+	 */
+	public int getMaximumBatchSize() {
+		return maximumBatchSize;
+	}
+
+	/**
+	 * Defines the largest batch size used when batch sizes are adaptive
+	 * @param maximumBatchSize the maximum batch size
+	 */
+	public void setMaximumBatchSize(int maximumBatchSize) {
+		if (maximumBatchSize <= 0) {
+			throw new IllegalArgumentException("Maximum batch size must be positive");
+		}
+		this.maximumBatchSize = maximumBatchSize;
+	}
+
+	/**
+	 * Returns the longest time, in milliseconds, a commit should take when batch sizes are adaptive. The batch size of tables whose
+	 * commits take longer than this is reduced.
+	 * @return the maximum commit latency, in milliseconds.
+	 */
+	public int getMaximumCommitLatency() {
+		return maximumCommitLatency;
+	}
+
+	/**
+	 * Defines the longest time, in milliseconds, a commit should take when batch sizes are adaptive.
+	 * @param maximumCommitLatency the maximum commit latency, in milliseconds.
+	 */
+	public void setMaximumCommitLatency(int maximumCommitLatency) {
+		if (maximumCommitLatency <= 0) {
+			throw new IllegalArgumentException("Maximum commit latency must be positive");
+		}
+		this.maximumCommitLatency = maximumCommitLatency;
+	}
+
+	/**
+	 * Returns the number of rows a {@link RowWriter} accumulates before sending them to the database on its own. The parallel
+	 * loader sends the rows of each table once the batch size is reached, so writers are only left to send them on their own
+	 * when more rows than the largest batch size are pending.
+	 * @return the number of rows writers accumulate before sending them to the database.
+	 */
+	public int getWriterBatchSize() {
+		return (adaptiveBatchSizeEnabled ? Math.max(batchSize, maximumBatchSize) : batchSize) + 1;
+	}
+
+	/**
+	 * Indicates whether the parallel mode parses each chunk on a thread of its own, while the rows already parsed are written on another.
+	 * Always the case when the dump file is loaded into several destinations.
+	 * @return {@code true} if parsing and writing are pipelined.
+	 */
+	public boolean isPipelineEnabled() {
+		return pipelineEnabled;
+	}
+
+	/**
+	 * Defines whether the parallel mode parses each chunk on a thread of its own, while the rows already parsed are written on another.
+	 * Parsing then carries on while batches of rows are sent to the database, instead of waiting for each round trip. Each worker
+	 * runs a parser thread and a writer thread, with a single connection as before.
+	 * @param pipelineEnabled flag indicating whether parsing and writing should be pipelined.
+	 */
+	public void setPipelineEnabled(boolean pipelineEnabled) {
+		this.pipelineEnabled = pipelineEnabled;
+	}
+
+	/**
+	 * Returns the number of batches of parsed rows that are recycled between the parser of a chunk and the writers of its rows. The parser
+	 * waits when all of them are filled and not yet committed by every destination.
+	 * @return the number of batches of rows per chunk being loaded.
+	 */
+	public int getPipelineDepth() {
+		return pipelineDepth;
+	}
+
+	/**
+	 * Defines the number of batches of parsed rows that are recycled between the parser of a chunk and the writers of its rows.
+	 * @param pipelineDepth the number of batches of rows per chunk being loaded. One is filled by the parser while the others are written.
+	 */
+	public void setPipelineDepth(int pipelineDepth) {
+		if (pipelineDepth < 2) {
+			throw new IllegalArgumentException("Pipeline depth must be at least 2");
+		}
+		this.pipelineDepth = pipelineDepth;
+	}
+
+	/**
+	 * Returns the number of bytes of parsed values the batches of a chunk can hold before the parser waits for the writers.
+	 * @return the memory limit of the batches of each chunk being loaded, in bytes.
+	 */
+	public long getPipelineMemory() {
+		return pipelineMemory;
+	}
+
+	/**
+	 * Defines the number of bytes of parsed values the batches of a chunk can hold before the parser waits for the writers. Batches are sent
+	 * once they reach their share of this limit, so the heap used by the pipeline is about this limit times the number of workers.
+	 * @param pipelineMemory the memory limit of the batches of each chunk being loaded, in bytes.
+	 */
+	public void setPipelineMemory(long pipelineMemory) {
+		if (pipelineMemory < 1024 * 1024) {
+			throw new IllegalArgumentException("Pipeline memory must be at least 1 MB");
+		}
+		this.pipelineMemory = pipelineMemory;
+	}
+
+	/**
+	 * Indicates whether the settings of the destination databases that slow down a bulk load are relaxed while the dump file is loaded,
+	 * and restored once the load is finished.
+	 * @return {@code true} if the bulk load profile of each database is applied during the load.
+	 */
+	public boolean isBulkLoadProfileEnabled() {
+		return bulkLoadProfileEnabled;
+	}
+
+	/**
+	 * Defines whether the settings of the destination databases that slow down a bulk load are relaxed while the dump file is loaded,
+	 * such as constraint checks, log flushes on commit and the logging of the tables loaded. Each database defines what is changed.
+	 * Settings are applied to each connection and table of the load, and to the database itself when they can't be set otherwise,
+	 * and restored once the load is finished, even if it fails.
+	 * @param bulkLoadProfileEnabled flag indicating whether the bulk load profile of each database should be applied during the load.
+	 */
+	public void setBulkLoadProfileEnabled(boolean bulkLoadProfileEnabled) {
+		this.bulkLoadProfileEnabled = bulkLoadProfileEnabled;
+	}
+
+	/**
+	 * Returns the interval, in seconds, between the status lines printed while the parallel mode loads the dump file.
+	 * @return the interval between status lines, or 0 if no status is printed.
+	 */
+	public int getStatusInterval() {
+		return statusInterval;
+	}
+
+	/**
+	 * Defines the interval, in seconds, between the status lines printed while the parallel mode loads the dump file.
+	 * @param statusInterval the interval between status lines. Use 0 to disable the status lines.
+	 */
+	public void setStatusInterval(int statusInterval) {
+		if (statusInterval < 0) {
+			throw new IllegalArgumentException("Status interval can't be negative");
+		}
+		this.statusInterval = statusInterval;
+	}
+
+	/**
+	 * Returns the file where the parallel mode writes a JSON report with the counters of the load once it finishes.
+	 * @return the report file, or {@code null} if no report is written.
+	 */
+	public File getReportFile() {
+		return reportFile;
+	}
+
+	/**
+	 * Defines the file where the parallel mode writes a JSON report with the counters of the load once it finishes.
+	 * @param reportFile the report file, or {@code null} to not write a report.
+	 */
+	public void setReportFile(File reportFile) {
+		this.reportFile = reportFile;
+	}
+
+	/**
+	 * Returns the number of workers that parse and write chunks of the dump file concurrently, each one with its own connection.
+	 * @return the degree of parallelism of the load process.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Defines the number of workers that parse and write chunks of the dump file concurrently, each one with its own connection.
+	 * @param parallelism the degree of parallelism of the load process.
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism must be positive");
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Returns the maximum size, in bytes, of each chunk of the dump file processed by a worker.
+	 * @return the maximum chunk size
+	 */
+	public long getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Defines the maximum size, in bytes, of each chunk of the dump file processed by a worker.
+	 * Chunks are always cut at the start of an {@code INSERT} statement, so they can be slightly smaller.
+	 * @param chunkSize the maximum chunk size
+	 */
+	public void setChunkSize(long chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("Chunk size must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Indicates whether the database-specific bulk load facility (such as {@code COPY} in Postgres) should be used
+	 * instead of batches of {@code INSERT} statements, when available.
+	 * @return {@code true} if rows should be written with the bulk load facility of the database.
+	 */
+	public boolean isBulkLoadEnabled() {
+		return bulkLoadEnabled;
+	}
+
+	/**
+	 * Defines whether the database-specific bulk load facility (such as {@code COPY} in Postgres) should be used
+	 * instead of batches of {@code INSERT} statements, when available. Tables that can't be loaded with the bulk
+	 * load facility are loaded with batches of {@code INSERT} statements.
+	 * @param bulkLoadEnabled flag indicating whether rows should be written with the bulk load facility of the database.
+	 */
+	public void setBulkLoadEnabled(boolean bulkLoadEnabled) {
+		this.bulkLoadEnabled = bulkLoadEnabled;
+	}
+
+	/**
+	 * Indicates whether the number of rows of each table should be verified once the load completes.
+	 * @return {@code true} if row counts should be verified after the load.
+	 */
+	public boolean isRowCountVerificationEnabled() {
+		return rowCountVerificationEnabled;
+	}
+
+	/**
+	 * Defines whether the number of rows of each table should be verified once the load completes. The row count of
+	 * each table must match its row count before the load, plus the number of rows parsed from the dump file.
+	 * @param rowCountVerificationEnabled flag indicating whether row counts should be verified after the load.
+	 */
+	public void setRowCountVerificationEnabled(boolean rowCountVerificationEnabled) {
+		this.rowCountVerificationEnabled = rowCountVerificationEnabled;
+	}
+
+	/**
+	 * Indicates whether a parallel load should resume from the progress recorded by a previous, interrupted load of the same dump file.
+	 * @return {@code true} if the recorded progress should be used to resume the load.
+	 */
+	public boolean isResumeEnabled() {
+		return resumeEnabled;
+	}
+
+	/**
+	 * Defines whether a parallel load should resume from the progress recorded by a previous, interrupted load of the same dump file.
+	 * When disabled, any recorded progress is discarded and the dump file is loaded from the beginning.
+	 * @param resumeEnabled flag indicating whether the recorded progress should be used to resume the load.
+	 */
+	public void setResumeEnabled(boolean resumeEnabled) {
+		this.resumeEnabled = resumeEnabled;
+	}
+
+	/**
+	 * Indicates whether the keys and indexes declared by the destination database should be created once the dump file is loaded.
+	 * @return {@code true} if keys and indexes should be built after the load.
+	 */
+	public boolean isIndexBuildEnabled() {
+		return indexBuildEnabled;
+	}
+
+	/**
+	 * Defines whether the keys and indexes declared by the destination database should be created once the dump file is loaded.
+	 * @param indexBuildEnabled flag indicating whether keys and indexes should be built after the load.
+	 */
+	public void setIndexBuildEnabled(boolean indexBuildEnabled) {
+		this.indexBuildEnabled = indexBuildEnabled;
+	}
+
+	/**
+	 * Returns what the parallel mode does with rows whose primary key, as declared by the destination database, was already loaded.
+	 * @return the deduplication mode.
+	 */
+	public DeduplicationMode getDeduplicationMode() {
+		return deduplicationMode;
+	}
+
+	/**
+	 * Defines what the parallel mode does with rows whose primary key, as declared by the destination database, was already loaded.
+	 * When enabled, the keys of every row loaded are tracked in memory, and rows with repeated keys are dropped before they are written,
+	 * so tables can be loaded without a primary key and still end up with unique keys.
+	 * @param deduplicationMode the deduplication mode.
+	 */
+	public void setDeduplicationMode(DeduplicationMode deduplicationMode) {
+		this.deduplicationMode = deduplicationMode == null ? DeduplicationMode.NONE : deduplicationMode;
+	}
+
+	/**
+	 * Returns the directory where the parallel mode writes the rows rejected by the database, with a file per table.
+	 * @return the directory of the reject files, or {@code null} if a row rejected by the database fails the load.
+	 */
+	public File getRejectDirectory() {
+		return rejectDirectory;
+	}
+
+	/**
+	 * Defines the directory where the parallel mode writes the rows rejected by the database, with a file per table. When a batch of rows fails,
+	 * it is split and inserted again until the rows the database rejects are isolated. These rows are written into the reject file of their table
+	 * and the load carries on.
+	 * @param rejectDirectory the directory of the reject files, or {@code null} to fail the load when a batch of rows fails.
+	 */
+	public void setRejectDirectory(File rejectDirectory) {
+		this.rejectDirectory = rejectDirectory;
+	}
+
+	/**
+	 * Returns the number of rows the database can reject before the load is stopped, when rejected rows are written into reject files.
+	 * @return the maximum number of rows rejected in a load.
+	 */
+	public int getMaximumRejectedRows() {
+		return maximumRejectedRows;
+	}
+
+	/**
+	 * Defines the number of rows the database can reject before the load is stopped, when rejected rows are written into reject files.
+	 * Many rejected rows usually mean something is wrong with the tables, not with the rows.
+	 * @param maximumRejectedRows the maximum number of rows rejected in a load.
+	 */
+	public void setMaximumRejectedRows(int maximumRejectedRows) {
+		if (maximumRejectedRows < 0) {
+			throw new IllegalArgumentException("Maximum number of rejected rows can't be negative");
+		}
+		this.maximumRejectedRows = maximumRejectedRows;
+	}
+
+	/**
+	 * Indicates whether the parallel mode should only load the rows that are newer than the rows already in each table.
+	 * @return {@code true} if the load is incremental.
+	 */
+	public boolean isIncrementalLoadEnabled() {
+		return incrementalLoadEnabled;
+	}
+
+	/**
+	 * Defines whether the parallel mode should only load the rows that are newer than the rows already in each table. The highest
+	 * value of the watermark column of each table is read from the destination database, and the statements of the dump file
+	 * with lower values are skipped without being parsed, so a newer dump of the same database loads in a fraction of the time.
+	 * @param incrementalLoadEnabled flag indicating whether the load is incremental.
+	 */
+	public void setIncrementalLoadEnabled(boolean incrementalLoadEnabled) {
+		this.incrementalLoadEnabled = incrementalLoadEnabled;
+	}
+
+	/**
+	 * Returns the watermark columns of an incremental load, per table. Tables not in the map use their primary key if it has a single integer column.
+	 * @return a map of table names to the names of their watermark columns.
+	 */
+	public Map<String, String> getWatermarkColumns() {
+		return watermarkColumns;
+	}
+
+	/**
+	 * Defines the watermark columns of an incremental load, per table. Tables not in the map use their primary key if it has a single integer column.
+	 * The values of a watermark column must be integers that grow with each row added, in the order the rows appear in the dump file.
+	 * @param watermarkColumns a map of table names to the names of their watermark columns.
+	 */
+	public void setWatermarkColumns(Map<String, String> watermarkColumns) {
+		this.watermarkColumns = watermarkColumns == null ? new TreeMap<String, String>() : new TreeMap<String, String>(watermarkColumns);
+	}
+
+	/**
+	 * Returns the tables whose rows should be loaded by the parallel mode. If empty, all tables not explicitly excluded are loaded.
+	 * @return the names of the tables to load.
+	 */
+	public Set<String> getIncludedTables() {
+		return includedTables;
+	}
+
+	/**
+	 * Defines the tables whose rows should be loaded by the parallel mode. If empty, all tables not explicitly excluded are loaded.
+	 * @param includedTables the names of the tables to load.
+	 */
+	public void setIncludedTables(Set<String> includedTables) {
+		this.includedTables = includedTables == null ? new TreeSet<String>() : new TreeSet<String>(includedTables);
+	}
+
+	/**
+	 * Returns the tables whose rows should not be loaded by the parallel mode.
+	 * @return the names of the tables to skip.
+	 */
+	public Set<String> getExcludedTables() {
+		return excludedTables;
+	}
+
+	/**
+	 * Defines the tables whose rows should not be loaded by the parallel mode.
+	 * @param excludedTables the names of the tables to skip.
+	 */
+	public void setExcludedTables(Set<String> excludedTables) {
+		this.excludedTables = excludedTables == null ? new TreeSet<String>() : new TreeSet<String>(excludedTables);
+	}
+
+	/**
+	 * Returns the columns to load from the rows of each table by the parallel mode. Tables not in the map have all their columns loaded.
+	 * @return a map of table names to the names of the columns to load, in the order they are declared.
+	 */
+	public Map<String, List<String>> getProjectedColumns() {
+		return projectedColumns;
+	}
+
+	/**
+	 * Defines the columns to load from the rows of each table by the parallel mode. Tables not in the map have all their columns loaded.
+	 * The values of the other columns are skipped by the parser without being decoded, and are left to their defaults in the destination tables.
+	 * @param projectedColumns a map of table names to the names of the columns to load.
+	 */
+	public void setProjectedColumns(Map<String, List<String>> projectedColumns) {
+		this.projectedColumns = new TreeMap<String, List<String>>();
+		if (projectedColumns != null) {
+			for (Map.Entry<String, List<String>> e : projectedColumns.entrySet()) {
+				if (e.getValue().isEmpty()) {
+					throw new IllegalArgumentException("No columns to load from table " + e.getKey());
+				}
+				this.projectedColumns.put(e.getKey(), Collections.unmodifiableList(new ArrayList<String>(e.getValue())));
+			}
+		}
+	}
+
+	/**
+	 * Returns the conditions the rows of each table must meet to be loaded by the parallel mode. Tables not in the map have all their rows loaded.
+	 * @return a map of table names to the conditions on their rows.
+	 */
+	public Map<String, String> getRowFilters() {
+		return rowFilters;
+	}
+
+	/**
+	 * Defines the conditions the rows of each table must meet to be loaded by the parallel mode. Tables not in the map have all their rows loaded.
+	 * Each condition is a list of comparisons joined by {@code AND}, such as {@code status = 'active' AND id >= 1000}, evaluated by the parser
+	 * as soon as the columns it compares are read, so the rest of a row that doesn't match is skipped.
+	 * @param rowFilters a map of table names to the conditions on their rows.
+	 */
+	public void setRowFilters(Map<String, String> rowFilters) {
+		this.rowFilters = rowFilters == null ? new TreeMap<String, String>() : new TreeMap<String, String>(rowFilters);
+	}
+
+	/**
+	 * Indicates whether only some of the tables of the dump file should be loaded.
+	 * @return {@code true} if tables have been included or excluded explicitly.
+	 */
+	public boolean isTableSelectionEnabled() {
+		return !includedTables.isEmpty() || !excludedTables.isEmpty();
+	}
+
+	/**
+	 * Indicates whether the rows of a given table should be loaded, according to the included and excluded tables.
+	 * @param table the name of a table
+	 * @return {@code true} if the rows of the table should be loaded.
+	 */
+	public boolean isTableSelected(String table) {
+		return (includedTables.isEmpty() || includedTables.contains(table)) && !excludedTables.contains(table);
+	}
+}
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+import java.lang.management.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.management.*;
+
+/**
+ * Collects the counters of a load process: rows and bytes per table, and how the time of the workers is split between
+ * reading the dump file, parsing it, binding rows, sending batches and committing.
+ *
+ * Workers accumulate their measurements locally and publish them at the end of each statement or commit, so the counters
+ * are updated a few times per second rather than once per row. The counters are exposed over JMX while the load runs,
+ * summarized in a one-line status, and written to a JSON report at the end.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class LoadStatistics implements LoadStatisticsMXBean {
+
+	/**
+	 * The name under which the statistics of a running load are registered in the platform MBean server.
+	 */
+	public static final String OBJECT_NAME = "com.univocity.articles.dumpload:type=LoadStatistics";
+
+	private final String objectName;
+	private final long totalBytes;
+	private final long start = System.nanoTime();
+	private volatile long end;
+
+	private final AtomicLong processedBytes = new AtomicLong();
+	private final AtomicLong workerTime = new AtomicLong();
+	private final AtomicLong readTime = new AtomicLong();
+	private final AtomicLong commitTime = new AtomicLong();
+	private final ConcurrentMap<String, TableStatistics> tables = new ConcurrentHashMap<String, TableStatistics>();
+
+	/**
+	 * Creates the statistics of a load process
+	 * @param totalBytes the number of bytes of the dump file to process, or -1 if unknown.
+	 */
+	public LoadStatistics(long totalBytes) {
+		this(null, totalBytes);
+	}
+
+	/**
+	 * Creates the statistics of the load of one of several destinations. They are registered in the MBean server with a
+	 * {@code destination} key added to {@link #OBJECT_NAME}.
+	 * @param destination the name of the destination, or {@code null} if the dump file is loaded into a single destination.
+	 * @param totalBytes the number of bytes of the dump file to process, or -1 if unknown.
+	 */
+	public LoadStatistics(String destination, long totalBytes) {
+		this.objectName = destination == null ? OBJECT_NAME : OBJECT_NAME + ",destination=" + ObjectName.quote(destination);
+		this.totalBytes = totalBytes;
+	}
+
+	/**
+	 * Returns the counters of a table
+	 * @param table the name of the table
+	 * @return the counters of the given table.
+	 */
+	TableStatistics getTable(String table) {
+		TableStatistics statistics = tables.get(table);
+		if (statistics == null) {
+			statistics = new TableStatistics();
+			TableStatistics previous = tables.putIfAbsent(table, statistics);
+			if (previous != null) {
+				statistics = previous;
+			}
+		}
+		return statistics;
+	}
+
+	void addProcessedBytes(long bytes) {
+		processedBytes.addAndGet(bytes);
+	}
+
+	void addWorkerTime(long nanos) {
+		workerTime.addAndGet(nanos);
+	}
+
+	void addReadTime(long nanos) {
+		readTime.addAndGet(nanos);
+	}
+
+	void addCommitTime(long nanos) {
+		commitTime.addAndGet(nanos);
+	}
+
+	/**
+	 * Stops the clock of the load process.
+	 */
+	void finished() {
+		end = System.nanoTime();
+	}
+
+	/**
+	 * Registers these statistics in the platform MBean server, replacing the statistics of a previous load.
+	 */
+	void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(objectName);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (Exception e) {
+			System.out.println("Unable to expose load statistics over JMX: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Removes these statistics from the platform MBean server.
+	 */
+	void unregister() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(objectName));
+		} catch (Exception e) {
+			//not registered
+		}
+	}
+
+	@Override
+	public long getElapsedTime() {
+		return ((end == 0 ? System.nanoTime() : end) - start) / 1000000;
+	}
+
+	@Override
+	public long getRows() {
+		long rows = 0;
+		for (TableStatistics table : tables.values()) {
+			rows += table.rows.get();
+		}
+		return rows;
+	}
+
+	@Override
+	public long getProcessedBytes() {
+		return processedBytes.get();
+	}
+
+	@Override
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	@Override
+	public double getProgress() {
+		if (totalBytes < 0) {
+			return -1;
+		}
+		return totalBytes == 0 ? 100 : Math.min(100, processedBytes.get() * 100.0 / totalBytes);
+	}
+
+	@Override
+	public long getEstimatedTimeRemaining() {
+		long bytesPerSecond = getBytesPerSecond();
+		if (totalBytes < 0 || bytesPerSecond == 0) {
+			return -1;
+		}
+		return Math.max(0, totalBytes - processedBytes.get()) / bytesPerSecond;
+	}
+
+	@Override
+	public long getRowsPerSecond() {
+		return getRows() * 1000 / Math.max(1, getElapsedTime());
+	}
+
+	@Override
+	public long getBytesPerSecond() {
+		return processedBytes.get() * 1000 / Math.max(1, getElapsedTime());
+	}
+
+	@Override
+	public long getReadTime() {
+		return readTime.get() / 1000000;
+	}
+
+	@Override
+	public long getParseTime() {
+		long parseTime = workerTime.get() - readTime.get() - commitTime.get();
+		for (TableStatistics table : tables.values()) {
+			parseTime -= table.bindTime.get() + table.batchTime.get();
+		}
+		return Math.max(0, parseTime / 1000000);
+	}
+
+	@Override
+	public long getBindTime() {
+		long bindTime = 0;
+		for (TableStatistics table : tables.values()) {
+			bindTime += table.bindTime.get();
+		}
+		return bindTime / 1000000;
+	}
+
+	@Override
+	public long getBatchTime() {
+		long batchTime = 0;
+		for (TableStatistics table : tables.values()) {
+			batchTime += table.batchTime.get();
+		}
+		return batchTime / 1000000;
+	}
+
+	@Override
+	public long getCommitTime() {
+		return commitTime.get() / 1000000;
+	}
+
+	@Override
+	public Map<String, Long> getRowsPerTable() {
+		Map<String, Long> out = new TreeMap<String, Long>();
+		for (Map.Entry<String, TableStatistics> e : tables.entrySet()) {
+			out.put(e.getKey(), e.getValue().rows.get());
+		}
+		return out;
+	}
+
+	@Override
+	public Map<String, Long> getBytesPerTable() {
+		Map<String, Long> out = new TreeMap<String, Long>();
+		for (Map.Entry<String, TableStatistics> e : tables.entrySet()) {
+			out.put(e.getKey(), e.getValue().bytes.get());
+		}
+		return out;
+	}
+
+	@Override
+	public Map<String, Long> getDuplicatesPerTable() {
+		Map<String, Long> out = new TreeMap<String, Long>();
+		for (Map.Entry<String, TableStatistics> e : tables.entrySet()) {
+			out.put(e.getKey(), e.getValue().duplicates.get());
+		}
+		return out;
+	}
+
+	@Override
+	public Map<String, Long> getRejectedRowsPerTable() {
+		Map<String, Long> out = new TreeMap<String, Long>();
+		for (Map.Entry<String, TableStatistics> e : tables.entrySet()) {
+			out.put(e.getKey(), e.getValue().rejected.get());
+		}
+		return out;
+	}
+
+	@Override
+	public String getStatus() {
+		StringBuilder out = new StringBuilder();
+		if (totalBytes >= 0) {
+			out.append(String.format("%.1f%% of %s, ", getProgress(), formatBytes(totalBytes)));
+		} else {
+			out.append(formatBytes(processedBytes.get())).append(" processed, ");
+		}
+		out.append(getRows()).append(" rows (").append(getRowsPerSecond()).append(" rows/s, ").append(formatBytes(getBytesPerSecond())).append("/s)");
+		long remaining = getEstimatedTimeRemaining();
+		if (remaining >= 0) {
+			out.append(", ETA ").append(String.format("%d:%02d:%02d", remaining / 3600, (remaining / 60) % 60, remaining % 60));
+		}
+
+		long read = getReadTime();
+		long parse = getParseTime();
+		long bind = getBindTime();
+		long batch = getBatchTime();
+		long commit = getCommitTime();
+		long total = Math.max(1, read + parse + bind + batch + commit);
+		out.append(". Time: read ").append(read * 100 / total).append("%, parse ").append(parse * 100 / total).append("%, bind ").append(bind * 100 / total)
+				.append("%, batches ").append(batch * 100 / total).append("%, commit ").append(commit * 100 / total).append('%');
+		return out.toString();
+	}
+
+	private static String formatBytes(long bytes) {
+		if (bytes < 1024L * 1024L) {
+			return (bytes / 1024) + " KB";
+		}
+		if (bytes < 1024L * 1024L * 1024L) {
+			return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+		}
+		return String.format("%.2f GB", bytes / (1024.0 * 1024.0 * 1024.0));
+	}
+
+	/**
+	 * Prints the rows and throughput of each table.
+	 */
+	void printTables() {
+		long elapsed = Math.max(1, getElapsedTime());
+		for (Map.Entry<String, TableStatistics> e : new TreeMap<String, TableStatistics>(tables).entrySet()) {
+			TableStatistics table = e.getValue();
+			System.out.println(e.getKey() + ": " + table.rows.get() + " rows, " + formatBytes(table.bytes.get()) + " (" + (table.rows.get() * 1000 / elapsed) + " rows/s, "
+					+ formatBytes(table.bytes.get() * 1000 / elapsed) + "/s). Binding: " + table.bindTime.get() / 1000000 + " ms, batches: " + table.batchTime.get() / 1000000 + " ms"
+					+ (table.duplicates.get() > 0 ? ". Duplicate keys dropped: " + table.duplicates.get() : "") + (table.rejected.get() > 0 ? ". Rows rejected: " + table.rejected.get() : ""));
+		}
+	}
+
+	/**
+	 * Writes the counters of the load into a JSON file.
+	 * @param file the file to write. If it exists, it will be replaced.
+	 */
+	void writeReport(File file) {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		json.append("  \"elapsedMillis\": ").append(getElapsedTime()).append(",\n");
+		json.append("  \"rows\": ").append(getRows()).append(",\n");
+		json.append("  \"processedBytes\": ").append(getProcessedBytes()).append(",\n");
+		json.append("  \"totalBytes\": ").append(getTotalBytes()).append(",\n");
+		json.append("  \"rowsPerSecond\": ").append(getRowsPerSecond()).append(",\n");
+		json.append("  \"bytesPerSecond\": ").append(getBytesPerSecond()).append(",\n");
+		json.append("  \"workerTimeMillis\": {\"read\": ").append(getReadTime()).append(", \"parse\": ").append(getParseTime()).append(", \"bind\": ").append(getBindTime())
+				.append(", \"batches\": ").append(getBatchTime()).append(", \"commit\": ").append(getCommitTime()).append("},\n");
+		json.append("  \"tables\": {");
+		long elapsed = Math.max(1, getElapsedTime());
+		boolean first = true;
+		for (Map.Entry<String, TableStatistics> e : new TreeMap<String, TableStatistics>(tables).entrySet()) {
+			TableStatistics table = e.getValue();
+			json.append(first ? "\n" : ",\n");
+			first = false;
+			json.append("    ").append(quote(e.getKey())).append(": {\"rows\": ").append(table.rows.get()).append(", \"bytes\": ").append(table.bytes.get())
+					.append(", \"rowsPerSecond\": ").append(table.rows.get() * 1000 / elapsed).append(", \"bytesPerSecond\": ").append(table.bytes.get() * 1000 / elapsed)
+					.append(", \"bindMillis\": ").append(table.bindTime.get() / 1000000).append(", \"batchMillis\": ").append(table.batchTime.get() / 1000000)
+					.append(", \"duplicates\": ").append(table.duplicates.get()).append(", \"rejected\": ").append(table.rejected.get()).append('}');
+		}
+		json.append(first ? "}\n" : "\n  }\n");
+		json.append("}\n");
+
+		try {
+			Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			try {
+				out.write(json.toString());
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Error writing load report to " + file.getAbsolutePath(), e);
+		}
+	}
+
+	private static String quote(String value) {
+		StringBuilder out = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				out.append('\\').append(ch);
+			} else if (ch < 0x20) {
+				out.append(String.format("\\u%04x", (int) ch));
+			} else {
+				out.append(ch);
+			}
+		}
+		return out.append('"').toString();
+	}
+
+	/**
+	 * The counters of a table. Times are in nanoseconds.
+	 */
+	static class TableStatistics {
+		final AtomicLong rows = new AtomicLong();
+		final AtomicLong bytes = new AtomicLong();
+		final AtomicLong bindTime = new AtomicLong();
+		final AtomicLong batchTime = new AtomicLong();
+		final AtomicLong duplicates = new AtomicLong();
+		final AtomicLong rejected = new AtomicLong();
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.util.*;
+
+/**
+ * The counters of a running load, exposed over JMX under the name {@value LoadStatistics#OBJECT_NAME}.
+ *
+ * Times are the sum of the time spent by all workers, in milliseconds.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public interface LoadStatisticsMXBean {
+
+	/**
+	 * Returns the time elapsed since the load started
+	 * @return the elapsed time, in milliseconds.
+	 */
+	long getElapsedTime();
+
+	/**
+	 * Returns the number of rows committed so far
+	 * @return the number of rows committed into all tables.
+	 */
+	long getRows();
+
+	/**
+	 * Returns the number of bytes of the dump file processed so far
+	 * @return the number of bytes processed
+	 */
+	long getProcessedBytes();
+
+	/**
+	 * Returns the number of bytes of the dump file to process
+	 * @return the number of bytes to process, or -1 if unknown (e.g. the dump file is compressed).
+	 */
+	long getTotalBytes();
+
+	/**
+	 * Returns the percentage of the dump file processed so far
+	 * @return the progress of the load, from 0 to 100, or -1 if unknown.
+	 */
+	double getProgress();
+
+	/**
+	 * Returns the estimated time to finish the load, based on the bytes processed per second so far
+	 * @return the estimated time remaining, in seconds, or -1 if unknown.
+	 */
+	long getEstimatedTimeRemaining();
+
+	/**
+	 * Returns the average number of rows committed per second
+	 * @return the rows committed per second since the load started.
+	 */
+	long getRowsPerSecond();
+
+	/**
+	 * Returns the average number of bytes of the dump file processed per second
+	 * @return the bytes processed per second since the load started.
+	 */
+	long getBytesPerSecond();
+
+	/**
+	 * Returns the time spent reading (and decompressing) the dump file
+	 * @return the time spent reading, in milliseconds.
+	 */
+	long getReadTime();
+
+	/**
+	 * Returns the time spent parsing the dump file, i.e. the time of the workers not spent reading, binding, sending batches or committing.
+	 * @return the time spent parsing, in milliseconds.
+	 */
+	long getParseTime();
+
+	/**
+	 * Returns the time spent binding rows to statements, or encoding them for the bulk load facility of the database.
+	 * @return the time spent binding, in milliseconds.
+	 */
+	long getBindTime();
+
+	/**
+	 * Returns the time spent sending batches of rows to the database ({@code executeBatch}, {@code COPY}, {@code LOAD DATA}).
+	 * @return the time spent sending batches, in milliseconds.
+	 */
+	long getBatchTime();
+
+	/**
+	 * Returns the time spent committing transactions, including the progress recorded with each commit.
+	 * @return the time spent committing, in milliseconds.
+	 */
+	long getCommitTime();
+
+	/**
+	 * Returns the number of rows committed into each table
+	 * @return the rows committed per table.
+	 */
+	Map<String, Long> getRowsPerTable();
+
+	/**
+	 * Returns the number of bytes of the dump file processed for each table
+	 * @return the bytes of {@code INSERT} statements processed per table.
+	 */
+	Map<String, Long> getBytesPerTable();
+
+	/**
+	 * Returns the number of rows of each table dropped for having a primary key that was already loaded
+	 * @return the duplicate rows dropped per table. Always 0 unless deduplication is enabled.
+	 */
+	Map<String, Long> getDuplicatesPerTable();
+
+	/**
+	 * Returns the number of rows of each table rejected by the database and written into reject files
+	 * @return the rows rejected per table.
+	 */
+	Map<String, Long> getRejectedRowsPerTable();
+
+	/**
+	 * Returns a one-line description of the progress of the load
+	 * @return the current status of the load.
+	 */
+	String getStatus();
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * A set of {@code long} keys that can be updated by many threads, built to hold hundreds of millions of keys without
+ * allocating an object per key.
+ *
+ * Keys between 0 and 2<sup>32</sup> - 1, such as the auto-increment ids of most tables, are kept in a bitmap: one bit per possible
+ * key, in pages of 65536 bits allocated when the first key in their range is added. Dense ids take about one bit each, so 500 million ids
+ * take about 64 MB, and even keys spread over the whole range never take more than 512 MB.
+ *
+ * Other keys, such as composite keys packed into a {@code long}, are kept in a hash set with open addressing over a {@code long[]},
+ * which takes between 8 and 16 bytes per key. The hash set is split into segments with locks of their own, so threads adding keys
+ * rarely wait for each other, and a segment that grows only copies a fraction of the keys.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class LongKeySet {
+
+	private static final int PAGE_BITS = 16;
+	private static final int PAGE_WORDS = (1 << PAGE_BITS) / 64;
+	private static final long BITMAP_LIMIT = 1L << 32;
+
+	private static final int SEGMENT_BITS = 6;
+
+	private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<AtomicLongArray>((int) (BITMAP_LIMIT >>> PAGE_BITS));
+	private final AtomicInteger pageCount = new AtomicInteger();
+	private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+	LongKeySet() {
+		for (int i = 0; i < segments.length; i++) {
+			segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * Adds a key to the set
+	 * @param key the key to add
+	 * @return {@code true} if the key was added, or {@code false} if it was already in the set.
+	 */
+	boolean add(long key) {
+		if (key >= 0 && key < BITMAP_LIMIT) {
+			int index = (int) (key >>> PAGE_BITS);
+			AtomicLongArray page = pages.get(index);
+			if (page == null) {
+				page = new AtomicLongArray(PAGE_WORDS);
+				if (pages.compareAndSet(index, null, page)) {
+					pageCount.incrementAndGet();
+				} else {
+					page = pages.get(index);
+				}
+			}
+			int word = (int) (key >>> 6) & (PAGE_WORDS - 1);
+			long bit = 1L << key;
+			while (true) {
+				long bits = page.get(word);
+				if ((bits & bit) != 0) {
+					return false;
+				}
+				if (page.compareAndSet(word, bits, bits | bit)) {
+					return true;
+				}
+			}
+		}
+		long hash = hash(key);
+		return segments[(int) (hash >>> (64 - SEGMENT_BITS))].add(key, (int) hash);
+	}
+
+	/**
+	 * Removes a key from the set
+	 * @param key the key to remove
+	 */
+	void remove(long key) {
+		if (key >= 0 && key < BITMAP_LIMIT) {
+			AtomicLongArray page = pages.get((int) (key >>> PAGE_BITS));
+			if (page != null) {
+				int word = (int) (key >>> 6) & (PAGE_WORDS - 1);
+				long bit = 1L << key;
+				while (true) {
+					long bits = page.get(word);
+					if ((bits & bit) == 0 || page.compareAndSet(word, bits, bits & ~bit)) {
+						return;
+					}
+				}
+			}
+			return;
+		}
+		long hash = hash(key);
+		segments[(int) (hash >>> (64 - SEGMENT_BITS))].remove(key, (int) hash);
+	}
+
+	/**
+	 * Returns the memory taken by the keys of this set
+	 * @return the approximate number of bytes used by the bitmap pages and hash tables of this set.
+	 */
+	long getMemoryUsage() {
+		long bytes = pageCount.get() * (PAGE_WORDS * 8L);
+		for (Segment segment : segments) {
+			bytes += segment.getCapacity() * 8L;
+		}
+		return bytes;
+	}
+
+	private static long hash(long key) {
+		//finalizer of MurmurHash3: spreads sequential keys over all bits.
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return key;
+	}
+
+	/**
+	 * A hash table with linear probing. Keys in the bitmap range are never stored here, so 0 marks an empty slot.
+	 */
+	private static final class Segment {
+		private long[] keys = new long[256];
+		private int size;
+
+		synchronized boolean add(long key, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while (keys[i] != 0) {
+				if (keys[i] == key) {
+					return false;
+				}
+				i = (i + 1) & mask;
+			}
+			keys[i] = key;
+			if (++size * 4 >= keys.length * 3) {
+				grow();
+			}
+			return true;
+		}
+
+		synchronized void remove(long key, int hash) {
+			int mask = keys.length - 1;
+			int i = hash & mask;
+			while (keys[i] != key) {
+				if (keys[i] == 0) {
+					return;
+				}
+				i = (i + 1) & mask;
+			}
+			//moves back the keys that follow in the same run, so lookups don't stop at the emptied slot.
+			int empty = i;
+			while (true) {
+				i = (i + 1) & mask;
+				if (keys[i] == 0) {
+					break;
+				}
+				int home = (int) hash(keys[i]) & mask;
+				if (((i - home) & mask) >= ((i - empty) & mask)) {
+					keys[empty] = keys[i];
+					empty = i;
+				}
+			}
+			keys[empty] = 0;
+			size--;
+		}
+
+		synchronized int getCapacity() {
+			return keys.length;
+		}
+
+		private void grow() {
+			long[] old = keys;
+			keys = new long[old.length * 2];
+			int mask = keys.length - 1;
+			for (long key : old) {
+				if (key != 0) {
+					int i = (int) hash(key) & mask;
+					while (keys[i] != 0) {
+						i = (i + 1) & mask;
+					}
+					keys[i] = key;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A {@link DumpInput} that adds the time spent reading from another input to the {@link LoadStatistics}. The parser reads
+ * large blocks at a time, so this is measured once per block.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class MeasuredDumpInput implements DumpInput {
+
+	private final DumpInput input;
+	private final LoadStatistics statistics;
+
+	MeasuredDumpInput(DumpInput input, LoadStatistics statistics) {
+		this.input = input;
+		this.statistics = statistics;
+	}
+
+	@Override
+	public long getStartOffset() {
+		return input.getStartOffset();
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		long start = System.nanoTime();
+		try {
+			return input.read(buffer, offset, length);
+		} finally {
+			statistics.addReadTime(System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+}
@@ -0,0 +1,305 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.univocity.articles.dumpload.databases.*;
+
+/**
+ * Loads a dump file into a {@link Database} by splitting it into {@link DumpChunk}s that are parsed and written
+ * concurrently. Each worker thread uses a connection of its own.
+ *
+ * The progress of each chunk is recorded with a {@link LoadCheckpoint}, so a load that is interrupted can be resumed
+ * by running it again against the same dump file.
+ *
+ * While the load runs, its {@link LoadStatistics} are available over JMX and summarized in a status line printed periodically.
+ * A report with the final counters is written once the load finishes.
+ *
+ * The dump file can be loaded into several destinations at once. Each chunk is then parsed only once by a {@link FanOutParser}, which hands
+ * the parsed rows to a loader per destination. Each destination has its own connections, progress and statistics, and a destination that fails
+ * doesn't stop the others. The same parser pipelines the load of a single destination when {@link LoadSettings#isPipelineEnabled()}, so
+ * each chunk is parsed while its previous batches of rows are being written.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class ParallelDumpLoader {
+
+	private final Map<String, Database> databases;
+	private final LoadSettings settings;
+
+	/**
+	 * Creates a loader for the given database
+	 * @param database the destination database
+	 * @param settings the settings that determine which dump file to load, and how.
+	 */
+	public ParallelDumpLoader(Database database, LoadSettings settings) {
+		this(Collections.singletonMap("destination", database), settings);
+	}
+
+	/**
+	 * Creates a loader for several databases, which are loaded at the same time while the dump file is parsed once.
+	 * @param databases the destination databases, by name.
+	 * @param settings the settings that determine which dump file to load, and how.
+	 */
+	public ParallelDumpLoader(Map<String, Database> databases, LoadSettings settings) {
+		if (databases.isEmpty()) {
+			throw new IllegalArgumentException("No destination database provided");
+		}
+		this.databases = databases;
+		this.settings = settings;
+	}
+
+	/**
+	 * Loads the dump file, blocking until all chunks have been loaded.
+	 * @return the total number of rows loaded. When loading several destinations, the number of rows parsed.
+	 */
+	public long load() {
+		long start = System.currentTimeMillis();
+		boolean fanOut = databases.size() > 1;
+
+		//every worker holds a connection of its own while loading a chunk, on each destination.
+		int workers = settings.getParallelism();
+		for (Database database : databases.values()) {
+			if (workers > database.getPoolSize()) {
+				System.out.println("Only " + database.getPoolSize() + " connections available in the pool of " + database.getDatabaseName() + ". Using " + database.getPoolSize() + " workers instead of " + workers);
+				workers = database.getPoolSize();
+			}
+		}
+
+		List<DumpChunk> chunks = DumpSplitter.split(settings);
+		List<Destination> destinations = new ArrayList<Destination>();
+		Set<DumpChunk> pending = new LinkedHashSet<DumpChunk>();
+		for (Map.Entry<String, Database> e : databases.entrySet()) {
+			Destination destination = new Destination(e.getKey(), e.getValue(), settings);
+			destinations.add(destination);
+			pending.addAll(restore(destination, chunks, workers, fanOut));
+			destination.watermarks = settings.isIncrementalLoadEnabled() ? new Watermarks(destination.database, destination.checkpoint, settings) : null;
+		}
+
+		//largest chunks first, so no worker is left processing a big chunk alone at the end.
+		List<DumpChunk> ordered = new ArrayList<DumpChunk>(pending);
+		Collections.sort(ordered, new Comparator<DumpChunk>() {
+			@Override
+			public int compare(DumpChunk o1, DumpChunk o2) {
+				return o1.getSize() < o2.getSize() ? 1 : o1.getSize() == o2.getSize() ? 0 : -1;
+			}
+		});
+
+		//columns and rows not loaded are dropped by the parser, which is shared by all destinations.
+		boolean projected = !settings.getProjectedColumns().isEmpty() || !settings.getRowFilters().isEmpty();
+		Projection projection = projected ? new Projection(destinations, settings) : null;
+
+		for (Destination destination : destinations) {
+			destination.projection = projection;
+			destination.statistics = new LoadStatistics(fanOut ? destination.name : null, getTotalBytes(destination, ordered));
+			destination.statistics.register();
+			destination.verifier = settings.isRowCountVerificationEnabled() ? new RowCountVerifier() : null;
+			destination.batchSizes = settings.isAdaptiveBatchSizeEnabled() ? new BatchSizeController(settings) : null;
+			destination.shards = destination.database.getShard() != null ? new ShardFilter(destination.database.getShard()) : null;
+			destination.deduplicator = settings.getDeduplicationMode() != LoadSettings.DeduplicationMode.NONE ? new KeyDeduplicator(destination.database, settings) : null;
+			if (settings.getRejectDirectory() != null) {
+				File directory = fanOut ? new File(settings.getRejectDirectory(), destination.name) : settings.getRejectDirectory();
+				destination.rejects = new RejectedRows(directory, settings.getMaximumRejectedRows());
+			}
+		}
+		ScheduledExecutorService status = startStatus(destinations, fanOut);
+
+		ExecutorService executor = newExecutor("dump-loader-", workers);
+		//the loaders of all destinations must be able to run while every worker is parsing a chunk.
+		boolean pipelined = fanOut || settings.isPipelineEnabled();
+		ExecutorService loaders = pipelined ? newExecutor("dump-writer-", workers * destinations.size()) : null;
+
+		try {
+			CompletionService<Long> completion = new ExecutorCompletionService<Long>(executor);
+			for (DumpChunk chunk : ordered) {
+				if (pipelined) {
+					completion.submit(new FanOutParser(destinations, settings, chunk, loaders));
+				} else {
+					completion.submit(new ChunkLoader(destinations.get(0), settings, chunk, null));
+				}
+			}
+
+			long rows = 0;
+			for (int i = 1; i <= ordered.size(); i++) {
+				try {
+					rows += completion.take().get();
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Error loading dump file " + settings.getDumpFile().getAbsolutePath(), e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while loading dump file " + settings.getDumpFile().getAbsolutePath(), e);
+				}
+				System.out.println("Loaded " + i + " of " + ordered.size() + " chunks. " + rows + (fanOut ? " rows parsed" : " rows") + " so far.");
+			}
+
+			long time = Math.max(1, System.currentTimeMillis() - start);
+			if (fanOut) {
+				System.out.println("Parsed " + rows + " rows in " + time + " ms (" + (rows * 1000 / time) + " rows/s)");
+			} else {
+				System.out.println("Loaded " + rows + " rows in " + time + " ms (" + (rows * 1000 / time) + " rows/s)");
+			}
+
+			List<Destination> failed = new ArrayList<Destination>();
+			for (Destination destination : destinations) {
+				LoadStatistics statistics = destination.statistics;
+				statistics.finished();
+				if (fanOut) {
+					System.out.println("--- " + destination + ": " + destination.statistics.getRows() + " rows loaded. The parser waited " + destination.parserWaitTime.get() / 1000000
+							+ " ms for this destination to take rows" + (destination.getError() == null ? "" : ". FAILED: " + destination.getError().getMessage()));
+				} else if (pipelined) {
+					System.out.println("The parser waited " + destination.parserWaitTime.get() / 1000000 + " ms for rows to be written");
+				}
+				System.out.println(statistics.getStatus());
+				statistics.printTables();
+				File reportFile = getReportFile(destination, fanOut);
+				if (reportFile != null) {
+					statistics.writeReport(reportFile);
+					System.out.println("Load report written to " + reportFile.getAbsolutePath());
+				}
+				if (destination.batchSizes != null) {
+					destination.batchSizes.printBatchSizes();
+				}
+				if (destination.deduplicator != null) {
+					destination.deduplicator.printMemoryUsage();
+				}
+				if (destination.rejects != null && destination.rejects.getRowCount() > 0) {
+					System.out.println(destination.rejects.getRowCount() + " rows rejected by the database were written into " + destination.rejects.getDirectory().getAbsolutePath());
+				}
+
+				if (destination.getError() != null) {
+					failed.add(destination);
+				} else if (destination.verifier != null) {
+					destination.verifier.verify(destination.database);
+				}
+			}
+
+			if (!failed.isEmpty()) {
+				throw new IllegalStateException("Error loading dump file " + settings.getDumpFile().getAbsolutePath() + " into " + failed
+						+ ". Run the load again to resume it." + (failed.size() < destinations.size() ? " The other destinations were loaded successfully." : ""), failed.get(0).getError());
+			}
+			return rows;
+		} finally {
+			executor.shutdownNow();
+			if (loaders != null) {
+				loaders.shutdownNow();
+			}
+			if (status != null) {
+				status.shutdownNow();
+			}
+			for (Destination destination : destinations) {
+				if (destination.statistics != null) {
+					destination.statistics.unregister();
+				}
+				if (destination.rejects != null) {
+					destination.rejects.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Restores the progress recorded by a previous load into a destination, or records the chunks of a new load.
+	 * @return the chunks with rows yet to be loaded into the destination.
+	 */
+	private List<DumpChunk> restore(Destination destination, List<DumpChunk> chunks, int workers, boolean fanOut) {
+		LoadCheckpoint checkpoint = destination.checkpoint;
+		String into = fanOut ? " into " + destination : "";
+
+		List<DumpChunk> restored = checkpoint.restore();
+		List<DumpChunk> pending = new ArrayList<DumpChunk>();
+		if (restored.isEmpty()) {
+			checkpoint.initialize(chunks);
+			pending.addAll(chunks);
+			System.out.println("Loading " + chunks.size() + " chunks of " + settings.getDumpFile().getAbsolutePath() + into + " with " + workers + " workers");
+		} else {
+			if (!restored.equals(chunks)) {
+				throw new IllegalStateException("The progress recorded by a previous load of " + settings.getDumpFile().getAbsolutePath() + into
+						+ " was made with a different chunk size or table selection. Restore the previous settings, or set load.resume=false to start over.");
+			}
+			for (DumpChunk chunk : chunks) {
+				if (!checkpoint.isComplete(chunk)) {
+					pending.add(chunk);
+				}
+			}
+			System.out.println("Resuming load of " + settings.getDumpFile().getAbsolutePath() + into + ": " + pending.size() + " of " + chunks.size() + " chunks pending, with " + workers + " workers");
+			System.out.println("Rows already committed: " + checkpoint.getRestoredRowsPerTable());
+		}
+		return pending;
+	}
+
+	/**
+	 * Returns the number of bytes of the dump file still to be loaded into a destination.
+	 * @return the bytes to load, or -1 if unknown, as the end of compressed dumps is unknown until they are decompressed.
+	 */
+	private static long getTotalBytes(Destination destination, List<DumpChunk> chunks) {
+		long totalBytes = 0;
+		for (DumpChunk chunk : chunks) {
+			if (chunk.getEnd() == Long.MAX_VALUE) {
+				return -1;
+			}
+			long start = destination.checkpoint.getCommittedOffset(chunk);
+			if (destination.watermarks != null) {
+				start = Math.max(start, destination.watermarks.getStartOffset(chunk));
+			}
+			totalBytes += chunk.getEnd() - Math.min(chunk.getEnd(), start);
+		}
+		return totalBytes;
+	}
+
+	/**
+	 * Returns the file of the load report of a destination. When loading several destinations, the name of each destination is added to the
+	 * name of the report file, e.g. <i>load-report-analytics.json</i>.
+	 */
+	private File getReportFile(Destination destination, boolean fanOut) {
+		File reportFile = settings.getReportFile();
+		if (reportFile == null || !fanOut) {
+			return reportFile;
+		}
+		String name = reportFile.getName();
+		int extension = name.lastIndexOf('.');
+		name = extension == -1 ? name + "-" + destination.name : name.substring(0, extension) + "-" + destination.name + name.substring(extension);
+		return new File(reportFile.getAbsoluteFile().getParentFile(), name);
+	}
+
+	private static ExecutorService newExecutor(final String threadName, int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				return new Thread(r, threadName + count.incrementAndGet());
+			}
+		});
+	}
+
+	private ScheduledExecutorService startStatus(final List<Destination> destinations, final boolean fanOut) {
+		if (settings.getStatusInterval() == 0) {
+			return null;
+		}
+		ScheduledExecutorService status = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "load-status");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		status.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				for (Destination destination : destinations) {
+					System.out.println("Status" + (fanOut ? " of " + destination.name : "") + ": " + destination.statistics.getStatus());
+				}
+			}
+		}, settings.getStatusInterval(), settings.getStatusInterval(), TimeUnit.SECONDS);
+		return status;
+	}
+}
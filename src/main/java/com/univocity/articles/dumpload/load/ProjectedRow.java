@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A view over some of the values of another row, in a different order, without copying them.
+ *
+ * Used to write only the projected columns of a table, and to read the full rows of a table back from the projected rows rejected
+ * by the database. Positions mapped to -1 read as {@code NULL}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class ProjectedRow implements DumpRow {
+
+	private final int[] positions;
+	private DumpRow row;
+
+	/**
+	 * Creates a view over rows
+	 * @param positions the position in the original row of each value of the view, or -1 for values that are always {@code NULL}.
+	 */
+	ProjectedRow(int[] positions) {
+		this.positions = positions;
+	}
+
+	/**
+	 * Points this view to a row
+	 * @param row the original row
+	 * @return this view, over the given row.
+	 */
+	ProjectedRow wrap(DumpRow row) {
+		this.row = row;
+		return this;
+	}
+
+	private int position(int index) {
+		int position = positions[index];
+		return position < row.getFieldCount() ? position : -1;
+	}
+
+	@Override
+	public String getTable() {
+		return row.getTable();
+	}
+
+	@Override
+	public int getFieldCount() {
+		return positions.length;
+	}
+
+	@Override
+	public boolean isNull(int index) {
+		int position = position(index);
+		return position < 0 || row.isNull(position);
+	}
+
+	@Override
+	public boolean isQuoted(int index) {
+		int position = position(index);
+		return position >= 0 && row.isQuoted(position);
+	}
+
+	@Override
+	public boolean isBinary(int index) {
+		int position = position(index);
+		return position >= 0 && row.isBinary(position);
+	}
+
+	@Override
+	public byte[] getBuffer() {
+		return row.getBuffer();
+	}
+
+	@Override
+	public int getStart(int index) {
+		int position = position(index);
+		return position < 0 ? 0 : row.getStart(position);
+	}
+
+	@Override
+	public int getLength(int index) {
+		int position = position(index);
+		return position < 0 ? 0 : row.getLength(position);
+	}
+
+	@Override
+	public String getString(int index) {
+		int position = position(index);
+		return position < 0 ? null : row.getString(position);
+	}
+
+	@Override
+	public long getLong(int index) {
+		int position = position(index);
+		if (position < 0) {
+			throw new NumberFormatException("NULL is not a number");
+		}
+		return row.getLong(position);
+	}
+
+	@Override
+	public int getInt(int index) {
+		int position = position(index);
+		if (position < 0) {
+			throw new NumberFormatException("NULL is not a number");
+		}
+		return row.getInt(position);
+	}
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.nio.charset.*;
+import java.sql.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * The columns and rows of each table to load, given with {@code load.columns.<table>} and {@code load.filter.<table>}, pushed down
+ * into the {@link DumpParser}s of a parallel load.
+ *
+ * Values of columns that are neither loaded nor read by the load itself are skipped by the parser without being decoded. The primary key,
+ * watermark and shard key of a table are always parsed, so deduplication, incremental loads and sharding work on the rows as usual, and
+ * only the projected values are written. Rows rejected by the {@link RowPredicate} of their table are dropped by the parser as soon as the
+ * values it compares are read.
+ *
+ * Positions of the columns are read from the first destination database, and apply to every destination, as the rows are parsed only once.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class Projection {
+
+	private final Charset charset;
+	private final Map<String, boolean[]> skippedFields = new HashMap<String, boolean[]>();
+	private final Map<String, RowFilter> filters = new HashMap<String, RowFilter>();
+	private final Map<String, List<String>> columns = new HashMap<String, List<String>>();
+	private final Map<String, int[]> positions = new HashMap<String, int[]>();
+	private final Map<String, int[]> expansions = new HashMap<String, int[]>();
+
+	/**
+	 * Reads the columns of the projected and filtered tables from the destination databases.
+	 * @param destinations the destination databases. The position of each column is read from the first one.
+	 * @param settings the load settings, with the projected columns and row filters of each table.
+	 * @throws IllegalArgumentException if a projection or filter refers to columns the table doesn't have.
+	 */
+	Projection(List<Destination> destinations, LoadSettings settings) {
+		this.charset = settings.getCharset();
+		Database database = destinations.get(0).database;
+
+		Map<String, List<String>> primaryKeys = new HashMap<String, List<String>>();
+		for (IndexDefinition definition : database.getIndexDefinitions()) {
+			if (definition.getType() == IndexDefinition.Type.PRIMARY_KEY) {
+				primaryKeys.put(definition.getTable().toLowerCase(), definition.getColumns());
+			}
+		}
+
+		Set<String> tables = new TreeSet<String>(settings.getProjectedColumns().keySet());
+		tables.addAll(settings.getRowFilters().keySet());
+
+		Connection connection = database.openConnection();
+		try {
+			for (String table : tables) {
+				RowBinder binder = database.getRowBinder(connection, table);
+				String[] names = binder.getColumnNames();
+				if (names.length == 0) {
+					throw new IllegalArgumentException("Table " + table + " not found in database " + database.getDatabaseName());
+				}
+
+				String expression = settings.getRowFilters().get(table);
+				RowPredicate predicate = null;
+				if (expression != null) {
+					predicate = new RowPredicate(table, expression, binder, charset);
+					filters.put(table, predicate);
+				}
+
+				List<String> projected = settings.getProjectedColumns().get(table);
+				if (projected == null) {
+					continue;
+				}
+				int[] positions = new int[projected.size()];
+				int[] expansion = new int[names.length];
+				Arrays.fill(expansion, -1);
+				boolean[] skipped = new boolean[names.length];
+				Arrays.fill(skipped, true);
+				for (int i = 0; i < positions.length; i++) {
+					positions[i] = getPosition(binder, table, projected.get(i));
+					expansion[positions[i]] = i;
+					skipped[positions[i]] = false;
+				}
+
+				//columns read by the load must be parsed even if they are not written.
+				Set<String> needed = new HashSet<String>();
+				if (predicate != null) {
+					needed.addAll(predicate.getColumns());
+				}
+				if (primaryKeys.containsKey(table.toLowerCase())) {
+					needed.addAll(primaryKeys.get(table.toLowerCase()));
+				}
+				if (settings.getWatermarkColumns().containsKey(table)) {
+					needed.add(settings.getWatermarkColumns().get(table));
+				}
+				for (Destination destination : destinations) {
+					Shard shard = destination.database.getShard();
+					if (shard != null && shard.getKeyColumn(table) != null) {
+						needed.add(shard.getKeyColumn(table));
+					}
+				}
+				for (String column : needed) {
+					skipped[getPosition(binder, table, column)] = false;
+				}
+
+				skippedFields.put(table, skipped);
+				columns.put(table, projected);
+				this.positions.put(table, positions);
+				expansions.put(table, expansion);
+			}
+		} finally {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				//ignore
+			}
+		}
+	}
+
+	private static int getPosition(RowBinder binder, String table, String column) {
+		int position = binder.indexOf(column);
+		if (position < 0) {
+			throw new IllegalArgumentException("Column " + column + " not found in table " + table);
+		}
+		return position;
+	}
+
+	/**
+	 * Creates a parser that skips the values that are not needed, and drops the rows that don't match the filter of their table.
+	 * @return a new parser for the dump file.
+	 */
+	DumpParser newParser() {
+		DumpParser parser = new DumpParser(charset);
+		for (Map.Entry<String, boolean[]> e : skippedFields.entrySet()) {
+			parser.skipFields(e.getKey(), e.getValue());
+		}
+		for (Map.Entry<String, RowFilter> e : filters.entrySet()) {
+			parser.filterRows(e.getKey(), e.getValue());
+		}
+		return parser;
+	}
+
+	/**
+	 * Returns the columns to load from the rows of a table
+	 * @param table the name of the table
+	 * @return the names of the projected columns, or {@code null} if all columns of the table are loaded.
+	 */
+	List<String> getColumns(String table) {
+		return columns.get(table);
+	}
+
+	/**
+	 * Creates a view over the rows of a table with the values of the projected columns only.
+	 * @param table the name of the table
+	 * @return a view to wrap the parsed rows of the table with, or {@code null} if all columns of the table are loaded.
+	 */
+	ProjectedRow newProjectedRow(String table) {
+		int[] positions = this.positions.get(table);
+		return positions == null ? null : new ProjectedRow(positions);
+	}
+
+	/**
+	 * Creates a view over the projected rows of a table with a value for each column of the table, {@code NULL} for the columns not loaded.
+	 * @param table the name of the table
+	 * @return a view to wrap the projected rows of the table with, or {@code null} if all columns of the table are loaded.
+	 */
+	ProjectedRow newFullRow(String table) {
+		int[] expansion = expansions.get(table);
+		return expansion == null ? null : new ProjectedRow(expansion);
+	}
+}
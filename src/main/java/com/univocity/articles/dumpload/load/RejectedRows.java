@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+import java.sql.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Writes the rows rejected by a destination database into reject files, one per table, shared by all {@link ChunkLoader}s of the destination.
+ *
+ * Each row is written as an {@code INSERT} statement in the syntax of the dump file, preceded by a comment with the error reported by the
+ * database, so a reject file can be fixed and loaded as a dump file of its own once the cause of the errors is addressed. Files are
+ * appended to, so the rows rejected by a resumed load are added to the ones rejected before it was interrupted.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class RejectedRows {
+
+	private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+	private final File directory;
+	private final int maximumRows;
+	private final Map<String, OutputStream> files = new TreeMap<String, OutputStream>();
+	private long rows;
+
+	/**
+	 * Creates the reject files of a destination
+	 * @param directory the directory where the reject files are written. Created if it doesn't exist.
+	 * @param maximumRows the number of rows that can be rejected before the load is stopped.
+	 */
+	RejectedRows(File directory, int maximumRows) {
+		this.directory = directory;
+		this.maximumRows = maximumRows;
+	}
+
+	/**
+	 * Writes a rejected row into the reject file of its table
+	 * @param table the table of the row
+	 * @param row the row rejected
+	 * @param columns the columns of the values of the row, or {@code null} if the row has a value for every column of the table.
+	 * @param error the error reported by the database
+	 * @throws IllegalStateException if the row can't be written, or if more than the maximum number of rows were rejected.
+	 */
+	synchronized void write(String table, DumpRow row, List<String> columns, SQLException error) {
+		if (++rows > maximumRows) {
+			throw new IllegalStateException("More than " + maximumRows + " rows rejected. Last error in table " + table + ": " + error.getMessage(), error);
+		}
+		try {
+			OutputStream out = files.get(table);
+			if (out == null) {
+				if (!directory.isDirectory() && !directory.mkdirs()) {
+					throw new IOException("Unable to create directory " + directory.getAbsolutePath());
+				}
+				out = new BufferedOutputStream(new FileOutputStream(new File(directory, table + ".sql"), true), 64 * 1024);
+				files.put(table, out);
+			}
+			String message = String.valueOf(error.getMessage()).replace('\r', ' ').replace('\n', ' ');
+			out.write(("-- " + message + "\nINSERT INTO `" + table + "` ").getBytes("UTF-8"));
+			if (columns != null) {
+				StringBuilder columnList = new StringBuilder("(");
+				for (String column : columns) {
+					columnList.append(columnList.length() == 1 ? "`" : ", `").append(column).append('`');
+				}
+				out.write(columnList.append(") ").toString().getBytes("UTF-8"));
+			}
+			out.write("VALUES (".getBytes("UTF-8"));
+			writeValues(out, row);
+			out.write(");\n".getBytes("UTF-8"));
+			//rejected rows are rare: the file is kept complete in case the load is interrupted.
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException("Error writing rejected row of table " + table + " into " + directory.getAbsolutePath(), e);
+		}
+	}
+
+	private static void writeValues(OutputStream out, DumpRow row) throws IOException {
+		byte[] data = row.getBuffer();
+		for (int i = 0; i < row.getFieldCount(); i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			int start = row.getStart(i);
+			int end = start + row.getLength(i);
+			if (row.isNull(i)) {
+				out.write('N');
+				out.write('U');
+				out.write('L');
+				out.write('L');
+			} else if (row.isBinary(i)) {
+				out.write('0');
+				out.write('x');
+				for (int j = start; j < end; j++) {
+					out.write(HEX[(data[j] >> 4) & 0xF]);
+					out.write(HEX[data[j] & 0xF]);
+				}
+			} else if (!row.isQuoted(i)) {
+				out.write(data, start, end - start);
+			} else {
+				out.write('\'');
+				for (int j = start; j < end; j++) {
+					byte b = data[j];
+					switch (b) {
+						case 0:
+							out.write('\\');
+							out.write('0');
+							break;
+						case '\n':
+							out.write('\\');
+							out.write('n');
+							break;
+						case '\r':
+							out.write('\\');
+							out.write('r');
+							break;
+						case 26:
+							out.write('\\');
+							out.write('Z');
+							break;
+						case '\\':
+						case '\'':
+						case '"':
+							out.write('\\');
+							out.write(b);
+							break;
+						default:
+							out.write(b);
+					}
+				}
+				out.write('\'');
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of rows rejected so far
+	 * @return the number of rows written into the reject files.
+	 */
+	synchronized long getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Returns the directory of the reject files
+	 * @return the directory where the reject files are written.
+	 */
+	File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Closes all reject files.
+	 */
+	synchronized void close() {
+		for (OutputStream out : files.values()) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				//ignore
+			}
+		}
+		files.clear();
+	}
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.nio.charset.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A fixed set of {@link RowBatch}es recycled between the parser of a chunk and the {@link ChunkLoader}s writing its rows, so parsing and
+ * writing run on separate threads without allocating buffers for every batch.
+ *
+ * The parser takes an empty batch, fills it and sends it to the loaders, each holding a reference to it until its rows are committed. Once
+ * every reference is released, the batch is cleared and goes back to the pool, keeping the arrays it grew into. The parser waits when all
+ * batches are in use, or when the batches in use hold more bytes of values than the memory limit, so heap use stays flat no matter how far
+ * ahead of the loaders the parser gets.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class RowBatchPool {
+
+	private final Charset charset;
+	private final int depth;
+	private final long memoryLimit;
+
+	private final LinkedList<RowBatch> free = new LinkedList<RowBatch>();
+	private final Map<RowBatch, int[]> references = new IdentityHashMap<RowBatch, int[]>();
+	private int created;
+	private long bytesInUse;
+	private volatile boolean exhausted;
+
+	/**
+	 * Creates a pool of batches
+	 * @param charset the encoding of the dump file
+	 * @param depth the number of batches in the pool, which is the number of batches that can be filled or waiting to be committed.
+	 * @param memoryLimit the number of bytes of values the batches in use can hold before the parser has to wait.
+	 */
+	RowBatchPool(Charset charset, int depth, long memoryLimit) {
+		this.charset = charset;
+		this.depth = depth;
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * Returns the number of bytes of values a batch should hold before it is sent, so all batches of the pool fit in the memory limit.
+	 * @return the size, in bytes, at which batches should be sent.
+	 */
+	int getBatchBytes() {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(64 * 1024, memoryLimit / depth));
+	}
+
+	/**
+	 * Takes an empty batch, waiting while all batches are in use or the memory limit is reached.
+	 * @return an empty batch, to be passed to {@link #sent(RowBatch, int)} once filled.
+	 * @throws InterruptedException if interrupted while waiting for a batch to be released.
+	 */
+	synchronized RowBatch acquire() throws InterruptedException {
+		while (created - free.size() >= depth || (bytesInUse >= memoryLimit && created > free.size())) {
+			exhausted = true;
+			try {
+				wait();
+			} finally {
+				exhausted = false;
+			}
+		}
+		if (!free.isEmpty()) {
+			return free.removeFirst();
+		}
+		created++;
+		return new RowBatch(charset);
+	}
+
+	/**
+	 * Records that a filled batch is about to be handed to a number of loaders, each of which must {@link #release(RowBatch)} it.
+	 * A loader that doesn't take the batch must be released by the parser.
+	 * @param batch the batch filled by the parser
+	 * @param count the number of loaders the batch is sent to. If 0, the batch goes back to the pool immediately.
+	 */
+	synchronized void sent(RowBatch batch, int count) {
+		bytesInUse += batch.getSize();
+		references.put(batch, new int[]{count});
+		if (count == 0) {
+			recycle(batch);
+		}
+	}
+
+	/**
+	 * Releases a reference to a batch. The batch goes back to the pool once all loaders that received it released it.
+	 * @param batch the batch whose rows were committed, or discarded.
+	 */
+	synchronized void release(RowBatch batch) {
+		int[] count = references.get(batch);
+		if (count == null) {
+			throw new IllegalStateException("Batch released more times than it was sent");
+		}
+		if (--count[0] == 0) {
+			recycle(batch);
+		}
+	}
+
+	/**
+	 * Indicates whether the parser is waiting for a batch to be released. Loaders that have no more batches to process must then commit
+	 * the rows they hold, as the parser can't send them more rows until they do.
+	 * @return {@code true} if the parser is waiting for a batch.
+	 */
+	boolean isExhausted() {
+		return exhausted;
+	}
+
+	private void recycle(RowBatch batch) {
+		references.remove(batch);
+		bytesInUse -= batch.getSize();
+		batch.clear();
+		free.addFirst(batch);
+		notifyAll();
+	}
+}
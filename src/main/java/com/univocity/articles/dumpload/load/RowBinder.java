@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Binds the values of a {@link DumpRow} to the parameters of a {@link PreparedStatement}, using the types of the columns
+ * of the destination table.
+ *
+ * The binder of each column is selected once, when the binder of the table is created from the {@link DatabaseMetaData}
+ * of the destination database. Integral numbers are parsed directly from the bytes of the dump file and bound with
+ * {@code setInt}, {@code setLong} or {@code setBoolean}, so no {@code String} is created for them and the database doesn't
+ * have to convert them. Other values are bound as before: binary strings with {@code setBytes}, everything else with {@code setString}.
+ *
+ * Instances are immutable and can be shared among threads.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class RowBinder {
+
+	private final String table;
+	private final ColumnBinder[] binders;
+	private final int[] types;
+	private final String[] columns;
+
+	/**
+	 * Creates a binder that binds every value as a {@code String}, for tables whose column types are unknown.
+	 * @param table the name of the destination table
+	 */
+	public RowBinder(String table) {
+		this(table, new int[0], new ColumnBinder[0], new String[0]);
+	}
+
+	private RowBinder(String table, int[] types, ColumnBinder[] binders, String[] columns) {
+		this.table = table;
+		this.types = types;
+		this.binders = binders;
+		this.columns = columns;
+	}
+
+	/**
+	 * Creates a binder for the columns of a table, as described by the {@link DatabaseMetaData} of the given connection.
+	 * @param connection a connection to the destination database
+	 * @param table the name of the destination table
+	 * @return a binder for the columns of the given table, or a binder that binds every value as a {@code String} if the table was not found.
+	 * @throws SQLException if the metadata of the database can't be read.
+	 */
+	public static RowBinder forTable(Connection connection, String table) throws SQLException {
+		DatabaseMetaData metaData = connection.getMetaData();
+		String catalog = connection.getCatalog();
+		String escape = metaData.getSearchStringEscape();
+
+		//identifiers may be stored in upper or lower case, depending on the database.
+		for (String name : new LinkedHashSet<String>(Arrays.asList(table, table.toUpperCase(), table.toLowerCase()))) {
+			String pattern = escape == null ? name : name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+			List<Integer> types = new ArrayList<Integer>();
+			List<ColumnBinder> binders = new ArrayList<ColumnBinder>();
+			List<String> columns = new ArrayList<String>();
+			String schema = null;
+
+			ResultSet rs = metaData.getColumns(catalog, null, pattern, null);
+			try {
+				while (rs.next()) {
+					//tables with the same name may exist in other schemas.
+					String tableSchema = rs.getString("TABLE_SCHEM");
+					if (binders.isEmpty()) {
+						schema = tableSchema;
+					} else if (schema == null ? tableSchema != null : !schema.equals(tableSchema)) {
+						break;
+					}
+					int type = rs.getInt("DATA_TYPE");
+					types.add(type);
+					binders.add(getColumnBinder(type, rs.getInt("COLUMN_SIZE"), rs.getInt("DECIMAL_DIGITS")));
+					columns.add(rs.getString("COLUMN_NAME"));
+				}
+			} finally {
+				rs.close();
+			}
+
+			if (!binders.isEmpty()) {
+				int[] typeArray = new int[types.size()];
+				for (int i = 0; i < typeArray.length; i++) {
+					typeArray[i] = types.get(i);
+				}
+				return new RowBinder(table, typeArray, binders.toArray(new ColumnBinder[binders.size()]), columns.toArray(new String[columns.size()]));
+			}
+		}
+		return new RowBinder(table);
+	}
+
+	/**
+	 * Finds the position of some integer columns of a table in the rows of the table, as given by the order of the columns in the database.
+	 * @param connection a connection to the destination database
+	 * @param table the name of the table
+	 * @param columns the names of the columns to find
+	 * @return the position of each column, or {@code null} if any of the columns is not found or is not an integer.
+	 * @throws SQLException if the metadata of the database can't be read.
+	 */
+	static int[] getIntegerColumnPositions(Connection connection, String table, List<String> columns) throws SQLException {
+		return getColumnPositions(connection, table, columns, true);
+	}
+
+	/**
+	 * Finds the position of some columns of a table in the rows of the table, as given by the order of the columns in the database.
+	 * @param connection a connection to the destination database
+	 * @param table the name of the table
+	 * @param columns the names of the columns to find
+	 * @return the position of each column, or {@code null} if any of the columns is not found.
+	 * @throws SQLException if the metadata of the database can't be read.
+	 */
+	static int[] getColumnPositions(Connection connection, String table, List<String> columns) throws SQLException {
+		return getColumnPositions(connection, table, columns, false);
+	}
+
+	private static int[] getColumnPositions(Connection connection, String table, List<String> columns, boolean integersOnly) throws SQLException {
+		DatabaseMetaData metaData = connection.getMetaData();
+		String escape = metaData.getSearchStringEscape();
+		for (String name : new LinkedHashSet<String>(Arrays.asList(table, table.toUpperCase(), table.toLowerCase()))) {
+			String pattern = escape == null ? name : name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+			Map<String, Integer> positions = new HashMap<String, Integer>();
+			boolean found = false;
+			String schema = null;
+			ResultSet rs = metaData.getColumns(connection.getCatalog(), null, pattern, null);
+			try {
+				while (rs.next()) {
+					String tableSchema = rs.getString("TABLE_SCHEM");
+					if (!found) {
+						schema = tableSchema;
+						found = true;
+					} else if (schema == null ? tableSchema != null : !schema.equals(tableSchema)) {
+						break;
+					}
+					if (!integersOnly || isInteger(rs.getInt("DATA_TYPE"), rs.getInt("DECIMAL_DIGITS"))) {
+						positions.put(rs.getString("COLUMN_NAME").toLowerCase(), rs.getInt("ORDINAL_POSITION") - 1);
+					}
+				}
+			} finally {
+				rs.close();
+			}
+			if (found) {
+				int[] out = new int[columns.size()];
+				for (int i = 0; i < out.length; i++) {
+					Integer position = positions.get(columns.get(i).toLowerCase());
+					if (position == null) {
+						return null;
+					}
+					out[i] = position;
+				}
+				return out;
+			}
+		}
+		return null;
+	}
+
+	private static boolean isInteger(int type, int decimalDigits) {
+		switch (type) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+				return true;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return decimalDigits == 0;
+			default:
+				return false;
+		}
+	}
+
+	private static ColumnBinder getColumnBinder(int type, int size, int decimalDigits) {
+		switch (type) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return INT;
+			case Types.BIGINT:
+				return LONG;
+			case Types.BIT:
+			case Types.BOOLEAN:
+				//bit columns with more than one bit hold bit strings, not booleans.
+				return size <= 1 ? BOOLEAN : STRING;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				//databases without integer types (such as Oracle) declare integers as numbers without decimal digits.
+				if (decimalDigits == 0 && size > 0) {
+					if (size <= 9) {
+						return INT;
+					}
+					if (size <= 18) {
+						return LONG;
+					}
+				}
+				return STRING;
+			default:
+				return STRING;
+		}
+	}
+
+	/**
+	 * Returns the number of columns of the destination table
+	 * @return the number of columns in the table, or 0 if the column types are unknown.
+	 */
+	public int getColumnCount() {
+		return binders.length;
+	}
+
+	/**
+	 * Indicates whether a column of the destination table holds binary strings ({@code BINARY}, {@code VARBINARY} or {@code BLOB} types).
+	 * @param index the position of the column in the rows
+	 * @return {@code true} if the column holds bytes instead of text, {@code false} if it doesn't or if its type is unknown.
+	 */
+	public boolean isBinaryColumn(int index) {
+		if (index >= types.length) {
+			return false;
+		}
+		switch (types[index]) {
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the names of the columns of the destination table, in the order their values appear in the rows.
+	 * @return the column names, or an empty array if the columns are unknown.
+	 */
+	public String[] getColumnNames() {
+		return columns.clone();
+	}
+
+	/**
+	 * Creates a binder for some of the columns of the table, to bind the values of rows that only have these columns, in the given order.
+	 * @param columns the names of the columns to keep.
+	 * @return a binder for the given columns.
+	 * @throws IllegalArgumentException if any of the columns is not a column of the table.
+	 */
+	public RowBinder project(List<String> columns) {
+		int[] types = new int[columns.size()];
+		ColumnBinder[] binders = new ColumnBinder[columns.size()];
+		String[] names = new String[columns.size()];
+		for (int i = 0; i < names.length; i++) {
+			int position = indexOf(columns.get(i));
+			if (position < 0) {
+				throw new IllegalArgumentException("Column " + columns.get(i) + " not found in table " + table);
+			}
+			types[i] = this.types[position];
+			binders[i] = this.binders[position];
+			names[i] = this.columns[position];
+		}
+		return new RowBinder(table, types, binders, names);
+	}
+
+	/**
+	 * Finds the position of a column in the rows of the table
+	 * @param column the name of the column, in any case.
+	 * @return the position of the column, or -1 if the table has no such column.
+	 */
+	public int indexOf(String column) {
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i].equalsIgnoreCase(column)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Binds the values of a row to the parameters of a statement
+	 * @param statement the statement whose parameters will receive the values of the row, in order.
+	 * @param row the row with the values to bind.
+	 * @throws SQLException if a value can't be bound.
+	 */
+	public void bind(PreparedStatement statement, DumpRow row) throws SQLException {
+		int fieldCount = row.getFieldCount();
+		for (int i = 0; i < fieldCount; i++) {
+			if (row.isNull(i)) {
+				statement.setNull(i + 1, i < types.length ? types[i] : Types.VARCHAR);
+			} else if (row.isBinary(i)) {
+				//the row buffer is reused, so the bytes must be copied before being added to the batch.
+				int start = row.getStart(i);
+				statement.setBytes(i + 1, Arrays.copyOfRange(row.getBuffer(), start, start + row.getLength(i)));
+			} else if (i < binders.length) {
+				binders[i].bind(statement, i, row);
+			} else {
+				statement.setString(i + 1, row.getString(i));
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "RowBinder for table " + table;
+	}
+
+	/**
+	 * Binds a non-null value of a row to a statement parameter.
+	 */
+	private static abstract class ColumnBinder {
+		abstract void bind(PreparedStatement statement, int index, DumpRow row) throws SQLException;
+	}
+
+	private static final ColumnBinder STRING = new ColumnBinder() {
+		@Override
+		void bind(PreparedStatement statement, int index, DumpRow row) throws SQLException {
+			statement.setString(index + 1, row.getString(index));
+		}
+	};
+
+	private static final ColumnBinder INT = new ColumnBinder() {
+		@Override
+		void bind(PreparedStatement statement, int index, DumpRow row) throws SQLException {
+			int value;
+			try {
+				value = row.getInt(index);
+			} catch (NumberFormatException e) {
+				//not an integer that fits in an int (e.g. an unsigned column). Let the database convert it.
+				STRING.bind(statement, index, row);
+				return;
+			}
+			statement.setInt(index + 1, value);
+		}
+	};
+
+	private static final ColumnBinder LONG = new ColumnBinder() {
+		@Override
+		void bind(PreparedStatement statement, int index, DumpRow row) throws SQLException {
+			long value;
+			try {
+				value = row.getLong(index);
+			} catch (NumberFormatException e) {
+				STRING.bind(statement, index, row);
+				return;
+			}
+			statement.setLong(index + 1, value);
+		}
+	};
+
+	private static final ColumnBinder BOOLEAN = new ColumnBinder() {
+		@Override
+		void bind(PreparedStatement statement, int index, DumpRow row) throws SQLException {
+			long value;
+			try {
+				value = row.getLong(index);
+			} catch (NumberFormatException e) {
+				STRING.bind(statement, index, row);
+				return;
+			}
+			statement.setBoolean(index + 1, value != 0);
+		}
+	};
+}
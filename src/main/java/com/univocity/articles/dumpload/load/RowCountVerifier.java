@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.univocity.articles.dumpload.databases.*;
+
+/**
+ * Verifies that the number of rows in each table, after a load, matches the number of rows it had before the load plus
+ * the number of rows committed by the loader threads.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class RowCountVerifier {
+
+	private final Map<String, Long> initialCounts = new HashMap<String, Long>();
+	private final ConcurrentMap<String, AtomicLong> committedRows = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * Notifies that a loader thread is about to write into a table. The first time a table is seen, its current row count is
+	 * collected. This happens before any thread is allowed to write into the table.
+	 *
+	 * @param table the name of the table
+	 * @param connection the connection of the loader thread.
+	 * @throws SQLException if the row count can't be collected.
+	 */
+	synchronized void tableStarted(String table, Connection connection) throws SQLException {
+		if (!initialCounts.containsKey(table)) {
+			initialCounts.put(table, count(table, connection));
+			committedRows.put(table, new AtomicLong());
+		}
+	}
+
+	/**
+	 * Notifies that rows were committed into a table.
+	 * @param table the name of the table
+	 * @param rows the number of rows committed
+	 */
+	void rowsCommitted(String table, long rows) {
+		committedRows.get(table).addAndGet(rows);
+	}
+
+	/**
+	 * Counts the rows of every table loaded and compares them with the expected row counts.
+	 * @param database the database where the tables were loaded
+	 * @throws IllegalStateException if any table doesn't have the expected number of rows.
+	 */
+	void verify(Database database) {
+		Connection connection = database.openConnection();
+		try {
+			List<String> errors = new ArrayList<String>();
+			for (Map.Entry<String, AtomicLong> e : new TreeMap<String, AtomicLong>(committedRows).entrySet()) {
+				String table = e.getKey();
+				long expected = initialCounts.get(table) + e.getValue().get();
+				long actual = count(table, connection);
+				if (expected == actual) {
+					System.out.println("Table " + table + " has " + actual + " rows, as expected.");
+				} else {
+					errors.add(table + " has " + actual + " rows. Expected " + expected);
+				}
+			}
+			if (!errors.isEmpty()) {
+				throw new IllegalStateException("Row count verification failed: " + errors);
+			}
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error verifying row counts of database " + database.getDatabaseName(), ex);
+		} finally {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				//ignore
+			}
+		}
+	}
+
+	private static long count(String table, Connection connection) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table);
+			result.next();
+			return result.getLong(1);
+		} finally {
+			statement.close();
+		}
+	}
+}
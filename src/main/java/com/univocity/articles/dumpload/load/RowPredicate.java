@@ -0,0 +1,350 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.math.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * A condition on the rows of a table, given with {@code load.filter.<table>} and evaluated by the {@link DumpParser} while the rows are parsed.
+ *
+ * A condition is a list of comparisons joined by {@code AND}. Each comparison is one of:
+ * <ul>
+ * <li>{@code column op literal}, where {@code op} is one of {@code = != <> < <= > >=}</li>
+ * <li>{@code column IN (literal, literal, ...)}</li>
+ * <li>{@code column IS NULL} or {@code column IS NOT NULL}</li>
+ * </ul>
+ *
+ * Numeric literals are compared with the numeric value of unquoted values. Quoted literals are compared with the bytes of values as they
+ * appear in the dump file, encoded with its charset, so dates and times written by mysqldump compare in chronological order.
+ * {@code NULL} values never match a comparison.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class RowPredicate implements RowFilter {
+
+	private static final int EQ = 0;
+	private static final int NE = 1;
+	private static final int LT = 2;
+	private static final int LE = 3;
+	private static final int GT = 4;
+	private static final int GE = 5;
+	private static final int IN = 6;
+	private static final int IS_NULL = 7;
+	private static final int IS_NOT_NULL = 8;
+
+	private final Condition[] conditions;
+	private final Set<String> columns = new LinkedHashSet<String>();
+	private final int fieldCount;
+
+	/**
+	 * Parses the condition of a table
+	 * @param table the name of the table
+	 * @param expression the condition the rows of the table must match
+	 * @param binder the binder of the table, with the names of its columns in the order they appear in the rows.
+	 * @param charset the encoding of the dump file
+	 * @throws IllegalArgumentException if the condition is invalid, or refers to columns the table doesn't have.
+	 */
+	RowPredicate(String table, String expression, RowBinder binder, Charset charset) {
+		List<String> tokens = tokenize(table, expression);
+		List<Condition> conditions = new ArrayList<Condition>();
+		int fieldCount = 0;
+		int i = 0;
+		while (true) {
+			if (i + 2 > tokens.size()) {
+				throw invalid(table, expression, "incomplete comparison");
+			}
+			String column = unquoteName(tokens.get(i++));
+			int position = binder.indexOf(column);
+			if (position < 0) {
+				throw invalid(table, expression, "column " + column + " not found");
+			}
+			columns.add(binder.getColumnNames()[position]);
+			fieldCount = Math.max(fieldCount, position + 1);
+
+			Condition condition = new Condition(position);
+			String operator = tokens.get(i++).toUpperCase(Locale.ENGLISH);
+			if (operator.equals("IS")) {
+				boolean not = i < tokens.size() && tokens.get(i).equalsIgnoreCase("NOT");
+				if (not) {
+					i++;
+				}
+				if (i >= tokens.size() || !tokens.get(i++).equalsIgnoreCase("NULL")) {
+					throw invalid(table, expression, "expected NULL after IS");
+				}
+				condition.operator = not ? IS_NOT_NULL : IS_NULL;
+			} else if (operator.equals("IN")) {
+				if (i >= tokens.size() || !tokens.get(i++).equals("(")) {
+					throw invalid(table, expression, "expected ( after IN");
+				}
+				List<String> literals = new ArrayList<String>();
+				while (true) {
+					if (i + 1 >= tokens.size()) {
+						throw invalid(table, expression, "unterminated IN list");
+					}
+					literals.add(tokens.get(i++));
+					String next = tokens.get(i++);
+					if (next.equals(")")) {
+						break;
+					} else if (!next.equals(",")) {
+						throw invalid(table, expression, "expected , or ) in IN list");
+					}
+				}
+				condition.operator = IN;
+				condition.setLiterals(literals, charset);
+			} else {
+				condition.operator = getOperator(operator);
+				if (condition.operator < 0 || i >= tokens.size()) {
+					throw invalid(table, expression, "invalid comparison " + operator);
+				}
+				condition.setLiterals(Collections.singletonList(tokens.get(i++)), charset);
+			}
+			conditions.add(condition);
+
+			if (i == tokens.size()) {
+				break;
+			}
+			if (!tokens.get(i++).equalsIgnoreCase("AND")) {
+				throw invalid(table, expression, "expected AND before " + tokens.get(i - 1));
+			}
+		}
+		this.conditions = conditions.toArray(new Condition[conditions.size()]);
+		this.fieldCount = fieldCount;
+	}
+
+	private static IllegalArgumentException invalid(String table, String expression, String message) {
+		return new IllegalArgumentException("Invalid filter of table " + table + " (" + expression + "): " + message);
+	}
+
+	private static int getOperator(String operator) {
+		if (operator.equals("=")) {
+			return EQ;
+		} else if (operator.equals("!=") || operator.equals("<>")) {
+			return NE;
+		} else if (operator.equals("<")) {
+			return LT;
+		} else if (operator.equals("<=")) {
+			return LE;
+		} else if (operator.equals(">")) {
+			return GT;
+		} else if (operator.equals(">=")) {
+			return GE;
+		}
+		return -1;
+	}
+
+	private static String unquoteName(String token) {
+		if (token.length() > 1 && token.charAt(0) == '`' && token.charAt(token.length() - 1) == '`') {
+			return token.substring(1, token.length() - 1);
+		}
+		return token;
+	}
+
+	/**
+	 * Splits an expression into names, literals and operators. Quoted literals keep their enclosing quotes, without escapes.
+	 */
+	private static List<String> tokenize(String table, String expression) {
+		List<String> tokens = new ArrayList<String>();
+		int i = 0;
+		int length = expression.length();
+		while (i < length) {
+			char ch = expression.charAt(i);
+			if (Character.isWhitespace(ch)) {
+				i++;
+			} else if (ch == '\'' || ch == '"') {
+				StringBuilder literal = new StringBuilder().append('\'');
+				i++;
+				while (true) {
+					if (i >= length) {
+						throw invalid(table, expression, "unterminated string");
+					}
+					char c = expression.charAt(i++);
+					if (c == '\\' && i < length) {
+						literal.append(expression.charAt(i++));
+					} else if (c == ch) {
+						if (i < length && expression.charAt(i) == ch) {
+							literal.append(ch);
+							i++;
+						} else {
+							break;
+						}
+					} else {
+						literal.append(c);
+					}
+				}
+				tokens.add(literal.append('\'').toString());
+			} else if (ch == '`') {
+				int end = expression.indexOf('`', i + 1);
+				if (end < 0) {
+					throw invalid(table, expression, "unterminated column name");
+				}
+				tokens.add(expression.substring(i, end + 1));
+				i = end + 1;
+			} else if (ch == '(' || ch == ')' || ch == ',') {
+				tokens.add(String.valueOf(ch));
+				i++;
+			} else if (ch == '<' || ch == '>' || ch == '=' || ch == '!') {
+				int end = i + 1;
+				if (end < length && (expression.charAt(end) == '=' || (ch == '<' && expression.charAt(end) == '>'))) {
+					end++;
+				}
+				tokens.add(expression.substring(i, end));
+				i = end;
+			} else {
+				int end = i;
+				while (end < length && "'\"`(),<>=!".indexOf(expression.charAt(end)) < 0 && !Character.isWhitespace(expression.charAt(end))) {
+					end++;
+				}
+				tokens.add(expression.substring(i, end));
+				i = end;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Returns the columns compared by this condition, which must be parsed even if they are not loaded.
+	 * @return the names of the columns read by the condition.
+	 */
+	Set<String> getColumns() {
+		return columns;
+	}
+
+	@Override
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	@Override
+	public boolean accepts(DumpRow row) {
+		for (int i = 0; i < conditions.length; i++) {
+			if (!conditions[i].matches(row)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final class Condition {
+		private final int position;
+		private int operator;
+		private BigDecimal[] numbers;
+		private long[] integers;
+		private byte[][] strings;
+
+		Condition(int position) {
+			this.position = position;
+		}
+
+		void setLiterals(List<String> literals, Charset charset) {
+			int count = literals.size();
+			strings = new byte[count][];
+			numbers = new BigDecimal[count];
+			integers = new long[count];
+			boolean numeric = true;
+			boolean integral = true;
+			for (int i = 0; i < count; i++) {
+				String literal = literals.get(i);
+				if (literal.startsWith("'")) {
+					numeric = false;
+					literal = literal.substring(1, literal.length() - 1);
+				} else {
+					try {
+						numbers[i] = new BigDecimal(literal);
+						integers[i] = numbers[i].longValueExact();
+					} catch (NumberFormatException e) {
+						throw new IllegalArgumentException("Invalid literal " + literal + ". Strings must be enclosed in quotes.");
+					} catch (ArithmeticException e) {
+						integral = false;
+					}
+				}
+				strings[i] = literal.getBytes(charset);
+			}
+			if (!numeric) {
+				numbers = null;
+				integers = null;
+			} else if (!integral) {
+				integers = null;
+			}
+		}
+
+		boolean matches(DumpRow row) {
+			boolean isNull = position >= row.getFieldCount() || row.isNull(position);
+			if (operator == IS_NULL) {
+				return isNull;
+			} else if (operator == IS_NOT_NULL) {
+				return !isNull;
+			} else if (isNull) {
+				return false;
+			}
+			for (int i = 0; i < strings.length; i++) {
+				int comparison;
+				try {
+					comparison = compare(row, i);
+				} catch (NumberFormatException e) {
+					//not a number: never matches a numeric literal.
+					if (operator == NE) {
+						return true;
+					}
+					continue;
+				}
+				switch (operator) {
+					case EQ:
+					case IN:
+						if (comparison == 0) {
+							return true;
+						}
+						break;
+					case NE:
+						return comparison != 0;
+					case LT:
+						return comparison < 0;
+					case LE:
+						return comparison <= 0;
+					case GT:
+						return comparison > 0;
+					case GE:
+						return comparison >= 0;
+				}
+			}
+			return false;
+		}
+
+		private int compare(DumpRow row, int literal) {
+			if (numbers != null) {
+				if (row.isBinary(position)) {
+					throw new NumberFormatException();
+				}
+				if (integers != null) {
+					try {
+						long value = row.getLong(position);
+						return value < integers[literal] ? -1 : value == integers[literal] ? 0 : 1;
+					} catch (NumberFormatException e) {
+						//decimal value, compared below.
+					}
+				}
+				return new BigDecimal(row.getString(position).trim()).compareTo(numbers[literal]);
+			}
+			byte[] data = row.getBuffer();
+			byte[] bytes = strings[literal];
+			int start = row.getStart(position);
+			int length = row.getLength(position);
+			int end = Math.min(length, bytes.length);
+			for (int i = 0; i < end; i++) {
+				int a = data[start + i] & 0xFF;
+				int b = bytes[i] & 0xFF;
+				if (a != b) {
+					return a - b;
+				}
+			}
+			return length - bytes.length;
+		}
+	}
+}
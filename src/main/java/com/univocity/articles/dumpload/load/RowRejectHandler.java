@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Receives the rows a {@link RowWriter} could not write because the database rejected them, e.g. because a value is too long for its
+ * column or can't be converted to the column type. The other rows of the batch are written as usual.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public interface RowRejectHandler {
+
+	/**
+	 * Notifies that a row was rejected by the database
+	 * @param table the table the row was written into
+	 * @param row the row rejected. Its contents are only valid during this call.
+	 * @param error the error reported by the database when the row was written on its own.
+	 */
+	void rowRejected(String table, DumpRow row, SQLException error);
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Writes the rows of a single table to the database. Writers are used by one thread at a time, over a connection
+ * with auto-commit disabled. Committing the transaction is the responsibility of the caller.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public interface RowWriter {
+
+	/**
+	 * Writes a row. Writers can accumulate rows in memory and send them to the database later.
+	 * @param row the row to write. Its contents are only valid during this call.
+	 * @throws SQLException if the database rejects the row, or a batch of rows sent during this call.
+	 */
+	void write(DumpRow row) throws SQLException;
+
+	/**
+	 * Sends all rows accumulated so far to the database.
+	 * @throws SQLException if the database rejects any of the pending rows.
+	 */
+	void flush() throws SQLException;
+
+	/**
+	 * Sends all rows accumulated so far to the database, and restores the settings of the session changed to send them. Called before
+	 * the transaction is committed, and before the rows of another table are written over the same connection. The writer can still
+	 * be used afterwards.
+	 * @throws SQLException if the database rejects any of the pending rows, or the settings of the session can't be restored.
+	 */
+	void finish() throws SQLException;
+
+	/**
+	 * Releases the resources used by this writer. Pending rows are discarded.
+	 */
+	void close();
+}
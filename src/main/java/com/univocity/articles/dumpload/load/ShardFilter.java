@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * Selects the rows of the dump file that belong to a {@link Shard}, shared by all {@link ChunkLoader}s of the shard.
+ *
+ * Every shard receives the same batches of parsed rows from the {@link FanOutParser}, and its loaders drop the rows whose shard key hashes
+ * to another shard before they are written. The dump file is still parsed only once, and each shard writes only its own share of the rows,
+ * so the load scales with the number of shards.
+ *
+ * Unquoted values that are integers are hashed with {@link Shard#getShard(long, int)}. Any other value is hashed over its bytes with
+ * {@link Shard#getShard(byte[], int, int, int)}.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class ShardFilter {
+
+	private final Shard shard;
+	private final ConcurrentMap<String, Integer> positions = new ConcurrentHashMap<String, Integer>();
+
+	/**
+	 * Creates a filter for the rows of a shard
+	 * @param shard the shard held by the destination database
+	 */
+	ShardFilter(Shard shard) {
+		this.shard = shard;
+	}
+
+	/**
+	 * Notifies that a loader is about to write into a table, and finds the position of the shard key of the table in its rows.
+	 * @param table the name of the table
+	 * @param connection the connection of the loader
+	 * @return the position of the shard key in the rows of the table, or -1 if all rows of the table are loaded into every shard.
+	 * @throws SQLException if the columns of the table can't be read.
+	 */
+	int tableStarted(String table, Connection connection) throws SQLException {
+		Integer position = positions.get(table);
+		if (position == null) {
+			String column = shard.getKeyColumn(table);
+			if (column == null) {
+				position = -1;
+			} else {
+				int[] columns = RowBinder.getColumnPositions(connection, table, Collections.singletonList(column));
+				if (columns == null) {
+					throw new IllegalStateException("Shard key " + column + " is not a column of table " + table);
+				}
+				position = columns[0];
+			}
+			positions.put(table, position);
+		}
+		return position;
+	}
+
+	/**
+	 * Indicates whether a row belongs to the shard
+	 * @param row a row of the table
+	 * @param position the position of the shard key in the row, as given by {@link #tableStarted(String, Connection)}
+	 * @return {@code true} if the row must be loaded into the shard.
+	 */
+	boolean accepts(DumpRow row, int position) {
+		int count = shard.getCount();
+		if (position >= row.getFieldCount() || row.isNull(position)) {
+			return shard.getIndex() == 0;
+		}
+		if (!row.isQuoted(position) && !row.isBinary(position)) {
+			try {
+				return Shard.getShard(row.getLong(position), count) == shard.getIndex();
+			} catch (NumberFormatException e) {
+				//not an integer: hashed over its bytes.
+			}
+		}
+		return Shard.getShard(row.getBuffer(), row.getStart(position), row.getLength(position), count) == shard.getIndex();
+	}
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.load;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.sql.*;
+import java.util.*;
+
+import com.univocity.articles.dumpload.databases.*;
+import com.univocity.articles.dumpload.parser.*;
+
+/**
+ * The highest value of a watermark column in each table of a destination database, used by an incremental load to write only the rows of
+ * a newer dump file that are not in the database yet.
+ *
+ * The watermark column of a table is the one configured with {@code load.incremental.column.<table>}, or else its primary key, if it has a
+ * single integer column (as the {@code id} of most tables). Rows whose watermark is not higher than the highest value in the table are skipped.
+ *
+ * {@code mysqldump} writes the rows of each table in primary key order, so the watermarks of the {@code INSERT} statements of a table are
+ * ascending. The statement where the new rows begin is found with a binary search over the regions of the table recorded by the {@link DumpIndex},
+ * reading only the first row of a few statements. Everything before it is never read, so an incremental load takes time proportional to the
+ * rows added since the previous dump, not to the size of the dump file.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class Watermarks {
+
+	private final File dumpFile;
+	private final Charset charset;
+	private final DumpIndex index;
+	private final DumpSplitter splitter;
+	private final Map<String, TableWatermark> tables = new HashMap<String, TableWatermark>();
+
+	/**
+	 * Reads the watermark of each selected table of the dump file from a destination database, and finds where the new rows of each table begin.
+	 * When an interrupted load is resumed, the watermarks recorded by the {@link LoadCheckpoint} when it started are used instead, as the tables
+	 * already have some of the new rows.
+	 * @param database the destination database
+	 * @param checkpoint the progress of the load into the destination database
+	 * @param settings the load settings, with the dump file, the table selection and the configured watermark columns.
+	 */
+	Watermarks(Database database, LoadCheckpoint checkpoint, LoadSettings settings) {
+		this.dumpFile = settings.getDumpFile();
+		this.charset = settings.getCharset();
+		this.index = DumpIndex.getIndex(dumpFile, charset);
+		this.splitter = new DumpSplitter(dumpFile);
+
+		Map<String, List<String>> primaryKeys = new HashMap<String, List<String>>();
+		for (IndexDefinition definition : database.getIndexDefinitions()) {
+			if (definition.getType() == IndexDefinition.Type.PRIMARY_KEY) {
+				primaryKeys.put(definition.getTable().toLowerCase(), definition.getColumns());
+			}
+		}
+
+		Map<String, Long> values = checkpoint.getWatermarks();
+		boolean restored = values != null;
+		if (!restored) {
+			values = new HashMap<String, Long>();
+		}
+
+		Connection connection = database.openConnection();
+		try {
+			for (String table : index.getTables()) {
+				if (!settings.isTableSelected(table)) {
+					continue;
+				}
+				String column = settings.getWatermarkColumns().get(table);
+				if (column == null) {
+					List<String> primaryKey = primaryKeys.get(table.toLowerCase());
+					if (primaryKey != null && primaryKey.size() == 1) {
+						column = primaryKey.get(0);
+					}
+				}
+				int position = getPosition(connection, table, column);
+				if (!restored || !values.containsKey(table)) {
+					values.put(table, readWatermark(connection, table, column));
+				}
+				TableWatermark watermark = new TableWatermark(table, column, position, values.get(table));
+				watermark.startOffset = findStartOffset(watermark);
+				tables.put(table, watermark);
+				if (watermark.value != null && watermark.startOffset != Long.MAX_VALUE) {
+					System.out.println("Loading rows of table " + table + " with " + column + " > " + watermark.value + ", from position " + watermark.startOffset + " of the dump file");
+				}
+			}
+			connection.commit();
+		} catch (SQLException ex) {
+			throw new IllegalStateException("Error reading watermarks of database " + database.getDatabaseName(), ex);
+		} finally {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				//ignore
+			}
+		}
+		if (!restored) {
+			checkpoint.saveWatermarks(values);
+		}
+	}
+
+	private static int getPosition(Connection connection, String table, String column) throws SQLException {
+		if (column == null) {
+			return -1;
+		}
+		int[] positions = RowBinder.getIntegerColumnPositions(connection, table, Collections.singletonList(column));
+		if (positions == null) {
+			throw new IllegalStateException("Watermark column " + column + " is not an integer column of table " + table);
+		}
+		return positions[0];
+	}
+
+	/**
+	 * Reads the highest value of the watermark column of a table.
+	 * @return the watermark of the table, or {@code null} if the table is empty.
+	 */
+	private static Long readWatermark(Connection connection, String table, String column) throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			ResultSet rs = statement.executeQuery(column == null ? "SELECT COUNT(*) FROM " + table : "SELECT MAX(" + column + ") FROM " + table);
+			rs.next();
+			long value = rs.getLong(1);
+			if (column == null) {
+				//without a watermark, the rows of a table can only be loaded if the table is empty.
+				return value == 0 ? null : Long.MAX_VALUE;
+			}
+			return rs.wasNull() ? null : value;
+		} finally {
+			statement.close();
+		}
+	}
+
+	/**
+	 * Finds the first statement of a table that may have rows with a watermark higher than the watermark of the table.
+	 * @return the position of the statement, or {@link Long#MAX_VALUE} if no statement has new rows.
+	 */
+	private long findStartOffset(TableWatermark watermark) {
+		List<DumpChunk> regions = index.getInsertRegions(watermark.table);
+		if (regions.isEmpty() || watermark.value == null) {
+			return regions.isEmpty() ? Long.MAX_VALUE : regions.get(0).getStart();
+		}
+		if (watermark.column == null) {
+			System.out.println("Table " + watermark.table + " has rows and no watermark column. Its rows won't be loaded. Set load.incremental.column." + watermark.table
+					+ " to load its new rows.");
+			return Long.MAX_VALUE;
+		}
+
+		//the last region that starts with old rows is where the new rows begin.
+		DumpChunk region = null;
+		Long previous = null;
+		for (DumpChunk r : regions) {
+			Long first = readFirstValue(r.getStart(), r.getEnd(), watermark.position);
+			if (first == null || (previous != null && first < previous)) {
+				System.out.println("Rows of table " + watermark.table + " are not sorted by " + watermark.column + ". All its statements will be parsed to find new rows.");
+				return regions.get(0).getStart();
+			}
+			if (first > watermark.value) {
+				break;
+			}
+			region = r;
+			previous = first;
+		}
+		if (region == null) {
+			return regions.get(0).getStart();
+		}
+
+		//binary search for the last statement that starts with an old row. Statements after it only have new rows.
+		long low = region.getStart();
+		long high = region.getEnd();
+		while (true) {
+			long statement = splitter.findStatementStart(low + (high - low) / 2, high);
+			if (statement <= low || statement >= high) {
+				statement = splitter.findStatementStart(low + 1, high);
+				if (statement >= high) {
+					break;
+				}
+			}
+			Long first = readFirstValue(statement, high, watermark.position);
+			if (first != null && first <= watermark.value) {
+				low = statement;
+			} else {
+				high = statement;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Reads the watermark of the first row of the statement at a given position.
+	 * @return the watermark of the first row, or {@code null} if it is {@code NULL}, not an integer, or no row was found.
+	 */
+	private Long readFirstValue(long offset, long end, final int position) {
+		try {
+			new DumpParser(charset, 64 * 1024).parse(DumpCompression.openInput(dumpFile, offset, end), new RowHandler() {
+				@Override
+				public boolean statementStarted(String table, long offset) {
+					return true;
+				}
+
+				@Override
+				public void rowParsed(DumpRow row) {
+					throw new FirstRow(position >= row.getFieldCount() || row.isNull(position) ? null : row.getLong(position));
+				}
+
+				@Override
+				public void statementEnded(String table, long offset) {
+				}
+			});
+		} catch (FirstRow row) {
+			return row.value;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the watermark of a table
+	 * @param table the name of the table
+	 * @return the watermark of the table, or {@code null} if the table is not loaded.
+	 */
+	TableWatermark getTable(String table) {
+		return tables.get(table);
+	}
+
+	/**
+	 * Indicates whether a statement may have new rows
+	 * @param table the table of the statement
+	 * @param offset the position of the statement in the dump file
+	 * @return {@code true} if the statement must be parsed, or {@code false} if all its rows are already in the database.
+	 */
+	boolean isStatementNeeded(String table, long offset) {
+		TableWatermark watermark = tables.get(table);
+		return watermark != null && offset >= watermark.startOffset;
+	}
+
+	/**
+	 * Returns the position of the first statement of a chunk that may have new rows.
+	 * @param chunk a chunk of the dump file
+	 * @return the position where parsing of the chunk should start, or the end of the chunk if it has no new rows.
+	 */
+	long getStartOffset(DumpChunk chunk) {
+		long start = chunk.getEnd();
+		for (TableWatermark watermark : tables.values()) {
+			for (DumpChunk region : index.getInsertRegions(watermark.table)) {
+				long from = Math.max(Math.max(region.getStart(), chunk.getStart()), watermark.startOffset);
+				if (from < Math.min(region.getEnd(), chunk.getEnd())) {
+					start = Math.min(start, from);
+				}
+			}
+		}
+		return start;
+	}
+
+	/**
+	 * The watermark of a table.
+	 */
+	static final class TableWatermark {
+		private final String table;
+		private final String column;
+		private final int position;
+		private final Long value;
+		private long startOffset;
+
+		private TableWatermark(String table, String column, int position, Long value) {
+			this.table = table;
+			this.column = column;
+			this.position = position;
+			this.value = value;
+		}
+
+		/**
+		 * Indicates whether a row is newer than the rows in the table
+		 * @param row a row of the table
+		 * @return {@code true} if the watermark of the row is higher than the watermark of the table, or if the table was empty.
+		 */
+		boolean isNewer(DumpRow row) {
+			if (value == null) {
+				return true;
+			}
+			if (position < 0 || position >= row.getFieldCount() || row.isNull(position)) {
+				return false;
+			}
+			try {
+				return row.getLong(position) > value;
+			} catch (NumberFormatException e) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Stops the parser once the first row of a statement is read.
+	 */
+	private static class FirstRow extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		private final Long value;
+
+		FirstRow(Long value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Decompresses a BGZF file (blocked gzip, as produced by {@code bgzip}) with multiple threads.
+ *
+ * A BGZF file is a sequence of independent gzip members of up to 64KB, each one recording its compressed size in the
+ * {@code BC} extra field of its header. This allows the compressed blocks to be read without decompressing them, and
+ * inflated concurrently. Blocks are returned in order, and only a bounded number of blocks is inflated ahead of the reader.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+class BgzfInputStream extends InputStream {
+
+	private static final int HEADER_LENGTH = 12;
+
+	private final InputStream in;
+	private final ExecutorService executor;
+	private final int maxPending;
+	private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+	private final byte[] header = new byte[HEADER_LENGTH];
+
+	private boolean endOfInput;
+	private byte[] current = new byte[0];
+	private int position;
+
+	/**
+	 * Creates a decompressing stream
+	 * @param in the BGZF input
+	 * @param threads the number of threads that inflate blocks.
+	 */
+	BgzfInputStream(InputStream in, int threads) {
+		this.in = in;
+		this.maxPending = threads * 4;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "bgzf-inflater");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Tests whether the given gzip header is the header of a BGZF block.
+	 * @param header the first bytes of the file
+	 * @param length the number of bytes available in the given header.
+	 * @return {@code true} if the header has the {@code BC} extra field of BGZF blocks.
+	 */
+	static boolean isBgzf(byte[] header, int length) {
+		return length >= 16 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B && (header[3] & 4) != 0 && header[12] == 'B' && header[13] == 'C';
+	}
+
+	@Override
+	public int read() throws IOException {
+		byte[] one = new byte[1];
+		return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		while (position == current.length) {
+			while (!endOfInput && pending.size() < maxPending) {
+				submitNextBlock();
+			}
+			if (pending.isEmpty()) {
+				return -1;
+			}
+			try {
+				current = pending.removeFirst().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while inflating BGZF block");
+			} catch (ExecutionException e) {
+				throw new IOException("Error inflating BGZF block", e.getCause());
+			}
+			position = 0;
+		}
+		int count = Math.min(length, current.length - position);
+		System.arraycopy(current, position, buffer, offset, count);
+		position += count;
+		return count;
+	}
+
+	private void submitNextBlock() throws IOException {
+		int read = readFully(header, 0, HEADER_LENGTH);
+		if (read == 0) {
+			endOfInput = true;
+			return;
+		}
+		if (read < HEADER_LENGTH || (header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B || (header[3] & 4) == 0) {
+			throw new IOException("Invalid BGZF block header");
+		}
+		int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+		byte[] extra = new byte[extraLength];
+		readBlockBytes(extra);
+
+		int blockSize = -1;
+		for (int i = 0; i + 4 <= extraLength;) {
+			int subfieldLength = (extra[i + 2] & 0xFF) | (extra[i + 3] & 0xFF) << 8;
+			if (extra[i] == 'B' && extra[i + 1] == 'C' && subfieldLength == 2) {
+				blockSize = ((extra[i + 4] & 0xFF) | (extra[i + 5] & 0xFF) << 8) + 1;
+			}
+			i += 4 + subfieldLength;
+		}
+		if (blockSize == -1) {
+			throw new IOException("Gzip member without BGZF block size");
+		}
+
+		//compressed data, followed by CRC32 and uncompressed size.
+		final byte[] data = new byte[blockSize - HEADER_LENGTH - extraLength];
+		readBlockBytes(data);
+
+		pending.add(executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				return inflate(data);
+			}
+		}));
+	}
+
+	private static byte[] inflate(byte[] data) throws IOException {
+		int length = data.length;
+		long crc = readInt(data, length - 8);
+		int size = (int) readInt(data, length - 4);
+
+		byte[] out = new byte[size];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(data, 0, length - 8);
+			int total = 0;
+			while (total < size) {
+				int inflated = inflater.inflate(out, total, size - total);
+				if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+					break;
+				}
+				total += inflated;
+			}
+			if (total != size) {
+				throw new IOException("BGZF block inflated to " + total + " bytes. Expected " + size);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt BGZF block", e);
+		} finally {
+			inflater.end();
+		}
+
+		CRC32 checksum = new CRC32();
+		checksum.update(out, 0, size);
+		if (checksum.getValue() != crc) {
+			throw new IOException("CRC mismatch in BGZF block");
+		}
+		return out;
+	}
+
+	private static long readInt(byte[] data, int offset) {
+		return (data[offset] & 0xFFL) | (data[offset + 1] & 0xFFL) << 8 | (data[offset + 2] & 0xFFL) << 16 | (data[offset + 3] & 0xFFL) << 24;
+	}
+
+	private void readBlockBytes(byte[] data) throws IOException {
+		if (readFully(data, 0, data.length) < data.length) {
+			throw new EOFException("Truncated BGZF block");
+		}
+	}
+
+	private int readFully(byte[] data, int offset, int length) throws IOException {
+		int total = 0;
+		while (total < length) {
+			int read = in.read(data, offset + total, length - total);
+			if (read == -1) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	@Override
+	public void close() throws IOException {
+		executor.shutdownNow();
+		in.close();
+	}
+}
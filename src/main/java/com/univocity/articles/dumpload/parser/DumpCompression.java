@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+import java.io.*;
+
+import org.apache.commons.compress.compressors.bzip2.*;
+import org.apache.commons.compress.compressors.gzip.*;
+import org.apache.commons.compress.compressors.xz.*;
+
+import com.github.luben.zstd.*;
+
+/**
+ * The compression formats supported for dump files. The format of a file is detected from its first bytes, regardless of its name.
+ *
+ * Use {@link #openInput(File, long, long)} to obtain a {@link DumpInput} for any dump file: uncompressed files are
+ * memory-mapped, and compressed files are decompressed on a separate thread while the parser consumes their contents.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public enum DumpCompression {
+
+	NONE, GZIP, BZIP2, XZ, ZSTD;
+
+	/**
+	 * Detects the compression format of a file from its magic bytes.
+	 * @param file the file to inspect
+	 * @return the compression format of the file, or {@link #NONE} if the file is not compressed.
+	 */
+	public static DumpCompression detect(File file) {
+		byte[] header = new byte[16];
+		int length = readHeader(file, header);
+		return detect(header, length);
+	}
+
+	private static DumpCompression detect(byte[] header, int length) {
+		if (length >= 2 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B) {
+			return GZIP;
+		}
+		if (length >= 3 && header[0] == 'B' && header[1] == 'Z' && header[2] == 'h') {
+			return BZIP2;
+		}
+		if (length >= 6 && (header[0] & 0xFF) == 0xFD && header[1] == '7' && header[2] == 'z' && header[3] == 'X' && header[4] == 'Z' && header[5] == 0) {
+			return XZ;
+		}
+		if (length >= 4 && (header[0] & 0xFF) == 0x28 && (header[1] & 0xFF) == 0xB5 && (header[2] & 0xFF) == 0x2F && (header[3] & 0xFF) == 0xFD) {
+			return ZSTD;
+		}
+		return NONE;
+	}
+
+	private static int readHeader(File file, byte[] header) {
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				int total = 0;
+				int read;
+				while (total < header.length && (read = in.read(header, total, header.length - total)) != -1) {
+					total += read;
+				}
+				return total;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Error reading dump file " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * Indicates whether positions of the file can be read directly. Only uncompressed files allow this.
+	 * @return {@code true} if the file is not compressed.
+	 */
+	public boolean isSeekable() {
+		return this == NONE;
+	}
+
+	/**
+	 * Opens a region of a dump file for parsing.
+	 *
+	 * If the file is compressed, positions refer to the decompressed contents, and all decompressed bytes before the start of
+	 * the region must be decompressed and discarded. Gzip files with multiple members and BGZF files are supported, and
+	 * BGZF blocks are inflated by multiple threads.
+	 *
+	 * @param file the dump file
+	 * @param start the position of the first byte to read
+	 * @param end the position after the last byte to read. Use {@link Long#MAX_VALUE} to read until the end of the file.
+	 * @return an input for the given region of the file
+	 */
+	public static DumpInput openInput(File file, long start, long end) {
+		byte[] header = new byte[16];
+		int length = readHeader(file, header);
+		DumpCompression compression = detect(header, length);
+		if (compression == NONE) {
+			return new MappedDumpInput(file, start, end);
+		}
+
+		try {
+			InputStream in = new BufferedInputStream(new FileInputStream(file), 1024 * 1024);
+			try {
+				switch (compression) {
+					case GZIP:
+						if (BgzfInputStream.isBgzf(header, length)) {
+							in = new BgzfInputStream(in, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+						} else {
+							in = new GzipCompressorInputStream(in, true);
+						}
+						break;
+					case BZIP2:
+						in = new BZip2CompressorInputStream(in, true);
+						break;
+					case XZ:
+						in = new XZCompressorInputStream(in, true);
+						break;
+					case ZSTD:
+						in = new ZstdInputStream(in);
+						break;
+					default:
+				}
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+			return new StreamDumpInput(in, start, end);
+		} catch (IOException e) {
+			throw new IllegalStateException("Error opening " + compression.toString().toLowerCase() + " compressed dump file " + file.getAbsolutePath(), e);
+		}
+	}
+}
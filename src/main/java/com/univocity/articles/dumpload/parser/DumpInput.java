@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+import java.io.*;
+
+/**
+ * A source of bytes for the {@link DumpParser}. It may provide the contents of an entire dump file or just a region of it.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public interface DumpInput extends Closeable {
+
+	/**
+	 * Returns the position, in the dump file, of the first byte provided by this input.
+	 * Used by the parser to report absolute offsets of each statement.
+	 * @return the offset of the first byte read from this input.
+	 */
+	long getStartOffset();
+
+	/**
+	 * Reads up to {@code length} bytes into the given array.
+	 * @param buffer the destination array
+	 * @param offset the position in the array where the first byte should be written
+	 * @param length the maximum number of bytes to read
+	 * @return the number of bytes read, or {@code -1} if there is no more input.
+	 * @throws IOException if an error occurs reading the input
+	 */
+	int read(byte[] buffer, int offset, int length) throws IOException;
+}
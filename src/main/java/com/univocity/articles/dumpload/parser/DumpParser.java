@@ -0,0 +1,565 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * A streaming parser for MySQL dump files, as produced by {@code mysqldump} with extended inserts:
+ *
+ * <pre>INSERT INTO `table` VALUES (1,'a',NULL),(2,'b\'s',0xCAFE);</pre>
+ *
+ * Only {@code INSERT INTO} statements are processed. Every other line of the dump file (DDL, comments, {@code LOCK TABLES}, etc)
+ * is skipped. Values are unescaped according to MySQL's rules ({@code \'}, {@code \\}, {@code \n}, {@code \0}, {@code ''}, etc)
+ * directly into the reusable buffer of a {@link DumpRow}, which is then handed to a {@link RowHandler}.
+ *
+ * The parser works over plain byte arrays filled in bulk from a {@link DumpInput} and doesn't create any objects per row,
+ * so its throughput is mostly bound by how fast the input can be read.
+ *
+ * Values that are not needed can be skipped with {@link #skipFields(String, boolean[])}: the parser scans over them without
+ * unescaping or copying them, and they read as {@code NULL}. Rows can be filtered with {@link #filterRows(String, RowFilter)}: the
+ * filter is evaluated as soon as the values it reads are parsed, and the rest of a row it rejects is skipped the same way.
+ *
+ * Instances of this class are not thread-safe. Use one parser per thread.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class DumpParser {
+
+	private static final byte[] INSERT_INTO = ascii("INSERT INTO ");
+	private static final byte[] VALUES = ascii("VALUES");
+
+	private static final int LINE_START = 0;
+	private static final int MATCH_INSERT = 1;
+	private static final int SKIP_LINE = 2;
+	private static final int TABLE_NAME_START = 3;
+	private static final int TABLE_NAME = 4;
+	private static final int SEEK_VALUES = 5;
+	private static final int EXPECT_TUPLE = 6;
+	private static final int FIELD_START = 7;
+	private static final int UNQUOTED = 8;
+	private static final int AFTER_FIELD = 9;
+	private static final int QUOTED = 10;
+	private static final int ESCAPE = 11;
+	private static final int QUOTE_END = 12;
+	private static final int AFTER_TUPLE = 13;
+	private static final int SKIP_STATEMENT = 14;
+	private static final int SKIP_QUOTED = 15;
+	private static final int SKIP_ESCAPE = 16;
+	private static final int SKIP_FIELD = 17;
+	private static final int SKIP_FIELD_QUOTED = 18;
+	private static final int SKIP_FIELD_ESCAPE = 19;
+
+	private static final int TEXT = 0;
+	private static final int HEX = 1;
+	private static final int BIT = 2;
+
+	private final Charset charset;
+	private final int bufferSize;
+
+	private final byte[] tableName = new byte[256];
+	private int tableNameLength;
+	private boolean quotedTableName;
+	private byte[][] knownTableNames = new byte[0][];
+	private String[] knownTables = new String[0];
+
+	private final Map<String, boolean[]> skippedFields = new HashMap<String, boolean[]>();
+	private final Map<String, RowFilter> rowFilters = new HashMap<String, RowFilter>();
+
+	/**
+	 * Creates a parser for dump files in UTF-8.
+	 */
+	public DumpParser() {
+		this(Charset.forName("UTF-8"));
+	}
+
+	/**
+	 * Creates a parser for dump files in the given encoding.
+	 * @param charset the encoding of the dump file, used to decode table names and values converted to {@code String}.
+	 */
+	public DumpParser(Charset charset) {
+		this(charset, 1024 * 1024);
+	}
+
+	/**
+	 * Creates a parser for dump files in the given encoding.
+	 * @param charset the encoding of the dump file, used to decode table names and values converted to {@code String}.
+	 * @param bufferSize the number of bytes read from the input at a time.
+	 */
+	public DumpParser(Charset charset, int bufferSize) {
+		this.charset = charset;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Skips over some values of the rows of a table, without decoding them. Skipped values read as {@code NULL}.
+	 * @param table the name of the table
+	 * @param skipped flags of the values to skip, by position. Values after the end of the array are decoded.
+	 */
+	public void skipFields(String table, boolean[] skipped) {
+		skippedFields.put(table, skipped.clone());
+	}
+
+	/**
+	 * Filters the rows of a table, so only the rows the filter accepts are handed to the {@link RowHandler}.
+	 * @param table the name of the table
+	 * @param filter the condition the rows of the table must match.
+	 */
+	public void filterRows(String table, RowFilter filter) {
+		rowFilters.put(table, filter);
+	}
+
+	/**
+	 * Parses all statements of the given input, notifying the given handler of every {@code INSERT INTO} statement and row found.
+	 * The input is closed at the end of the process.
+	 *
+	 * @param input the source of bytes to parse. It must start at the beginning of a line of the dump file.
+	 * @param handler the callback that will receive the rows
+	 */
+	public void parse(DumpInput input, RowHandler handler) {
+		final byte[] buffer = new byte[bufferSize];
+		final ParsedRow row = new ParsedRow(charset);
+
+		int state = LINE_START;
+		int matched = 0;
+		byte quote = 0;
+		int quotedKind = TEXT;
+		long statementOffset = 0;
+		long bufferOffset = input.getStartOffset();
+
+		try {
+			int end;
+			while ((end = input.read(buffer, 0, buffer.length)) != -1) {
+				int i = 0;
+				while (i < end) {
+					byte b = buffer[i];
+					switch (state) {
+						case LINE_START:
+							if (b == INSERT_INTO[0]) {
+								statementOffset = bufferOffset + i;
+								matched = 1;
+								state = MATCH_INSERT;
+							} else if (b != '\n') {
+								state = SKIP_LINE;
+							}
+							i++;
+							break;
+
+						case MATCH_INSERT:
+							if (b == INSERT_INTO[matched]) {
+								if (++matched == INSERT_INTO.length) {
+									state = TABLE_NAME_START;
+								}
+								i++;
+							} else {
+								state = SKIP_LINE;
+							}
+							break;
+
+						case SKIP_LINE:
+							while (i < end && buffer[i] != '\n') {
+								i++;
+							}
+							if (i < end) {
+								state = LINE_START;
+								i++;
+							}
+							break;
+
+						case TABLE_NAME_START:
+							tableNameLength = 0;
+							quotedTableName = b == '`';
+							if (quotedTableName) {
+								i++;
+							}
+							state = TABLE_NAME;
+							break;
+
+						case TABLE_NAME:
+							if (quotedTableName ? b == '`' : (b == ' ' || b == '(')) {
+								row.table = resolveTableName();
+								matched = 0;
+								state = SEEK_VALUES;
+								if (quotedTableName) {
+									i++;
+								}
+							} else {
+								if (tableNameLength == tableName.length) {
+									throw new IllegalStateException("Table name too long in statement at offset " + statementOffset);
+								}
+								tableName[tableNameLength++] = b;
+								i++;
+							}
+							break;
+
+						case SEEK_VALUES:
+							if ((b & 0xDF) == VALUES[matched]) {
+								if (++matched == VALUES.length) {
+									if (handler.statementStarted(row.table, statementOffset)) {
+										row.select(skippedFields.get(row.table), rowFilters.get(row.table));
+										state = EXPECT_TUPLE;
+									} else {
+										state = SKIP_STATEMENT;
+									}
+								}
+							} else if (b == '\n' || b == ';') {
+								throw new IllegalStateException("Expected VALUES in statement of table " + row.table + " at offset " + statementOffset);
+							} else {
+								matched = (b & 0xDF) == VALUES[0] ? 1 : 0;
+							}
+							i++;
+							break;
+
+						case EXPECT_TUPLE:
+							if (b == '(') {
+								row.reset();
+								state = FIELD_START;
+							} else if (!isWhitespace(b)) {
+								throw unexpected(b, bufferOffset + i, row.table);
+							}
+							i++;
+							break;
+
+						case FIELD_START:
+							if (row.isSkippingField() && b != ',' && b != ')' && !isWhitespace(b)) {
+								state = SKIP_FIELD;
+							} else if (b == '\'' || b == '"') {
+								quote = b;
+								quotedKind = TEXT;
+								row.startField(ParsedRow.QUOTED);
+								state = QUOTED;
+								i++;
+							} else if (b == ')' && row.fieldCount == 0) {
+								if (row.isAccepted()) {
+									handler.rowParsed(row);
+								}
+								state = AFTER_TUPLE;
+								i++;
+							} else if (isWhitespace(b)) {
+								i++;
+							} else if (b == ',' || b == ')') {
+								throw unexpected(b, bufferOffset + i, row.table);
+							} else {
+								row.startField((byte) 0);
+								state = UNQUOTED;
+							}
+							break;
+
+						case UNQUOTED:
+							if (b == ',') {
+								row.endUnquotedField();
+								state = FIELD_START;
+							} else if (b == ')') {
+								row.endUnquotedField();
+								if (row.isAccepted()) {
+									handler.rowParsed(row);
+								}
+								state = AFTER_TUPLE;
+							} else if (isWhitespace(b)) {
+								//character set introducers can be separated from the string by spaces, as in _binary 'abc'
+								if (row.data[row.starts[row.fieldCount]] != '_') {
+									row.endUnquotedField();
+									state = AFTER_FIELD;
+								}
+							} else if (b == '\'' || b == '"') {
+								//introducers such as _binary'abc', hexadecimal strings such as x'CAFE' and bit strings such as b'0101'
+								quotedKind = startQuotedLiteral(row, bufferOffset + i);
+								quote = b;
+								state = QUOTED;
+							} else {
+								int start = i;
+								while (i < end && !isUnquotedDelimiter(buffer[i])) {
+									i++;
+								}
+								row.append(buffer, start, i - start);
+								break;
+							}
+							i++;
+							break;
+
+						case AFTER_FIELD:
+							if (b == ',') {
+								state = FIELD_START;
+							} else if (b == ')') {
+								if (row.isAccepted()) {
+									handler.rowParsed(row);
+								}
+								state = AFTER_TUPLE;
+							} else if (!isWhitespace(b)) {
+								throw unexpected(b, bufferOffset + i, row.table);
+							}
+							i++;
+							break;
+
+						case QUOTED:
+							while (i < end) {
+								int start = i;
+								while (i < end && buffer[i] != quote && buffer[i] != '\\') {
+									i++;
+								}
+								if (i > start) {
+									row.append(buffer, start, i - start);
+								}
+								if (i + 1 >= end) {
+									//the escape sequence or closing quote is split between buffers.
+									if (i < end) {
+										state = buffer[i] == '\\' ? ESCAPE : QUOTE_END;
+										i++;
+									}
+									break;
+								}
+								if (buffer[i] == '\\') {
+									unescape(row, buffer[i + 1]);
+									i += 2;
+								} else if (buffer[i + 1] == quote) {
+									row.append(quote);
+									i += 2;
+								} else {
+									state = QUOTE_END;
+									i++;
+									break;
+								}
+							}
+							break;
+
+						case ESCAPE:
+							unescape(row, b);
+							state = QUOTED;
+							i++;
+							break;
+
+						case QUOTE_END:
+							if (b == quote) {
+								//quotes can also be escaped by duplicating them
+								row.append(b);
+								state = QUOTED;
+								i++;
+							} else {
+								if (quotedKind == HEX) {
+									row.endHexField();
+								} else if (quotedKind == BIT) {
+									row.endBitField();
+								} else {
+									row.endField();
+								}
+								state = AFTER_FIELD;
+							}
+							break;
+
+						case AFTER_TUPLE:
+							if (b == ',') {
+								state = EXPECT_TUPLE;
+							} else if (b == ';') {
+								handler.statementEnded(row.table, bufferOffset + i + 1);
+								state = SKIP_LINE;
+							} else if (!isWhitespace(b)) {
+								throw unexpected(b, bufferOffset + i, row.table);
+							}
+							i++;
+							break;
+
+						case SKIP_FIELD:
+							while (i < end && buffer[i] != ',' && buffer[i] != ')' && buffer[i] != '\'' && buffer[i] != '"') {
+								i++;
+							}
+							if (i < end) {
+								b = buffer[i];
+								if (b == ',') {
+									row.skipField();
+									state = FIELD_START;
+								} else if (b == ')') {
+									row.skipField();
+									if (row.isAccepted()) {
+										handler.rowParsed(row);
+									}
+									state = AFTER_TUPLE;
+								} else {
+									//quoted strings, including the ones after introducers such as _binary or x
+									quote = b;
+									state = SKIP_FIELD_QUOTED;
+								}
+								i++;
+							}
+							break;
+
+						case SKIP_FIELD_QUOTED:
+							while (i < end && buffer[i] != quote && buffer[i] != '\\') {
+								i++;
+							}
+							if (i < end) {
+								//a quote escaped by duplicating it reads as a string closed and opened again.
+								state = buffer[i] == '\\' ? SKIP_FIELD_ESCAPE : SKIP_FIELD;
+								i++;
+							}
+							break;
+
+						case SKIP_FIELD_ESCAPE:
+							state = SKIP_FIELD_QUOTED;
+							i++;
+							break;
+
+						case SKIP_STATEMENT:
+							while (i < end && buffer[i] != '\'' && buffer[i] != '"' && buffer[i] != ';') {
+								i++;
+							}
+							if (i < end) {
+								if (buffer[i] == ';') {
+									handler.statementEnded(row.table, bufferOffset + i + 1);
+									state = SKIP_LINE;
+								} else {
+									quote = buffer[i];
+									state = SKIP_QUOTED;
+								}
+								i++;
+							}
+							break;
+
+						case SKIP_QUOTED:
+							while (i < end && buffer[i] != quote && buffer[i] != '\\') {
+								i++;
+							}
+							if (i < end) {
+								state = buffer[i] == '\\' ? SKIP_ESCAPE : SKIP_STATEMENT;
+								i++;
+							}
+							break;
+
+						case SKIP_ESCAPE:
+							state = SKIP_QUOTED;
+							i++;
+							break;
+
+						default:
+							throw new IllegalStateException("Unknown parser state " + state);
+					}
+				}
+				bufferOffset += end;
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Error reading dump file at offset " + bufferOffset, e);
+		} finally {
+			try {
+				input.close();
+			} catch (IOException e) {
+				//ignore
+			}
+		}
+
+		if (state != LINE_START && state != SKIP_LINE) {
+			throw new IllegalStateException("Unexpected end of input while parsing statement of table " + row.table + " at offset " + statementOffset);
+		}
+	}
+
+	/**
+	 * Handles the prefix of a quoted literal (such as {@code _binary}, {@code x} or {@code b}) that has been read as an unquoted value.
+	 * @return the kind of quoted value that follows.
+	 */
+	private int startQuotedLiteral(ParsedRow row, long offset) {
+		int start = row.starts[row.fieldCount];
+		int length = row.length - start;
+		byte first = length > 0 ? row.data[start] : 0;
+
+		int kind;
+		byte flags = ParsedRow.QUOTED;
+		if (length == 1 && (first | 0x20) == 'x') {
+			kind = HEX;
+			flags |= ParsedRow.BINARY;
+		} else if (length == 1 && (first | 0x20) == 'b') {
+			kind = BIT;
+		} else if (length > 1 && first == '_') {
+			kind = TEXT;
+			if (length == 7 && new String(row.data, start, length, charset).equalsIgnoreCase("_binary")) {
+				flags |= ParsedRow.BINARY;
+			}
+		} else {
+			throw new IllegalStateException("Unexpected quote after '" + new String(row.data, start, length, charset) + "' at offset " + offset + " in table " + row.table);
+		}
+		row.length = start;
+		row.startField(flags);
+		return kind;
+	}
+
+	private static void unescape(ParsedRow row, byte b) {
+		switch (b) {
+			case '0':
+				row.append((byte) 0);
+				break;
+			case 'b':
+				row.append((byte) '\b');
+				break;
+			case 'n':
+				row.append((byte) '\n');
+				break;
+			case 'r':
+				row.append((byte) '\r');
+				break;
+			case 't':
+				row.append((byte) '\t');
+				break;
+			case 'Z':
+				row.append((byte) 26);
+				break;
+			case '%':
+			case '_':
+				//MySQL keeps the backslash for these (they are only special in LIKE patterns)
+				row.append((byte) '\\');
+				row.append(b);
+				break;
+			default:
+				row.append(b);
+		}
+	}
+
+	/**
+	 * Returns a cached {@code String} for the table name that has just been read, so table names are not
+	 * created again for every statement.
+	 */
+	private String resolveTableName() {
+		for (int i = 0; i < knownTableNames.length; i++) {
+			byte[] known = knownTableNames[i];
+			if (known.length == tableNameLength) {
+				int j = 0;
+				while (j < tableNameLength && known[j] == tableName[j]) {
+					j++;
+				}
+				if (j == tableNameLength) {
+					return knownTables[i];
+				}
+			}
+		}
+		String name = new String(tableName, 0, tableNameLength, charset);
+
+		knownTableNames = Arrays.copyOf(knownTableNames, knownTableNames.length + 1);
+		knownTableNames[knownTableNames.length - 1] = Arrays.copyOf(tableName, tableNameLength);
+		knownTables = Arrays.copyOf(knownTables, knownTables.length + 1);
+		knownTables[knownTables.length - 1] = name;
+
+		return name;
+	}
+
+	private static boolean isUnquotedDelimiter(byte b) {
+		return b == ',' || b == ')' || b == '\'' || b == '"' || isWhitespace(b);
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+	}
+
+	private static IllegalStateException unexpected(byte b, long offset, String table) {
+		return new IllegalStateException("Unexpected character '" + (char) b + "' at offset " + offset + " in statement of table " + table);
+	}
+
+	private static byte[] ascii(String text) {
+		try {
+			return text.getBytes("US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
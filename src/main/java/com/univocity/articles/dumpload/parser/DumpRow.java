@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+/**
+ * A view over the values of a single row parsed from an {@code INSERT INTO `table` VALUES (...),(...);} statement.
+ *
+ * Instances are reused by the {@link DumpParser}: the contents of a row are only valid while
+ * {@link RowHandler#rowParsed(DumpRow)} is executing. Values are kept as unescaped bytes in a shared buffer, and no
+ * {@code String} is created unless {@link #getString(int)} is called explicitly.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public interface DumpRow {
+
+	/**
+	 * Returns the name of the table that contains this row
+	 * @return the table name, as written in the dump file.
+	 */
+	String getTable();
+
+	/**
+	 * Returns the number of values in this row
+	 * @return the number of values in this row
+	 */
+	int getFieldCount();
+
+	/**
+	 * Indicates whether a value is SQL {@code NULL}
+	 * @param index the position of the value in the row, starting from 0
+	 * @return {@code true} if the dump contains {@code NULL} at the given position.
+	 */
+	boolean isNull(int index);
+
+	/**
+	 * Indicates whether a value was enclosed in quotes in the dump file, i.e. it is a string and not a number.
+	 * @param index the position of the value in the row, starting from 0
+	 * @return {@code true} if the value was a quoted string.
+	 */
+	boolean isQuoted(int index);
+
+	/**
+	 * Indicates whether a value is a binary string, i.e. a hexadecimal literal ({@code 0xCAFE}, {@code x'CAFE'})
+	 * or a string with the {@code _binary} introducer. The bytes of binary values must not be decoded as text.
+	 * @param index the position of the value in the row, starting from 0
+	 * @return {@code true} if the value is a binary string.
+	 */
+	boolean isBinary(int index);
+
+	/**
+	 * Returns the buffer that contains the unescaped bytes of all values in this row. Use {@link #getStart(int)}
+	 * and {@link #getLength(int)} to locate each value.
+	 * @return the shared buffer with the bytes of this row.
+	 */
+	byte[] getBuffer();
+
+	/**
+	 * Returns the position in {@link #getBuffer()} where a value starts
+	 * @param index the position of the value in the row, starting from 0
+	 * @return the offset of the first byte of the value.
+	 */
+	int getStart(int index);
+
+	/**
+	 * Returns the number of bytes of a value
+	 * @param index the position of the value in the row, starting from 0
+	 * @return the length of the value in bytes. {@code NULL} values have length 0.
+	 */
+	int getLength(int index);
+
+	/**
+	 * Decodes a value into a new {@code String}, using the encoding of the dump file.
+	 * @param index the position of the value in the row, starting from 0
+	 * @return the value as a {@code String}, or {@code null} if the value is {@code NULL}.
+	 */
+	String getString(int index);
+
+	/**
+	 * Parses a value as a {@code long} directly from its bytes, without creating temporary objects.
+	 * @param index the position of the value in the row, starting from 0
+	 * @return the numeric value.
+	 * @throws NumberFormatException if the value is not an integral number, or if it is {@code NULL}.
+	 */
+	long getLong(int index);
+
+	/**
+	 * Parses a value as an {@code int} directly from its bytes, without creating temporary objects.
+	 * @param index the position of the value in the row, starting from 0
+	 * @return the numeric value.
+	 * @throws NumberFormatException if the value is not an integral number that fits in an {@code int}, or if it is {@code NULL}.
+	 */
+	int getInt(int index);
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A {@link DumpInput} that reads a region of a dump file through memory-mapped buffers.
+ *
+ * A single {@link MappedByteBuffer} can't be larger than 2GB, so the region is mapped in consecutive windows
+ * as the parser advances. Bytes are copied in bulk from each window, letting the operating system read ahead
+ * and keeping the parser away from any {@code read()} system call.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class MappedDumpInput implements DumpInput {
+
+	private static final long WINDOW_SIZE = 256L * 1024L * 1024L;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long start;
+	private final long end;
+
+	private long windowStart;
+	private MappedByteBuffer window;
+
+	/**
+	 * Creates an input for the entire contents of a dump file
+	 * @param file the dump file
+	 */
+	public MappedDumpInput(File file) {
+		this(file, 0L, file.length());
+	}
+
+	/**
+	 * Creates an input for a region of a dump file
+	 * @param file the dump file
+	 * @param start the position of the first byte to read
+	 * @param end the position after the last byte to read
+	 */
+	public MappedDumpInput(File file, long start, long end) {
+		if (start < 0 || end < start) {
+			throw new IllegalArgumentException("Invalid region of file " + file.getAbsolutePath() + ": [" + start + ", " + end + ")");
+		}
+		try {
+			this.file = new RandomAccessFile(file, "r");
+		} catch (IOException e) {
+			throw new IllegalStateException("Error opening dump file " + file.getAbsolutePath(), e);
+		}
+		this.channel = this.file.getChannel();
+		this.start = start;
+		this.end = Math.min(end, file.length());
+		this.windowStart = start;
+	}
+
+	@Override
+	public long getStartOffset() {
+		return start;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (window == null || !window.hasRemaining()) {
+			if (window != null) {
+				windowStart += window.capacity();
+			}
+			if (windowStart >= end) {
+				return -1;
+			}
+			window = channel.map(MapMode.READ_ONLY, windowStart, Math.min(WINDOW_SIZE, end - windowStart));
+		}
+
+		int count = Math.min(length, window.remaining());
+		window.get(buffer, offset, count);
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		file.close();
+	}
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * The {@link DumpRow} implementation filled by the {@link DumpParser}. A single instance is reused for every row
+ * so parsing a dump file produces no garbage per row.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+final class ParsedRow implements DumpRow {
+
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	static final byte NULL = 1;
+	static final byte QUOTED = 2;
+	static final byte BINARY = 4;
+	static final byte SKIPPED = 8;
+
+	private final Charset charset;
+
+	String table;
+	byte[] data = new byte[8192];
+	int length;
+
+	int[] starts = new int[32];
+	int[] lengths = new int[32];
+	byte[] flags = new byte[32];
+	int fieldCount;
+
+	//fields not decoded, and the filter of the rows of the current statement.
+	private boolean[] skippedFields;
+	private RowFilter filter;
+	private boolean filtered;
+	private boolean rejected;
+
+	ParsedRow(Charset charset) {
+		this.charset = charset;
+	}
+
+	void reset() {
+		length = 0;
+		fieldCount = 0;
+		filtered = filter == null;
+		rejected = false;
+	}
+
+	/**
+	 * Defines the fields to skip and the filter of the rows of the statement about to be parsed.
+	 * @param skippedFields flags of the fields that are not decoded, or {@code null} to decode every field.
+	 * @param filter the filter of the rows, or {@code null} to accept every row.
+	 */
+	void select(boolean[] skippedFields, RowFilter filter) {
+		this.skippedFields = skippedFields;
+		this.filter = filter;
+	}
+
+	/**
+	 * Indicates whether the next field should be skipped over without being decoded, either because it was not selected,
+	 * or because the row was already rejected by the filter.
+	 * @return {@code true} if the parser should skip the next field.
+	 */
+	boolean isSkippingField() {
+		return rejected || (skippedFields != null && fieldCount < skippedFields.length && skippedFields[fieldCount]);
+	}
+
+	/**
+	 * Adds a field that was skipped over. It reads as {@code NULL}.
+	 */
+	void skipField() {
+		startField((byte) (NULL | SKIPPED));
+		endField();
+	}
+
+	/**
+	 * Indicates whether the row that has just been parsed should be handed to the {@link RowHandler}.
+	 * @return {@code true} if there is no filter, or if the row matches it.
+	 */
+	boolean isAccepted() {
+		if (!filtered) {
+			filtered = true;
+			rejected = !filter.accepts(this);
+		}
+		return !rejected;
+	}
+
+	void startField(byte fieldFlags) {
+		if (fieldCount == starts.length) {
+			int newLength = fieldCount * 2;
+			starts = Arrays.copyOf(starts, newLength);
+			lengths = Arrays.copyOf(lengths, newLength);
+			flags = Arrays.copyOf(flags, newLength);
+		}
+		starts[fieldCount] = length;
+		flags[fieldCount] = fieldFlags;
+	}
+
+	void endField() {
+		lengths[fieldCount] = length - starts[fieldCount];
+		fieldCount++;
+		if (!filtered && fieldCount == filter.getFieldCount()) {
+			//the values after the ones the filter reads are not decoded if the row is rejected.
+			isAccepted();
+		}
+	}
+
+	void append(byte b) {
+		if (length == data.length) {
+			data = Arrays.copyOf(data, length * 2);
+		}
+		data[length++] = b;
+	}
+
+	void append(byte[] bytes, int from, int count) {
+		if (length + count > data.length) {
+			data = Arrays.copyOf(data, Math.max(length + count, data.length * 2));
+		}
+		System.arraycopy(bytes, from, data, length, count);
+		length += count;
+	}
+
+	/**
+	 * Inspects the unquoted value that has just been read, and identifies {@code NULL} and hexadecimal literals.
+	 */
+	void endUnquotedField() {
+		int start = starts[fieldCount];
+		int len = length - start;
+
+		if (len == 4 && (data[start] | 0x20) == 'n' && (data[start + 1] | 0x20) == 'u' && (data[start + 2] | 0x20) == 'l' && (data[start + 3] | 0x20) == 'l') {
+			flags[fieldCount] |= NULL;
+			length = start;
+		} else if (len > 2 && data[start] == '0' && (data[start + 1] | 0x20) == 'x') {
+			length = start + decodeHex(start + 2, len - 2, start);
+			flags[fieldCount] |= BINARY;
+		}
+		endField();
+	}
+
+	/**
+	 * Decodes the hexadecimal digits of the current field in place.
+	 */
+	void endHexField() {
+		int start = starts[fieldCount];
+		length = start + decodeHex(start, length - start, start);
+		endField();
+	}
+
+	/**
+	 * Converts the binary digits of the current field (from a {@code b'0101'} literal) into bytes, in place.
+	 */
+	void endBitField() {
+		int start = starts[fieldCount];
+		int digits = length - start;
+		int byteCount = (digits + 7) / 8;
+		int padding = byteCount * 8 - digits;
+
+		int value = 0;
+		int bits = padding;
+		int out = start;
+		for (int i = start; i < start + digits; i++) {
+			byte digit = data[i];
+			if (digit != '0' && digit != '1') {
+				throw new IllegalStateException("Invalid binary digit '" + (char) digit + "' in table " + table);
+			}
+			value = (value << 1) | (digit - '0');
+			if (++bits == 8) {
+				data[out++] = (byte) value;
+				value = 0;
+				bits = 0;
+			}
+		}
+		length = out;
+		flags[fieldCount] |= BINARY;
+		endField();
+	}
+
+	private int decodeHex(int from, int count, int to) {
+		if (count % 2 != 0) {
+			throw new IllegalStateException("Invalid hexadecimal value in table " + table + ": odd number of digits");
+		}
+		int out = to;
+		for (int i = from; i < from + count; i += 2) {
+			data[out++] = (byte) ((hexDigit(data[i]) << 4) | hexDigit(data[i + 1]));
+		}
+		return out - to;
+	}
+
+	private int hexDigit(byte b) {
+		if (b >= '0' && b <= '9') {
+			return b - '0';
+		}
+		int lower = b | 0x20;
+		if (lower >= 'a' && lower <= 'f') {
+			return lower - 'a' + 10;
+		}
+		throw new IllegalStateException("Invalid hexadecimal digit '" + (char) b + "' in table " + table);
+	}
+
+	private void validateIndex(int index) {
+		if (index < 0 || index >= fieldCount) {
+			throw new IndexOutOfBoundsException("Invalid field index " + index + ". Row of table " + table + " has " + fieldCount + " fields");
+		}
+	}
+
+	@Override
+	public String getTable() {
+		return table;
+	}
+
+	@Override
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	@Override
+	public boolean isNull(int index) {
+		validateIndex(index);
+		return (flags[index] & NULL) != 0;
+	}
+
+	@Override
+	public boolean isQuoted(int index) {
+		validateIndex(index);
+		return (flags[index] & QUOTED) != 0;
+	}
+
+	@Override
+	public boolean isBinary(int index) {
+		validateIndex(index);
+		return (flags[index] & BINARY) != 0;
+	}
+
+	@Override
+	public byte[] getBuffer() {
+		return data;
+	}
+
+	@Override
+	public int getStart(int index) {
+		validateIndex(index);
+		return starts[index];
+	}
+
+	@Override
+	public int getLength(int index) {
+		validateIndex(index);
+		return lengths[index];
+	}
+
+	@Override
+	public String getString(int index) {
+		if (isNull(index)) {
+			return null;
+		}
+		return new String(data, starts[index], lengths[index], charset);
+	}
+
+	@Override
+	public long getLong(int index) {
+		if (isNull(index)) {
+			throw new NumberFormatException("Value at index " + index + " of table " + table + " is NULL");
+		}
+		return parseLong(data, starts[index], lengths[index]);
+	}
+
+	@Override
+	public int getInt(int index) {
+		long value = getLong(index);
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Value " + value + " at index " + index + " of table " + table + " does not fit in an int");
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses the ASCII digits of an integral number.
+	 * @param bytes the buffer with the digits
+	 * @param start the position of the first digit (or sign)
+	 * @param length the number of bytes to parse
+	 * @return the number represented by the given bytes
+	 */
+	static long parseLong(byte[] bytes, int start, int length) {
+		if (length == 0) {
+			throw new NumberFormatException("Empty value");
+		}
+		int i = start;
+		int end = start + length;
+		boolean negative = false;
+		if (bytes[i] == '-' || bytes[i] == '+') {
+			negative = bytes[i] == '-';
+			i++;
+			if (i == end) {
+				throw new NumberFormatException("Invalid number: " + text(bytes, start, length));
+			}
+		}
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw new NumberFormatException("Invalid number: " + text(bytes, start, length));
+			}
+			long next = result * 10 - digit;
+			if (result < Long.MIN_VALUE / 10 || next > result) {
+				throw new NumberFormatException("Number out of range: " + text(bytes, start, length));
+			}
+			result = next;
+		}
+		if (negative) {
+			return result;
+		}
+		if (result == Long.MIN_VALUE) {
+			throw new NumberFormatException("Number out of range: " + text(bytes, start, length));
+		}
+		return -result;
+	}
+
+	private static String text(byte[] bytes, int start, int length) {
+		return new String(bytes, start, length, ASCII);
+	}
+}
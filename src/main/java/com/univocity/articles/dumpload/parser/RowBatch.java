@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+import java.nio.charset.*;
+import java.util.*;
+
+/**
+ * A copy of consecutive {@code INSERT} statements parsed from a dump file, with all their rows. A batch is filled by passing it as the
+ * {@link RowHandler} of a {@link DumpParser} (or by forwarding the events of another handler to it), and can then be replayed to any number
+ * of handlers, from any thread, as if they were receiving the events from the parser itself.
+ *
+ * Values are kept in a single byte array, and the positions and flags of each value in primitive arrays, so a batch holds a few objects
+ * regardless of the number of rows it contains. Batches are meant to hold whole statements: a statement that is being recorded when the batch
+ * is replayed is ignored.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public final class RowBatch implements RowHandler {
+
+	private final Charset charset;
+
+	private byte[] data = new byte[64 * 1024];
+	private int length;
+
+	private int[] starts = new int[1024];
+	private int[] lengths = new int[1024];
+	private byte[] flags = new byte[1024];
+	private int fieldCount;
+
+	//index of the first field of each row, plus the end of the last row.
+	private int[] rowFields = new int[129];
+	private int rowCount;
+
+	private String[] tables = new String[16];
+	private long[] startOffsets = new long[16];
+	private long[] endOffsets = new long[16];
+	//index of the first row of each statement, plus the end of the last statement.
+	private int[] statementRows = new int[17];
+	private int statementCount;
+	private boolean statementOpen;
+
+	/**
+	 * Creates an empty batch
+	 * @param charset the encoding of the dump file, used to decode values into {@code String}s.
+	 */
+	public RowBatch(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * Records the start of a statement. Its rows are always recorded: the decision to skip them is left to the handlers the batch is replayed to.
+	 * @return {@code true}
+	 */
+	@Override
+	public boolean statementStarted(String table, long offset) {
+		if (statementCount == tables.length) {
+			int newLength = statementCount * 2;
+			tables = Arrays.copyOf(tables, newLength);
+			startOffsets = Arrays.copyOf(startOffsets, newLength);
+			endOffsets = Arrays.copyOf(endOffsets, newLength);
+			statementRows = Arrays.copyOf(statementRows, newLength + 1);
+		}
+		tables[statementCount] = table;
+		startOffsets[statementCount] = offset;
+		statementRows[statementCount] = rowCount;
+		statementOpen = true;
+		return true;
+	}
+
+	@Override
+	public void rowParsed(DumpRow row) {
+		int count = row.getFieldCount();
+		if (fieldCount + count > starts.length) {
+			int newLength = Math.max(fieldCount + count, starts.length * 2);
+			starts = Arrays.copyOf(starts, newLength);
+			lengths = Arrays.copyOf(lengths, newLength);
+			flags = Arrays.copyOf(flags, newLength);
+		}
+		if (rowCount + 1 == rowFields.length) {
+			rowFields = Arrays.copyOf(rowFields, rowFields.length * 2);
+		}
+
+		byte[] buffer = row.getBuffer();
+		rowFields[rowCount] = fieldCount;
+		for (int i = 0; i < count; i++) {
+			int valueLength = row.getLength(i);
+			if (length + valueLength > data.length) {
+				data = Arrays.copyOf(data, Math.max(length + valueLength, data.length * 2));
+			}
+			System.arraycopy(buffer, row.getStart(i), data, length, valueLength);
+			starts[fieldCount] = length;
+			lengths[fieldCount] = valueLength;
+			flags[fieldCount] = (byte) ((row.isNull(i) ? ParsedRow.NULL : 0) | (row.isQuoted(i) ? ParsedRow.QUOTED : 0) | (row.isBinary(i) ? ParsedRow.BINARY : 0));
+			length += valueLength;
+			fieldCount++;
+		}
+		rowCount++;
+		rowFields[rowCount] = fieldCount;
+	}
+
+	@Override
+	public void statementEnded(String table, long offset) {
+		endOffsets[statementCount] = offset;
+		statementCount++;
+		statementRows[statementCount] = rowCount;
+		statementOpen = false;
+	}
+
+	/**
+	 * Sends the statements and rows of this batch to a handler. Statements that start before a given offset are skipped
+	 * entirely, so a handler can resume from a position it has already processed.
+	 * @param handler the handler to notify of each statement and row. Rows are only sent if the handler accepts the statement.
+	 * @param from the position in the dump file of the first statement to send.
+	 */
+	public void replay(RowHandler handler, long from) {
+		BatchRow row = new BatchRow();
+		for (int s = 0; s < statementCount; s++) {
+			if (startOffsets[s] < from) {
+				continue;
+			}
+			String table = tables[s];
+			if (handler.statementStarted(table, startOffsets[s])) {
+				row.table = table;
+				for (int r = statementRows[s]; r < statementRows[s + 1]; r++) {
+					row.first = rowFields[r];
+					row.count = rowFields[r + 1] - row.first;
+					handler.rowParsed(row);
+				}
+			}
+			handler.statementEnded(table, endOffsets[s]);
+		}
+	}
+
+	/**
+	 * Returns a row of this batch
+	 * @param index the index of the row, from 0 to {@link #getRowCount()} - 1, in the order the rows were recorded.
+	 * @return a view over the values of the row, valid until the batch is cleared. Rows recorded outside of a statement
+	 *         (e.g. by a writer that keeps a copy of the rows it has not sent yet) have no table.
+	 */
+	public DumpRow getRow(int index) {
+		if (index < 0 || index >= rowCount) {
+			throw new IndexOutOfBoundsException("Invalid row index " + index + ". Batch has " + rowCount + " rows");
+		}
+		BatchRow row = new BatchRow();
+		row.first = rowFields[index];
+		row.count = rowFields[index + 1] - row.first;
+		int statements = statementCount + (statementOpen ? 1 : 0);
+		for (int s = 0; s < statements; s++) {
+			if (index >= statementRows[s] && (s == statementCount || index < statementRows[s + 1])) {
+				row.table = tables[s];
+				break;
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Discards all statements and rows of this batch, so it can be filled again without allocating new buffers.
+	 */
+	public void clear() {
+		Arrays.fill(tables, 0, statementCount + (statementOpen ? 1 : 0), null);
+		length = 0;
+		fieldCount = 0;
+		rowCount = 0;
+		statementCount = 0;
+		statementOpen = false;
+	}
+
+	/**
+	 * Returns the number of complete statements in this batch
+	 * @return the number of statements recorded.
+	 */
+	public int getStatementCount() {
+		return statementCount;
+	}
+
+	/**
+	 * Returns the number of rows in this batch
+	 * @return the number of rows recorded.
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Returns the number of bytes of the values in this batch
+	 * @return the size of the values recorded, in bytes.
+	 */
+	public int getSize() {
+		return length;
+	}
+
+	/**
+	 * Returns the position in the dump file after the last statement of this batch
+	 * @return the end offset of the last complete statement, or -1 if the batch has no complete statements.
+	 */
+	public long getEndOffset() {
+		return statementCount == 0 ? -1 : endOffsets[statementCount - 1];
+	}
+
+	/**
+	 * Indicates whether a statement was started and not ended yet.
+	 * @return {@code true} if the batch is in the middle of a statement.
+	 */
+	public boolean isStatementOpen() {
+		return statementOpen;
+	}
+
+	/**
+	 * A view over a row of the batch, moved from row to row during a replay.
+	 */
+	private final class BatchRow implements DumpRow {
+		String table;
+		int first;
+		int count;
+
+		private int field(int index) {
+			if (index < 0 || index >= count) {
+				throw new IndexOutOfBoundsException("Invalid field index " + index + ". Row of table " + table + " has " + count + " fields");
+			}
+			return first + index;
+		}
+
+		@Override
+		public String getTable() {
+			return table;
+		}
+
+		@Override
+		public int getFieldCount() {
+			return count;
+		}
+
+		@Override
+		public boolean isNull(int index) {
+			return (flags[field(index)] & ParsedRow.NULL) != 0;
+		}
+
+		@Override
+		public boolean isQuoted(int index) {
+			return (flags[field(index)] & ParsedRow.QUOTED) != 0;
+		}
+
+		@Override
+		public boolean isBinary(int index) {
+			return (flags[field(index)] & ParsedRow.BINARY) != 0;
+		}
+
+		@Override
+		public byte[] getBuffer() {
+			return data;
+		}
+
+		@Override
+		public int getStart(int index) {
+			return starts[field(index)];
+		}
+
+		@Override
+		public int getLength(int index) {
+			return lengths[field(index)];
+		}
+
+		@Override
+		public String getString(int index) {
+			if (isNull(index)) {
+				return null;
+			}
+			int field = first + index;
+			return new String(data, starts[field], lengths[field], charset);
+		}
+
+		@Override
+		public long getLong(int index) {
+			if (isNull(index)) {
+				throw new NumberFormatException("Value at index " + index + " of table " + table + " is NULL");
+			}
+			int field = first + index;
+			return ParsedRow.parseLong(data, starts[field], lengths[field]);
+		}
+
+		@Override
+		public int getInt(int index) {
+			long value = getLong(index);
+			if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+				throw new NumberFormatException("Value " + value + " at index " + index + " of table " + table + " does not fit in an int");
+			}
+			return (int) value;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+/**
+ * A condition on the values of the rows of a table, evaluated by the {@link DumpParser} while a row is parsed. Rows that don't
+ * match are not handed to the {@link RowHandler}, and the values that follow the ones the filter reads are skipped without being decoded.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public interface RowFilter {
+
+	/**
+	 * Returns the number of leading values of a row the filter reads. The filter is evaluated as soon as these values are parsed.
+	 * @return the position of the last value read by the filter, plus one.
+	 */
+	int getFieldCount();
+
+	/**
+	 * Indicates whether a row should be handed to the {@link RowHandler}. Only the first {@link #getFieldCount()} values of the row
+	 * are available, or all values, if the row has less than that.
+	 * @param row the row being parsed.
+	 * @return {@code true} if the row matches the filter.
+	 */
+	boolean accepts(DumpRow row);
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+/**
+ * Callback used by the {@link DumpParser} to notify about each {@code INSERT} statement and each row found in a dump file.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public interface RowHandler {
+
+	/**
+	 * Notifies that an {@code INSERT INTO} statement was found.
+	 *
+	 * @param table the name of the table the statement inserts into.
+	 * @param offset the position, in the dump file, of the first byte of the statement.
+	 * @return {@code true} if the rows of this statement should be parsed, or {@code false} to skip the
+	 * entire statement without decoding any of its values.
+	 */
+	boolean statementStarted(String table, long offset);
+
+	/**
+	 * Notifies that a row was parsed. The given row is reused by the parser and its contents are only valid while this method executes.
+	 * @param row the values of the row.
+	 */
+	void rowParsed(DumpRow row);
+
+	/**
+	 * Notifies that the end of an {@code INSERT INTO} statement has been reached. This is invoked for skipped statements as well.
+	 * @param table the name of the table the statement inserts into.
+	 * @param offset the position, in the dump file, right after the {@code ;} that terminates the statement.
+	 */
+	void statementEnded(String table, long offset);
+}
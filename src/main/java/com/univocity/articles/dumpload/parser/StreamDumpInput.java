@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2014 uniVocity Software Pty Ltd. All rights reserved.
+ * This file is subject to the terms and conditions defined in file
+ * 'LICENSE.txt', which is part of this source code package.
+ ******************************************************************************/
+package com.univocity.articles.dumpload.parser;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * A {@link DumpInput} that reads a region of an {@link InputStream}, usually a decompressing stream, on a separate thread.
+ *
+ * The reader thread fills blocks of bytes and hands them to the parser through a bounded queue, so reading (and decompressing)
+ * the input overlaps with parsing. Blocks are recycled once the parser consumes them, and the reader thread waits when all blocks are filled.
+ *
+ * Streams can't seek, so the bytes before the start of the region are read and discarded.
+ *
+ * @author uniVocity Software Pty Ltd - <a href="mailto:dev@univocity.com">dev@univocity.com
+ *
+ */
+public class StreamDumpInput implements DumpInput {
+
+	private static final Block END = new Block(0);
+
+	private final InputStream in;
+	private final long start;
+	private final long end;
+	private final BlockingQueue<Block> free;
+	private final BlockingQueue<Block> filled;
+	private final Thread reader;
+
+	private volatile Throwable error;
+	private Block current;
+	private int position;
+
+	/**
+	 * Creates an input for a region of a stream, with 8 blocks of 1MB.
+	 * @param in the stream to read
+	 * @param start the position of the first byte to read
+	 * @param end the position after the last byte to read. Use {@link Long#MAX_VALUE} to read until the end of the stream.
+	 */
+	public StreamDumpInput(InputStream in, long start, long end) {
+		this(in, start, end, 1024 * 1024, 8);
+	}
+
+	/**
+	 * Creates an input for a region of a stream
+	 * @param in the stream to read
+	 * @param start the position of the first byte to read
+	 * @param end the position after the last byte to read. Use {@link Long#MAX_VALUE} to read until the end of the stream.
+	 * @param blockSize the size of each block of bytes handed to the parser
+	 * @param blockCount the number of blocks that can be filled ahead of the parser
+	 */
+	public StreamDumpInput(InputStream in, long start, long end, int blockSize, int blockCount) {
+		if (start < 0 || end < start) {
+			throw new IllegalArgumentException("Invalid region of input stream: [" + start + ", " + end + ")");
+		}
+		this.in = in;
+		this.start = start;
+		this.end = end;
+		this.free = new ArrayBlockingQueue<Block>(blockCount);
+		this.filled = new ArrayBlockingQueue<Block>(blockCount + 1);
+		for (int i = 0; i < blockCount; i++) {
+			free.add(new Block(blockSize));
+		}
+
+		this.reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readBlocks();
+			}
+		}, "dump-reader");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	private void readBlocks() {
+		try {
+			skip(start);
+			long remaining = end - start;
+			while (remaining > 0) {
+				Block block = free.take();
+				block.length = fill(block.data, (int) Math.min(block.data.length, remaining));
+				if (block.length == 0) {
+					break;
+				}
+				remaining -= block.length;
+				filled.put(block);
+				if (block.length < block.data.length && remaining > 0) {
+					//end of stream
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			//closed
+			return;
+		} catch (Throwable t) {
+			error = t;
+		}
+		//there's always room for the end marker, as the queue holds one more element than the number of blocks.
+		filled.offer(END);
+	}
+
+	private void skip(long bytes) throws IOException {
+		byte[] discard = new byte[64 * 1024];
+		while (bytes > 0) {
+			int read = in.read(discard, 0, (int) Math.min(discard.length, bytes));
+			if (read == -1) {
+				return;
+			}
+			bytes -= read;
+		}
+	}
+
+	private int fill(byte[] data, int length) throws IOException {
+		int total = 0;
+		while (total < length) {
+			int read = in.read(data, total, length - total);
+			if (read == -1) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	@Override
+	public long getStartOffset() {
+		return start;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (current == null || position == current.length) {
+			if (current == END) {
+				return -1;
+			}
+			if (current != null) {
+				free.offer(current);
+			}
+			try {
+				current = filled.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for input");
+			}
+			position = 0;
+			if (current == END) {
+				if (error != null) {
+					throw new IOException("Error reading input stream", error);
+				}
+				return -1;
+			}
+		}
+		int count = Math.min(length, current.length - position);
+		System.arraycopy(current.data, position, buffer, offset, count);
+		position += count;
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.interrupt();
+		in.close();
+	}
+
+	private static final class Block {
+		final byte[] data;
+		int length;
+
+		Block(int size) {
+			data = new byte[size];
+		}
+	}
+}